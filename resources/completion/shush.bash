@@ -0,0 +1,19 @@
+# bash completion for shush, from 'shush completion bash'.
+#
+# Install:  shush completion bash > ~/.local/share/bash-completion/completions/shush
+#     or:   echo 'source <(shush completion bash)' >> ~/.bashrc
+#
+# Entry labels complete only while a completion cache is live, that is for a while after a
+# command unlocked the vault in this login session; see 'shush completion --help'.
+
+_shush() {
+    local IFS=$'\n' i
+    local -a words=("${COMP_WORDS[@]:1:COMP_CWORD}")
+    COMPREPLY=($(command shush __complete -- "${words[@]}" 2>/dev/null))
+    # labels may contain spaces and quotes; insert them escaped
+    for i in "${!COMPREPLY[@]}"; do
+        COMPREPLY[i]=$(printf '%q' "${COMPREPLY[i]}")
+    done
+}
+
+complete -o default -F _shush shush
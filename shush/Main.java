@@ -1,19 +1,60 @@
 package shush;
 
 import shush.commands.*;
+import shush.completion.ShellCompletion;
+import shush.config.ShushConfig;
+import shush.util.Stats;
+import shush.vault.VaultManager;
+import shush.vault.VaultRegistry;
 
 import java.util.Map;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.function.Supplier;
 
 public class Main {
-    private static final Map<String, Command> commands = new HashMap<>();
-    
+    // Commands are constructed on demand so only the one being run opens a vault
+    private static final Map<String, Supplier<Command>> commands = new HashMap<>();
+    // Set once main is past shell completion, which must not pay for the registry and its config
+    private static VaultRegistry registry;
+    // Config resolved for the command being run (see ShushConfig)
+    private static ShushConfig.Settings settings = ShushConfig.Settings.DEFAULTS;
+
 
     public static void main(String[] args) {
+        // Shell completion runs on every TAB: answer before any command machinery
+        if (args.length > 0 && "__complete".equals(args[0])) {
+            complete(args);
+            return;
+        }
+        registry = VaultRegistry.defaultRegistry();
+
+        // Global options precede the command name
+        int first = 0;
+        while (first < args.length && args[first].startsWith("--")) {
+            if ("--stats".equals(args[first])) {
+                enableStats();
+                first++;
+            } else if ("--metrics-port".equals(args[first]) && first + 1 < args.length) {
+                startMetrics(args[first + 1]);
+                first += 2;
+            } else {
+                break;
+            }
+        }
+        if (first > 0) {
+            String[] rest = new String[args.length - first];
+            System.arraycopy(args, first, rest, 0, rest.length);
+            args = rest;
+        }
+
         if (args.length == 0) {
             printHelp();
             return;
@@ -24,45 +65,102 @@ public class Main {
         // Lazy initialize commands
         registerCommands();
 
-        Command command = commands.get(commandName);
+        Supplier<Command> command = commands.get(commandName);
         if (command == null) {
             System.out.println("Unknown command: " + commandName);
             printHelp();
             return;
         }
 
+        try {
+            settings = registry.settings(commandName);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        settings.applySystemProperties();
+
         // Slice off the command name and pass the rest
         String[] commandArgs = new String[args.length - 1];
         System.arraycopy(args, 1, commandArgs, 0, args.length - 1);
 
         try {
-            command.execute(commandArgs);
+            command.get().execute(commandArgs);
         } catch (Exception e) {
             System.out.println("Error running command: " + e.getMessage());
             e.printStackTrace(); // Optional: suppress in production
         }
+        CompletionCommand.refresh(registry, settings);
+    }
+
+    /** {@code shush __complete -- <words>}: prints completion candidates, and never an error. */
+    private static void complete(String[] args) {
+        int from = args.length > 1 && "--".equals(args[1]) ? 2 : 1;
+        try {
+            ShellCompletion.complete(ShellCompletion.defaultHome(), Arrays.asList(args).subList(from, args.length), System.out);
+        } catch (RuntimeException e) {
+            // nothing to offer
+        }
+        System.out.flush();
+    }
+
+    /** Records JVM startup time and prints the per-phase breakdown to stderr at exit. */
+    private static void enableStats() {
+        ProcessHandle.current().info().startInstant().ifPresent(start ->
+                Stats.record(Stats.Phase.JVM_STARTUP, Duration.between(start, Instant.now()).toNanos()));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> Stats.printReport(System.err), "shush-stats"));
+    }
+
+    /** Exposes the phase counters on a loopback HTTP endpoint for long-running modes. */
+    private static void startMetrics(String port) {
+        try {
+            Stats.serve(Integer.parseInt(port));
+        } catch (NumberFormatException | IOException e) {
+            System.out.println("Cannot start metrics endpoint: " + e.getMessage());
+        }
     }
 
     private static void registerCommands() {
-        commands.put("init", new InitCommand());
-        commands.put("add", new AddCommand());
-        commands.put("get", new GetCommand());
-        commands.put("gen", new GenerateCommand());
-        commands.put("search", new SearchCommand());
-        commands.put("rm", new RemoveCommand());
-        commands.put("update", new UpdateCommand());
-        commands.put("pin", new PinCommand());
-        commands.put("connect", new ConnectCommand());
-        commands.put("import-csv", new ImportCommand());
+        commands.put("init", () -> new InitCommand(registry));
+        commands.put("vault", () -> new VaultCommand(registry));
+        commands.put("add", () -> new AddCommand(registry.openCurrent()));
+        commands.put("get", () -> new GetCommand(registry.openCurrent()));
+        commands.put("gen", () -> new GenerateCommand(currentOrNull(), settings));
+        commands.put("list", () -> new ListCommand(registry.openCurrent()));
+        commands.put("search", () -> new SearchCommand(registry.openCurrent()));
+        commands.put("rm", () -> new RemoveCommand(registry.openCurrent()));
+        commands.put("update", () -> new UpdateCommand(registry.openCurrent()));
+        commands.put("batch", () -> new BatchCommand(registry.openCurrent(), registry));
+        commands.put("history", () -> new HistoryCommand(registry.openCurrent()));
+        commands.put("check", () -> new CheckCommand(registry.openCurrent()));
+        commands.put("stale", () -> new StaleCommand(registry.openCurrent(), registry));
+        commands.put("audit", () -> new AuditCommand(registry.openCurrent()));
+        commands.put("pin", () -> new PinCommand(registry.openCurrent()));
+        commands.put("passwd", () -> new PasswdCommand(registry.openCurrent()));
+        commands.put("recovery", () -> new RecoveryCommand(registry.openCurrent()));
+        commands.put("team", () -> new TeamCommand(registry));
+        commands.put("fsck", () -> new FsckCommand(registry));
+        commands.put("connect", () -> new ConnectCommand(registry));
+        commands.put("import", () -> new ImportCommand(registry.openCurrent()));
+        commands.put("completion", () -> new CompletionCommand(registry));
 
         // TOTP-related
-        commands.put("totp-add", new TOTPAddCommand());
-        commands.put("totp-remove", new TOTPRemoveCommand());
-        commands.put("totp-update", new TOTPUpdateCommand());
+        commands.put("totp-add", TOTPAddCommand::new);
+        commands.put("totp-remove", TOTPRemoveCommand::new);
+        commands.put("totp-update", TOTPUpdateCommand::new);
 
         //TODO: Other 2FA, Twilio, etc.
     }
 
+    /** @return the selected vault, or {@code null} for commands that can run without one. */
+    private static VaultManager currentOrNull() {
+        try {
+            return registry.openCurrent();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
     private static void printHelp() {
     try (InputStream input = Main.class.getResourceAsStream("/resources/help-root.txt")) {
         if (input == null) {
@@ -1,9 +1,15 @@
 package shush.commands;
 
 import java.nio.charset.StandardCharsets;
-import shush.util.CryptoUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import shush.strength.Strength;
+import shush.strength.StrengthEstimator;
 import shush.util.VerifyUtils;
 import shush.vault.VaultEntry;
+import shush.vault.VaultKey;
 import shush.vault.VaultManager;
 
 /**
@@ -11,15 +17,17 @@ import shush.vault.VaultManager;
  * <p>
  * Flow:
  * <ol>
+ *   <li>Warn (without refusing) if the password is weak for this label and username.</li>
  *   <li>Decide if this entry requires 2FA (global TOTP vs flags).</li>
- *   <li>Use {@link VerifyUtils} to prompt and verify master password and (optionally) TOTP.</li>
- *   <li>Encrypt username/password/comment with AES-GCM using a key derived from the master password.</li>
+ *   <li>Use {@link VerifyUtils} to unlock the vault data key and (optionally) verify TOTP.</li>
+ *   <li>Encrypt username/password/comment (and tags/folder, if given) under the vault data key with the preferred AEAD suite.</li>
  *   <li>Persist the entry via {@link VaultManager}.</li>
  * </ol>
  *
  * <p><b>Usage example:</b></p>
  * <pre>{@code
  * shush add github -u myuser -p mypass -2FA -c "Personal GitHub account"
+ * shush add orders-db -u app -t prod,db -f work/databases
  * }</pre>
  */
 public class AddCommand implements Command {
@@ -39,14 +47,66 @@ public class AddCommand implements Command {
     /**
      * Executes the {@code shush add} command using raw CLI args.
      * <p>
-     * Placeholder: argument parsing not yet implemented.
+     * The password is prompted for (without echo) when {@code -p} is not given.
      *
      * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
      */
     @Override
     public void execute(String[] args) {
-        // TODO: Parse args and call the overload below with appropriate parameters.
-        System.out.println("AddCommand: execute(String[] args) not yet implemented.");
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
+            printHelp();
+            return;
+        }
+
+        String label = null, username = null, password = null, comment = null;
+        String folder = null;
+        List<String> tags = new ArrayList<>();
+        boolean force2FA = false, no2FA = false;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (("-u".equals(a) || "--username".equals(a)) && i + 1 < args.length) {
+                username = args[++i];
+            } else if (("-p".equals(a) || "--password".equals(a)) && i + 1 < args.length) {
+                password = args[++i];
+            } else if (("-c".equals(a) || "--comment".equals(a)) && i + 1 < args.length) {
+                comment = args[++i];
+            } else if (("-t".equals(a) || "--tag".equals(a)) && i + 1 < args.length) {
+                tags.add(args[++i]);
+            } else if (("-f".equals(a) || "--folder".equals(a)) && i + 1 < args.length) {
+                folder = args[++i];
+            } else if ("-2FA".equalsIgnoreCase(a) || "--2fa".equalsIgnoreCase(a)) {
+                force2FA = true;
+            } else if ("-no2fa".equalsIgnoreCase(a) || "--no2fa".equalsIgnoreCase(a)) {
+                no2FA = true;
+            } else if (label == null && !a.startsWith("-")) {
+                label = a;
+            } else {
+                CommandStatus.fail("Error: unexpected argument '" + a + "'.");
+                printHelp();
+                return;
+            }
+        }
+        if (label == null) {
+            printHelp();
+            return;
+        }
+        if (password == null) {
+            char[] pw = VerifyUtils.promptSecret("Password for '" + label + "': ");
+            password = new String(pw);
+            Arrays.fill(pw, '\0');
+        }
+        warnIfWeak(label, username, password);
+        execute(label, username, password, comment, force2FA, no2FA, tags, folder);
+    }
+
+    /**
+     * Adds an entry with the provided field values and no tags or folder.
+     *
+     * @see #execute(String, String, String, String, boolean, boolean, Collection, String)
+     */
+    public void execute(String label, String username, String password, String comment,
+                        boolean force2FA, boolean no2FA) {
+        execute(label, username, password, comment, force2FA, no2FA, List.of(), null);
     }
 
     /**
@@ -58,9 +118,11 @@ public class AddCommand implements Command {
      * @param comment  optional comment/description (may be {@code null})
      * @param force2FA {@code true} if the {@code -2FA} flag was passed to require TOTP for this entry
      * @param no2FA    {@code true} if the {@code -no2fa} flag was passed to disable TOTP for this entry
+     * @param tags     tags (each may be comma-separated); may be empty
+     * @param folder   folder path such as {@code work/db} (may be {@code null})
      */
     public void execute(String label, String username, String password, String comment,
-                        boolean force2FA, boolean no2FA) {
+                        boolean force2FA, boolean no2FA, Collection<String> tags, String folder) {
         // 1) Determine if this entry requires TOTP
         final boolean globalTOTP = vaultManager.isGlobalTOTPEnabled();
         final boolean requires2FA = globalTOTP ? !no2FA : force2FA;
@@ -68,29 +130,52 @@ public class AddCommand implements Command {
         // 2) Centralized verification (master pw + optional TOTP)
         try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, requires2FA)) {
             if (!vr.isSuccess()) {
-                System.out.println("Error: " + vr.getFailureReason());
+                CommandStatus.fail("Error: " + vr.getFailureReason());
                 return;
             }
 
-            // 3) Encrypt sensitive fields using the ephemeral master password (char[])
-            char[] master = vr.getMasterPassword();
+            // 3) Encrypt sensitive fields under the unlocked data key (no KDF per field)
+            VaultKey key = vr.getVaultKey();
 
-            final String encUser = CryptoUtils.encrypt(safeBytes(username), master);
-            final String encPass = CryptoUtils.encrypt(safeBytes(password), master);
-            final String encComment = CryptoUtils.encrypt(safeBytes(comment), master);
+            final String encUser = key.seal(safeBytes(username));
+            final String encPass = key.seal(safeBytes(password));
+            final String encComment = key.seal(safeBytes(comment));
+            final String joinedTags = VaultEntry.joinTags(tags);
+            final String normalizedFolder = VaultEntry.normalizeFolder(folder);
+            final String encTags = joinedTags == null ? null : key.sealString(joinedTags);
+            final String encFolder = normalizedFolder == null ? null : key.sealString(normalizedFolder);
 
             // 4) Persist
-            VaultEntry entry = new VaultEntry(label, encUser, encPass, encComment, requires2FA);
-            vaultManager.addEntry(entry);
+            VaultEntry entry = new VaultEntry(label, encUser, encPass, encComment, requires2FA, key.getEpoch(),
+                    encTags, encFolder);
+            vaultManager.addEntry(entry, key);
 
             System.out.println("Entry '" + label + "' added successfully.");
         } catch (Exception e) {
-            System.out.println("Error adding entry: " + e.getMessage());
+            CommandStatus.fail("Error adding entry: " + e.getMessage());
         }
     }
 
     // ---- helpers ----
 
+    /** Prints a warning, before unlocking, if the password scores below 2 of 4. */
+    private static void warnIfWeak(String label, String username, String password) {
+        if (password == null || password.isEmpty()) return;
+        Strength s = StrengthEstimator.getDefault().estimate(password,
+                username == null ? List.of(label) : List.of(label, username));
+        if (s.getScore() >= 2) return;
+        System.out.println("Warning: weak password (" + s + ")"
+                + (s.getWarning() == null ? "." : ": " + s.getWarning()));
+        if (!s.getSuggestions().isEmpty()) System.out.println("         " + s.getSuggestions().get(0));
+    }
+
+    /** Prints concise usage for {@code shush add}. */
+    private void printHelp() {
+        System.out.println("Usage: shush add <label> [-u <username>] [-p <password>] [-c <comment>] [-2FA|-no2fa]");
+        System.out.println("                 [-t <tag[,tag]>]... [-f <folder/path>]");
+        System.out.println("Adds an entry; the password is prompted for if -p is omitted.");
+    }
+
     /**
      * Converts a possibly-null string to UTF-8 bytes.
      *
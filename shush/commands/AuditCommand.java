@@ -0,0 +1,130 @@
+package shush.commands;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import shush.util.VerifyUtils;
+import shush.vault.AuditLog;
+import shush.vault.VaultManager;
+
+/**
+ * Verifies and lists the vault's audit log.
+ * <p>
+ * Every unlock (and failed unlock), {@code get}, add, update and removal is recorded in an
+ * encrypted, hash-chained log next to the vault (see {@link AuditLog}). {@code verify} walks the
+ * whole chain and reports where it was modified, reordered or cut; {@code list} shows the most
+ * recent events. Both need the vault key, since the events are encrypted.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush audit verify
+ * shush audit list -n 50
+ * }</pre>
+ */
+public class AuditCommand implements Command {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final int DEFAULT_LIMIT = 20;
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code AuditCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public AuditCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
+    /**
+     * Executes the {@code shush audit} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
+            printHelp();
+            return;
+        }
+        String action = args[0];
+        int limit = DEFAULT_LIMIT;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (("-n".equals(args[i]) || "--limit".equals(args[i])) && i + 1 < args.length) {
+                    limit = Integer.parseInt(args[++i]);
+                } else {
+                    System.out.println("Error: unexpected argument '" + args[i] + "'.");
+                    printHelp();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Error: invalid number.");
+            return;
+        }
+        if (!"verify".equals(action) && !"list".equals(action)) {
+            System.out.println("Error: unknown action '" + action + "'.");
+            printHelp();
+            return;
+        }
+
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            List<AuditLog.Event> events = new ArrayList<>();
+            AuditLog.Verification v = "verify".equals(action)
+                    ? vaultManager.verifyAudit(vr.getVaultKey())
+                    : vaultManager.auditEvents(vr.getVaultKey(), events);
+            if (!v.exists()) {
+                System.out.println("No audit log yet.");
+                return;
+            }
+            if ("list".equals(action)) print(events, limit);
+            report(v);
+        } catch (IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error reading audit log: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private static void print(List<AuditLog.Event> events, int limit) {
+        for (int i = Math.max(0, events.size() - limit); i < events.size(); i++) {
+            AuditLog.Event e = events.get(i);
+            System.out.printf("%s  %-13s %-10s %-16s %s%n", TIME.format(Instant.ofEpochMilli(e.getTime())),
+                    e.getAction(), e.getUser(), e.getVia() == null ? "-" : e.getVia(),
+                    e.getLabel() == null ? "" : e.getLabel());
+        }
+    }
+
+    private static void report(AuditLog.Verification v) {
+        if (v.isIntact()) {
+            String range = v.getEvents() == 0 ? ""
+                    : ", " + TIME.format(Instant.ofEpochMilli(v.getFirst())) + " to " + TIME.format(Instant.ofEpochMilli(v.getLast()));
+            System.out.println("Audit log intact: " + v.getEvents() + " event(s) in " + v.getBatches() + " batch(es)" + range + ".");
+        } else {
+            System.out.println("Audit log FAILED verification after " + v.getEvents() + " event(s) in "
+                    + v.getBatches() + " batch(es):");
+            for (String p : v.getProblems()) System.out.println("  " + p);
+        }
+        if (v.getDropped() > 0) {
+            System.out.println("Warning: " + v.getDropped() + " event(s) were dropped because the writer fell behind.");
+        }
+    }
+
+    /** Prints concise usage for {@code shush audit}. */
+    private void printHelp() {
+        System.out.println("Usage: shush audit verify");
+        System.out.println("       shush audit list [-n <count>]");
+        System.out.println("verify checks the log's hash chain and MACs; list shows the latest events (default " + DEFAULT_LIMIT + ").");
+    }
+}
@@ -0,0 +1,402 @@
+package shush.commands;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import shush.config.ShushConfig;
+import shush.util.Json;
+import shush.util.VerifyUtils;
+import shush.vault.VaultManager;
+import shush.vault.VaultRegistry;
+
+/**
+ * Runs many vault operations in one process with a single unlock.
+ * <p>
+ * Reads newline-delimited JSON requests from a file or stdin and writes one JSON result per
+ * request to stdout as each finishes. The vault is unlocked once up front; every request then runs
+ * through the regular command ({@link AddCommand}, {@link GetCommand}, {@link UpdateCommand},
+ * {@link RemoveCommand}, {@link GenerateCommand}), which picks up the unlocked key from the
+ * {@linkplain VerifyUtils#beginSession verification session} instead of prompting.
+ * </p>
+ *
+ * <h2>Ordering</h2>
+ * <ul>
+ *   <li>Reads ({@code get}, and {@code gen} without a label) run concurrently on a worker pool,
+ *       so their results may come back out of order; match them by {@code id}.</li>
+ *   <li>Writes ({@code add}, {@code update}, {@code rm}, {@code gen} with a label) wait for all
+ *       earlier requests and run alone, so each request sees every write before it.</li>
+ * </ul>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush batch ops.ndjson
+ * printf '%s\n' "$MASTER" '{"id":1,"op":"get","label":"github"}' | shush batch
+ *
+ * {"id":1,"op":"add","label":"db","username":"app","password":"s3cret","tags":["prod","db"],"folder":"work","2fa":false}
+ * {"id":2,"op":"get","label":"db"}
+ * {"id":3,"op":"update","label":"db","password":"n3w","rename":"db-prod"}
+ * {"id":4,"op":"gen","label":"api","length":32,"symbols":false}
+ * {"id":5,"op":"rm","label":"db-prod"}
+ * }</pre>
+ * Each result is {@code {"id":..,"op":..,"ok":true|false,"output":[lines]}} or carries an
+ * {@code "error"} when the request itself was invalid. {@code ok} is false when the command
+ * reported a failure ({@link CommandStatus}); what it printed is never inspected, so entry data
+ * that happens to start with "Error" does not turn a success into one. When requests come from stdin without a
+ * terminal, the master password (and PIN / TOTP code, if needed) are read from the first lines.
+ * <p>
+ * A batch can run for a long time, so it watches the config: an edit (say to
+ * {@code GeneratorLength}) applies to the requests after it, without restarting.
+ * </p>
+ */
+public class BatchCommand implements Command {
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /** Registry whose config is followed during the batch; {@code null} for built-in defaults. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code BatchCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public BatchCommand(VaultManager vaultManager) {
+        this(vaultManager, null);
+    }
+
+    /**
+     * Constructs a new {@code BatchCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     * @param registry     registry whose config applies to the requests, or {@code null}
+     */
+    public BatchCommand(VaultManager vaultManager, VaultRegistry registry) {
+        this.vaultManager = vaultManager;
+        this.registry = registry;
+    }
+
+    /**
+     * Executes the {@code shush batch [file] [--2fa] [--jobs <n>]} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) throws Exception {
+        String file = null;
+        boolean totp = vaultManager.isGlobalTOTPEnabled();
+        int jobs = Math.max(2, Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ("--help".equalsIgnoreCase(a) || "-h".equalsIgnoreCase(a)) {
+                printHelp();
+                return;
+            } else if ("--2fa".equalsIgnoreCase(a)) {
+                totp = true;
+            } else if ("--jobs".equals(a) && i + 1 < args.length) {
+                jobs = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (file == null && !a.startsWith("-")) {
+                file = a;
+            } else {
+                System.out.println("Error: unexpected argument '" + a + "'.");
+                printHelp();
+                return;
+            }
+        }
+
+        PrintStream out = System.out;
+        // Prompts must not end up in the NDJSON stream
+        System.setOut(System.err);
+        VerifyUtils.VerificationResult session;
+        try {
+            session = VerifyUtils.promptAndVerify(vaultManager, totp);
+        } finally {
+            System.setOut(out);
+        }
+        if (!session.isSuccess()) {
+            out.println(Json.write(error(null, null, session.getFailureReason())));
+            return;
+        }
+
+        Capture capture = new Capture(out);
+        ExecutorService pool = Executors.newFixedThreadPool(jobs, r -> {
+            Thread t = new Thread(r, "shush-batch");
+            t.setDaemon(true);
+            return t;
+        });
+        BufferedReader in = file != null
+                ? Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)
+                : VerifyUtils.stdin();
+        if (registry != null) {
+            try {
+                registry.getConfig().watch();
+            } catch (IOException e) {
+                System.err.println("Warning: config edits will not be picked up: " + e.getMessage());
+            }
+        }
+        VerifyUtils.beginSession(vaultManager, session, totp);
+        System.setOut(new PrintStream(capture, true, StandardCharsets.UTF_8));
+        try {
+            List<CompletableFuture<Void>> inflight = new ArrayList<>();
+            String line;
+            long lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.trim().isEmpty()) continue;
+
+                Request req;
+                try {
+                    req = Request.parse(line, lineNo);
+                } catch (IllegalArgumentException e) {
+                    emit(out, error(lineNo, null, e.getMessage()));
+                    continue;
+                }
+
+                if (req.isWrite()) {
+                    // barrier: earlier reads finish before the write, later requests see it
+                    CompletableFuture.allOf(inflight.toArray(new CompletableFuture<?>[0])).join();
+                    inflight.clear();
+                    emit(out, run(req, capture));
+                } else {
+                    inflight.add(CompletableFuture.runAsync(() -> emit(out, run(req, capture)), pool));
+                }
+            }
+            CompletableFuture.allOf(inflight.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            System.setOut(out);
+            VerifyUtils.endSession();
+            session.close();
+            if (registry != null) registry.getConfig().close();
+            pool.shutdown();
+            if (file != null) in.close();
+        }
+    }
+
+    // ---- execution ----
+
+    /** Runs one request through its command, capturing what the command prints. */
+    private Map<String, Object> run(Request req, Capture capture) {
+        if (req.invalid != null) return error(req.id, req.op, req.invalid);
+        Command cmd;
+        switch (req.op) {
+            case "add": cmd = new AddCommand(vaultManager); break;
+            case "get": cmd = new GetCommand(vaultManager); break;
+            case "update": cmd = new UpdateCommand(vaultManager); break;
+            case "rm": cmd = new RemoveCommand(vaultManager); break;
+            default: cmd = new GenerateCommand(vaultManager, settings(req.op)); break;
+        }
+
+        String failure = null;
+        boolean failed;
+        capture.begin();
+        CommandStatus.begin();
+        String printed;
+        try {
+            cmd.execute(req.args.toArray(new String[0]));
+        } catch (Exception e) {
+            failure = e.getMessage() == null ? e.toString() : e.getMessage();
+        } finally {
+            failed = CommandStatus.end();
+            printed = capture.end();
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (String l : printed.split("\\R")) {
+            if (!l.isEmpty()) lines.add(l);
+        }
+        boolean ok = failure == null && !failed;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", req.id);
+        result.put("op", req.op);
+        result.put("ok", ok);
+        result.put("output", lines);
+        if (failure != null) result.put("error", failure);
+        return result;
+    }
+
+    /** @return the config for one request, as it is now; a broken edit keeps the last good one */
+    private ShushConfig.Settings settings(String op) {
+        return registry == null ? ShushConfig.Settings.DEFAULTS : registry.settings(op);
+    }
+
+    private static Map<String, Object> error(Object id, String op, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        if (op != null) result.put("op", op);
+        result.put("ok", false);
+        result.put("error", message);
+        return result;
+    }
+
+    private static void emit(PrintStream out, Map<String, Object> result) {
+        String json = Json.write(result);
+        synchronized (out) {
+            out.println(json);
+            out.flush();
+        }
+    }
+
+    // ---- request parsing ----
+
+    /** One NDJSON request translated into command-line arguments. */
+    private static final class Request {
+        final Object id;
+        final String op;
+        final List<String> args = new ArrayList<>();
+        String invalid;
+        boolean write;
+
+        private Request(Object id, String op) {
+            this.id = id;
+            this.op = op;
+        }
+
+        boolean isWrite() {
+            return write;
+        }
+
+        static Request parse(String line, long lineNo) {
+            Map<String, Object> m = Json.parseObject(line);
+            Object id = m.containsKey("id") ? m.get("id") : lineNo;
+            String op = string(m, "op");
+            if (op == null) throw new IllegalArgumentException("Missing \"op\"");
+            Request r = new Request(id, op);
+            String label = string(m, "label");
+
+            switch (op) {
+                case "add":
+                    r.write = true;
+                    if (label == null) r.invalid = "\"label\" is required";
+                    else if (string(m, "password") == null) r.invalid = "\"password\" is required";
+                    r.args.add(label);
+                    r.option("-u", string(m, "username"));
+                    r.option("-p", string(m, "password"));
+                    r.option("-c", string(m, "comment"));
+                    r.tags(m.get("tags"));
+                    r.option("-f", string(m, "folder"));
+                    r.args.add(Boolean.TRUE.equals(m.get("2fa")) ? "-2FA" : "-no2fa");
+                    break;
+                case "get":
+                    if (label == null) r.invalid = "\"label\" is required";
+                    r.args.add(label);
+                    if (!Boolean.FALSE.equals(m.get("show"))) r.args.add("-v");
+                    break;
+                case "update":
+                    r.write = true;
+                    if (label == null) r.invalid = "\"label\" is required";
+                    r.args.add(label);
+                    r.option("-u", string(m, "username"));
+                    r.option("-p", string(m, "password"));
+                    r.option("-c", string(m, "comment"));
+                    r.option("--rename", string(m, "rename"));
+                    r.tags(m.get("tags"));
+                    r.option("-f", string(m, "folder"));
+                    if (m.get("2fa") instanceof Boolean) r.args.add((Boolean) m.get("2fa") ? "-2FA" : "-no2fa");
+                    if (r.args.size() == 1 && r.invalid == null) r.invalid = "nothing to update";
+                    break;
+                case "rm":
+                    r.write = true;
+                    if (label == null) r.invalid = "\"label\" is required";
+                    r.args.add(label);
+                    break;
+                case "gen":
+                    r.write = label != null;
+                    if (label != null) r.args.add(label);
+                    if (m.get("length") instanceof Number) r.option("--length", String.valueOf(((Number) m.get("length")).intValue()));
+                    if (Boolean.FALSE.equals(m.get("symbols"))) r.args.add("--no-symbols");
+                    r.option("-u", string(m, "username"));
+                    r.option("-c", string(m, "comment"));
+                    if (!Boolean.FALSE.equals(m.get("show"))) r.args.add("-v");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported op '" + op + "' (expected add, get, update, rm or gen)");
+            }
+            return r;
+        }
+
+        private void option(String flag, String value) {
+            if (value == null) return;
+            args.add(flag);
+            args.add(value);
+        }
+
+        /** {@code "tags"} may be a string (comma-separated) or an array of strings. */
+        private void tags(Object value) {
+            if (value instanceof List) {
+                List<String> tags = new ArrayList<>();
+                for (Object t : (List<?>) value) if (t != null) tags.add(t.toString());
+                option("-t", String.join(",", tags));
+            } else if (value != null) {
+                option("-t", value.toString());
+            }
+        }
+
+        private static String string(Map<String, Object> m, String key) {
+            Object v = m.get(key);
+            return v == null ? null : v.toString();
+        }
+    }
+
+    // ---- output capture ----
+
+    /**
+     * {@code System.out} replacement that routes each worker thread's output into the buffer of
+     * the request it is running; anything else goes to the real stdout.
+     */
+    private static final class Capture extends OutputStream {
+        private final ThreadLocal<ByteArrayOutputStream> target = new ThreadLocal<>();
+        private final PrintStream fallback;
+
+        Capture(PrintStream fallback) {
+            this.fallback = fallback;
+        }
+
+        void begin() {
+            target.set(new ByteArrayOutputStream());
+        }
+
+        String end() {
+            ByteArrayOutputStream buf = target.get();
+            target.remove();
+            return buf == null ? "" : new String(buf.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void write(int b) {
+            ByteArrayOutputStream t = target.get();
+            if (t != null) t.write(b);
+            else fallback.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ByteArrayOutputStream t = target.get();
+            if (t != null) t.write(b, off, len);
+            else fallback.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target.get() == null) fallback.flush();
+        }
+    }
+
+    /** Prints concise usage for {@code shush batch}. */
+    private void printHelp() {
+        System.out.println("Usage: shush batch [file] [--2fa] [--jobs <n>]");
+        System.out.println("Runs NDJSON requests (add/get/update/rm/gen) from a file or stdin with one unlock.");
+        System.out.println("Writes one JSON result per request to stdout.");
+    }
+}
@@ -0,0 +1,160 @@
+package shush.commands;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import shush.strength.Strength;
+import shush.strength.StrengthEstimator;
+import shush.util.VerifyUtils;
+import shush.vault.VaultEntry;
+import shush.vault.VaultKey;
+import shush.vault.VaultManager;
+
+/**
+ * Audits every stored password for weakness and reuse, offline.
+ * <p>
+ * Each password is scored by {@link StrengthEstimator} with the entry's label and username as
+ * context words, so {@code github2024} for {@code github} counts as weak. Entries are opened and
+ * scored in parallel; nothing leaves the machine.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush check
+ * shush check --min-score 3 -v
+ * }</pre>
+ */
+public class CheckCommand implements Command {
+
+    /** Scores below this are reported unless {@code --min-score} is given. */
+    static final int DEFAULT_MIN_SCORE = 2;
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code CheckCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public CheckCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
+    /**
+     * Executes the {@code shush check [--min-score <0-4>] [-v]} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) {
+        int minScore = DEFAULT_MIN_SCORE;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ("--help".equalsIgnoreCase(a) || "-h".equalsIgnoreCase(a)) {
+                printHelp();
+                return;
+            } else if ("--min-score".equals(a) && i + 1 < args.length) {
+                try {
+                    minScore = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    minScore = -1;
+                }
+                if (minScore < 0 || minScore > 4) {
+                    System.out.println("Error: --min-score must be between 0 and 4.");
+                    return;
+                }
+            } else if ("-v".equals(a) || "--verbose".equals(a)) {
+                verbose = true;
+            } else {
+                System.out.println("Error: unexpected argument '" + a + "'.");
+                printHelp();
+                return;
+            }
+        }
+
+        List<VaultEntry> entries = vaultManager.listEntries();
+        if (entries.isEmpty()) {
+            System.out.println("No entries.");
+            return;
+        }
+        boolean requires2FA = vaultManager.isGlobalTOTPEnabled() || entries.stream().anyMatch(VaultEntry::requires2FA);
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, requires2FA)) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            VaultKey key = vr.getVaultKey();
+            StrengthEstimator estimator = StrengthEstimator.getDefault();
+            List<Result> results = entries.parallelStream()
+                    .map(e -> check(e, key, estimator))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+
+            int weak = 0;
+            results.sort((x, y) -> String.CASE_INSENSITIVE_ORDER.compare(x.label, y.label));
+            for (Result r : results) {
+                if (r.strength.getScore() >= minScore) continue;
+                weak++;
+                StringBuilder line = new StringBuilder("weak   ").append(r.label)
+                        .append("  score ").append(r.strength.getScore()).append("/4, cracked in ")
+                        .append(r.strength.getCrackTimeDisplay());
+                if (r.strength.getWarning() != null) line.append("  ").append(r.strength.getWarning());
+                System.out.println(line);
+                if (verbose) for (String s : r.strength.getSuggestions()) System.out.println("         - " + s);
+            }
+
+            Map<String, List<String>> byPassword = new HashMap<>();
+            for (Result r : results) byPassword.computeIfAbsent(r.password, p -> new ArrayList<>()).add(r.label);
+            Map<String, List<String>> reused = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (List<String> labels : byPassword.values()) if (labels.size() > 1) reused.put(labels.get(0), labels);
+            for (List<String> labels : reused.values()) System.out.println("reused " + String.join(", ", labels));
+
+            System.out.println("Checked " + results.size() + " password(s): " + weak + " weak, "
+                    + reused.values().stream().mapToInt(List::size).sum() + " reused.");
+            if (!estimator.hasDictionaries()) {
+                System.out.println("Note: password dictionaries not found; only patterns were checked.");
+            }
+        } catch (Exception e) {
+            System.out.println("Error checking passwords: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private static Result check(VaultEntry e, VaultKey key, StrengthEstimator estimator) {
+        try {
+            String password = e.getPassword() == null ? "" : key.openString(e.getPassword());
+            if (password.isEmpty()) return null;
+            String username = e.getUsername() == null ? "" : key.openString(e.getUsername());
+            return new Result(e.getLabel(), password, estimator.estimate(password, List.of(e.getLabel(), username)));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Cannot open '" + e.getLabel() + "': " + ex.getMessage(), ex);
+        }
+    }
+
+    private static final class Result {
+        final String label;
+        final String password;
+        final Strength strength;
+
+        Result(String label, String password, Strength strength) {
+            this.label = label;
+            this.password = password;
+            this.strength = strength;
+        }
+    }
+
+    /** Prints concise usage for {@code shush check}. */
+    private void printHelp() {
+        System.out.println("Usage: shush check [--min-score <0-4>] [-v]");
+        System.out.println("Reports stored passwords scoring below --min-score (default " + DEFAULT_MIN_SCORE
+                + ") and passwords used by more than one entry.");
+        System.out.println("-v also prints suggestions. The check runs offline against bundled dictionaries.");
+    }
+}
@@ -0,0 +1,46 @@
+package shush.commands;
+
+/**
+ * Whether the command running on the current thread failed.
+ * <p>
+ * Commands report expected failures (no such entry, wrong password, a bad argument) by printing
+ * an {@code Error...} line and returning, not by throwing. {@link BatchCommand} runs commands
+ * in-process and needs to tell those apart from output that merely looks like an error, such as
+ * an entry comment starting with "Error", so commands print such lines through
+ * {@link #fail(String)}, which also marks the run as failed.
+ * </p>
+ */
+final class CommandStatus {
+
+    // null outside a begin/end pair, so commands run from Main pay nothing beyond the lookup
+    private static final ThreadLocal<boolean[]> FAILED = new ThreadLocal<>();
+
+    private CommandStatus() { /* no instances */ }
+
+    /** Starts tracking a command run on this thread. */
+    static void begin() {
+        FAILED.set(new boolean[1]);
+    }
+
+    /**
+     * Stops tracking.
+     *
+     * @return true if the command called {@link #fail(String)} since {@link #begin()}
+     */
+    static boolean end() {
+        boolean[] failed = FAILED.get();
+        FAILED.remove();
+        return failed != null && failed[0];
+    }
+
+    /**
+     * Prints a failure message and marks the running command as failed.
+     *
+     * @param message the line to print, e.g. {@code "Error: no entry 'x'."}
+     */
+    static void fail(String message) {
+        boolean[] failed = FAILED.get();
+        if (failed != null) failed[0] = true;
+        System.out.println(message);
+    }
+}
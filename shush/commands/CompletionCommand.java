@@ -0,0 +1,132 @@
+package shush.commands;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import shush.completion.CompletionCache;
+import shush.completion.ShellCompletion;
+import shush.config.ConfigKeyword;
+import shush.config.ShushConfig;
+import shush.vault.VaultEntry;
+import shush.vault.VaultManager;
+import shush.vault.VaultRegistry;
+
+/**
+ * Prints shell completion scripts and manages the session's completion cache.
+ * <p>
+ * Entry labels complete without unlocking: each run that unlocks a vault leaves its labels in a
+ * {@link CompletionCache} held in the per-user runtime directory, for {@code CompletionCache}
+ * in the config ({@value CompletionCache#DEFAULT_TTL} by default, {@code no} to disable).
+ * Without {@code XDG_RUNTIME_DIR} (e.g. on macOS) nothing is cached and only commands and
+ * options complete. {@code shush completion clear} forgets them at once.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * source <(shush completion bash)
+ * shush completion status
+ * shush completion clear
+ * }</pre>
+ */
+public class CompletionCommand implements Command {
+
+    /** Registry of vaults under the Shush home directory. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code CompletionCommand}.
+     *
+     * @param registry the vault registry
+     */
+    public CompletionCommand(VaultRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Executes the {@code shush completion <bash|zsh|status|clear>} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) throws Exception {
+        if (args.length != 1 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
+            printHelp();
+            return;
+        }
+        CompletionCache cache = new CompletionCache(registry.getHome());
+        switch (args[0].toLowerCase()) {
+            case "bash":
+            case "zsh":
+                System.out.print(ShellCompletion.script(args[0].toLowerCase()));
+                break;
+            case "status":
+                if (!cache.isAvailable()) {
+                    System.out.println("Labels do not complete: XDG_RUNTIME_DIR is not set, and they are not cached on persistent disk.");
+                    break;
+                }
+                String vault = registry.current();
+                long expires = vault == null ? 0 : cache.expiresAt(vault);
+                if (expires == 0) {
+                    System.out.println("Labels do not complete; they will after the next command that unlocks the vault.");
+                } else {
+                    System.out.println("Labels of '" + vault + "' complete until " + Instant.ofEpochMilli(expires) + ".");
+                }
+                break;
+            case "clear":
+                int n = cache.clear();
+                System.out.println("Cleared " + n + " completion cache(s).");
+                break;
+            default:
+                System.out.println("Unknown completion subcommand: " + args[0]);
+                printHelp();
+        }
+    }
+
+    /**
+     * Brings the completion cache in step with the vaults a run has loaded. A vault unlocked
+     * during the run (re)starts its cache; one merely loaded refreshes a live cache, so labels
+     * pulled or added without a prompt still complete, but never extends it. Expired caches
+     * are deleted.
+     *
+     * @param registry registry whose opened vaults are cached
+     * @param settings config of the run, for {@code CompletionCache}
+     */
+    public static void refresh(VaultRegistry registry, ShushConfig.Settings settings) {
+        String ttl = settings.get(ConfigKeyword.COMPLETION_CACHE, CompletionCache.DEFAULT_TTL);
+        CompletionCache cache = new CompletionCache(registry.getHome());
+        try {
+            cache.removeExpired();
+        } catch (IOException | UncheckedIOException ex) {
+            // retried after the next command
+        }
+        if (!cache.isAvailable()) return;
+        for (Map.Entry<String, VaultManager> e : registry.opened().entrySet()) {
+            VaultManager vm = e.getValue();
+            try {
+                if ("no".equals(ttl)) {
+                    cache.remove(e.getKey());
+                    continue;
+                }
+                if (!vm.isLoaded()) continue;
+                long expires = vm.wasUnlocked()
+                        ? System.currentTimeMillis() + StaleCommand.parseAge(ttl).toMillis()
+                        : cache.expiresAt(e.getKey());
+                if (expires == 0) continue;
+                List<String> labels = vm.streamEntries().map(VaultEntry::getLabel).collect(Collectors.toList());
+                cache.write(e.getKey(), labels, expires);
+            } catch (IOException | UncheckedIOException | IllegalArgumentException ex) {
+                // completion is a convenience; the command itself succeeded
+            }
+        }
+    }
+
+    /** Prints concise usage for {@code shush completion}. */
+    private void printHelp() {
+        System.out.println("Usage: shush completion <bash|zsh|status|clear>");
+        System.out.println("Prints a completion script, or shows or clears the label cache it completes from.");
+        System.out.println("Install: shush completion bash > ~/.local/share/bash-completion/completions/shush");
+        System.out.println("         shush completion zsh > \"${fpath[1]}/_shush\"");
+    }
+}
@@ -1,32 +1,260 @@
 package shush.commands;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import shush.remote.RemoteClient;
+import shush.remote.RemoteSettings;
+import shush.remote.ShushServer;
+import shush.util.CryptoUtils;
+import shush.util.VerifyUtils;
+import shush.vault.VaultHeader;
+import shush.vault.VaultManager;
+import shush.vault.VaultRegistry;
+
 /**
- * Connects the CLI to a remote vault or synchronization service.
+ * Connects the CLI to remote vault servers ({@link ShushServer}) and syncs vaults with them.
  * <p>
- * Placeholder: future work will handle server address, port, and authentication.
+ * The servers are one primary and any number of read replicas. {@code pull} reads from any of
+ * them that is within the staleness bound and fails over to the next; {@code push} uploads the
+ * whole vault file to the primary, which replicates it as a snapshot (see
+ * {@link shush.remote.SnapshotLog}). The file is encrypted under the master password before it
+ * leaves the machine, so servers store and replicate only ciphertext. Each side remembers the version it last synced:
+ * a push based on an older version than the server's is refused, and a pull refuses to overwrite
+ * local changes that were never pushed (both unless {@code --force}). Pulled versions are cached
+ * locally and revalidated cheaply, and several vaults can be pulled in one go.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush connect http://10.0.0.1:7001,http://10.0.0.2:7001 --max-staleness 5s
+ * shush connect status
+ * shush connect push
+ * shush connect pull work personal
+ * }</pre>
  */
 public class ConnectCommand implements Command {
 
+    /** Registry providing the vaults and the Shush home. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code ConnectCommand}.
+     *
+     * @param registry the vault registry
+     */
+    public ConnectCommand(VaultRegistry registry) {
+        this.registry = registry;
+    }
+
     /**
-     * Executes the {@code shush connect <options>} command.
+     * Executes the {@code shush connect <servers|status|push|pull>} command.
      *
      * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
      */
     @Override
     public void execute(String[] args) {
-        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
             printHelp();
             return;
         }
+        try {
+            RemoteSettings settings = RemoteSettings.load(registry.getHome());
+            switch (args[0]) {
+                case "status": status(settings); break;
+                case "push": push(settings, Arrays.copyOfRange(args, 1, args.length)); break;
+                case "pull": pull(settings, Arrays.copyOfRange(args, 1, args.length)); break;
+                default: configure(settings, args);
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private void configure(RemoteSettings settings, String[] args) throws IOException {
+        List<URI> servers = new ArrayList<>();
+        for (String s : args[0].split(",")) servers.add(RemoteClient.parseServer(s));
+        for (int i = 1; i < args.length; i++) {
+            if ("--token-file".equals(args[i]) && i + 1 < args.length) {
+                Path token = Path.of(args[++i]).toAbsolutePath();
+                RemoteClient.readToken(token);
+                settings.setTokenFile(token.toString());
+            } else if ("--max-staleness".equals(args[i]) && i + 1 < args.length) {
+                settings.setMaxStalenessMillis(RemoteClient.parseMillis(args[++i]));
+            } else {
+                throw new IllegalArgumentException("unexpected argument '" + args[i] + "'");
+            }
+        }
+        settings.setServers(servers);
+        settings.save();
+        System.out.println("Saved " + servers.size() + " server(s).");
+        status(settings);
+    }
+
+    private void status(RemoteSettings settings) {
+        for (RemoteClient.ServerStatus s : settings.client().status()) {
+            Map<String, Object> f = s.getFields();
+            if (f == null) {
+                System.out.println("  " + s.getServer() + "  unreachable: " + s.getError());
+                continue;
+            }
+            StringBuilder line = new StringBuilder("  " + s.getServer() + "  " + f.get("role") + "  seq " + f.get("seq"));
+            if ("replica".equals(f.get("role"))) {
+                Object staleness = f.get("stalenessMillis");
+                line.append(staleness == null ? "  not caught up yet" : "  " + staleness + " ms behind");
+                if (f.get("lastError") != null) line.append("  (").append(f.get("lastError")).append(')');
+            }
+            System.out.println(line);
+        }
+    }
 
-        System.out.println("🔐 Connect command is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+    private void push(RemoteSettings settings, String[] args) throws IOException {
+        boolean force = parseForce(args);
+        String name = registry.current();
+        if (name == null) throw new IllegalStateException("No vault selected");
+        Path file = registry.pathFor(name);
+        byte[] bytes = Files.readAllBytes(file);
+        String hash = sha256(bytes);
+        long base = settings.getSyncedSeq(name);
+        if (!force && base > 0 && hash.equals(settings.getSyncedHash(name))) {
+            System.out.println("Vault '" + name + "' is unchanged since version " + base + "; nothing to push.");
+            return;
+        }
+        RemoteClient client = settings.client();
+        VaultManager vm = registry.open(name);
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerifyOwner(vm, vm.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            byte[] payload = CryptoUtils.encrypt(bytes, vr.getMasterPassword().clone()).getBytes(StandardCharsets.US_ASCII);
+            long seq;
+            try {
+                seq = client.push(name, force ? -1 : base, payload);
+            } catch (IllegalStateException e) {
+                System.out.println("Error: " + e.getMessage() + "; pull first or use --force.");
+                return;
+            }
+            settings.setSynced(name, seq, hash);
+            settings.save();
+            System.out.println("Pushed '" + name + "' as version " + seq + ".");
+        } catch (GeneralSecurityException e) {
+            System.out.println("Error: cannot encrypt the vault: " + e.getMessage());
+        }
+    }
+
+    private void pull(RemoteSettings settings, String[] args) throws IOException {
+        boolean force = false;
+        List<String> names = new ArrayList<>();
+        long maxStaleness = settings.getMaxStalenessMillis();
+        for (int i = 0; i < args.length; i++) {
+            if ("--force".equals(args[i])) {
+                force = true;
+            } else if ("--max-staleness".equals(args[i]) && i + 1 < args.length) {
+                maxStaleness = RemoteClient.parseMillis(args[++i]);
+            } else if (!args[i].startsWith("-")) {
+                if (!names.contains(args[i])) names.add(args[i]);
+            } else {
+                throw new IllegalArgumentException("unexpected argument '" + args[i] + "'");
+            }
+        }
+        if (names.isEmpty()) {
+            String current = registry.current();
+            if (current == null) throw new IllegalStateException("No vault selected; name the vault to pull");
+            names.add(current);
+        }
+        for (String name : names) registry.pathFor(name); // reject bad names before any request
+
+        // all vaults are fetched concurrently over the client's shared connections
+        Map<String, RemoteClient.Version> versions = settings.client().fetchAll(names, maxStaleness);
+        for (Map.Entry<String, RemoteClient.Version> e : versions.entrySet()) {
+            if (apply(settings, e.getKey(), e.getValue(), force, names.size() > 1)) settings.save();
+        }
+    }
+
+    /** @return true if the local vault was replaced */
+    private boolean apply(RemoteSettings settings, String name, RemoteClient.Version v, boolean force, boolean several)
+            throws IOException {
+        if (v == null) {
+            System.out.println("Error: no vault '" + name + "' on the server.");
+            return false;
+        }
+        Path file = registry.pathFor(name);
+        String localHash = Files.exists(file) ? sha256(Files.readAllBytes(file)) : null;
+        boolean unchanged = localHash == null || localHash.equals(settings.getSyncedHash(name));
+        if (unchanged && localHash != null && v.getSeq() == settings.getSyncedSeq(name)) {
+            System.out.println("Vault '" + name + "' is up to date (version " + v.getSeq() + ").");
+            return false;
+        }
+        if (!unchanged && !force) {
+            System.out.println("Error: vault '" + name + "' has local changes that were not pushed; push first or use --force.");
+            return false;
+        }
+
+        char[] master = VerifyUtils.promptSecret(several ? "Master password (" + name + "): " : "Master password: ");
+        byte[] plain;
+        try {
+            plain = CryptoUtils.decryptToBytes(new String(v.getPayload(), StandardCharsets.US_ASCII), master);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            System.out.println("Error: cannot decrypt the remote copy of '" + name + "' (wrong master password?).");
+            return false;
+        } finally {
+            Arrays.fill(master, '\0');
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), name, ".pull");
+        try {
+            Files.write(tmp, plain);
+            VaultHeader.read(tmp); // refuse anything that is not a vault
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        registry.evict(name);
+        settings.setSynced(name, v.getSeq(), sha256(plain));
+        System.out.println("Pulled '" + name + "' version " + v.getSeq() + (v.isCached() ? " from the local cache" : " from " + v.getServer())
+                + (v.getStalenessMillis() > 0 ? " (at most " + v.getStalenessMillis() + " ms behind the primary)" : "") + ".");
+        return true;
+    }
+
+    private static boolean parseForce(String[] args) {
+        boolean force = false;
+        for (String a : args) {
+            if ("--force".equals(a)) force = true;
+            else throw new IllegalArgumentException("unexpected argument '" + a + "'");
+        }
+        return force;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
     }
 
     /** Prints concise usage for {@code shush connect}. */
     private void printHelp() {
-        System.out.println("Usage: shush connect <options>");
-        System.out.println("Connects to a remote vault or service.");
-        System.out.println("Options can include server address, port, and authentication details.");
+        System.out.println("Usage: shush connect <url>[,<url>...] [--token-file <path>] [--max-staleness <5s>]");
+        System.out.println("       shush connect status");
+        System.out.println("       shush connect push [--force]");
+        System.out.println("       shush connect pull [<vault>...] [--force] [--max-staleness <5s>]");
+        System.out.println("Servers are a primary and its read replicas (see shush.remote.ShushServer).");
+        System.out.println("pull reads from any server within the staleness bound; push goes to the primary.");
     }
 }
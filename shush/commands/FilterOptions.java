@@ -0,0 +1,65 @@
+package shush.commands;
+
+import shush.vault.EntryFilter;
+
+/**
+ * Parses the entry filter options shared by {@code shush list} and {@code shush search}:
+ * <pre>
+ * --tag a[,b]     entries tagged a (or b); repeat for AND
+ * --not-tag a     entries not tagged a
+ * --folder p      entries in folder p or below
+ * --2fa | --no2fa entries that do / do not require 2FA
+ * </pre>
+ */
+final class FilterOptions {
+
+    /** Usage line fragment for help output. */
+    static final String USAGE = "[--tag <a[,b]>]... [--not-tag <t>] [--folder <path>] [--2fa|--no2fa]";
+
+    private final EntryFilter filter = new EntryFilter();
+
+    /**
+     * Consumes one filter option at {@code args[i]}, if it is one.
+     *
+     * @param args CLI arguments
+     * @param i    index of the option
+     * @return index of the last argument consumed, or {@code -1} if {@code args[i]} is not a filter option
+     * @throws IllegalArgumentException if the option's value is missing or empty
+     */
+    int parse(String[] args, int i) {
+        String a = args[i];
+        switch (a) {
+            case "-t":
+            case "--tag":
+                filter.tag(value(args, i));
+                return i + 1;
+            case "--not-tag":
+                filter.notTag(value(args, i));
+                return i + 1;
+            case "-f":
+            case "--folder":
+                filter.folder(value(args, i));
+                return i + 1;
+            case "--2fa":
+            case "-2FA":
+                filter.requires2FA(true);
+                return i;
+            case "--no2fa":
+            case "-no2fa":
+                filter.requires2FA(false);
+                return i;
+            default:
+                return -1;
+        }
+    }
+
+    /** @return the filter built so far */
+    EntryFilter filter() {
+        return filter;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i + 1 >= args.length) throw new IllegalArgumentException(args[i] + " needs a value");
+        return args[i + 1];
+    }
+}
@@ -0,0 +1,135 @@
+package shush.commands;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import shush.util.VerifyUtils;
+import shush.vault.VaultFsck;
+import shush.vault.VaultRegistry;
+
+/**
+ * Checks a vault file for corruption and optionally quarantines damaged entries.
+ * <p>
+ * The structural pass (header and record checksums) needs no credentials. Unless
+ * {@code --no-unlock} is given, the vault is then unlocked and every sealed entry field is
+ * authenticated. With {@code --quarantine}, damaged entry records are moved to a
+ * {@code .quarantine-<timestamp>} file next to the vault and the vault is rewritten without them.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush fsck
+ * shush fsck work --no-unlock
+ * shush fsck --quarantine
+ * }</pre>
+ */
+public class FsckCommand implements Command {
+
+    /** Registry used to resolve the vault to check. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code FsckCommand}.
+     *
+     * @param registry the vault registry
+     */
+    public FsckCommand(VaultRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Executes the {@code shush fsck [name] [--quarantine] [--no-unlock]} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) throws Exception {
+        String name = null;
+        boolean quarantine = false, unlock = true;
+        for (String a : args) {
+            if ("--help".equalsIgnoreCase(a) || "-h".equalsIgnoreCase(a)) {
+                printHelp();
+                return;
+            } else if ("--quarantine".equals(a)) {
+                quarantine = true;
+            } else if ("--no-unlock".equals(a)) {
+                unlock = false;
+            } else if (name == null && !a.startsWith("-")) {
+                name = a;
+            } else {
+                System.out.println("Error: unexpected argument '" + a + "'.");
+                printHelp();
+                return;
+            }
+        }
+        if (name == null) name = registry.current();
+        if (name == null) {
+            System.out.println("Error: no vault selected. Run 'shush init' or 'shush vault use <name>'.");
+            return;
+        }
+        Path file = registry.pathFor(name);
+        if (!Files.exists(file)) {
+            System.out.println("Error: vault '" + name + "' does not exist.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        VaultFsck fsck;
+        try {
+            fsck = VaultFsck.open(file);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        List<VaultFsck.Problem> problems = new ArrayList<>(fsck.getStructuralProblems());
+        System.out.println("Checked " + fsck.getRecordCount() + " records (format v" + fsck.getHeader().getFormatVersion()
+                + ") in " + millis(start) + " ms.");
+        if (!fsck.getHeader().isChecksummed()) {
+            System.out.println("Note: this vault predates record checksums; the next write upgrades it.");
+        }
+
+        if (unlock && fsck.hasPasswordSlot()) {
+            try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(fsck.manager(), false)) {
+                if (!vr.isSuccess()) {
+                    System.out.println("Error: " + vr.getFailureReason());
+                    return;
+                }
+                long verifyStart = System.nanoTime();
+                problems.addAll(fsck.verifyEntries(vr.getVaultKey()));
+                System.out.println("Authenticated " + fsck.getEntryCount() + " entries in " + millis(verifyStart) + " ms.");
+            }
+        }
+
+        if (problems.isEmpty()) {
+            System.out.println("No problems found.");
+            return;
+        }
+        System.out.println(problems.size() + " problem(s):");
+        for (VaultFsck.Problem p : problems) System.out.println("  " + p);
+
+        if (!quarantine) {
+            System.out.println("Run 'shush fsck " + name + " --quarantine' to move damaged entries aside.");
+            return;
+        }
+        try {
+            long repairStart = System.nanoTime();
+            Path side = fsck.quarantine(problems);
+            registry.evict(name);
+            System.out.println("Quarantined " + problems.size() + " record(s) to " + side + " in " + millis(repairStart) + " ms.");
+        } catch (IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static long millis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /** Prints concise usage for {@code shush fsck}. */
+    private void printHelp() {
+        System.out.println("Usage: shush fsck [vault-name] [--quarantine] [--no-unlock]");
+        System.out.println("Verifies record checksums and, after unlocking, every entry's authentication tag.");
+        System.out.println("--quarantine moves damaged entries to a side file and rewrites the vault without them.");
+    }
+}
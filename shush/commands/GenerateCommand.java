@@ -1,13 +1,64 @@
 package shush.commands;
 
+import java.security.SecureRandom;
+import shush.config.ConfigKeyword;
+import shush.config.ShushConfig;
+import shush.strength.StrengthEstimator;
+import shush.util.Clipboard;
+import shush.vault.VaultManager;
+
 /**
  * Generates a strong password according to the provided options.
  * <p>
- * Placeholder: actual generation logic will be wired to a secure RNG and options
- * such as length, character classes, and presets.
+ * Characters are drawn uniformly from the enabled classes with {@link SecureRandom}; at least one
+ * character of each enabled class is guaranteed, and a draw that happens to contain a guessable
+ * pattern (a word, keyboard walk, date, ...) is redrawn. With a label the password is saved as a
+ * new entry (through {@link AddCommand}) and copied to the clipboard; without one it is printed.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush gen github -24
+ * shush gen --length 32 --no-symbols
+ * }</pre>
  */
 public class GenerateCommand implements Command {
 
+    private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String DIGITS = "0123456789";
+    private static final String SYMBOLS = "!@#$%^&*()-_=+[]{};:,.?/";
+    private static final int DEFAULT_LENGTH = 20;
+    /** Redraws before accepting a password that scores below target (vanishingly rare past a few). */
+    private static final int MAX_DRAWS = 16;
+
+    private static final SecureRandom RNG = new SecureRandom();
+
+    /** Manager for the active vault; may be {@code null} when only printing a password. */
+    private final VaultManager vaultManager;
+
+    /** Config in effect; supplies {@code GeneratorLength}. */
+    private final ShushConfig.Settings settings;
+
+    /**
+     * Constructs a new {@code GenerateCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}, or {@code null} if no vault is selected
+     */
+    public GenerateCommand(VaultManager vaultManager) {
+        this(vaultManager, ShushConfig.Settings.DEFAULTS);
+    }
+
+    /**
+     * Constructs a new {@code GenerateCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}, or {@code null} if no vault is selected
+     * @param settings     config in effect for this run
+     */
+    public GenerateCommand(VaultManager vaultManager, ShushConfig.Settings settings) {
+        this.vaultManager = vaultManager;
+        this.settings = settings;
+    }
+
     /**
      * Executes the {@code shush gen} command.
      *
@@ -20,14 +71,101 @@ public class GenerateCommand implements Command {
             return;
         }
 
-        System.out.println("🔐 Password generation is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+        String label = null, username = null, comment = null;
+        int length = settings.getInt(ConfigKeyword.GENERATOR_LENGTH, DEFAULT_LENGTH);
+        boolean symbols = true, show = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (a.matches("-\\d+")) {
+                    length = Integer.parseInt(a.substring(1));
+                } else if (("-l".equals(a) || "--length".equals(a)) && i + 1 < args.length) {
+                    length = Integer.parseInt(args[++i]);
+                } else if ("--no-symbols".equals(a)) {
+                    symbols = false;
+                } else if (("-u".equals(a) || "--username".equals(a)) && i + 1 < args.length) {
+                    username = args[++i];
+                } else if (("-c".equals(a) || "--comment".equals(a)) && i + 1 < args.length) {
+                    comment = args[++i];
+                } else if ("-v".equals(a) || "--show".equals(a)) {
+                    show = true;
+                } else if (label == null && !a.startsWith("-")) {
+                    label = a;
+                } else {
+                    CommandStatus.fail("Error: unexpected argument '" + a + "'.");
+                    printHelp();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            CommandStatus.fail("Error: invalid length.");
+            return;
+        }
+        if (length < 8 || length > 1024) {
+            CommandStatus.fail("Error: length must be between 8 and 1024.");
+            return;
+        }
+
+        String password = generate(length, symbols);
+        if (label == null) {
+            System.out.println(password);
+            return;
+        }
+        if (vaultManager == null) {
+            CommandStatus.fail("Error: no vault selected. Run 'shush init' or 'shush vault use <name>'.");
+            return;
+        }
+        new AddCommand(vaultManager).execute(label, username, password, comment, false, false);
+        if (show) {
+            System.out.println("Password: " + password);
+        } else if (Clipboard.copy(password)) {
+            System.out.println("Password copied to clipboard.");
+        }
+    }
+
+    /**
+     * Generates a random password, redrawing while {@link StrengthEstimator} finds it weaker than a
+     * random string of its length should be (score 4 from 12 characters, 3 below).
+     *
+     * @param length  number of characters (at least 4)
+     * @param symbols whether to include symbols
+     * @return the password
+     */
+    public static String generate(int length, boolean symbols) {
+        int target = length >= 12 ? 4 : 3;
+        StrengthEstimator estimator = StrengthEstimator.getDefault();
+        String password = draw(length, symbols);
+        for (int i = 1; i < MAX_DRAWS && estimator.estimate(password).getScore() < target; i++) {
+            password = draw(length, symbols);
+        }
+        return password;
+    }
+
+    private static String draw(int length, boolean symbols) {
+        String[] classes = symbols
+                ? new String[]{LOWER, UPPER, DIGITS, SYMBOLS}
+                : new String[]{LOWER, UPPER, DIGITS};
+        StringBuilder all = new StringBuilder();
+        for (String c : classes) all.append(c);
+
+        char[] out = new char[length];
+        for (int i = 0; i < classes.length; i++) out[i] = classes[i].charAt(RNG.nextInt(classes[i].length()));
+        for (int i = classes.length; i < length; i++) out[i] = all.charAt(RNG.nextInt(all.length()));
+        // Fisher-Yates so the guaranteed characters are not always first
+        for (int i = length - 1; i > 0; i--) {
+            int j = RNG.nextInt(i + 1);
+            char t = out[i];
+            out[i] = out[j];
+            out[j] = t;
+        }
+        return new String(out);
     }
 
     /** Prints concise usage for {@code shush gen}. */
     private void printHelp() {
-        System.out.println("Usage: shush gen [options]");
-        System.out.println("Generates a strong password based on specified options.");
-        System.out.println("Options can include length, use of symbols, numbers, etc.");
+        System.out.println("Usage: shush gen [label] [-<N>|--length <N>] [--no-symbols] [-u <username>] [-c <comment>] [-v]");
+        System.out.println("Generates a strong password (default length "
+                + settings.getInt(ConfigKeyword.GENERATOR_LENGTH, DEFAULT_LENGTH) + ", or GeneratorLength in the config).");
+        System.out.println("With a label, saves it as a new entry and copies it to the clipboard.");
     }
 }
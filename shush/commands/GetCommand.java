@@ -1,12 +1,43 @@
 package shush.commands;
 
+import java.util.List;
+import shush.util.Clipboard;
+import shush.util.VerifyUtils;
+import shush.vault.VaultEntry;
+import shush.vault.VaultKey;
+import shush.vault.VaultManager;
+
 /**
  * Retrieves a single entry from the vault and displays it to the user.
  * <p>
- * This is a placeholder that will later fetch from the persistence layer.
+ * The password is copied to the clipboard by default, or printed with {@code -v}. If no entry has
+ * exactly the given label, the closest labels are suggested instead (typos and swapped characters
+ * are tolerated; see {@link VaultManager#suggestLabels(String, int)}). Nothing is decrypted and no
+ * password is asked for until an exact match is found.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush get github
+ * shush get github -v
+ * }</pre>
  */
 public class GetCommand implements Command {
 
+    /** Number of "did you mean" suggestions shown when there is no exact match. */
+    private static final int SUGGESTIONS = 5;
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code GetCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public GetCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
     /**
      * Executes the {@code shush get <entry-name>} command.
      *
@@ -14,18 +45,61 @@ public class GetCommand implements Command {
      */
     @Override
     public void execute(String[] args) {
-        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
             printHelp();
             return;
         }
 
-        System.out.println("🔐 Retrieving entry is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+        String label = args[0];
+        boolean show = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("-v".equals(args[i]) || "--show".equals(args[i])) show = true;
+        }
+
+        List<VaultEntry> matches = vaultManager.findEntries(label);
+        if (matches.isEmpty()) {
+            List<String> suggestions = vaultManager.suggestLabels(label, SUGGESTIONS);
+            CommandStatus.fail("Error: no entry '" + label + "'.");
+            if (!suggestions.isEmpty()) {
+                System.out.println("Did you mean:");
+                for (String s : suggestions) System.out.println("  " + s);
+            }
+            return;
+        }
+
+        VaultEntry entry = matches.get(0);
+        boolean requires2FA = entry.requires2FA() || vaultManager.isGlobalTOTPEnabled();
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, requires2FA)) {
+            if (!vr.isSuccess()) {
+                CommandStatus.fail("Error: " + vr.getFailureReason());
+                return;
+            }
+            VaultKey key = vr.getVaultKey();
+            String username = key.openString(entry.getUsername());
+            String password = key.openString(entry.getPassword());
+            String comment = key.openString(entry.getComment());
+            vaultManager.recordRead(entry);
+
+            if (username != null && !username.isEmpty()) System.out.println("Username: " + username);
+            if (comment != null && !comment.isEmpty()) System.out.println("Comment:  " + comment);
+            if (show) {
+                System.out.println("Password: " + password);
+            } else if (Clipboard.copy(password)) {
+                System.out.println("Password copied to clipboard.");
+            } else {
+                System.out.println("Clipboard unavailable; use -v to print the password.");
+            }
+            if (matches.size() > 1) {
+                System.out.println("(" + matches.size() + " entries share this label; showing the first.)");
+            }
+        } catch (Exception e) {
+            CommandStatus.fail("Error retrieving entry: " + e.getMessage());
+        }
     }
 
     /** Prints concise usage for {@code shush get}. */
     private void printHelp() {
-        System.out.println("Usage: shush get <entry-name>");
-        System.out.println("Retrieves and displays the specified entry from the vault.");
+        System.out.println("Usage: shush get <entry-name> [-v]");
+        System.out.println("Copies the entry's password to the clipboard (-v prints it instead).");
     }
 }
@@ -0,0 +1,174 @@
+package shush.commands;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import shush.util.VerifyUtils;
+import shush.vault.EntryVersion;
+import shush.vault.VaultEntry;
+import shush.vault.VaultKey;
+import shush.vault.VaultManager;
+
+/**
+ * Lists and restores earlier versions of an entry.
+ * <p>
+ * Every {@code update} records the fields it changed and every {@code rm} records the removed
+ * entry, in a history file next to the vault that is only read by this command. Listing shows
+ * when each version was replaced and what changed; {@code -v} opens the old values, and
+ * {@code --restore <n>} makes version {@code n} current again (the replaced version goes into
+ * history too, so a restore can itself be undone).
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush history github
+ * shush history github -v
+ * shush history github --restore 2
+ * shush history --retain 10 --max-age 180
+ * }</pre>
+ */
+public class HistoryCommand implements Command {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code HistoryCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public HistoryCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
+    /**
+     * Executes the {@code shush history} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
+            printHelp();
+            return;
+        }
+
+        String label = null;
+        Integer restore = null, retain = null, maxAge = null;
+        boolean show = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if ("--restore".equals(a) && i + 1 < args.length) {
+                    restore = Integer.parseInt(args[++i]);
+                } else if ("--retain".equals(a) && i + 1 < args.length) {
+                    retain = Integer.parseInt(args[++i]);
+                } else if ("--max-age".equals(a) && i + 1 < args.length) {
+                    maxAge = Integer.parseInt(args[++i].replaceFirst("[dD]$", ""));
+                } else if ("-v".equals(a) || "--show".equals(a)) {
+                    show = true;
+                } else if (label == null && !a.startsWith("-")) {
+                    label = a;
+                } else {
+                    System.out.println("Error: unexpected argument '" + a + "'.");
+                    printHelp();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Error: invalid number.");
+            return;
+        }
+
+        if (retain != null || maxAge != null) {
+            setRetention(retain, maxAge);
+            return;
+        }
+        if (label == null) {
+            printHelp();
+            return;
+        }
+
+        List<EntryVersion> versions = vaultManager.history(label);
+        if (versions.isEmpty()) {
+            System.out.println("No history for '" + label + "'.");
+            return;
+        }
+        boolean needs2FA = vaultManager.isGlobalTOTPEnabled();
+        for (EntryVersion v : versions) needs2FA |= v.getEntry().requires2FA();
+        if (!show && restore == null) {
+            print(label, versions, null);
+            return;
+        }
+
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, needs2FA)) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            VaultKey key = vr.getVaultKey();
+            if (restore == null) {
+                print(label, versions, key);
+                return;
+            }
+            VaultEntry restored = vaultManager.restoreVersion(label, restore, key);
+            System.out.println("Restored version " + restore + " of '" + label + "' as '" + restored.getLabel() + "'.");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error reading history: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private static void print(String label, List<EntryVersion> versions, VaultKey key) {
+        System.out.println("History of '" + label + "' (newest first):");
+        for (int i = 0; i < versions.size(); i++) {
+            EntryVersion v = versions.get(i);
+            VaultEntry e = v.getEntry();
+            String what = v.isRemoved() ? "removed" : "replaced; changed " + String.join(", ", v.getChangedFields());
+            System.out.printf("  %2d  %s  %s  %s%n", i + 1, TIME.format(v.getReplacedAt()), e.getLabel(), what);
+            if (key == null) continue;
+            try {
+                System.out.println("      Username: " + open(key, e.getUsername()));
+                System.out.println("      Password: " + open(key, e.getPassword()));
+                String comment = open(key, e.getComment());
+                if (!comment.isEmpty()) System.out.println("      Comment: " + comment);
+            } catch (Exception ex) {
+                System.out.println("      (cannot be opened: " + ex.getMessage() + ")");
+            }
+        }
+    }
+
+    private static String open(VaultKey key, String payload) throws Exception {
+        return payload == null ? "" : key.openString(payload);
+    }
+
+    private void setRetention(Integer retain, Integer maxAge) {
+        int[] current = vaultManager.getHistoryRetention();
+        int versions = retain != null ? retain : current[0];
+        int days = maxAge != null ? maxAge : current[1];
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerifyOwner(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            int dropped = vaultManager.setHistoryRetention(versions, days);
+            System.out.println("History keeps " + versions + " versions per entry"
+                    + (days > 0 ? " for up to " + days + " days" : " with no age limit")
+                    + "; " + dropped + " old version(s) dropped.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /** Prints concise usage for {@code shush history}. */
+    private void printHelp() {
+        System.out.println("Usage: shush history <entry-name> [-v] [--restore <n>]");
+        System.out.println("       shush history --retain <versions> [--max-age <days>]");
+        System.out.println("Lists earlier versions of an entry (newest first); -v shows their values.");
+        System.out.println("--restore makes version n current again. --retain/--max-age limit what is kept (0 days = no limit).");
+    }
+}
@@ -1,33 +1,146 @@
 package shush.commands;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import shush.importer.ExportReader;
+import shush.importer.ImportedEntry;
+import shush.importer.VaultImporter;
+import shush.util.VerifyUtils;
+import shush.vault.VaultManager;
+
 /**
- * Imports entries into the current vault from a CSV file.
+ * Imports entries into the current vault from another password manager's export.
  * <p>
- * Expected CSV columns: {@code name, username, password, url, notes}.
- * This is a placeholder; actual import logic will be implemented later.
+ * Supported: Bitwarden unencrypted JSON and KeePass 2.x XML (KeePass, KeePassXC). Exports are
+ * streamed and sealed in batches (see {@link VaultImporter}), so very large exports import in
+ * constant memory. Folders, notes, TOTP seeds and custom fields are kept; see the readers in
+ * {@code shush.importer} for the exact mapping. CSV is not supported yet.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush import bitwarden_export.json
+ * shush import keepass.xml --folder keepass --dry-run
+ * }</pre>
  */
 public class ImportCommand implements Command {
 
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code ImportCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public ImportCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
     /**
-     * Executes the {@code shush import-csv <file>} command.
+     * Executes the {@code shush import <file> [--format bitwarden|keepass] [--folder <prefix>] [--dry-run]} command.
      *
      * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
      */
     @Override
     public void execute(String[] args) {
-        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+        String file = null, format = null, prefix = null;
+        boolean dryRun = false;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ("--help".equalsIgnoreCase(a) || "-h".equalsIgnoreCase(a)) {
+                printHelp();
+                return;
+            } else if ("--format".equals(a) && i + 1 < args.length) {
+                format = args[++i];
+            } else if (("--folder".equals(a) || "-f".equals(a)) && i + 1 < args.length) {
+                prefix = args[++i];
+            } else if ("--dry-run".equals(a) || "-n".equals(a)) {
+                dryRun = true;
+            } else if (file == null && !a.startsWith("-")) {
+                file = a;
+            } else {
+                System.out.println("Error: unexpected argument '" + a + "'.");
+                printHelp();
+                return;
+            }
+        }
+        if (file == null) {
             printHelp();
             return;
         }
+        Path path = Paths.get(file);
+        if (!Files.isRegularFile(path)) {
+            System.out.println("Error: no such file '" + file + "'.");
+            return;
+        }
+        if (format == null && path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            System.out.println("Error: CSV import is not supported yet; export as Bitwarden JSON or KeePass XML.");
+            return;
+        }
+
+        if (dryRun) {
+            preview(path, format);
+            return;
+        }
 
-        System.out.println("🔐 Importing entries from CSV is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+        final boolean[] progressShown = {false};
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, vaultManager.isGlobalTOTPEnabled());
+             ExportReader reader = ExportReader.open(path, format)) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            VaultImporter importer = new VaultImporter(vaultManager, vr.getVaultKey()).folderPrefix(prefix);
+            int n = importer.run(reader, total -> {
+                System.out.print("\rImported " + total + " entries...");
+                progressShown[0] = true;
+            });
+            if (progressShown[0]) System.out.println();
+            System.out.println("Imported " + n + " entr" + (n == 1 ? "y" : "ies") + " from " + reader.getFormat()
+                    + (importer.getRenamed() > 0 ? " (" + importer.getRenamed() + " relabeled to stay unique)" : "") + ".");
+            System.out.println("The export file holds your passwords in plaintext; delete it securely.");
+        } catch (IllegalArgumentException e) {
+            if (progressShown[0]) System.out.println();
+            System.out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            if (progressShown[0]) System.out.println();
+            System.out.println("Error importing: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    /** Reads the whole export without unlocking the vault and reports what would be imported. */
+    private static void preview(Path path, String format) {
+        int entries = 0, totp = 0, fields = 0;
+        Set<String> folders = new HashSet<>();
+        try (ExportReader reader = ExportReader.open(path, format)) {
+            ImportedEntry e;
+            while ((e = reader.next()) != null) {
+                entries++;
+                if (e.getTotp() != null) totp++;
+                fields += e.getFields().size();
+                if (e.getFolder() != null) folders.add(e.getFolder());
+            }
+            System.out.println(reader.getFormat() + ": " + entries + " entr" + (entries == 1 ? "y" : "ies") + " in "
+                    + folders.size() + " folder(s), " + totp + " with TOTP seeds, " + fields + " custom field(s).");
+            System.out.println("Dry run: nothing was imported.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error reading '" + path + "': " + e.getMessage());
+        }
     }
 
-    /** Prints concise usage for {@code shush import-csv}. */
+    /** Prints concise usage for {@code shush import}. */
     private void printHelp() {
-        System.out.println("Usage: shush import-csv <file>");
-        System.out.println("Imports entries from a CSV file into the vault.");
-        System.out.println("The CSV file should have columns: name, username, password, url, notes.");
+        System.out.println("Usage: shush import <file> [--format bitwarden|keepass] [--folder <prefix>] [--dry-run]");
+        System.out.println("Imports a Bitwarden JSON (unencrypted) or KeePass 2.x XML export into the vault.");
+        System.out.println("The format is taken from the extension (.json, .xml) unless --format is given.");
     }
 }
@@ -1,6 +1,12 @@
 package shush.commands;
 
+import java.io.Console;
+import java.util.Arrays;
 import java.util.Scanner;
+import javax.crypto.SecretKey;
+import shush.config.ConfigKeyword;
+import shush.util.TOTPManager;
+import shush.vault.VaultRegistry;
 
 /**
  * Initializes a new Shush vault by interactively collecting setup options.
@@ -8,23 +14,38 @@ import java.util.Scanner;
  * Prompts for:
  * <ul>
  *   <li>Vault name (defaults to {@code "default"})</li>
+ *   <li>Master password (entered twice)</li>
  *   <li>Whether to enable TOTP 2FA</li>
  *   <li>If TOTP is enabled, whether to require it by default for all entries</li>
  *   <li>If TOTP is not enabled, an optional master PIN</li>
  * </ul>
+ * {@code GlobalTOTP yes} in the config answers both TOTP questions, and {@code GlobalTOTP no}
+ * the second one, so an administrator can set the policy once for every vault it matches.
  * <p>
- * Note: This command currently prints placeholders and does not yet call the
- * persistence layer. Wire this to {@code VaultManager.createVault(...)} in a future pass.
+ * The vault is created through {@link VaultRegistry} and becomes the selected vault if no other
+ * vault is selected yet. A PIN, if given, is required alongside the master password to unlock.
  */
 public class InitCommand implements Command {
 
+    /** Registry the new vault is created in. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code InitCommand}.
+     *
+     * @param registry the vault registry
+     */
+    public InitCommand(VaultRegistry registry) {
+        this.registry = registry;
+    }
+
     /**
      * Executes the {@code shush init} command.
      *
      * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
      */
     @Override
-    public void execute(String[] args) {
+    public void execute(String[] args) throws Exception {
         if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
             printHelp();
             return;
@@ -40,14 +61,34 @@ public class InitCommand implements Command {
         if (vaultName.isEmpty()) {
             vaultName = "default";
         }
+        registry.pathFor(vaultName); // validates the name
+        if (registry.exists(vaultName)) {
+            System.out.println("Error: vault '" + vaultName + "' already exists.");
+            return;
+        }
+
+        char[] master = readMasterPassword(scanner);
+        if (master == null) {
+            return;
+        }
+
+        // GlobalTOTP in the config: yes skips both questions, no skips the second
+        final String name = vaultName;
+        String globalTOTP = registry.getConfig().current().resolve("init", () -> name).get(ConfigKeyword.GLOBAL_TOTP, "ask");
 
         // Enable TOTP?
-        System.out.print("Enable TOTP 2FA? (Y/n): ");
-        String totpResponse = scanner.nextLine().trim().toLowerCase();
-        boolean enableTOTP = !"n".equals(totpResponse);
+        boolean enableTOTP;
+        if ("yes".equals(globalTOTP)) {
+            System.out.println("TOTP 2FA for all entries: on (GlobalTOTP yes in " + registry.getConfig().getFile() + ")");
+            enableTOTP = true;
+        } else {
+            System.out.print("Enable TOTP 2FA? (Y/n): ");
+            String totpResponse = scanner.nextLine().trim().toLowerCase();
+            enableTOTP = !"n".equals(totpResponse);
+        }
 
-        boolean totpDefault = false;
-        if (enableTOTP) {
+        boolean totpDefault = "yes".equals(globalTOTP);
+        if (enableTOTP && "ask".equals(globalTOTP)) {
             // Ask if TOTP should be used by default for all entries
             System.out.print("Use TOTP by default for all entries? (Y/n): ");
             String totpDefaultResp = scanner.nextLine().trim().toLowerCase();
@@ -61,7 +102,12 @@ public class InitCommand implements Command {
             pin = scanner.nextLine().trim();
         }
 
-        // Placeholder output
+        String totpSecret = null;
+        if (enableTOTP) {
+            SecretKey key = TOTPManager.generateSecretKey();
+            totpSecret = TOTPManager.getBase32Secret(key);
+        }
+
         System.out.println("\nCreating vault '" + vaultName + "'...");
         if (!enableTOTP) {
             System.out.println("PIN: " + (pin.isEmpty() ? "(none)" : "••••"));
@@ -70,10 +116,61 @@ public class InitCommand implements Command {
             System.out.println("TOTP default: " + totpDefault);
         }
 
-        // TODO: call VaultManager.createVault(vaultName, pin, enableTOTP, totpDefault);
+        String previous = registry.current();
+        char[] pinChars = pin.toCharArray();
+        try {
+            registry.create(vaultName, master, pinChars, totpDefault, totpSecret);
+        } finally {
+            Arrays.fill(pinChars, '\0');
+        }
+        if (previous == null) {
+            registry.select(vaultName);
+        }
+
+        if (totpSecret != null) {
+            String uri = TOTPManager.buildOtpAuthURI(vaultName, totpSecret);
+            System.out.println("Scan this code with your authenticator app:");
+            TOTPManager.printQRCodeToConsole(uri);
+            System.out.println(uri);
+        }
+
         System.out.println("✅ Vault initialized successfully!\n");
     }
 
+    /**
+     * Prompts for the master password twice.
+     *
+     * @return the password, or {@code null} if empty or the entries did not match
+     */
+    private char[] readMasterPassword(Scanner scanner) {
+        Console console = System.console();
+        char[] first;
+        char[] second;
+        if (console != null) {
+            first = console.readPassword("Master password: ");
+            second = console.readPassword("Confirm master password: ");
+        } else {
+            System.out.print("Master password: ");
+            first = scanner.nextLine().toCharArray();
+            System.out.print("Confirm master password: ");
+            second = scanner.nextLine().toCharArray();
+        }
+        try {
+            if (first == null || first.length == 0) {
+                System.out.println("Error: master password cannot be empty.");
+                return null;
+            }
+            if (!Arrays.equals(first, second)) {
+                System.out.println("Error: passwords do not match.");
+                return null;
+            }
+            return first.clone();
+        } finally {
+            if (first != null) Arrays.fill(first, '\0');
+            if (second != null) Arrays.fill(second, '\0');
+        }
+    }
+
     /** Prints concise usage for {@code shush init}. */
     private void printHelp() {
         System.out.println("Usage: shush init");
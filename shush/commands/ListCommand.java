@@ -0,0 +1,133 @@
+package shush.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import shush.util.VerifyUtils;
+import shush.vault.VaultEntry;
+import shush.vault.VaultKey;
+import shush.vault.VaultManager;
+
+/**
+ * Lists vault entries, optionally filtered by tag, folder and 2FA requirement.
+ * <p>
+ * Without filters only plaintext labels are printed and no unlock is needed. Filters,
+ * {@code -l} (show folder and tags) and {@code --tags} (tag counts) open sealed fields and
+ * therefore unlock the vault; filters are answered from in-memory bitmap indexes.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush list
+ * shush list --tag prod --tag db,database --2fa -l
+ * shush list --folder work --not-tag legacy
+ * shush list --tags
+ * }</pre>
+ */
+public class ListCommand implements Command {
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code ListCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public ListCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
+    /**
+     * Executes the {@code shush list [filters] [-l] [--tags]} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) {
+        FilterOptions filters = new FilterOptions();
+        boolean details = false, tagCounts = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if ("--help".equalsIgnoreCase(a) || "-h".equalsIgnoreCase(a)) {
+                    printHelp();
+                    return;
+                } else if ("-l".equals(a) || "--long".equals(a)) {
+                    details = true;
+                } else if ("--tags".equals(a)) {
+                    tagCounts = true;
+                } else {
+                    int last = filters.parse(args, i);
+                    if (last < 0) {
+                        System.out.println("Error: unexpected argument '" + a + "'.");
+                        printHelp();
+                        return;
+                    }
+                    i = last;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+
+        if (filters.filter().isEmpty() && !details && !tagCounts) {
+            printLabels(vaultManager.listEntries());
+            return;
+        }
+
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            VaultKey key = vr.getVaultKey();
+            if (tagCounts) {
+                Map<String, Integer> counts = vaultManager.tagCounts(key);
+                if (counts.isEmpty()) System.out.println("No tags.");
+                counts.forEach((tag, n) -> System.out.println(tag + " (" + n + ")"));
+                return;
+            }
+
+            List<VaultEntry> matches = vaultManager.filterEntries(filters.filter(), key);
+            if (!details) {
+                printLabels(matches);
+                return;
+            }
+            if (matches.isEmpty()) System.out.println("No entries match the filter.");
+            List<VaultEntry> sorted = new ArrayList<>(matches);
+            sorted.sort((x, y) -> String.CASE_INSENSITIVE_ORDER.compare(String.valueOf(x.getLabel()), String.valueOf(y.getLabel())));
+            for (VaultEntry e : sorted) {
+                StringBuilder line = new StringBuilder(String.valueOf(e.getLabel()));
+                if (e.getFolder() != null) line.append("  /").append(key.openString(e.getFolder()));
+                for (String tag : VaultEntry.splitTags(e.getTags() == null ? null : key.openString(e.getTags()))) {
+                    line.append("  #").append(tag);
+                }
+                if (e.requires2FA()) line.append("  [2FA]");
+                System.out.println(line);
+            }
+        } catch (Exception e) {
+            System.out.println("Error listing entries: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private static void printLabels(List<VaultEntry> entries) {
+        if (entries.isEmpty()) {
+            System.out.println("No entries.");
+            return;
+        }
+        List<String> labels = new ArrayList<>(entries.size());
+        for (VaultEntry e : entries) if (e.getLabel() != null) labels.add(e.getLabel());
+        labels.sort(String.CASE_INSENSITIVE_ORDER);
+        for (String label : labels) System.out.println(label);
+    }
+
+    /** Prints concise usage for {@code shush list}. */
+    private void printHelp() {
+        System.out.println("Usage: shush list " + FilterOptions.USAGE + " [-l] [--tags]");
+        System.out.println("Lists entry labels. -l also shows folder and tags; --tags lists tags with counts.");
+        System.out.println("Filters, -l and --tags open sealed fields and require unlocking the vault.");
+    }
+}
@@ -0,0 +1,75 @@
+package shush.commands;
+
+import java.util.Arrays;
+import shush.util.VerifyUtils;
+import shush.vault.VaultManager;
+
+/**
+ * Changes the master password of the active vault.
+ * <p>
+ * Only the key slot wrapping the vault data key is re-encrypted, so the cost does not depend
+ * on the number of entries.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush passwd
+ * }</pre>
+ */
+public class PasswdCommand implements Command {
+
+    /** Manager for the vault whose password is being changed. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code PasswdCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public PasswdCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
+    /**
+     * Executes the {@code shush passwd} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) throws Exception {
+        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+            printHelp();
+            return;
+        }
+
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerifyOwner(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+
+            char[] next = VerifyUtils.promptSecret("New master password: ");
+            char[] confirm = VerifyUtils.promptSecret("Confirm new master password: ");
+            try {
+                if (next.length == 0) {
+                    System.out.println("Error: master password cannot be empty.");
+                    return;
+                }
+                if (!Arrays.equals(next, confirm)) {
+                    System.out.println("Error: passwords do not match.");
+                    return;
+                }
+                vaultManager.changeMasterPassword(vr.getVaultKey(), next, vr.getPin());
+                System.out.println("Master password changed.");
+            } finally {
+                Arrays.fill(next, '\0');
+                Arrays.fill(confirm, '\0');
+            }
+        }
+    }
+
+    /** Prints concise usage for {@code shush passwd}. */
+    private void printHelp() {
+        System.out.println("Usage: shush passwd");
+        System.out.println("Changes the master password of the active vault.");
+    }
+}
@@ -1,32 +1,103 @@
 package shush.commands;
 
+import java.util.Arrays;
+import shush.util.VerifyUtils;
+import shush.vault.VaultManager;
+
 /**
  * Manages the vault's master PIN (set, change, remove) when TOTP is not the default.
  * <p>
- * Placeholder: actual PIN management will be integrated with the vault's secure storage.
+ * While a PIN is set, the vault data key is wrapped under a key derived from the master password
+ * and the PIN together, so both are needed to unlock. Setting, changing or removing the PIN
+ * re-wraps that single key slot; no entry is re-encrypted.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush pin set
+ * shush pin remove
+ * }</pre>
  */
 public class PinCommand implements Command {
 
+    /** Manager for the vault whose PIN is being changed. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code PinCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public PinCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
     /**
-     * Executes the {@code shush pin} command.
+     * Executes the {@code shush pin <set|remove>} command.
      *
      * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
      */
     @Override
-    public void execute(String[] args) {
-        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+    public void execute(String[] args) throws Exception {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
             printHelp();
             return;
         }
 
-        System.out.println("🔐 PIN management is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+        final boolean remove;
+        switch (args[0].toLowerCase()) {
+            case "set":
+            case "change":
+                remove = false;
+                break;
+            case "remove":
+            case "rm":
+                remove = true;
+                break;
+            default:
+                System.out.println("Unknown pin subcommand: " + args[0]);
+                printHelp();
+                return;
+        }
+
+        if (remove && !vaultManager.hasPin()) {
+            System.out.println("No PIN is set.");
+            return;
+        }
+
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerifyOwner(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+
+            char[] pin = null;
+            char[] confirm = null;
+            try {
+                if (!remove) {
+                    pin = VerifyUtils.promptSecret("New PIN: ");
+                    confirm = VerifyUtils.promptSecret("Confirm PIN: ");
+                    if (pin.length == 0) {
+                        System.out.println("Error: PIN cannot be empty. Use 'shush pin remove' instead.");
+                        return;
+                    }
+                    if (!Arrays.equals(pin, confirm)) {
+                        System.out.println("Error: PINs do not match.");
+                        return;
+                    }
+                }
+                vaultManager.setPin(vr.getVaultKey(), vr.getMasterPassword(), pin);
+                System.out.println(remove ? "PIN removed." : "PIN updated.");
+            } finally {
+                if (pin != null) Arrays.fill(pin, '\0');
+                if (confirm != null) Arrays.fill(confirm, '\0');
+            }
+        }
     }
 
     /** Prints concise usage for {@code shush pin}. */
     private void printHelp() {
-        System.out.println("Usage: shush pin <options>");
+        System.out.println("Usage: shush pin <set|remove>");
         System.out.println("Manages the master PIN for accessing the vault.");
-        System.out.println("Options can include setting, changing, or removing the PIN.");
+        System.out.println("'set' sets or changes the PIN; 'remove' removes it.");
     }
 }
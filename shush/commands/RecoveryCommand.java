@@ -0,0 +1,88 @@
+package shush.commands;
+
+import java.util.List;
+import shush.util.VerifyUtils;
+import shush.vault.VaultManager;
+
+/**
+ * Manages recovery keys: high-entropy codes that can unlock the vault if the master password
+ * or PIN is lost.
+ * <p>
+ * Each recovery key is an extra wrapping of the vault data key. Codes are printed once when
+ * created and are never stored.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush recovery add
+ * shush recovery list
+ * shush recovery remove K3JQ2A
+ * }</pre>
+ */
+public class RecoveryCommand implements Command {
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code RecoveryCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public RecoveryCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
+    /**
+     * Executes the {@code shush recovery <add|list|remove>} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) throws Exception {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
+            printHelp();
+            return;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "list":
+            case "ls":
+                List<String> ids = vaultManager.listRecoveryKeyIds();
+                if (ids.isEmpty()) System.out.println("No recovery keys.");
+                for (String id : ids) System.out.println(id);
+                return;
+            case "add":
+            case "remove":
+            case "rm":
+                break;
+            default:
+                System.out.println("Unknown recovery subcommand: " + args[0]);
+                printHelp();
+                return;
+        }
+
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerifyOwner(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            if ("add".equalsIgnoreCase(args[0])) {
+                String code = vaultManager.addRecoveryKey(vr.getVaultKey());
+                System.out.println("Recovery key (store it offline; it will not be shown again):");
+                System.out.println("  " + code);
+            } else if (args.length < 2) {
+                printHelp();
+            } else if (vaultManager.removeRecoveryKey(args[1])) {
+                System.out.println("Recovery key " + args[1] + " removed.");
+            } else {
+                System.out.println("No recovery key with id " + args[1] + ".");
+            }
+        }
+    }
+
+    /** Prints concise usage for {@code shush recovery}. */
+    private void printHelp() {
+        System.out.println("Usage: shush recovery <add|list|remove <id>>");
+        System.out.println("Adds, lists or removes vault recovery keys.");
+    }
+}
@@ -1,31 +1,74 @@
 package shush.commands;
 
+import java.util.List;
+import shush.util.VerifyUtils;
+import shush.vault.VaultEntry;
+import shush.vault.VaultManager;
+
 /**
  * Removes an existing entry from the vault.
  * <p>
- * Placeholder: actual removal will be implemented using the persistence layer.
+ * The label must match exactly; otherwise the closest labels are suggested. Removal requires the
+ * same verification as reading the entry.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush rm github
+ * }</pre>
  */
 public class RemoveCommand implements Command {
 
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
     /**
-     * Executes the {@code shush remove <entry-name>} command.
+     * Constructs a new {@code RemoveCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public RemoveCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
+    /**
+     * Executes the {@code shush rm <entry-name>} command.
      *
      * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
      */
     @Override
     public void execute(String[] args) {
-        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
             printHelp();
             return;
         }
 
-        System.out.println("🔐 Entry removal is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+        String label = args[0];
+        List<VaultEntry> matches = vaultManager.findEntries(label);
+        if (matches.isEmpty()) {
+            CommandStatus.fail("Error: no entry '" + label + "'.");
+            List<String> suggestions = vaultManager.suggestLabels(label, 5);
+            if (!suggestions.isEmpty()) System.out.println("Did you mean: " + String.join(", ", suggestions));
+            return;
+        }
+
+        VaultEntry entry = matches.get(0);
+        boolean requires2FA = entry.requires2FA() || vaultManager.isGlobalTOTPEnabled();
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, requires2FA)) {
+            if (!vr.isSuccess()) {
+                CommandStatus.fail("Error: " + vr.getFailureReason());
+                return;
+            }
+            if (vaultManager.removeEntry(entry)) {
+                System.out.println("Entry '" + label + "' removed.");
+            } else {
+                CommandStatus.fail("Error: entry '" + label + "' changed concurrently; try again.");
+            }
+        }
     }
 
-    /** Prints concise usage for {@code shush remove}. */
+    /** Prints concise usage for {@code shush rm}. */
     private void printHelp() {
-        System.out.println("Usage: shush remove <entry-name>");
+        System.out.println("Usage: shush rm <entry-name>");
         System.out.println("Removes the specified entry from the vault.");
     }
 }
@@ -1,12 +1,43 @@
 package shush.commands;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import shush.util.VerifyUtils;
+import shush.vault.VaultEntry;
+import shush.vault.VaultManager;
+
 /**
  * Searches the vault for entries that match a given query string.
  * <p>
- * Placeholder: actual search will be implemented against the index/persistence layer.
+ * Labels are stored in plaintext, so searching needs no unlock. Labels containing the query
+ * (case-insensitive) are listed; if none do, the closest labels by edit distance are shown.
+ * Tag, folder and 2FA filters ({@link FilterOptions}) narrow the candidates first; tags and
+ * folders are sealed, so filtering unlocks the vault.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush search gitlab
+ * shush search db --tag prod --2fa
+ * }</pre>
  */
 public class SearchCommand implements Command {
 
+    /** Number of fuzzy suggestions shown when nothing contains the query. */
+    private static final int SUGGESTIONS = 10;
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code SearchCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public SearchCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
     /**
      * Executes the {@code shush search <query>} command.
      *
@@ -14,18 +45,71 @@ public class SearchCommand implements Command {
      */
     @Override
     public void execute(String[] args) {
-        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
             printHelp();
             return;
         }
 
-        System.out.println("🔐 Searching entries is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+        FilterOptions filters = new FilterOptions();
+        List<String> words = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                int last = filters.parse(args, i);
+                if (last >= 0) i = last;
+                else words.add(args[i]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        if (words.isEmpty() && filters.filter().isEmpty()) {
+            printHelp();
+            return;
+        }
+
+        List<VaultEntry> candidates;
+        if (filters.filter().isEmpty()) {
+            candidates = vaultManager.listEntries();
+        } else {
+            try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+                if (!vr.isSuccess()) {
+                    System.out.println("Error: " + vr.getFailureReason());
+                    return;
+                }
+                candidates = vaultManager.filterEntries(filters.filter(), vr.getVaultKey());
+            } catch (Exception e) {
+                System.out.println("Error searching entries: " + e.getMessage());
+                return;
+            }
+        }
+
+        String query = String.join(" ", words);
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<String> found = new ArrayList<>();
+        for (VaultEntry e : candidates) {
+            String label = e.getLabel();
+            if (label != null && label.toLowerCase(Locale.ROOT).contains(needle)) found.add(label);
+        }
+
+        if (!found.isEmpty()) {
+            found.sort(String.CASE_INSENSITIVE_ORDER);
+            for (String label : found) System.out.println(label);
+            return;
+        }
+
+        List<String> close = filters.filter().isEmpty() ? vaultManager.suggestLabels(query, SUGGESTIONS) : List.of();
+        if (close.isEmpty()) {
+            System.out.println(query.isEmpty() ? "No entries match the filter." : "No entries match '" + query + "'.");
+            return;
+        }
+        System.out.println("No entries contain '" + query + "'. Closest labels:");
+        for (String label : close) System.out.println("  " + label);
     }
 
     /** Prints concise usage for {@code shush search}. */
     private void printHelp() {
-        System.out.println("Usage: shush search <query>");
-        System.out.println("Searches for entries in the vault matching the query.");
+        System.out.println("Usage: shush search [query] " + FilterOptions.USAGE);
+        System.out.println("Lists entries whose label contains the query, or the closest labels.");
+        System.out.println("Filters match sealed tags and folders and require unlocking the vault.");
     }
 }
@@ -0,0 +1,205 @@
+package shush.commands;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import shush.config.ConfigKeyword;
+import shush.vault.VaultEntry;
+import shush.vault.VaultManager;
+import shush.vault.VaultRegistry;
+
+/**
+ * Reports entries due for rotation: those whose password (or, with {@code --by}, creation or
+ * last update) is older than a given age.
+ * <p>
+ * Entry timestamps are plaintext metadata held in a time-ordered index, so the report needs no
+ * unlock and opens no secret field. With {@code --watch} the command keeps running and prints
+ * each entry as it becomes stale. Without {@code --older-than} the age comes from
+ * {@code StaleAfter} in the config, and a watch follows edits to it.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush stale
+ * shush stale --older-than 6w --by updated
+ * shush stale --older-than 90d --watch
+ * }</pre>
+ */
+public class StaleCommand implements Command {
+
+    /** Rotation age used when {@code --older-than} is not given. */
+    static final String DEFAULT_AGE = "90d";
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
+
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /** Registry whose config supplies {@code StaleAfter}; {@code null} to use the built-in default. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code StaleCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public StaleCommand(VaultManager vaultManager) {
+        this(vaultManager, null);
+    }
+
+    /**
+     * Constructs a new {@code StaleCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     * @param registry     registry whose config supplies the default age, or {@code null}
+     */
+    public StaleCommand(VaultManager vaultManager, VaultRegistry registry) {
+        this.vaultManager = vaultManager;
+        this.registry = registry;
+    }
+
+    /**
+     * Executes the {@code shush stale [--older-than <age>] [--by rotated|updated|created] [--watch]} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) {
+        String age = null;
+        VaultEntry.Timestamp field = VaultEntry.Timestamp.ROTATED;
+        boolean watch = false;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ("--help".equalsIgnoreCase(a) || "-h".equalsIgnoreCase(a)) {
+                printHelp();
+                return;
+            } else if ("--older-than".equals(a) && i + 1 < args.length) {
+                age = args[++i];
+            } else if ("--by".equals(a) && i + 1 < args.length) {
+                try {
+                    field = VaultEntry.Timestamp.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Error: --by must be rotated, updated or created.");
+                    return;
+                }
+            } else if ("--watch".equals(a)) {
+                watch = true;
+            } else {
+                System.out.println("Error: unexpected argument '" + a + "'.");
+                printHelp();
+                return;
+            }
+        }
+
+        boolean fromConfig = age == null;
+        if (fromConfig) age = configuredAge();
+        Duration maxAge;
+        try {
+            maxAge = parseAge(age);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        String verb = field.name().toLowerCase(Locale.ROOT);
+
+        if (watch) {
+            BlockingQueue<String> ages = new LinkedBlockingQueue<>();
+            if (fromConfig && registry != null) {
+                registry.getConfig().addListener(c -> ages.add(configuredAge()));
+                try {
+                    registry.getConfig().watch();
+                } catch (IOException e) {
+                    System.out.println("Warning: config edits will not be picked up: " + e.getMessage());
+                }
+            }
+            final VaultEntry.Timestamp by = field;
+            try {
+                while (true) {
+                    System.out.println("Watching for entries " + verb + " more than " + age + " ago (Ctrl-C to stop).");
+                    VaultManager.StaleWatch w = vaultManager.watchStale(field, maxAge,
+                            e -> System.out.println(describe(e, by, System.currentTimeMillis())));
+                    try {
+                        String next;
+                        do {
+                            next = ages.take();
+                        } while (next.equals(age));
+                        age = next;
+                        maxAge = parseAge(next);
+                    } finally {
+                        w.close();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        List<VaultEntry> stale = vaultManager.staleEntries(field, maxAge);
+        if (stale.isEmpty()) {
+            System.out.println("No entries " + verb + " more than " + age + " ago.");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (VaultEntry e : stale) System.out.println(describe(e, field, now));
+        System.out.println(stale.size() + " entr" + (stale.size() == 1 ? "y" : "ies") + " " + verb + " more than " + age + " ago.");
+    }
+
+    // ---- helpers ----
+
+    /** @return {@code StaleAfter} from the config, or the built-in default */
+    private String configuredAge() {
+        return registry == null ? DEFAULT_AGE : registry.settings("stale").get(ConfigKeyword.STALE_AFTER, DEFAULT_AGE);
+    }
+
+    /**
+     * Parses an age such as {@code 90d}, {@code 12w}, {@code 36h} or {@code 1y}; a bare number is days.
+     * A zero age is allowed and makes every dated entry stale.
+     *
+     * @param s age text
+     * @return the age
+     * @throws IllegalArgumentException if {@code s} is not an age of zero or more
+     */
+    static Duration parseAge(String s) {
+        String t = s.trim().toLowerCase(Locale.ROOT);
+        char unit = t.isEmpty() ? ' ' : t.charAt(t.length() - 1);
+        String digits = Character.isDigit(unit) ? t : t.substring(0, Math.max(0, t.length() - 1));
+        long n;
+        try {
+            n = Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            n = -1;
+        }
+        if (n < 0) throw new IllegalArgumentException("invalid age '" + s + "' (use e.g. 90d, 12w, 36h, 1y)");
+        switch (unit) {
+            case 'h': return Duration.ofHours(n);
+            case 'w': return Duration.ofDays(7 * n);
+            case 'y': return Duration.ofDays(365 * n);
+            case 'd': return Duration.ofDays(n);
+            default:
+                if (Character.isDigit(unit)) return Duration.ofDays(n);
+                throw new IllegalArgumentException("invalid age unit in '" + s + "' (use h, d, w or y)");
+        }
+    }
+
+    private static String describe(VaultEntry e, VaultEntry.Timestamp field, long now) {
+        long at = field.of(e);
+        if (at == 0) return e.getLabel() + "  " + field.name().toLowerCase(Locale.ROOT) + " date unknown";
+        long days = Duration.ofMillis(now - at).toDays();
+        return e.getLabel() + "  " + field.name().toLowerCase(Locale.ROOT) + " " + DATE.format(Instant.ofEpochMilli(at))
+                + " (" + days + " day" + (days == 1 ? "" : "s") + " ago)";
+    }
+
+    /** Prints concise usage for {@code shush stale}. */
+    private void printHelp() {
+        System.out.println("Usage: shush stale [--older-than <age>] [--by rotated|updated|created] [--watch]");
+        System.out.println("Lists entries whose password was last changed more than <age> ago (default " + configuredAge()
+                + ", or StaleAfter in the config).");
+        System.out.println("Ages: 36h, 90d, 12w, 1y. Needs no unlock; --watch keeps reporting entries as they age.");
+    }
+}
@@ -0,0 +1,182 @@
+package shush.commands;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.List;
+import shush.util.VerifyUtils;
+import shush.vault.MemberIdentity;
+import shush.vault.TeamMember;
+import shush.vault.VaultKey;
+import shush.vault.VaultManager;
+import shush.vault.VaultRegistry;
+
+/**
+ * Manages team access to the active vault.
+ * <p>
+ * Every member has an X25519 key pair ({@code shush team keygen}); the owner wraps the vault
+ * data key to each member's public key. Adding a member costs one key agreement. Removing a
+ * member rotates the data key: the new key is re-wrapped for the remaining members only, and
+ * entries are re-encrypted in the background (and lazily on later writes) instead of up front.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush team keygen alice
+ * shush team pubkey
+ * shush team add bob MCowBQYDK2VuAyEA...
+ * shush team list
+ * shush team remove bob
+ * }</pre>
+ */
+public class TeamCommand implements Command {
+
+    /** Registry providing the active vault and the local identity path. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code TeamCommand}.
+     *
+     * @param registry the vault registry
+     */
+    public TeamCommand(VaultRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Executes the {@code shush team <keygen|pubkey|add|remove|list>} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) throws Exception {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
+            printHelp();
+            return;
+        }
+
+        try {
+            switch (args[0].toLowerCase()) {
+                case "keygen":
+                    if (args.length < 2) {
+                        printHelp();
+                        return;
+                    }
+                    keygen(args[1]);
+                    break;
+                case "pubkey": {
+                    MemberIdentity id = MemberIdentity.load(registry.getIdentityPath());
+                    if (id == null) {
+                        System.out.println("No identity. Run 'shush team keygen <id>' first.");
+                        return;
+                    }
+                    System.out.println(id.getId() + " " + id.getPublicKeyBase64());
+                    break;
+                }
+                case "list":
+                case "ls":
+                    list(registry.openCurrent());
+                    break;
+                case "add":
+                    if (args.length < 3) {
+                        printHelp();
+                        return;
+                    }
+                    add(registry.openCurrent(), args[1], args[2]);
+                    break;
+                case "remove":
+                case "rm":
+                    if (args.length < 2) {
+                        printHelp();
+                        return;
+                    }
+                    remove(registry.openCurrent(), args[1]);
+                    break;
+                default:
+                    System.out.println("Unknown team subcommand: " + args[0]);
+                    printHelp();
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    // ---- subcommands ----
+
+    private void keygen(String memberId) throws IOException, GeneralSecurityException {
+        char[] pass = VerifyUtils.promptSecret("Identity passphrase: ");
+        char[] confirm = VerifyUtils.promptSecret("Confirm identity passphrase: ");
+        try {
+            if (pass.length == 0 || !Arrays.equals(pass, confirm)) {
+                System.out.println("Error: passphrases are empty or do not match.");
+                return;
+            }
+            MemberIdentity id = MemberIdentity.generate(registry.getIdentityPath(), memberId, pass);
+            System.out.println("Identity '" + id.getId() + "' created. Share this public key with the vault owner:");
+            System.out.println("  " + id.getPublicKeyBase64());
+        } finally {
+            Arrays.fill(pass, '\0');
+            Arrays.fill(confirm, '\0');
+        }
+    }
+
+    private static void list(VaultManager vaultManager) {
+        List<TeamMember> members = vaultManager.listMembers();
+        if (members.isEmpty()) System.out.println("No team members.");
+        for (TeamMember m : members) System.out.println(m.getId() + "  " + m.getPublicKeyBase64());
+        int stale = vaultManager.countStaleEntries();
+        if (stale > 0) {
+            System.out.println(stale + " entries are still sealed under a retired key (epoch < " + vaultManager.getKeyEpoch() + ").");
+        }
+    }
+
+    private static void add(VaultManager vaultManager, String memberId, String publicKey) throws GeneralSecurityException {
+        byte[] pub = TeamMember.parsePublicKey(publicKey);
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerifyOwner(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            vaultManager.addMember(vr.getVaultKey(), memberId, pub);
+            System.out.println("Member '" + memberId + "' added.");
+        }
+    }
+
+    private static void remove(VaultManager vaultManager, String memberId) throws GeneralSecurityException {
+        if (!vaultManager.isMember(memberId)) {
+            System.out.println("No member with id " + memberId + ".");
+            return;
+        }
+        int recoveryKeys = vaultManager.listRecoveryKeyIds().size();
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerifyOwner(vaultManager, vaultManager.isGlobalTOTPEnabled())) {
+            if (!vr.isSuccess()) {
+                System.out.println("Error: " + vr.getFailureReason());
+                return;
+            }
+            VaultKey rotated = vaultManager.removeMember(vr.getVaultKey(), memberId, vr.getMasterPassword(), vr.getPin());
+            if (rotated == null) {
+                System.out.println("No member with id " + memberId + ".");
+                return;
+            }
+            System.out.println("Member '" + memberId + "' removed; vault key rotated to epoch " + rotated.getEpoch() + ".");
+            if (recoveryKeys > 0) {
+                System.out.println("Warning: " + recoveryKeys + " recovery key(s) were invalidated. Run 'shush recovery add'.");
+            }
+            // Removal is done; entries catch up in the background, which owns the key from here on.
+            // Whatever the process does not finish is re-encrypted on later writes.
+            int stale = vaultManager.countStaleEntries();
+            vaultManager.startKeyCatchUp(rotated).whenComplete((n, e) -> rotated.close());
+            if (stale > 0) {
+                System.out.println(stale + " entries are re-encrypted under the new key in the background and on later writes.");
+            }
+        }
+    }
+
+    /** Prints concise usage for {@code shush team}. */
+    private void printHelp() {
+        System.out.println("Usage: shush team <keygen <id>|pubkey|list|add <id> <public-key>|remove <id>>");
+        System.out.println("Manages team members who can unlock the active vault with their own key.");
+    }
+}
@@ -1,12 +1,45 @@
 package shush.commands;
 
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import shush.util.VerifyUtils;
+import shush.vault.VaultEntry;
+import shush.vault.VaultKey;
+import shush.vault.VaultManager;
+
 /**
- * Updates fields on an existing vault entry (e.g., username, password, URL, notes, TOTP settings).
+ * Updates fields on an existing vault entry (username, password, comment, label, tags, folder,
+ * TOTP requirement).
  * <p>
- * Placeholder: actual update logic will be implemented later.
+ * Fields that are not given keep their values. With no options at all, the new password is
+ * prompted for. {@code -t} replaces the tag list and {@code -f} the folder; an empty value clears
+ * them. All fields are re-sealed under the current vault key, so an update also moves
+ * the entry off a retired key epoch. The fields that changed are kept in the vault's history
+ * ({@code shush history}).
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush update github -p newpass
+ * shush update github --rename github-personal -no2fa
+ * shush update orders-db -t prod,db,pci -f work/databases
+ * }</pre>
  */
 public class UpdateCommand implements Command {
 
+    /** Manager for the active vault. */
+    private final VaultManager vaultManager;
+
+    /**
+     * Constructs a new {@code UpdateCommand}.
+     *
+     * @param vaultManager the active {@link VaultManager}
+     */
+    public UpdateCommand(VaultManager vaultManager) {
+        this.vaultManager = vaultManager;
+    }
+
     /**
      * Executes the {@code shush update <entry-name> <options>} command.
      *
@@ -14,19 +47,96 @@ public class UpdateCommand implements Command {
      */
     @Override
     public void execute(String[] args) {
-        if (args.length > 0 && ("--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0]))) {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
             printHelp();
             return;
         }
 
-        System.out.println("🔐 Entry update is not yet implemented.");
-        System.out.println("Please check back in a future release.");
+        String label = args[0];
+        String username = null, password = null, comment = null, rename = null, folder = null;
+        List<String> tags = null;
+        Boolean requires2FA = null;
+        for (int i = 1; i < args.length; i++) {
+            String a = args[i];
+            if (("-u".equals(a) || "--username".equals(a)) && i + 1 < args.length) {
+                username = args[++i];
+            } else if (("-p".equals(a) || "--password".equals(a)) && i + 1 < args.length) {
+                password = args[++i];
+            } else if (("-c".equals(a) || "--comment".equals(a)) && i + 1 < args.length) {
+                comment = args[++i];
+            } else if ("--rename".equals(a) && i + 1 < args.length) {
+                rename = args[++i];
+            } else if (("-t".equals(a) || "--tag".equals(a)) && i + 1 < args.length) {
+                if (tags == null) tags = new ArrayList<>();
+                tags.add(args[++i]);
+            } else if (("-f".equals(a) || "--folder".equals(a)) && i + 1 < args.length) {
+                folder = args[++i];
+            } else if ("-2FA".equalsIgnoreCase(a) || "--2fa".equalsIgnoreCase(a)) {
+                requires2FA = Boolean.TRUE;
+            } else if ("-no2fa".equalsIgnoreCase(a) || "--no2fa".equalsIgnoreCase(a)) {
+                requires2FA = Boolean.FALSE;
+            } else {
+                CommandStatus.fail("Error: unexpected argument '" + a + "'.");
+                printHelp();
+                return;
+            }
+        }
+
+        List<VaultEntry> matches = vaultManager.findEntries(label);
+        if (matches.isEmpty()) {
+            CommandStatus.fail("Error: no entry '" + label + "'.");
+            List<String> suggestions = vaultManager.suggestLabels(label, 5);
+            if (!suggestions.isEmpty()) System.out.println("Did you mean: " + String.join(", ", suggestions));
+            return;
+        }
+        VaultEntry entry = matches.get(0);
+
+        boolean needs2FA = entry.requires2FA() || vaultManager.isGlobalTOTPEnabled() || Boolean.TRUE.equals(requires2FA);
+        try (VerifyUtils.VerificationResult vr = VerifyUtils.promptAndVerify(vaultManager, needs2FA)) {
+            if (!vr.isSuccess()) {
+                CommandStatus.fail("Error: " + vr.getFailureReason());
+                return;
+            }
+            if (args.length == 1) {
+                char[] pw = VerifyUtils.promptSecret("New password for '" + label + "': ");
+                password = new String(pw);
+                Arrays.fill(pw, '\0');
+            }
+
+            VaultKey key = vr.getVaultKey();
+            VaultEntry updated = new VaultEntry(
+                    rename != null ? rename : entry.getLabel(),
+                    key.sealString(username != null ? username : key.openString(entry.getUsername())),
+                    key.sealString(password != null ? password : key.openString(entry.getPassword())),
+                    key.sealString(comment != null ? comment : key.openString(entry.getComment())),
+                    requires2FA != null ? requires2FA : entry.requires2FA(),
+                    key.getEpoch(),
+                    sealOptional(key, tags != null ? VaultEntry.joinTags(tags) : openOptional(key, entry.getTags())),
+                    sealOptional(key, folder != null ? VaultEntry.normalizeFolder(folder) : openOptional(key, entry.getFolder())));
+            if (vaultManager.replaceEntry(entry, updated, key)) {
+                System.out.println("Entry '" + updated.getLabel() + "' updated.");
+            } else {
+                CommandStatus.fail("Error: entry '" + label + "' changed concurrently; try again.");
+            }
+        } catch (Exception e) {
+            CommandStatus.fail("Error updating entry: " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private static String openOptional(VaultKey key, String payload) throws GeneralSecurityException {
+        return payload == null ? null : key.openString(payload);
+    }
+
+    private static String sealOptional(VaultKey key, String value) throws GeneralSecurityException {
+        return value == null ? null : key.sealString(value);
     }
 
     /** Prints concise usage for {@code shush update}. */
     private void printHelp() {
-        System.out.println("Usage: shush update <entry-name> <options>");
-        System.out.println("Updates the specified entry in the vault with new information.");
-        System.out.println("Options can include changing the username, password, URL, notes, or TOTP settings.");
+        System.out.println("Usage: shush update <entry-name> [-u <username>] [-p <password>] [-c <comment>]");
+        System.out.println("                    [--rename <new-label>] [-t <tag[,tag]>]... [-f <folder>] [-2FA|-no2fa]");
+        System.out.println("Updates the specified entry; with no options, prompts for a new password.");
     }
 }
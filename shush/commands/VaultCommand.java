@@ -0,0 +1,87 @@
+package shush.commands;
+
+import java.util.List;
+import shush.vault.VaultHeader;
+import shush.vault.VaultRegistry;
+
+/**
+ * Lists and selects vaults managed by the {@link VaultRegistry}.
+ * <p>
+ * Both subcommands read only the fixed-size vault headers; no vault body is opened and no
+ * master password is required.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush vault list
+ * shush vault use prod
+ * }</pre>
+ */
+public class VaultCommand implements Command {
+
+    /** Registry of vaults under the Shush home directory. */
+    private final VaultRegistry registry;
+
+    /**
+     * Constructs a new {@code VaultCommand}.
+     *
+     * @param registry the vault registry
+     */
+    public VaultCommand(VaultRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Executes the {@code shush vault <list|use>} command.
+     *
+     * @param args CLI arguments; supports {@code --help} or {@code -h} to show usage
+     */
+    @Override
+    public void execute(String[] args) throws Exception {
+        if (args.length == 0 || "--help".equalsIgnoreCase(args[0]) || "-h".equalsIgnoreCase(args[0])) {
+            printHelp();
+            return;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "list":
+            case "ls":
+                list();
+                break;
+            case "use":
+                if (args.length < 2) {
+                    printHelp();
+                    return;
+                }
+                registry.select(args[1]);
+                System.out.println("Using vault '" + args[1] + "'.");
+                break;
+            default:
+                System.out.println("Unknown vault subcommand: " + args[0]);
+                printHelp();
+        }
+    }
+
+    private void list() throws Exception {
+        List<VaultRegistry.VaultInfo> vaults = registry.list();
+        if (vaults.isEmpty()) {
+            System.out.println("No vaults found. Run 'shush init' to create one.");
+            return;
+        }
+        String current = registry.current();
+        for (VaultRegistry.VaultInfo v : vaults) {
+            VaultHeader h = v.getHeader();
+            System.out.printf("%s %-24s %6d entries  v%d%s%n",
+                    v.getName().equals(current) ? "*" : " ",
+                    v.getName(),
+                    h.getEntryCount(),
+                    h.getFormatVersion(),
+                    h.isGlobalTOTPEnabled() ? "  totp" : "");
+        }
+    }
+
+    /** Prints concise usage for {@code shush vault}. */
+    private void printHelp() {
+        System.out.println("Usage: shush vault <list|use <name>>");
+        System.out.println("Lists vaults or selects the vault used by other commands.");
+    }
+}
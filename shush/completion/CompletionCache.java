@@ -0,0 +1,316 @@
+package shush.completion;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Entry labels for shell completion, kept only for the running login session.
+ * <p>
+ * Completing {@code shush get <TAB>} must not unlock the vault (a full PBKDF2 per keypress), nor
+ * even parse its body. Instead, a command that unlocked a vault leaves a sorted copy of its labels
+ * here, and {@code shush __complete} answers from it by binary search.
+ * </p>
+ * The copy is not sealed, so it is kept only where it does not outlive the session:
+ * <ul>
+ *   <li>It lives in the per-user runtime directory, {@code $XDG_RUNTIME_DIR/shush} (a tmpfs that
+ *       the system empties at logout). The directory is created {@code 0700} and refused if
+ *       another user owns it.</li>
+ *   <li>Without {@code XDG_RUNTIME_DIR} (macOS, or a login without a session manager) there is
+ *       no such place: the temporary directory is usually on persistent disk. Nothing is cached
+ *       then, and labels do not complete.</li>
+ *   <li>It is only created by a successful unlock, and expires a configurable time after the
+ *       last one ({@code CompletionCache} in the config, {@value #DEFAULT_TTL} by default).
+ *       Commands that load the vault without unlocking it keep a live cache in step with its
+ *       labels but never extend it. Expired caches are deleted after every command
+ *       ({@link #removeExpired()}), and when a completion finds one.</li>
+ * </ul>
+ * Sealing the copy instead was ruled out: initializing the JCE providers alone costs about
+ * 100 ms, ten times the budget of a completion.
+ *
+ * <h2>File format</h2>
+ * One file per vault, {@code <runtime>/completion-<home hash>/<vault>} (big-endian):
+ * <pre>
+ * [ "SHCC" ][ version u8 ][ expires i64 ][ u16 length ][ UTF-8 home ][ count i32 ][ end i32 ]*count [ UTF-8 labels ]
+ * </pre>
+ * Labels are distinct and sorted by their UTF-8 bytes, so a byte-wise prefix search finds them
+ * without decoding; the home path guards against hash collisions between homes.
+ */
+public final class CompletionCache {
+
+    /** Lifetime of a cache after the unlock that wrote it, unless configured. */
+    public static final String DEFAULT_TTL = "8h";
+
+    private static final byte[] MAGIC = new byte[]{0x53, 0x48, 0x43, 0x43}; // "SHCC"
+    private static final int VERSION = 1;
+    private static final int MAX_LABEL = 4096;
+
+    private final String home;
+    private final Path dir; // null without a runtime directory
+
+    /**
+     * @param home Shush home directory the cached vaults belong to
+     */
+    public CompletionCache(Path home) {
+        this.home = home.toAbsolutePath().normalize().toString();
+        Path runtime = runtimeDir();
+        this.dir = runtime == null ? null : runtime.resolve("completion-".concat(Integer.toHexString(this.home.hashCode()))); // no "+": see ShellCompletion
+    }
+
+    /** @return the per-user runtime directory caches are kept in, or {@code null} if the session has none */
+    static Path runtimeDir() {
+        String xdg = System.getenv("XDG_RUNTIME_DIR");
+        return xdg == null || xdg.isEmpty() ? null : Paths.get(xdg, "shush");
+    }
+
+    /** @return true if labels can be cached, i.e. the session has a runtime directory */
+    public boolean isAvailable() {
+        return dir != null;
+    }
+
+    /**
+     * Writes the labels of {@code vault}, valid until {@code expiresAt}.
+     *
+     * @param vault     vault name
+     * @param labels    entry labels, in any order; {@code null}s and labels a shell cannot complete are skipped
+     * @param expiresAt expiry, in epoch millis
+     * @throws IOException if the cache cannot be written
+     * @throws IllegalStateException if there is no runtime directory ({@link #isAvailable()})
+     */
+    public void write(String vault, Collection<String> labels, long expiresAt) throws IOException {
+        checkName(vault);
+        if (dir == null) throw new IllegalStateException("No per-session runtime directory (XDG_RUNTIME_DIR) to cache labels in");
+        List<byte[]> sorted = new ArrayList<>(labels.size());
+        for (String l : labels) {
+            if (l == null || l.isEmpty() || l.indexOf('\n') >= 0 || l.indexOf('\r') >= 0) continue;
+            byte[] b = l.getBytes(StandardCharsets.UTF_8);
+            if (b.length <= MAX_LABEL) sorted.add(b);
+        }
+        sorted.sort(Arrays::compareUnsigned);
+        int count = 0;
+        long bytes = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            if (count > 0 && Arrays.equals(sorted.get(count - 1), sorted.get(i))) continue;
+            bytes += sorted.get(i).length;
+            sorted.set(count++, sorted.get(i));
+        }
+        byte[] h = home.getBytes(StandardCharsets.UTF_8);
+        long size = 4 + 1 + 8 + 2 + h.length + 4 + 4L * count + bytes;
+        if (size > Integer.MAX_VALUE || h.length > 0xFFFF) throw new IOException("Too many labels for the completion cache");
+
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.put(MAGIC).put((byte) VERSION).putLong(expiresAt).putShort((short) h.length).put(h).putInt(count);
+        int end = 0;
+        for (int i = 0; i < count; i++) out.putInt(end += sorted.get(i).length);
+        for (int i = 0; i < count; i++) out.put(sorted.get(i));
+
+        ensureDir();
+        Path tmp = Files.createTempFile(dir, vault, ".tmp"); // 0600 on POSIX
+        try {
+            Files.write(tmp, out.array());
+            Files.move(tmp, dir.resolve(vault), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @param vault vault name
+     * @return when the cache of {@code vault} expires, in epoch millis, or {@code 0} if there is
+     *         no live cache
+     */
+    public long expiresAt(String vault) {
+        checkName(vault);
+        if (dir == null) return 0;
+        try (InputStream in = Files.newInputStream(dir.resolve(vault))) {
+            ByteBuffer b = ByteBuffer.wrap(in.readNBytes(13));
+            if (b.capacity() < 13 || !magic(b)) return 0;
+            long expires = b.getLong(5);
+            return expires > System.currentTimeMillis() ? expires : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds cached labels starting with {@code prefix}. An expired cache is deleted.
+     *
+     * @param vault  vault name
+     * @param prefix prefix as typed (case-sensitive, as shells complete)
+     * @param limit  maximum labels returned
+     * @return matching labels in UTF-8 byte order; empty if there is no live cache
+     */
+    public List<String> complete(String vault, String prefix, int limit) {
+        checkName(vault);
+        List<String> out = new ArrayList<>();
+        if (dir == null) return out;
+        Path file = dir.resolve(vault);
+        try {
+            // a plain read: mapping the file would spin up method handles, costing more than it saves here
+            ByteBuffer b;
+            try (InputStream in = new FileInputStream(file.toFile())) {
+                b = ByteBuffer.wrap(in.readAllBytes());
+            }
+            int size = b.capacity();
+            if (size < 19 || !magic(b)) return out;
+            if (b.getLong(5) <= System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return out;
+            }
+            int homeLength = b.getShort(13) & 0xFFFF;
+            byte[] h = new byte[homeLength];
+            b.get(15, h);
+            if (!home.equals(new String(h, StandardCharsets.UTF_8))) return out;
+            int count = b.getInt(15 + homeLength);
+            int ends = 15 + homeLength + 4;
+            if (count < 0 || count > (size - ends) / 4) return out;
+            int data = ends + 4 * count;
+
+            byte[] p = prefix.getBytes(StandardCharsets.UTF_8);
+            // first label not below the prefix
+            int lo = 0, hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(b, data, ends, mid, p) < 0) lo = mid + 1; else hi = mid;
+            }
+            for (int i = lo; i < count && out.size() < limit; i++) {
+                int start = i == 0 ? 0 : b.getInt(ends + 4 * (i - 1)), end = b.getInt(ends + 4 * i);
+                if (end - start < p.length || !startsWith(b, data + start, p)) break;
+                byte[] label = new byte[end - start];
+                b.get(data + start, label);
+                out.add(new String(label, StandardCharsets.UTF_8));
+            }
+        } catch (FileNotFoundException e) {
+            // no session
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            out.clear(); // a damaged cache completes nothing; the next unlock rewrites it
+        }
+        return out;
+    }
+
+    /**
+     * Deletes the cache of {@code vault}.
+     *
+     * @param vault vault name
+     * @throws IOException if it exists and cannot be deleted
+     */
+    public void remove(String vault) throws IOException {
+        checkName(vault);
+        if (dir != null) Files.deleteIfExists(dir.resolve(vault));
+    }
+
+    /**
+     * Deletes the expired (or unreadable) caches of this home, so a cache never outlives its
+     * lifetime by waiting for a completion to notice it. Caches an earlier version left under
+     * {@code <tmpdir>/shush-<user>} are deleted outright.
+     *
+     * @return number of caches deleted
+     * @throws IOException if one cannot be deleted
+     */
+    public int removeExpired() throws IOException {
+        int n = deleteAll(Paths.get(System.getProperty("java.io.tmpdir"), "shush-" + System.getProperty("user.name"),
+                "completion-" + Integer.toHexString(home.hashCode())));
+        if (dir == null || !Files.isDirectory(dir)) return n;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp") || name.startsWith(".")) continue; // a write in progress
+                if (expiresAt(name) == 0) {
+                    Files.deleteIfExists(p);
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Deletes the caches of every vault of this home.
+     *
+     * @return number of caches deleted
+     * @throws IOException if one cannot be deleted
+     */
+    public int clear() throws IOException {
+        return dir == null ? 0 : deleteAll(dir);
+    }
+
+    // ---- helpers ----
+
+    private static int deleteAll(Path d) throws IOException {
+        if (!Files.isDirectory(d)) return 0;
+        int n = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(d)) {
+            for (Path p : ds) {
+                Files.delete(p);
+                n++;
+            }
+        }
+        Files.deleteIfExists(d);
+        return n;
+    }
+
+    private void ensureDir() throws IOException {
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        Set<PosixFilePermission> owner = PosixFilePermissions.fromString("rwx------");
+        for (Path d : new Path[]{dir.getParent(), dir}) {
+            if (!Files.isDirectory(d)) {
+                try {
+                    if (posix) Files.createDirectory(d, PosixFilePermissions.asFileAttribute(owner));
+                    else Files.createDirectory(d);
+                } catch (FileAlreadyExistsException e) {
+                    // created concurrently; checked below
+                }
+            }
+            if (posix && (!Files.getOwner(d).getName().equals(System.getProperty("user.name"))
+                    || !Files.getPosixFilePermissions(d).equals(owner))) {
+                throw new IOException("Refusing completion cache directory " + d + ": not private to this user");
+            }
+        }
+    }
+
+    /** Vault names are checked by the registry; this only keeps a stray name inside the directory. */
+    private static void checkName(String vault) {
+        if (vault.isEmpty() || vault.startsWith(".") || vault.indexOf('/') >= 0 || vault.indexOf('\\') >= 0) {
+            throw new IllegalArgumentException("Invalid vault name '" + vault + "'");
+        }
+    }
+
+    private static boolean magic(ByteBuffer b) {
+        for (int i = 0; i < MAGIC.length; i++) if (b.get(i) != MAGIC[i]) return false;
+        return b.get(4) == VERSION;
+    }
+
+    /** Compares label {@code i} with {@code p}, looking only at its first {@code p.length} bytes. */
+    private static int compare(ByteBuffer b, int data, int ends, int i, byte[] p) {
+        int start = i == 0 ? 0 : b.getInt(ends + 4 * (i - 1)), end = b.getInt(ends + 4 * i);
+        int n = Math.min(end - start, p.length);
+        for (int k = 0; k < n; k++) {
+            int c = Integer.compare(b.get(data + start + k) & 0xFF, p[k] & 0xFF);
+            if (c != 0) return c;
+        }
+        return end - start < p.length ? -1 : 0;
+    }
+
+    private static boolean startsWith(ByteBuffer b, int at, byte[] p) {
+        for (int k = 0; k < p.length; k++) if (b.get(at + k) != p[k]) return false;
+        return true;
+    }
+}
@@ -0,0 +1,183 @@
+package shush.completion;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers {@code shush __complete}, the hidden entry point behind the bash and zsh completion
+ * scripts, and provides those scripts.
+ * <p>
+ * A completion runs on every TAB, so it stays off the normal command path: no command objects,
+ * no config, no vault header or body, no crypto. Command names are a constant, vault names come
+ * from one directory listing and labels from the session's {@link CompletionCache}; without a
+ * live cache, labels simply do not complete (and the scripts fall back to file names). The path
+ * also avoids {@code +} on strings and lambdas: both bootstrap through {@code invokedynamic}, and
+ * spinning up the method-handle machinery for the first one costs more than the whole completion.
+ * </p>
+ * Protocol: the script passes the words after {@code shush} up to and including the one being
+ * completed (possibly empty), after a {@code --}; candidates are printed one per line, unquoted.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * shush __complete -- get git      # github.com, gitlab.com
+ * shush __complete -- vault use "" # personal, work
+ * }</pre>
+ */
+public final class ShellCompletion {
+
+    /** Shells a script is available for. */
+    public static final List<String> SHELLS = List.of("bash", "zsh");
+
+    // Command names, in help order; keep in step with Main.registerCommands
+    private static final List<String> COMMANDS = List.of("init", "vault", "add", "get", "gen", "list", "search",
+            "rm", "update", "batch", "history", "check", "stale", "audit", "pin", "passwd", "recovery", "team",
+            "fsck", "connect", "import", "totp-add", "totp-remove", "totp-update", "completion");
+    private static final List<String> GLOBAL_OPTIONS = List.of("--stats", "--metrics-port");
+
+    // Commands whose first argument is an entry label, and their options that take a value
+    private static final Set<String> LABEL_COMMANDS = Set.of("get", "rm", "update", "history");
+    private static final Set<String> VALUE_OPTIONS = Set.of("-u", "-p", "-c", "--restore");
+
+    private static final int MAX_CANDIDATES = 1000;
+
+    private ShellCompletion() { /* no instances */ }
+
+    /**
+     * Prints the candidates for the last of {@code words}.
+     *
+     * @param home  Shush home directory
+     * @param words words after {@code shush}, the last being the one completed
+     * @param out   where candidates go, one per line
+     */
+    public static void complete(Path home, List<String> words, PrintStream out) {
+        if (words.isEmpty()) return;
+        String current = unescape(words.get(words.size() - 1));
+
+        int c = 0; // index of the command word, after global options
+        while (c < words.size() - 1 && words.get(c).startsWith("--")) c += "--metrics-port".equals(words.get(c)) ? 2 : 1;
+        if (c >= words.size() - 1) {
+            if (c == words.size() - 1) print(current.startsWith("-") ? GLOBAL_OPTIONS : COMMANDS, current, out);
+            return;
+        }
+        String command = words.get(c);
+        List<String> args = words.subList(c + 1, words.size() - 1); // arguments before the current word
+        if (current.startsWith("-")) return;
+
+        if (LABEL_COMMANDS.contains(command)) {
+            String previous = args.isEmpty() ? command : args.get(args.size() - 1);
+            if (VALUE_OPTIONS.contains(previous) || positionals(args) > 0) return;
+            String vault = currentVault(home);
+            if (vault == null) return;
+            for (String l : new CompletionCache(home).complete(vault, current, MAX_CANDIDATES)) out.println(l);
+        } else if ("vault".equals(command)) {
+            if (args.isEmpty()) print(List.of("list", "use"), current, out);
+            else if (args.size() == 1 && "use".equals(args.get(0))) print(vaults(home), current, out);
+        } else if ("completion".equals(command) && args.isEmpty()) {
+            List<String> subcommands = new ArrayList<>(SHELLS);
+            subcommands.add("status");
+            subcommands.add("clear");
+            print(subcommands, current, out);
+        }
+    }
+
+    /**
+     * @param shell {@code bash} or {@code zsh}
+     * @return the completion script
+     * @throws IllegalArgumentException if there is no script for {@code shell}
+     * @throws IOException              if the bundled script cannot be read
+     */
+    public static String script(String shell) throws IOException {
+        if (!SHELLS.contains(shell)) {
+            throw new IllegalArgumentException("No completion script for '" + shell + "'; use " + String.join(" or ", SHELLS));
+        }
+        try (InputStream in = ShellCompletion.class.getResourceAsStream("/resources/completion/shush." + shell)) {
+            if (in == null) throw new IOException("completion script for " + shell + " not found");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the Shush home, resolved as {@code VaultRegistry.defaultRegistry()} does; that class
+     *         is not loaded here, since its static name pattern alone costs milliseconds
+     */
+    public static Path defaultHome() {
+        String dir = System.getProperty("shush.home");
+        if (dir == null || dir.isEmpty()) dir = System.getenv("SHUSH_HOME");
+        if (dir == null || dir.isEmpty()) return Paths.get(System.getProperty("user.home"), ".shush");
+        return Paths.get(dir);
+    }
+
+    // ---- helpers ----
+
+    private static void print(List<String> candidates, String prefix, PrintStream out) {
+        for (String s : candidates) if (s.startsWith(prefix)) out.println(s);
+    }
+
+    /** @return arguments that are neither options nor option values */
+    private static int positionals(List<String> args) {
+        int n = 0;
+        for (int i = 0; i < args.size(); i++) {
+            String a = args.get(i);
+            if (a.startsWith("-")) {
+                if (VALUE_OPTIONS.contains(a)) i++;
+            } else {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** The selected vault, as {@code VaultRegistry.current()} finds it, from the selection file or the only vault. */
+    private static String currentVault(Path home) {
+        try (InputStream in = new FileInputStream(home.resolve("current").toFile())) { // Files.readAllBytes would start method handles
+            String name = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            if (!name.isEmpty() && name.indexOf('/') < 0 && !name.startsWith(".") && Files.isRegularFile(home.resolve("vaults").resolve(name.concat(".vault")))) return name;
+        } catch (FileNotFoundException e) {
+            // none selected
+        } catch (IOException e) {
+            return null;
+        }
+        List<String> all = vaults(home);
+        return all.size() == 1 ? all.get(0) : null;
+    }
+
+    private static List<String> vaults(Path home) {
+        List<String> out = new ArrayList<>();
+        Path dir = home.resolve("vaults");
+        if (!Files.isDirectory(dir)) return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) { // no glob: that would compile a regex
+            for (Path p : ds) {
+                String fn = p.getFileName().toString();
+                if (fn.endsWith(".vault") && fn.length() > ".vault".length()) out.add(fn.substring(0, fn.length() - ".vault".length()));
+            }
+        } catch (IOException e) {
+            return out;
+        }
+        out.sort(null);
+        return out;
+    }
+
+    /** Undoes shell quoting of a partly typed word: an opening quote and backslash escapes (bash passes words raw). */
+    static String unescape(String word) {
+        if (word.startsWith("'") || word.startsWith("\"")) return word.substring(1);
+        if (word.indexOf('\\') < 0) return word;
+        StringBuilder sb = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char ch = word.charAt(i);
+            if (ch == '\\' && i + 1 < word.length()) ch = word.charAt(++i);
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+}
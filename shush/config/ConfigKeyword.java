@@ -0,0 +1,101 @@
+package shush.config;
+
+import java.util.Locale;
+
+/**
+ * Keywords accepted in the Shush config file, with their validation.
+ * <p>
+ * Keywords are matched case-insensitively, as in {@code sshd_config}. Values are validated and
+ * normalized when the file is parsed, so a snapshot only ever holds values the commands accept.
+ * </p>
+ */
+public enum ConfigKeyword {
+
+    /** Whether {@code shush init} enables TOTP for all entries: {@code yes}, {@code no} or {@code ask}. */
+    GLOBAL_TOTP("GlobalTOTP", null),
+    /** Default length for {@code shush gen} (8-1024). */
+    GENERATOR_LENGTH("GeneratorLength", null),
+    /** Default age for {@code shush stale}, such as {@code 90d}, {@code 12w} or {@code 1y}. */
+    STALE_AFTER("StaleAfter", null),
+    /** Cipher for new writes: {@code auto}, {@code aes-gcm} or {@code chacha20-poly1305}. */
+    CIPHER("Cipher", "shush.cipher"),
+    /** In-memory entry store: {@code heap} (the default), {@code columnar} or {@code auto} (columnar for large vaults). */
+    ENTRY_STORE("EntryStore", "shush.store"),
+    /** How long labels stay completable after an unlock, such as {@code 8h}; {@code no} keeps no cache. */
+    COMPLETION_CACHE("CompletionCache", null);
+
+    private final String displayName;
+    private final String systemProperty;
+
+    ConfigKeyword(String displayName, String systemProperty) {
+        this.displayName = displayName;
+        this.systemProperty = systemProperty;
+    }
+
+    /** @return the keyword as written in the config file */
+    public String displayName() { return displayName; }
+
+    /** @return the system property this keyword supplies a default for, or {@code null} */
+    public String systemProperty() { return systemProperty; }
+
+    /**
+     * @param name keyword as written, in any case
+     * @return the keyword, or {@code null} if there is none by that name
+     */
+    public static ConfigKeyword byName(String name) {
+        for (ConfigKeyword k : values()) {
+            if (k.displayName.equalsIgnoreCase(name)) return k;
+        }
+        return null;
+    }
+
+    /**
+     * @param raw value as written
+     * @return the normalized value
+     * @throws IllegalArgumentException if the value is not valid for this keyword
+     */
+    String validate(String raw) {
+        String v = raw.trim().toLowerCase(Locale.ROOT);
+        switch (this) {
+            case GLOBAL_TOTP:
+                return choice(v, "yes", "no", "ask");
+            case GENERATOR_LENGTH:
+                try {
+                    int n = Integer.parseInt(v);
+                    if (n >= 8 && n <= 1024) return Integer.toString(n);
+                } catch (NumberFormatException e) {
+                    // reported below
+                }
+                throw new IllegalArgumentException(displayName + " must be a number between 8 and 1024, not '" + raw + "'");
+            case STALE_AFTER:
+                if (isAge(v)) return v;
+                throw new IllegalArgumentException(displayName + " must be an age such as 90d, 12w, 36h or 1y, not '" + raw + "'");
+            case CIPHER:
+                return choice(v, "auto", "aes-gcm", "chacha20-poly1305");
+            case ENTRY_STORE:
+                return choice(v, "auto", "heap", "columnar");
+            case COMPLETION_CACHE:
+                if ("no".equals(v) || isAge(v)) return v;
+                throw new IllegalArgumentException(displayName + " must be 'no' or an age such as 8h or 1d, not '" + raw + "'");
+            default:
+                throw new IllegalStateException("unhandled keyword " + this);
+        }
+    }
+
+    /** @return true for {@code (0|[1-9][0-9]{0,8})[hdwy]?}; no regex, so snapshot loads do not initialize one */
+    private static boolean isAge(String v) {
+        int digits = v.length() - ("hdwy".indexOf(v.isEmpty() ? ' ' : v.charAt(v.length() - 1)) >= 0 ? 1 : 0);
+        if (digits < 1 || digits > 9 || (v.charAt(0) == '0' && digits > 1)) return false;
+        for (int i = 0; i < digits; i++) {
+            if (v.charAt(i) < '0' || v.charAt(i) > '9') return false;
+        }
+        return true;
+    }
+
+    private String choice(String v, String... allowed) {
+        for (String a : allowed) {
+            if (a.equals(v)) return a;
+        }
+        throw new IllegalArgumentException(displayName + " must be one of " + String.join(", ", allowed) + ", not '" + v + "'");
+    }
+}
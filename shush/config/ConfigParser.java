@@ -0,0 +1,238 @@
+package shush.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses the text config into a {@link ShushConfig}.
+ * <p>
+ * Syntax follows {@code sshd_config}: one {@code Keyword value} per line ({@code Keyword=value}
+ * works too), {@code #} comments, case-insensitive keywords, and double quotes around values that
+ * contain spaces. {@code Include} takes one or more paths, relative to the main file's directory,
+ * whose file names may be globs; matches are read in lexical order as if pasted in place, so an
+ * included file may open {@code Match} blocks of its own. A glob matching nothing is fine; a
+ * plain path that does not exist is an error.
+ * </p>
+ * Every file read, and every directory a glob was expanded in, is recorded with its mtime, size
+ * and SHA-256 so {@link ConfigSnapshot} can tell when the text must be parsed again.
+ */
+final class ConfigParser {
+
+    private static final int MAX_INCLUDE_DEPTH = 16;
+
+    private final Path base;
+    private final List<ShushConfig.Block> blocks = new ArrayList<>();
+    private final List<ShushConfig.Source> sources = new ArrayList<>();
+    private BlockBuilder current;
+
+    private ConfigParser(Path base) {
+        this.base = base;
+    }
+
+    /**
+     * @param file main config file
+     * @return the parsed config
+     * @throws IOException              if a file cannot be read
+     * @throws IllegalArgumentException if the text is invalid; the message names file and line
+     */
+    static ShushConfig parse(Path file) throws IOException {
+        Path main = file.toAbsolutePath().normalize();
+        ConfigParser p = new ConfigParser(main.getParent());
+        p.current = new BlockBuilder(true, List.of());
+        p.readFile(main, 0);
+        p.finishBlock();
+        return new ShushConfig(p.blocks, p.sources);
+    }
+
+    // ---- helpers ----
+
+    private void readFile(Path file, int depth) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class); // before reading, so a racing edit looks stale
+        byte[] bytes = Files.readAllBytes(file);
+        sources.add(new ShushConfig.Source(file, false, attrs.lastModifiedTime().toMillis(), attrs.size(), sha256(bytes)));
+        String[] lines = new String(bytes, StandardCharsets.UTF_8).split("\\R", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String where = file.getFileName() + ":" + (i + 1);
+            try {
+                line(lines[i], depth);
+            } catch (NestedError e) {
+                throw e;
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(where + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void line(String raw, int depth) throws IOException {
+        String line = raw.trim();
+        if (line.isEmpty() || line.startsWith("#")) return;
+        int split = 0;
+        while (split < line.length() && !Character.isWhitespace(line.charAt(split)) && line.charAt(split) != '=') split++;
+        String keyword = line.substring(0, split);
+        String rest = line.substring(split).trim();
+        if (rest.startsWith("=")) rest = rest.substring(1).trim();
+        List<String> args = tokens(rest);
+        if (args.isEmpty()) throw new IllegalArgumentException("missing value for " + keyword);
+
+        if ("Include".equalsIgnoreCase(keyword)) {
+            if (depth >= MAX_INCLUDE_DEPTH) throw new IllegalArgumentException("Include nested more than " + MAX_INCLUDE_DEPTH + " deep");
+            for (String pattern : args) include(pattern, depth);
+        } else if ("Match".equalsIgnoreCase(keyword)) {
+            finishBlock();
+            current = new BlockBuilder(false, criteria(args));
+        } else {
+            ConfigKeyword k = ConfigKeyword.byName(keyword);
+            if (k == null) throw new IllegalArgumentException("unknown keyword '" + keyword + "'");
+            if (args.size() != 1) throw new IllegalArgumentException(keyword + " takes one value");
+            current.keys.add(k);
+            current.values.add(k.validate(args.get(0)));
+        }
+    }
+
+    private void include(String pattern, int depth) throws IOException {
+        Path target = base.resolve(pattern).normalize();
+        String name = target.getFileName() == null ? "" : target.getFileName().toString();
+        if (!isGlob(name)) {
+            try {
+                readNested(target, depth);
+            } catch (NoSuchFileException e) {
+                throw new IllegalArgumentException("Include: no such file " + target);
+            }
+            return;
+        }
+        Path dir = target.getParent();
+        long mtime = Files.isDirectory(dir) ? Files.getLastModifiedTime(dir).toMillis() : 0; // before listing, as above
+        List<Path> matches = expand(target);
+        sources.add(new ShushConfig.Source(target, true, mtime, matches.size(), listingHash(target, matches)));
+        for (Path p : matches) readNested(p, depth);
+    }
+
+    /**
+     * @param glob absolute path whose file name is a glob
+     * @return regular files matching it, in lexical order; empty if the directory does not exist
+     */
+    static List<Path> expand(Path glob) throws IOException {
+        Path dir = glob.getParent();
+        List<Path> matches = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return matches;
+        PathMatcher m = dir.getFileSystem().getPathMatcher("glob:" + glob.getFileName());
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (m.matches(p.getFileName()) && Files.isRegularFile(p)) matches.add(p);
+            }
+        }
+        matches.sort(null);
+        return matches;
+    }
+
+    /** @return SHA-256 over the glob and the names it matched */
+    static byte[] listingHash(Path glob, List<Path> matches) {
+        StringBuilder names = new StringBuilder(glob.getFileName().toString()).append('\n');
+        for (Path p : matches) names.append(p.getFileName()).append('\n');
+        return sha256(names.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Reads an included file; its errors already carry their own file and line. */
+    private void readNested(Path file, int depth) throws IOException {
+        try {
+            readFile(file, depth + 1);
+        } catch (NestedError e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            throw new NestedError(e.getMessage());
+        }
+    }
+
+    private static List<ShushConfig.Criterion> criteria(List<String> args) {
+        List<ShushConfig.Criterion> out = new ArrayList<>();
+        if (args.size() == 1 && "all".equalsIgnoreCase(args.get(0))) return out;
+        if (args.size() % 2 != 0) throw new IllegalArgumentException("Match takes 'All' or pairs of criterion and patterns");
+        for (int i = 0; i < args.size(); i += 2) {
+            String kind = args.get(i).toLowerCase(Locale.ROOT);
+            String patterns = args.get(i + 1);
+            for (String p : patterns.split(",", -1)) {
+                if (p.trim().isEmpty() || "!".equals(p.trim())) throw new IllegalArgumentException("empty pattern in '" + patterns + "'");
+            }
+            switch (kind) {
+                case "vault": out.add(new ShushConfig.Criterion(ShushConfig.VAULT, patterns)); break;
+                case "command": out.add(new ShushConfig.Criterion(ShushConfig.COMMAND, patterns)); break;
+                default: throw new IllegalArgumentException("unknown Match criterion '" + args.get(i) + "' (use Vault, Command or All)");
+            }
+        }
+        return out;
+    }
+
+    /** Splits on whitespace, keeping double-quoted runs together. */
+    private static List<String> tokens(String s) {
+        List<String> out = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = s.indexOf('"', i + 1);
+                if (end < 0) throw new IllegalArgumentException("unterminated quote");
+                out.add(s.substring(i + 1, end));
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < s.length() && !Character.isWhitespace(s.charAt(end))) end++;
+                out.add(s.substring(i, end));
+                i = end;
+            }
+        }
+        return out;
+    }
+
+    private void finishBlock() {
+        if (current.global || !current.keys.isEmpty()) {
+            blocks.add(new ShushConfig.Block(current.global, List.copyOf(current.criteria), List.copyOf(current.keys), List.copyOf(current.values)));
+        }
+    }
+
+    private static boolean isGlob(String name) {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0 || name.indexOf('[') >= 0 || name.indexOf('{') >= 0;
+    }
+
+    static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /** Block under construction. */
+    private static final class BlockBuilder {
+        final boolean global;
+        final List<ShushConfig.Criterion> criteria;
+        final List<ConfigKeyword> keys = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+
+        BlockBuilder(boolean global, List<ShushConfig.Criterion> criteria) {
+            this.global = global;
+            this.criteria = criteria;
+        }
+    }
+
+    /** An error from an included file, already prefixed with that file and line. */
+    private static final class NestedError extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        NestedError(String message) {
+            super(message);
+        }
+    }
+}
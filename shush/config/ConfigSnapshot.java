@@ -0,0 +1,269 @@
+package shush.config;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary form of a parsed {@link ShushConfig}, so CLI runs skip the text parser.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * [ "SHCF" ][ version u8 ][ 3 reserved ][ body length i32 ][ CRC32C of body i32 ]
+ * body:
+ *   u16 string count, then [ u16 length ][ UTF-8 ] each
+ *   u16 source count, then [ u8 directory ][ u16 path ][ mtime i64 ][ size i64 ][ SHA-256 ] each
+ *   u16 block count, then [ u8 global ][ u8 criteria ]{ [ u8 kind ][ u16 patterns ] }
+ *                         [ u16 directives ]{ [ u16 keyword ][ u16 value ] } each
+ * </pre>
+ * Strings are referenced by index; keywords are stored by name so a reordered
+ * {@link ConfigKeyword} never misreads an old snapshot.
+ * </p>
+ * A snapshot is only used while every source still matches: a source whose mtime and size are
+ * unchanged is taken as is; otherwise its content (or, for an {@code Include} glob, the matching
+ * names) is hashed and compared, so a touched but unchanged file costs one read instead of a
+ * re-parse. Sources modified within {@value #RACY_MILLIS} ms before the snapshot was written are
+ * always hashed, since an edit in the same clock tick would leave mtime and size alone. The file
+ * is memory-mapped, checksummed in place and decoded in one pass.
+ */
+final class ConfigSnapshot {
+
+    private static final byte[] MAGIC = new byte[]{0x53, 0x48, 0x43, 0x46}; // "SHCF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int HASH_SIZE = 32;
+    private static final long RACY_MILLIS = 2000; // coarsest common mtime granularity (FAT)
+
+    /** A snapshot that is still valid, and whether some source was touched since it was written. */
+    static final class Loaded {
+        final ShushConfig config;
+        final boolean refreshed;
+
+        Loaded(ShushConfig config, boolean refreshed) {
+            this.config = config;
+            this.refreshed = refreshed;
+        }
+    }
+
+    private ConfigSnapshot() { /* no instances */ }
+
+    /**
+     * @param snapshot snapshot file
+     * @param main     main config file it must have been built from
+     * @return the config, or {@code null} if the snapshot is missing, damaged or out of date
+     */
+    static Loaded read(Path snapshot, Path main) {
+        ShushConfig decoded;
+        long writtenAt;
+        try (FileChannel ch = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            writtenAt = Files.getLastModifiedTime(snapshot).toMillis();
+            long size = ch.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) return null;
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            decoded = decode(b);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+        if (decoded == null || decoded.sources().isEmpty()
+                || !decoded.sources().get(0).path.equals(main.toAbsolutePath().normalize())) {
+            return null;
+        }
+        List<ShushConfig.Source> current = new ArrayList<>(decoded.sources().size());
+        boolean refreshed = false;
+        try {
+            for (ShushConfig.Source s : decoded.sources()) {
+                ShushConfig.Source now = recheck(s, s.mtime + RACY_MILLIS >= writtenAt);
+                if (now == null) return null;
+                refreshed |= now != s;
+                current.add(now);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new Loaded(refreshed ? new ShushConfig(decoded.blocks(), current) : decoded, refreshed);
+    }
+
+    /**
+     * Writes a snapshot atomically.
+     *
+     * @param snapshot snapshot file
+     * @param config   parsed config
+     * @throws IOException              if it cannot be written
+     * @throws IllegalArgumentException if the config is too large for the format
+     */
+    static void write(Path snapshot, ShushConfig config) throws IOException {
+        byte[] body = encode(config);
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        out.put(MAGIC).put((byte) VERSION).put(new byte[3]).putInt(body.length).putInt(crc(body, 0, body.length)).put(body);
+        Path dir = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, snapshot.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, out.array());
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // ---- helpers ----
+
+    /** @return {@code s} if unchanged, a refreshed source if touched but equal, or {@code null} if changed */
+    private static ShushConfig.Source recheck(ShushConfig.Source s, boolean racy) throws IOException {
+        if (s.directory) {
+            Path dir = s.path.getParent();
+            long mtime = Files.isDirectory(dir) ? Files.getLastModifiedTime(dir).toMillis() : 0;
+            if (mtime == s.mtime && !racy) return s;
+            List<Path> matches = ConfigParser.expand(s.path);
+            if (matches.size() != s.size || !Arrays.equals(ConfigParser.listingHash(s.path, matches), s.hash)) return null;
+            return settled(s, mtime, racy) ? s : new ShushConfig.Source(s.path, true, mtime, s.size, s.hash);
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(s.path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        long mtime = attrs.lastModifiedTime().toMillis();
+        if (mtime == s.mtime && attrs.size() == s.size && !racy) return s;
+        if (attrs.size() != s.size || !Arrays.equals(ConfigParser.sha256(Files.readAllBytes(s.path)), s.hash)) return null;
+        return settled(s, mtime, racy) ? s : new ShushConfig.Source(s.path, false, mtime, s.size, s.hash);
+    }
+
+    /**
+     * @return true if a verified source needs no rewrite: its mtime is unchanged and a new
+     *         snapshot would still find it racy
+     */
+    private static boolean settled(ShushConfig.Source s, long mtime, boolean racy) {
+        return mtime == s.mtime && !(racy && System.currentTimeMillis() > s.mtime + RACY_MILLIS);
+    }
+
+    private static byte[] encode(ShushConfig config) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (ShushConfig.Source s : config.sources()) intern(strings, s.path.toString());
+        for (ShushConfig.Block b : config.blocks()) {
+            for (ShushConfig.Criterion c : b.criteria) intern(strings, c.patterns);
+            for (int i = 0; i < b.keys.size(); i++) {
+                intern(strings, b.keys.get(i).displayName());
+                intern(strings, b.values.get(i));
+            }
+        }
+        int size = 6;
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        for (String s : strings.keySet()) {
+            byte[] e = s.getBytes(StandardCharsets.UTF_8);
+            if (e.length > 0xFFFF) throw new IllegalArgumentException("config string too long for a snapshot");
+            encoded.add(e);
+            size += 2 + e.length;
+        }
+        size += config.sources().size() * (1 + 2 + 8 + 8 + HASH_SIZE);
+        for (ShushConfig.Block b : config.blocks()) size += 2 + b.criteria.size() * 3 + 2 + b.keys.size() * 4;
+        checkCount(strings.size());
+        checkCount(config.sources().size());
+        checkCount(config.blocks().size());
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putShort((short) encoded.size());
+        for (byte[] e : encoded) out.putShort((short) e.length).put(e);
+        out.putShort((short) config.sources().size());
+        for (ShushConfig.Source s : config.sources()) {
+            out.put((byte) (s.directory ? 1 : 0)).putShort(strings.get(s.path.toString()).shortValue())
+                    .putLong(s.mtime).putLong(s.size).put(s.hash);
+        }
+        out.putShort((short) config.blocks().size());
+        for (ShushConfig.Block b : config.blocks()) {
+            if (b.criteria.size() > 0xFF) throw new IllegalArgumentException("too many Match criteria for a snapshot");
+            checkCount(b.keys.size());
+            out.put((byte) (b.global ? 1 : 0)).put((byte) b.criteria.size());
+            for (ShushConfig.Criterion c : b.criteria) out.put((byte) c.kind).putShort(strings.get(c.patterns).shortValue());
+            out.putShort((short) b.keys.size());
+            for (int i = 0; i < b.keys.size(); i++) {
+                out.putShort(strings.get(b.keys.get(i).displayName()).shortValue()).putShort(strings.get(b.values.get(i)).shortValue());
+            }
+        }
+        return out.array();
+    }
+
+    /** @return the config, or {@code null} if the header or checksum is wrong */
+    private static ShushConfig decode(ByteBuffer b) {
+        byte[] magic = new byte[4];
+        b.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || b.get() != VERSION) return null;
+        b.position(8);
+        int length = b.getInt();
+        int expected = b.getInt();
+        if (length != b.remaining()) return null;
+        ByteBuffer in = b.slice();
+        CRC32C crc = new CRC32C();
+        crc.update(in.duplicate());
+        if ((int) crc.getValue() != expected) return null;
+
+        String[] strings = new String[Short.toUnsignedInt(in.getShort())];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] s = new byte[Short.toUnsignedInt(in.getShort())];
+            in.get(s);
+            strings[i] = new String(s, StandardCharsets.UTF_8);
+        }
+        int sourceCount = Short.toUnsignedInt(in.getShort());
+        List<ShushConfig.Source> sources = new ArrayList<>(sourceCount);
+        for (int i = 0; i < sourceCount; i++) {
+            boolean dir = in.get() != 0;
+            Path path = Path.of(strings[Short.toUnsignedInt(in.getShort())]);
+            long mtime = in.getLong(), size = in.getLong();
+            byte[] hash = new byte[HASH_SIZE];
+            in.get(hash);
+            sources.add(new ShushConfig.Source(path, dir, mtime, size, hash));
+        }
+        int blockCount = Short.toUnsignedInt(in.getShort());
+        List<ShushConfig.Block> blocks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            boolean global = in.get() != 0;
+            int criteriaCount = Byte.toUnsignedInt(in.get());
+            List<ShushConfig.Criterion> criteria = new ArrayList<>(criteriaCount);
+            for (int c = 0; c < criteriaCount; c++) {
+                int kind = in.get();
+                criteria.add(new ShushConfig.Criterion(kind, strings[Short.toUnsignedInt(in.getShort())]));
+            }
+            int directives = Short.toUnsignedInt(in.getShort());
+            List<ConfigKeyword> keys = new ArrayList<>(directives);
+            List<String> values = new ArrayList<>(directives);
+            for (int d = 0; d < directives; d++) {
+                ConfigKeyword k = ConfigKeyword.byName(strings[Short.toUnsignedInt(in.getShort())]);
+                if (k == null) return null; // written by a build with other keywords
+                keys.add(k);
+                values.add(strings[Short.toUnsignedInt(in.getShort())]);
+            }
+            blocks.add(new ShushConfig.Block(global, List.copyOf(criteria), List.copyOf(keys), List.copyOf(values)));
+        }
+        return new ShushConfig(blocks, sources);
+    }
+
+    private static void intern(Map<String, Integer> strings, String s) {
+        strings.putIfAbsent(s, strings.size());
+    }
+
+    private static void checkCount(int n) {
+        if (n > 0xFFFF) throw new IllegalArgumentException("config too large for a snapshot");
+    }
+
+    private static int crc(byte[] data, int off, int len) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, off, len);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,218 @@
+package shush.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The config of one Shush home: {@code <home>/config}, loaded through a binary snapshot.
+ * <p>
+ * The first run after an edit parses the text ({@link ConfigParser}) and writes
+ * {@code <home>/.config.snapshot}; later runs memory-map the snapshot instead and only stat the
+ * files it was built from ({@link ConfigSnapshot}). Without a config file nothing is read beyond
+ * one stat and every setting keeps the command's default. A snapshot that cannot be written, for
+ * example in a read-only home, only costs the next run a parse.
+ * </p>
+ * Long-running processes call {@link #watch()}: a daemon thread watches the directories of every
+ * source file and reloads on change, so {@link #current()} returns the new settings and listeners
+ * hear about them. A reload that fails to parse keeps the previous config and is reported on
+ * stderr and by {@link #lastError()}, as {@code sshd} keeps running on a bad {@code SIGHUP}.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * ConfigSource config = new ConfigSource(home);
+ * int length = config.current().resolve("gen", () -> "work").getInt(ConfigKeyword.GENERATOR_LENGTH, 20);
+ * config.watch();
+ * config.addListener(c -> System.err.println("config reloaded"));
+ * }</pre>
+ */
+public final class ConfigSource implements Closeable {
+
+    /** Name of the config file in the Shush home. */
+    public static final String FILE = "config";
+    private static final String SNAPSHOT = ".config.snapshot";
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    private final Path file;
+    private final Path snapshot;
+    private final List<Consumer<ShushConfig>> listeners = new CopyOnWriteArrayList<>();
+    private volatile ShushConfig config; // null until first loaded
+    private volatile String lastError;
+    private WatchService watcher;        // guarded by this
+    private Thread thread;               // guarded by this
+
+    /**
+     * @param home Shush home directory
+     */
+    public ConfigSource(Path home) {
+        this.file = home.resolve(FILE).toAbsolutePath().normalize();
+        this.snapshot = home.resolve(SNAPSHOT).toAbsolutePath().normalize();
+    }
+
+    /** @return the config file (which may not exist) */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the config, loaded on first use
+     * @throws IllegalArgumentException if the config file is invalid; the message names file and line
+     * @throws UncheckedIOException     if a config file cannot be read
+     */
+    public ShushConfig current() {
+        ShushConfig c = config;
+        if (c == null) {
+            synchronized (this) {
+                c = config;
+                if (c == null) {
+                    try {
+                        c = load(file, snapshot);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot read " + file + ": " + e.getMessage(), e);
+                    }
+                    config = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Starts reloading on change; does nothing if already watching.
+     *
+     * @throws IOException if the directories cannot be watched
+     */
+    public synchronized void watch() throws IOException {
+        if (thread != null) return;
+        current();
+        watcher = file.getFileSystem().newWatchService();
+        register(watcher, config);
+        thread = new Thread(this::run, "shush-config-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** @param listener called on the watch thread with each reloaded config */
+    public void addListener(Consumer<ShushConfig> listener) {
+        listeners.add(listener);
+    }
+
+    /** @return why the last reload failed, or {@code null} if it succeeded */
+    public String lastError() {
+        return lastError;
+    }
+
+    /** Stops watching; {@link #current()} keeps returning the last config. */
+    @Override
+    public synchronized void close() {
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        thread = null;
+        watcher = null;
+    }
+
+    // ---- helpers ----
+
+    /** Loads through the snapshot, parsing and rewriting it when it is missing or stale. */
+    static ShushConfig load(Path file, Path snapshot) throws IOException {
+        if (!Files.exists(file)) return ShushConfig.EMPTY;
+        ConfigSnapshot.Loaded loaded = ConfigSnapshot.read(snapshot, file);
+        if (loaded != null) {
+            if (loaded.refreshed) tryWrite(snapshot, loaded.config);
+            return loaded.config;
+        }
+        ShushConfig parsed = ConfigParser.parse(file);
+        tryWrite(snapshot, parsed);
+        return parsed;
+    }
+
+    private static void tryWrite(Path snapshot, ShushConfig config) {
+        try {
+            ConfigSnapshot.write(snapshot, config);
+        } catch (IOException | IllegalArgumentException e) {
+            // the snapshot is only a cache; the next run parses again
+        }
+    }
+
+    private void run() {
+        WatchService ws;
+        synchronized (this) {
+            ws = watcher;
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = ws.take();
+                // an editor's save is several events; let them settle into one reload
+                do {
+                    key.pollEvents();
+                    key.reset();
+                } while ((key = ws.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                reload(ws);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void reload(WatchService ws) {
+        ShushConfig previous = config;
+        ShushConfig next;
+        try {
+            next = load(file, snapshot);
+            lastError = null;
+        } catch (IOException | IllegalArgumentException e) {
+            lastError = e.getMessage();
+            System.err.println("shush: config not reloaded, keeping the previous one: " + e.getMessage());
+            return;
+        }
+        if (sameSources(previous, next)) return;
+        config = next;
+        try {
+            register(ws, next); // includes may have moved to other directories
+        } catch (IOException e) {
+            lastError = e.getMessage();
+        }
+        for (Consumer<ShushConfig> l : listeners) l.accept(next);
+    }
+
+    /** Watches the home and every directory a source lives in. */
+    private void register(WatchService ws, ShushConfig c) throws IOException {
+        Set<Path> dirs = new LinkedHashSet<>();
+        dirs.add(file.getParent());
+        for (ShushConfig.Source s : c.sources()) dirs.add(s.path.getParent());
+        for (Path d : dirs) {
+            if (Files.isDirectory(d)) {
+                d.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    /** @return true if both were built from the same files with the same content */
+    private static boolean sameSources(ShushConfig a, ShushConfig b) {
+        if (a == null || a.sources().size() != b.sources().size()) return false;
+        for (int i = 0; i < a.sources().size(); i++) {
+            ShushConfig.Source x = a.sources().get(i), y = b.sources().get(i);
+            if (!x.path.equals(y.path) || !Arrays.equals(x.hash, y.hash)) return false;
+        }
+        return true;
+    }
+}
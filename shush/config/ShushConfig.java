@@ -0,0 +1,246 @@
+package shush.config;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A parsed and validated Shush config: global settings plus {@code Match} blocks, in the spirit
+ * of {@code sshd_config}.
+ * <p>
+ * Example {@code <home>/config}:
+ * <pre>
+ * GeneratorLength 24
+ * StaleAfter 180d
+ * Include config.d/*.conf
+ *
+ * Match Vault work,prod-*
+ *     GlobalTOTP yes
+ *     StaleAfter 30d
+ *
+ * Match Command gen Vault !personal
+ *     GeneratorLength 32
+ * </pre>
+ * Settings are resolved for one command and vault: for each keyword, the first value from a
+ * matching {@code Match} block wins, otherwise the first global value. A {@code Match} block
+ * runs until the next {@code Match}; {@code Match All} returns to settings that apply everywhere
+ * but still take precedence over the global section. Criteria are {@code Vault}, {@code Command}
+ * and {@code All}; each takes a comma-separated pattern list with {@code *}, {@code ?} and
+ * {@code !} negation, and all criteria of a block must match.
+ * </p>
+ * Instances are immutable and come from {@link ConfigSource}, which parses the text once and
+ * keeps a binary snapshot for later runs.
+ */
+public final class ShushConfig {
+
+    /** No config file: every setting falls back to the command's default. */
+    public static final ShushConfig EMPTY = new ShushConfig(List.of(), List.of());
+
+    /** Criterion kinds, as stored in snapshots. */
+    static final int VAULT = 1, COMMAND = 2;
+
+    /** One {@code Match} criterion: a kind and a pattern list. */
+    static final class Criterion {
+        final int kind;
+        final String patterns;
+
+        Criterion(int kind, String patterns) {
+            this.kind = kind;
+            this.patterns = patterns;
+        }
+    }
+
+    /** The global section or one {@code Match} block. */
+    static final class Block {
+        final boolean global;
+        final List<Criterion> criteria;   // empty for the global section and Match All
+        final List<ConfigKeyword> keys;
+        final List<String> values;
+
+        Block(boolean global, List<Criterion> criteria, List<ConfigKeyword> keys, List<String> values) {
+            this.global = global;
+            this.criteria = criteria;
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    /** A file the config was read from, or a directory an {@code Include} glob was expanded in. */
+    static final class Source {
+        final Path path;
+        final boolean directory;
+        final long mtime;
+        final long size;     // bytes of a file; matching entries of a directory
+        final byte[] hash;   // SHA-256 of the file, or of the directory's matching names
+
+        Source(Path path, boolean directory, long mtime, long size, byte[] hash) {
+            this.path = path;
+            this.directory = directory;
+            this.mtime = mtime;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    private final List<Block> blocks;
+    private final List<Source> sources;
+
+    ShushConfig(List<Block> blocks, List<Source> sources) {
+        this.blocks = List.copyOf(blocks);
+        this.sources = List.copyOf(sources);
+    }
+
+    List<Block> blocks() {
+        return blocks;
+    }
+
+    List<Source> sources() {
+        return sources;
+    }
+
+    /**
+     * Resolves the settings for one command run.
+     *
+     * @param command command name, such as {@code gen}
+     * @param vault   supplies the vault name; only called if a block matches on it, and may return {@code null}
+     * @return the settings
+     */
+    public Settings resolve(String command, Supplier<String> vault) {
+        Map<ConfigKeyword, String> values = new EnumMap<>(ConfigKeyword.class);
+        String vaultName = null;
+        boolean vaultKnown = false;
+        for (Block b : blocks) {
+            if (b.global) continue;
+            boolean matches = true;
+            for (Criterion c : b.criteria) {
+                String subject;
+                if (c.kind == VAULT) {
+                    if (!vaultKnown) {
+                        vaultName = vault.get();
+                        vaultKnown = true;
+                    }
+                    subject = vaultName;
+                } else {
+                    subject = command;
+                }
+                if (subject == null || !matchesList(c.patterns, subject)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) collect(b, values);
+        }
+        for (Block b : blocks) {
+            if (b.global) collect(b, values);
+        }
+        return new Settings(values);
+    }
+
+    /** Settings in effect for one command run; keywords not set in the config read as {@code null}. */
+    public static final class Settings {
+
+        /** Settings of a run without a config file. */
+        public static final Settings DEFAULTS = new Settings(new EnumMap<>(ConfigKeyword.class));
+
+        private final Map<ConfigKeyword, String> values;
+
+        Settings(Map<ConfigKeyword, String> values) {
+            this.values = Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * @param keyword keyword
+         * @return the validated value, or {@code null} if not set
+         */
+        public String get(ConfigKeyword keyword) {
+            return values.get(keyword);
+        }
+
+        /**
+         * @param keyword  keyword
+         * @param fallback value if not set
+         * @return the value, or {@code fallback}
+         */
+        public String get(ConfigKeyword keyword, String fallback) {
+            String v = values.get(keyword);
+            return v != null ? v : fallback;
+        }
+
+        /**
+         * @param keyword  numeric keyword
+         * @param fallback value if not set
+         * @return the value, or {@code fallback}
+         */
+        public int getInt(ConfigKeyword keyword, int fallback) {
+            String v = values.get(keyword);
+            return v != null ? Integer.parseInt(v) : fallback;
+        }
+
+        /**
+         * Supplies the config's values as defaults for the system properties behind
+         * {@link ConfigKeyword#CIPHER} and {@link ConfigKeyword#ENTRY_STORE}. A property given on
+         * the command line ({@code -D}) wins.
+         */
+        public void applySystemProperties() {
+            for (Map.Entry<ConfigKeyword, String> e : values.entrySet()) {
+                String property = e.getKey().systemProperty();
+                if (property == null) continue;
+                if (System.getProperty(property) == null) System.setProperty(property, e.getValue());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return values.toString();
+        }
+    }
+
+    // ---- helpers ----
+
+    private static void collect(Block b, Map<ConfigKeyword, String> into) {
+        for (int i = 0; i < b.keys.size(); i++) into.putIfAbsent(b.keys.get(i), b.values.get(i));
+    }
+
+    /**
+     * {@code sshd_config} pattern lists: the subject matches if any pattern matches and no
+     * {@code !}-negated pattern does.
+     */
+    static boolean matchesList(String patterns, String subject) {
+        boolean matched = false;
+        for (String p : patterns.split(",")) {
+            p = p.trim();
+            if (p.startsWith("!")) {
+                if (glob(p.substring(1), subject)) return false;
+            } else if (glob(p, subject)) {
+                matched = true;
+            }
+        }
+        return matched;
+    }
+
+    /** Case-insensitive {@code *} / {@code ?} match, iterative with single backtracking. */
+    private static boolean glob(String pattern, String subject) {
+        String p = pattern.toLowerCase(Locale.ROOT), s = subject.toLowerCase(Locale.ROOT);
+        int pi = 0, si = 0, star = -1, mark = 0;
+        while (si < s.length()) {
+            if (pi < p.length() && (p.charAt(pi) == '?' || p.charAt(pi) == s.charAt(si))) {
+                pi++;
+                si++;
+            } else if (pi < p.length() && p.charAt(pi) == '*') {
+                star = pi++;
+                mark = si;
+            } else if (star >= 0) {
+                pi = star + 1;
+                si = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (pi < p.length() && p.charAt(pi) == '*') pi++;
+        return pi == p.length();
+    }
+}
@@ -0,0 +1,322 @@
+package shush.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import shush.util.JsonReader;
+
+/**
+ * Streams entries out of a Bitwarden unencrypted JSON export.
+ * <p>
+ * The export is walked with {@link JsonReader}; only the item being read is held in memory, and
+ * values nobody maps (password history, passkeys, ...) are skipped unparsed. Mapping:
+ * <ul>
+ *   <li>{@code name} to the title, {@code login.username}/{@code password}/{@code totp}/{@code uris}
+ *       to their fields, {@code notes} and custom {@code fields} into the comment.</li>
+ *   <li>{@code folderId} to the folder's name, and {@code collectionIds} to tags; both need the
+ *       {@code folders}/{@code collections} arrays ahead of {@code items}, as Bitwarden writes them.</li>
+ *   <li>Cards: number as password, cardholder as username, the rest as fields. Identities, SSH keys
+ *       and secure notes keep their details as fields.</li>
+ *   <li>{@code creationDate}, {@code revisionDate} and {@code login.passwordRevisionDate} to the
+ *       entry timestamps. Items in the trash ({@code deletedDate} set) are skipped.</li>
+ * </ul>
+ * Password-protected ({@code "encrypted": true}) exports are rejected.
+ */
+final class BitwardenJsonReader implements ExportReader {
+
+    private static final int TYPE_LOGIN = 1;
+    private static final int TYPE_CARD = 3;
+    private static final int TYPE_SSH_KEY = 5;
+
+    private final JsonReader json;
+    private final Map<String, String> folders = new HashMap<>();
+    private final Map<String, String> collections = new HashMap<>();
+    private boolean inItems;
+    private boolean done;
+
+    BitwardenJsonReader(InputStream in) throws IOException {
+        this.json = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        json.beginObject();
+    }
+
+    @Override
+    public String getFormat() {
+        return "Bitwarden JSON";
+    }
+
+    @Override
+    public ImportedEntry next() throws IOException {
+        while (!done) {
+            if (inItems) {
+                while (json.hasNext()) {
+                    ImportedEntry e = item();
+                    if (e != null) return e;
+                }
+                json.endArray();
+                inItems = false;
+                continue;
+            }
+            if (!json.hasNext()) {
+                json.endObject();
+                done = true;
+                break;
+            }
+            String name = json.nextName();
+            switch (name) {
+                case "encrypted":
+                    if ("true".equals(json.nextStringOrNull())) {
+                        throw new IllegalArgumentException("Password-protected Bitwarden exports are not supported; "
+                                + "export as .json (unencrypted) instead");
+                    }
+                    break;
+                case "folders":
+                    idNames(folders);
+                    break;
+                case "collections":
+                    idNames(collections);
+                    break;
+                case "items":
+                    json.beginArray();
+                    inItems = true;
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    // ---- helpers ----
+
+    /** Reads {@code [{"id": ..., "name": ...}, ...]} into {@code out}. */
+    private void idNames(Map<String, String> out) throws IOException {
+        if (json.peek() == JsonReader.Token.NULL) {
+            json.nextNull();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            String id = null, name = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if ("id".equals(key)) id = json.nextStringOrNull();
+                else if ("name".equals(key)) name = json.nextStringOrNull();
+                else json.skipValue();
+            }
+            json.endObject();
+            if (id != null && name != null) out.put(id, name);
+        }
+        json.endArray();
+    }
+
+    /** @return the next item, or {@code null} if it is in the trash */
+    private ImportedEntry item() throws IOException {
+        ImportedEntry e = new ImportedEntry();
+        int type = TYPE_LOGIN;
+        boolean deleted = false;
+        String folderId = null;
+        Map<String, String> details = new LinkedHashMap<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            switch (key) {
+                case "type":
+                    type = (int) json.nextLong();
+                    break;
+                case "name":
+                    e.title = json.nextStringOrNull();
+                    break;
+                case "notes":
+                    e.notes = json.nextStringOrNull();
+                    break;
+                case "folderId":
+                    folderId = json.nextStringOrNull();
+                    break;
+                case "favorite":
+                    if ("true".equals(json.nextStringOrNull())) e.tags.add("favorite");
+                    break;
+                case "creationDate":
+                    e.createdAt = millis(json.nextStringOrNull());
+                    break;
+                case "revisionDate":
+                    e.updatedAt = millis(json.nextStringOrNull());
+                    break;
+                case "deletedDate":
+                    deleted = json.nextStringOrNull() != null;
+                    break;
+                case "collectionIds":
+                    for (String id : strings()) {
+                        String c = collections.get(id);
+                        if (c != null) e.tags.add(c);
+                    }
+                    break;
+                case "fields":
+                    customFields(e);
+                    break;
+                case "login":
+                    login(e);
+                    break;
+                case "card":
+                case "identity":
+                case "sshKey":
+                case "secureNote":
+                    scalars(details);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (deleted) return null;
+
+        if (folderId != null) e.folder = folders.get(folderId);
+        if (type == TYPE_CARD) {
+            e.password = details.remove("number");
+            e.username = details.remove("cardholderName");
+        } else if (type == TYPE_SSH_KEY) {
+            e.password = details.remove("privateKey");
+        }
+        details.remove("type"); // secureNote.type is always 0
+        for (Map.Entry<String, String> d : details.entrySet()) putField(e, d.getKey(), d.getValue());
+        if (e.rotatedAt == 0) e.rotatedAt = e.createdAt;
+        return e;
+    }
+
+    private void login(ImportedEntry e) throws IOException {
+        if (json.peek() == JsonReader.Token.NULL) {
+            json.nextNull();
+            return;
+        }
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            switch (key) {
+                case "username":
+                    e.username = json.nextStringOrNull();
+                    break;
+                case "password":
+                    e.password = json.nextStringOrNull();
+                    break;
+                case "totp":
+                    e.totp = json.nextStringOrNull();
+                    break;
+                case "passwordRevisionDate":
+                    e.rotatedAt = millis(json.nextStringOrNull());
+                    break;
+                case "uris":
+                    uris(e);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private void uris(ImportedEntry e) throws IOException {
+        if (json.peek() == JsonReader.Token.NULL) {
+            json.nextNull();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            json.beginObject();
+            while (json.hasNext()) {
+                if ("uri".equals(json.nextName())) {
+                    String uri = json.nextStringOrNull();
+                    if (uri != null && !uri.isEmpty()) e.urls.add(uri);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private void customFields(ImportedEntry e) throws IOException {
+        if (json.peek() == JsonReader.Token.NULL) {
+            json.nextNull();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            String name = null, value = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if ("name".equals(key)) name = json.nextStringOrNull();
+                else if ("value".equals(key)) value = json.nextStringOrNull();
+                else json.skipValue();
+            }
+            json.endObject();
+            if (name != null && value != null) putField(e, name, value);
+        }
+        json.endArray();
+    }
+
+    /** Reads an object's scalar members; nested values are skipped. */
+    private void scalars(Map<String, String> out) throws IOException {
+        if (json.peek() == JsonReader.Token.NULL) {
+            json.nextNull();
+            return;
+        }
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            JsonReader.Token t = json.peek();
+            if (t == JsonReader.Token.STRING || t == JsonReader.Token.NUMBER || t == JsonReader.Token.BOOLEAN) {
+                String v = json.nextString();
+                if (!v.isEmpty()) out.put(key, v);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private List<String> strings() throws IOException {
+        List<String> out = new ArrayList<>();
+        if (json.peek() == JsonReader.Token.NULL) {
+            json.nextNull();
+            return out;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            String s = json.nextStringOrNull();
+            if (s != null) out.add(s);
+        }
+        json.endArray();
+        return out;
+    }
+
+    /** Adds a field, suffixing the name if an earlier field already used it. */
+    static void putField(ImportedEntry e, String name, String value) {
+        String key = name;
+        for (int n = 2; e.fields.containsKey(key); n++) key = name + " #" + n;
+        e.fields.put(key, value);
+    }
+
+    private static long millis(String iso) {
+        if (iso == null || iso.isEmpty()) return 0;
+        try {
+            return Instant.parse(iso).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
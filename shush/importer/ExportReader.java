@@ -0,0 +1,58 @@
+package shush.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Pulls entries one at a time from a password-manager export, without reading the whole
+ * document into memory.
+ */
+public interface ExportReader extends Closeable {
+
+    /**
+     * Reads the next entry.
+     *
+     * @return the next entry, or {@code null} at the end of the export
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if the export is malformed or unsupported
+     */
+    ImportedEntry next() throws IOException;
+
+    /** @return name of the export format, for messages */
+    String getFormat();
+
+    /**
+     * Opens an export, choosing the reader by {@code format} or, if that is {@code null}, by the
+     * file extension ({@code .json} for Bitwarden, {@code .xml} for KeePass).
+     *
+     * @param file   export file
+     * @param format {@code "bitwarden"}, {@code "keepass"} or {@code null}
+     * @return a reader positioned at the first entry
+     * @throws IOException              if the file cannot be opened
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    static ExportReader open(Path file, String format) throws IOException {
+        String f = format;
+        if (f == null) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".json")) f = "bitwarden";
+            else if (name.endsWith(".xml")) f = "keepass";
+            else throw new IllegalArgumentException("Cannot tell the format of " + file + "; pass --format bitwarden|keepass");
+        }
+        InputStream in = Files.newInputStream(file);
+        try {
+            switch (f.toLowerCase(Locale.ROOT)) {
+                case "bitwarden": return new BitwardenJsonReader(in);
+                case "keepass": return new KeePassXmlReader(in);
+                default: throw new IllegalArgumentException("Unknown import format '" + format + "'");
+            }
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+}
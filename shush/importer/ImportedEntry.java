@@ -0,0 +1,93 @@
+package shush.importer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One plaintext record read from a password-manager export, before it is sealed into a
+ * {@link shush.vault.VaultEntry}.
+ * <p>
+ * Exporters fill in what they have; every field may be {@code null} (timestamps 0). Instances
+ * are short-lived: {@link VaultImporter} seals and drops them batch by batch.
+ * </p>
+ */
+public final class ImportedEntry {
+
+    String title;
+    String username;
+    String password;
+    String notes;
+    String totp;
+    String folder;
+    final List<String> urls = new ArrayList<>(1);
+    final List<String> tags = new ArrayList<>(1);
+    final Map<String, String> fields = new LinkedHashMap<>();
+    long createdAt;
+    long updatedAt;
+    long rotatedAt;
+
+    ImportedEntry() {
+    }
+
+    /** @return the item's title (Bitwarden name, KeePass Title) */
+    public String getTitle() { return title; }
+
+    /** @return login username */
+    public String getUsername() { return username; }
+
+    /** @return login password (or card number for cards) */
+    public String getPassword() { return password; }
+
+    /** @return free-form notes */
+    public String getNotes() { return notes; }
+
+    /** @return TOTP seed, as a base32 secret or {@code otpauth://} URI */
+    public String getTotp() { return totp; }
+
+    /** @return {@code /}-separated folder path */
+    public String getFolder() { return folder; }
+
+    /** @return login URLs, in export order */
+    public List<String> getUrls() { return Collections.unmodifiableList(urls); }
+
+    /** @return tags */
+    public List<String> getTags() { return Collections.unmodifiableList(tags); }
+
+    /** @return custom fields (and card/identity details), in export order */
+    public Map<String, String> getFields() { return Collections.unmodifiableMap(fields); }
+
+    /** @return creation time in epoch millis, or 0 if the export has none */
+    public long getCreatedAt() { return createdAt; }
+
+    /** @return last modification time in epoch millis, or 0 */
+    public long getUpdatedAt() { return updatedAt; }
+
+    /** @return last password change in epoch millis, or 0 */
+    public long getRotatedAt() { return rotatedAt; }
+
+    /**
+     * Everything that has no field of its own in a vault entry, as {@code name: value} lines:
+     * URLs, TOTP seed, custom fields, then the notes.
+     *
+     * @return the comment text, or {@code null} if there is nothing to say
+     */
+    public String toComment() {
+        StringBuilder sb = new StringBuilder();
+        for (String url : urls) line(sb, "URL", url);
+        line(sb, "TOTP", totp);
+        for (Map.Entry<String, String> f : fields.entrySet()) line(sb, f.getKey(), f.getValue());
+        if (notes != null && !notes.isEmpty()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(notes);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String name, String value) {
+        if (value == null || value.isEmpty()) return;
+        sb.append(name).append(": ").append(value).append('\n');
+    }
+}
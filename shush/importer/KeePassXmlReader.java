@@ -0,0 +1,327 @@
+package shush.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams entries out of a KeePass 2.x XML export (also written by KeePassXC).
+ * <p>
+ * The document is read with StAX, one {@code <Entry>} at a time; binaries, auto-type settings and
+ * everything else without a vault counterpart are skipped. Mapping:
+ * <ul>
+ *   <li>{@code Title}, {@code UserName}, {@code Password}, {@code URL} and {@code Notes} strings to
+ *       their fields; {@code otp} (KeePassXC), {@code TimeOtp-Secret-Base32} (KeePass) and
+ *       {@code TOTP Seed} (KeeOtp) to the TOTP seed; any other string to a custom field.</li>
+ *   <li>The group path, minus the root group, to the folder. The recycle bin is skipped.</li>
+ *   <li>{@code Tags} to tags, {@code CreationTime}/{@code LastModificationTime} to the created and
+ *       updated times. The rotation time is taken from {@code <History>}: the time of the first
+ *       version carrying the current password. Only passwords and times of old versions are read.</li>
+ * </ul>
+ * DTDs and external entities are refused. Values with {@code Protected="True"} come from a raw
+ * KDBX dump and cannot be read without the database's inner stream key.
+ */
+final class KeePassXmlReader implements ExportReader {
+
+    /** Seconds from 0001-01-01 (the KDBX 4 time epoch) to 1970-01-01. */
+    private static final long KDBX_EPOCH_OFFSET = 62_135_596_800L;
+
+    private final InputStream in;
+    private final XMLStreamReader xml;
+    private final List<String> groups = new ArrayList<>();
+    private String recycleBin;
+    private boolean inGroupHeader;
+
+    KeePassXmlReader(InputStream in) throws IOException {
+        this.in = in;
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            this.xml = f.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public String getFormat() {
+        return "KeePass XML";
+    }
+
+    @Override
+    public ImportedEntry next() throws IOException {
+        try {
+            while (xml.hasNext()) {
+                int ev = xml.next();
+                if (ev == XMLStreamConstants.END_ELEMENT) {
+                    if ("Group".equals(xml.getLocalName())) groups.remove(groups.size() - 1);
+                    continue;
+                }
+                if (ev != XMLStreamConstants.START_ELEMENT) continue;
+                switch (xml.getLocalName()) {
+                    case "Meta":
+                        meta();
+                        break;
+                    case "Group":
+                        groups.add(null);
+                        inGroupHeader = true;
+                        break;
+                    case "UUID":
+                        String uuid = xml.getElementText().trim();
+                        if (inGroupHeader && uuid.equals(recycleBin)) {
+                            skipTo("Group");
+                            groups.remove(groups.size() - 1);
+                        }
+                        break;
+                    case "Name":
+                        if (inGroupHeader) groups.set(groups.size() - 1, xml.getElementText().trim());
+                        else skipElement();
+                        break;
+                    case "Entry":
+                        inGroupHeader = false;
+                        return entry();
+                    case "DeletedObjects":
+                        skipElement();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException ignored) {
+        } finally {
+            in.close();
+        }
+    }
+
+    // ---- helpers ----
+
+    /** Reads {@code <Meta>}, keeping only the recycle bin's UUID. */
+    private void meta() throws XMLStreamException {
+        boolean binEnabled = true;
+        String bin = null;
+        int depth = 1;
+        while (depth > 0) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (ev == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if (depth == 1 && "RecycleBinUUID".equals(name)) {
+                    bin = xml.getElementText().trim();
+                } else if (depth == 1 && "RecycleBinEnabled".equals(name)) {
+                    binEnabled = "True".equalsIgnoreCase(xml.getElementText().trim());
+                } else {
+                    skipElement();
+                }
+            }
+        }
+        // An all-zero UUID means "no recycle bin"
+        if (binEnabled && bin != null && !bin.isEmpty() && !bin.equals("AAAAAAAAAAAAAAAAAAAAAA==")) recycleBin = bin;
+    }
+
+    private ImportedEntry entry() throws XMLStreamException {
+        ImportedEntry e = new ImportedEntry();
+        e.folder = folder();
+        long runStart = -1; // start of the trailing run of versions with the same password
+        String lastPassword = null;
+        boolean hasHistory = false;
+
+        while (true) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.END_ELEMENT) break; // </Entry>
+            if (ev != XMLStreamConstants.START_ELEMENT) continue;
+            switch (xml.getLocalName()) {
+                case "String": {
+                    String[] kv = keyValue();
+                    if (kv != null) put(e, kv[0], kv[1]);
+                    break;
+                }
+                case "Tags":
+                    for (String t : xml.getElementText().split("[;,]")) {
+                        String tag = t.trim();
+                        if (!tag.isEmpty()) e.tags.add(tag);
+                    }
+                    break;
+                case "Times": {
+                    long[] times = times();
+                    e.createdAt = times[0];
+                    e.updatedAt = times[1];
+                    break;
+                }
+                case "History":
+                    while (true) {
+                        int h = xml.next();
+                        if (h == XMLStreamConstants.END_ELEMENT) break; // </History>
+                        if (h != XMLStreamConstants.START_ELEMENT) continue;
+                        ImportedEntry old = historyVersion(); // consumes the old <Entry>
+                        String pw = old.password == null ? "" : old.password;
+                        long modified = old.updatedAt;
+                        if (!hasHistory) {
+                            runStart = e.createdAt;
+                            hasHistory = true;
+                        } else if (!pw.equals(lastPassword)) {
+                            runStart = modified;
+                        }
+                        lastPassword = pw;
+                    }
+                    break;
+                default:
+                    skipElement();
+            }
+        }
+
+        if (!hasHistory) e.rotatedAt = e.createdAt;
+        else e.rotatedAt = (e.password == null ? "" : e.password).equals(lastPassword) ? runStart : e.updatedAt;
+        return e;
+    }
+
+    /** Reads one old version inside {@code <History>}, keeping only its password and modification time. */
+    private ImportedEntry historyVersion() throws XMLStreamException {
+        ImportedEntry old = new ImportedEntry();
+        while (true) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.END_ELEMENT) break;
+            if (ev != XMLStreamConstants.START_ELEMENT) continue;
+            String name = xml.getLocalName();
+            if ("String".equals(name)) {
+                String[] kv = keyValue();
+                if (kv != null && "Password".equals(kv[0])) old.password = kv[1];
+            } else if ("Times".equals(name)) {
+                old.updatedAt = times()[1];
+            } else {
+                skipElement();
+            }
+        }
+        return old;
+    }
+
+    /** Reads {@code <String><Key/><Value/></String>}; the cursor is on {@code <String>}. */
+    private String[] keyValue() throws XMLStreamException {
+        String key = null, value = null;
+        while (true) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.END_ELEMENT) break;
+            if (ev != XMLStreamConstants.START_ELEMENT) continue;
+            String name = xml.getLocalName();
+            if ("Key".equals(name)) {
+                key = xml.getElementText();
+            } else if ("Value".equals(name)) {
+                if ("True".equalsIgnoreCase(xml.getAttributeValue(null, "Protected"))) {
+                    throw new IllegalArgumentException("Entry field '" + key + "' is encrypted (Protected=\"True\"); "
+                            + "use KeePass's File > Export > KeePass XML (2.x) instead of a raw database dump");
+                }
+                value = xml.getElementText();
+            } else {
+                skipElement();
+            }
+        }
+        return key == null || value == null || value.isEmpty() ? null : new String[] {key, value};
+    }
+
+    /** @return {@code {CreationTime, LastModificationTime}}; the cursor is on {@code <Times>} */
+    private long[] times() throws XMLStreamException {
+        long[] out = new long[2];
+        while (true) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.END_ELEMENT) break;
+            if (ev != XMLStreamConstants.START_ELEMENT) continue;
+            String name = xml.getLocalName();
+            if ("CreationTime".equals(name)) out[0] = millis(xml.getElementText().trim());
+            else if ("LastModificationTime".equals(name)) out[1] = millis(xml.getElementText().trim());
+            else skipElement();
+        }
+        return out;
+    }
+
+    private static void put(ImportedEntry e, String key, String value) {
+        switch (key) {
+            case "Title": e.title = value; break;
+            case "UserName": e.username = value; break;
+            case "Password": e.password = value; break;
+            case "URL": e.urls.add(value); break;
+            case "Notes": e.notes = value; break;
+            case "otp":
+            case "TimeOtp-Secret-Base32":
+            case "TOTP Seed":
+                if (e.totp == null) e.totp = value;
+                else BitwardenJsonReader.putField(e, key, value);
+                break;
+            default:
+                BitwardenJsonReader.putField(e, key, value);
+        }
+    }
+
+    /** @return the current group path without the root group, or {@code null} at the top */
+    private String folder() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < groups.size(); i++) {
+            String g = groups.get(i);
+            if (g == null || g.isEmpty()) continue;
+            if (sb.length() > 0) sb.append('/');
+            sb.append(g);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /** Skips the element the cursor is on, including its children. */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (ev == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    /** Skips to the end of the enclosing element named {@code name}. */
+    private void skipTo(String name) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int ev = xml.next();
+            if (ev == XMLStreamConstants.START_ELEMENT && name.equals(xml.getLocalName())) depth++;
+            else if (ev == XMLStreamConstants.END_ELEMENT && name.equals(xml.getLocalName())) depth--;
+        }
+    }
+
+    /** Parses an ISO-8601 time, or a KDBX 4 base64 count of seconds since year 1. */
+    private static long millis(String s) {
+        if (s.isEmpty()) return 0;
+        try {
+            return Instant.parse(s).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                byte[] b = Base64.getDecoder().decode(s);
+                if (b.length != 8) return 0;
+                long secs = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN).getLong();
+                return (secs - KDBX_EPOCH_OFFSET) * 1000;
+            } catch (IllegalArgumentException notBase64) {
+                return 0;
+            }
+        }
+    }
+
+    private static IllegalArgumentException malformed(XMLStreamException e) {
+        return new IllegalArgumentException("Malformed KeePass XML: " + e.getMessage(), e);
+    }
+}
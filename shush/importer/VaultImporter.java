@@ -0,0 +1,171 @@
+package shush.importer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import shush.vault.VaultEntry;
+import shush.vault.VaultKey;
+import shush.vault.VaultManager;
+
+/**
+ * Seals entries from an {@link ExportReader} into a vault, batch by batch.
+ * <p>
+ * The import is a two-stage pipeline. The calling thread parses the next batch while the previous
+ * one is sealed on the common pool (fields of a batch in parallel); each sealed batch is then
+ * committed with one {@link VaultManager#addEntries(List, VaultKey)}. At most two batches of
+ * plaintext exist at any time, so memory stays flat however large the export is.
+ * </p>
+ * <p>
+ * Labels are the export titles, made unique against the vault and earlier imports by appending
+ * {@code " (2)"}, {@code " (3)"}, ... Entries with a TOTP seed are tagged {@code totp}; the seed
+ * itself goes into the comment with URLs and custom fields.
+ * </p>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * try (ExportReader r = ExportReader.open(path, null)) {
+ *     int n = new VaultImporter(vaultManager, key).folderPrefix("imported").run(r, null);
+ * }
+ * }</pre>
+ */
+public final class VaultImporter {
+
+    /** Entries per batch: one seal pass and one vault write each. */
+    public static final int BATCH_SIZE = 1000;
+
+    private final VaultManager vaultManager;
+    private final VaultKey key;
+    private final Set<String> labels = new HashSet<>();
+    private String folderPrefix;
+    private int renamed;
+
+    /**
+     * Constructs an importer into {@code vaultManager}.
+     *
+     * @param vaultManager target vault
+     * @param key          unlocked key of that vault; must stay open until {@link #run} returns
+     */
+    public VaultImporter(VaultManager vaultManager, VaultKey key) {
+        this.vaultManager = Objects.requireNonNull(vaultManager, "vaultManager");
+        this.key = Objects.requireNonNull(key, "key");
+    }
+
+    /**
+     * Puts every imported entry under {@code prefix}; the export's folders become subfolders.
+     *
+     * @param prefix folder path, or {@code null} for none
+     * @return this importer
+     */
+    public VaultImporter folderPrefix(String prefix) {
+        this.folderPrefix = VaultEntry.normalizeFolder(prefix);
+        return this;
+    }
+
+    /**
+     * Imports every entry of {@code reader}.
+     *
+     * @param reader   open export; not closed by this method
+     * @param progress called with the running total after each committed batch, or {@code null}
+     * @return number of entries imported
+     * @throws IOException              if the export cannot be read
+     * @throws GeneralSecurityException if sealing fails
+     * @throws IllegalArgumentException if the export is malformed; batches already committed stay imported
+     */
+    public int run(ExportReader reader, IntConsumer progress) throws IOException, GeneralSecurityException {
+        vaultManager.streamEntries().forEach(e -> labels.add(e.getLabel()));
+        final boolean requires2FA = vaultManager.isGlobalTOTPEnabled();
+
+        int total = 0;
+        CompletableFuture<List<VaultEntry>> sealing = null;
+        while (true) {
+            List<ImportedEntry> batch = readBatch(reader);
+            if (sealing != null) {
+                List<VaultEntry> sealed = await(sealing);
+                vaultManager.addEntries(sealed, key);
+                total += sealed.size();
+                if (progress != null) progress.accept(total);
+            }
+            if (batch.isEmpty()) return total;
+            sealing = CompletableFuture.supplyAsync(() -> seal(batch, requires2FA));
+        }
+    }
+
+    /** @return entries whose label was suffixed to keep labels unique, or taken from the URL for want of a title */
+    public int getRenamed() {
+        return renamed;
+    }
+
+    // ---- helpers ----
+
+    private List<ImportedEntry> readBatch(ExportReader reader) throws IOException {
+        List<ImportedEntry> batch = new ArrayList<>(BATCH_SIZE);
+        ImportedEntry e;
+        while (batch.size() < BATCH_SIZE && (e = reader.next()) != null) {
+            // labels are settled here, in export order, so the result does not depend on sealing order
+            e.title = uniqueLabel(e);
+            batch.add(e);
+        }
+        return batch;
+    }
+
+    private String uniqueLabel(ImportedEntry e) {
+        String base = e.title;
+        if (base == null || base.isBlank()) base = e.urls.isEmpty() ? "untitled" : e.urls.get(0);
+        base = base.strip();
+        String label = base;
+        for (int n = 2; !labels.add(label); n++) label = base + " (" + n + ")";
+        if (!label.equals(base) || !base.equals(e.title)) renamed++;
+        return label;
+    }
+
+    private List<VaultEntry> seal(List<ImportedEntry> batch, boolean requires2FA) {
+        return batch.parallelStream().map(e -> {
+            try {
+                return seal(e, requires2FA);
+            } catch (GeneralSecurityException ex) {
+                throw new CompletionException(ex);
+            }
+        }).collect(Collectors.toList());
+    }
+
+    private VaultEntry seal(ImportedEntry e, boolean requires2FA) throws GeneralSecurityException {
+        List<String> tags = new ArrayList<>(e.tags.size() + 1);
+        for (String t : e.tags) tags.add(t.replace(',', ' '));
+        if (e.totp != null && !e.totp.isEmpty()) tags.add("totp");
+        String joinedTags = VaultEntry.joinTags(tags);
+
+        String folder = e.folder;
+        if (folderPrefix != null) folder = folder == null ? folderPrefix : folderPrefix + "/" + folder;
+        folder = VaultEntry.normalizeFolder(folder);
+
+        return new VaultEntry(e.title, key.seal(bytes(e.username)), key.seal(bytes(e.password)),
+                key.seal(bytes(e.toComment())), requires2FA, key.getEpoch(),
+                joinedTags == null ? null : key.sealString(joinedTags),
+                folder == null ? null : key.sealString(folder),
+                e.createdAt, e.updatedAt, e.rotatedAt);
+    }
+
+    private static List<VaultEntry> await(CompletableFuture<List<VaultEntry>> f) throws GeneralSecurityException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GeneralSecurityException) throw (GeneralSecurityException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package shush.remote;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Replica side of log shipping: follows a primary's {@link SnapshotLog} and applies what it finds.
+ * <p>
+ * Each round asks the primary for records after the replica's last sequence number and lets the
+ * primary hold the request until one exists or {@code waitMillis} passes, so new pushes arrive
+ * about one round trip after the primary acknowledged them, and an idle primary costs one request
+ * per {@code waitMillis}. Failures back off exponentially up to five seconds. Rounds go through
+ * the client's shared {@link HttpClient}, so they reuse one kept-alive connection to the primary.
+ * </p>
+ * <p>
+ * Staleness is measured from the primary's answers: after a round in which the replica applied
+ * everything up to the sequence number the primary reported, the replica provably held all of the
+ * primary's data as of the moment the primary read that number. That moment is estimated from
+ * the local request start plus the time the primary says it held the request, which can only
+ * underestimate it, so the staleness reported by {@link #stalenessMillis()} is never too low.
+ * </p>
+ */
+final class LogShipper implements Closeable {
+
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final SnapshotLog log;
+    private final URI primary;
+    private final String token;
+    private final long waitMillis;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile long caughtUpAt; // local time; 0 until the first complete round
+    private volatile String lastError;
+
+    LogShipper(SnapshotLog log, URI primary, String token, long waitMillis) {
+        this.log = log;
+        this.primary = primary;
+        this.token = token;
+        this.waitMillis = waitMillis;
+        this.thread = new Thread(this::run, "shush-log-shipper");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** @return milliseconds since this replica last provably had everything; {@code Long.MAX_VALUE} before that */
+    long stalenessMillis() {
+        long at = caughtUpAt;
+        return at == 0 ? Long.MAX_VALUE : Math.max(0, System.currentTimeMillis() - at);
+    }
+
+    /** @return why the last round failed, or {@code null} if it succeeded */
+    String lastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    // ---- helpers ----
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (!closed) {
+            try {
+                round();
+                lastError = null;
+                backoff = MIN_BACKOFF_MILLIS;
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                lastError = e.getMessage();
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+            }
+        }
+    }
+
+    private void round() throws IOException, InterruptedException {
+        long started = System.currentTimeMillis();
+        HttpRequest.Builder req = HttpRequest.newBuilder(primary.resolve("/v1/log?after=" + log.lastSeq() + "&wait=" + waitMillis))
+                .timeout(Duration.ofMillis(waitMillis + 30_000));
+        if ("http".equals(primary.getScheme())) req.version(HttpClient.Version.HTTP_1_1);
+        if (token != null) req.header("Authorization", "Bearer " + token);
+        HttpResponse<InputStream> r = RemoteClient.http().send(req.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(r.body(), 64 * 1024))) {
+            if (r.statusCode() != 200) throw new IOException("Primary " + primary + " answered " + r.statusCode());
+            long primarySeq = Long.parseLong(r.headers().firstValue(ShushServer.SEQ_HEADER).orElse(""));
+            long waited = Long.parseLong(r.headers().firstValue(ShushServer.WAITED_HEADER).orElse(""));
+            while (true) {
+                SnapshotLog.Record rec;
+                try {
+                    rec = SnapshotLog.Record.readFrom(in);
+                } catch (EOFException e) {
+                    break; // end of this batch (or a cut-off one; the check below catches that)
+                }
+                log.applyReplicated(rec);
+            }
+            if (log.lastSeq() >= primarySeq) caughtUpAt = Math.max(caughtUpAt, started + waited);
+        } catch (NumberFormatException e) {
+            throw new IOException("Primary " + primary + " sent no sequence number", e);
+        }
+    }
+}
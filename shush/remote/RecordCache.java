@@ -0,0 +1,130 @@
+package shush.remote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Local read-through cache of encrypted vault versions fetched by {@link RemoteClient}, one file
+ * per vault in {@code <home>/remote-cache/}.
+ * <p>
+ * Layout:
+ * <pre>
+ * [ "SHC1" ][ seq i64 ][ validatedAt i64 ][ staleness i64 ][ payload CRC32C i32 ][ CRC32C of the preceding 32 bytes ]
+ * [ payload ]
+ * </pre>
+ * An entry records when a server last confirmed it ({@code validatedAt}, local time at the start
+ * of that request) and how far behind the primary that server said it might be. Its data is
+ * therefore at most {@code now - validatedAt + staleness} old, and while that is within the
+ * caller's bound the client answers from the cache without touching the network. Past the bound
+ * the client revalidates with {@code If-None-Match}; a {@code 304} only rewrites the header.
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>Payloads are what the server stores: the vault file encrypted under its master password.
+ *       Files are created owner-only all the same.</li>
+ *   <li>A damaged or torn file reads as a miss and is fetched again.</li>
+ * </ul>
+ */
+final class RecordCache {
+
+    private static final byte[] MAGIC = new byte[]{0x53, 0x48, 0x43, 0x31}; // "SHC1"
+    private static final int HEADER_SIZE = 36;
+
+    /** One cached version. */
+    static final class Entry {
+        final long seq;
+        final long validatedAt;
+        final long staleness;
+        final byte[] payload;
+
+        Entry(long seq, long validatedAt, long staleness, byte[] payload) {
+            this.seq = seq;
+            this.validatedAt = validatedAt;
+            this.staleness = staleness;
+            this.payload = payload;
+        }
+
+        /** @return the most this version can lag the primary at {@code now} */
+        long ageBound(long now) {
+            return Math.max(0, now - validatedAt) + staleness;
+        }
+    }
+
+    private final Path dir;
+
+    RecordCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /** @return the cached version of {@code vault}, or {@code null} on a miss */
+    Entry get(String vault) {
+        Path f = dir.resolve(vault);
+        if (!Files.isRegularFile(f)) return null;
+        try {
+            byte[] all = Files.readAllBytes(f);
+            if (all.length < HEADER_SIZE) return null;
+            ByteBuffer b = ByteBuffer.wrap(all);
+            if (!Arrays.equals(all, 0, 4, MAGIC, 0, 4) || crc(all, 0, HEADER_SIZE - 4) != b.getInt(HEADER_SIZE - 4)) return null;
+            long seq = b.getLong(4), validatedAt = b.getLong(12), staleness = b.getLong(20);
+            byte[] payload = Arrays.copyOfRange(all, HEADER_SIZE, all.length);
+            if (crc(payload, 0, payload.length) != b.getInt(28)) return null;
+            return new Entry(seq, validatedAt, staleness, payload);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Stores a version fetched or pushed just now. */
+    void put(String vault, Entry e) throws IOException {
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, vault, ".tmp"); // owner-only
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer h = header(e);
+                while (h.hasRemaining()) ch.write(h);
+                ByteBuffer p = ByteBuffer.wrap(e.payload);
+                while (p.hasRemaining()) ch.write(p);
+            }
+            Files.move(tmp, dir.resolve(vault), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Records a revalidation ({@code 304}) by rewriting only the header. */
+    void revalidated(String vault, Entry e) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir.resolve(vault), StandardOpenOption.WRITE)) {
+            ByteBuffer h = header(e);
+            long pos = 0;
+            while (h.hasRemaining()) pos += ch.write(h, pos);
+        }
+    }
+
+    /** Drops a vault the servers no longer have. */
+    void remove(String vault) throws IOException {
+        Files.deleteIfExists(dir.resolve(vault));
+    }
+
+    // ---- helpers ----
+
+    private static ByteBuffer header(Entry e) {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+        h.put(MAGIC).putLong(e.seq).putLong(e.validatedAt).putLong(e.staleness).putInt(crc(e.payload, 0, e.payload.length));
+        h.putInt(crc(h.array(), 0, HEADER_SIZE - 4));
+        return h.flip();
+    }
+
+    private static int crc(byte[] data, int off, int len) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, off, len);
+        return (int) crc.getValue();
+    }
+}
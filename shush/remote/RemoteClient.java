@@ -0,0 +1,441 @@
+package shush.remote;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import shush.util.Json;
+
+/**
+ * Client for a group of {@link ShushServer}s: one primary and any number of read replicas.
+ * <p>
+ * Reads go to any server, starting at a random one so a fleet of clients spreads over the
+ * replicas, and fail over to the next when a server is down or refuses because it is staler than
+ * the caller allows. Writes go to the primary: servers are tried in the configured order, and a
+ * replica's refusal names the primary, which is tried next even if it is not configured.
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>All clients in the process share one JDK {@link HttpClient}, so connections, and with
+ *       them TLS sessions, are kept open and reused across requests instead of being set up per
+ *       operation. {@code https} servers are asked for HTTP/2, which multiplexes concurrent
+ *       requests ({@link #fetchAll(List, long)}, {@link #status()}) over a single connection
+ *       when the server or a proxy in front of it speaks it; otherwise, and for plain
+ *       {@code http}, requests use pooled HTTP/1.1 keep-alive connections.</li>
+ *   <li>With a cache directory, fetched versions are kept in a {@link RecordCache} and reused
+ *       without a request for as long as they are provably within the caller's staleness bound;
+ *       after that they are revalidated by ETag (the version number), so an unchanged vault costs
+ *       a {@code 304} and no payload.</li>
+ * </ul>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * RemoteClient client = new RemoteClient(List.of(URI.create("http://127.0.0.1:7002"),
+ *         URI.create("http://127.0.0.1:7001")), null, cacheDir);
+ * RemoteClient.Version v = client.fetch("main", 5000);
+ * long seq = client.push("main", v.getSeq(), payload);
+ * }</pre>
+ */
+public final class RemoteClient {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    /** A version of a vault as served by one server, or by the cache. */
+    public static final class Version {
+        private final long seq;
+        private final byte[] payload;
+        private final URI server;
+        private final long stalenessMillis;
+
+        Version(long seq, byte[] payload, URI server, long stalenessMillis) {
+            this.seq = seq;
+            this.payload = payload;
+            this.server = server;
+            this.stalenessMillis = stalenessMillis;
+        }
+
+        /** @return sequence number of this version */
+        public long getSeq() { return seq; }
+
+        /** @return the encrypted vault file */
+        public byte[] getPayload() { return payload; }
+
+        /** @return server that answered, or {@code null} if the cache did */
+        public URI getServer() { return server; }
+
+        /** @return how far behind the primary this version may be (0 if the primary answered) */
+        public long getStalenessMillis() { return stalenessMillis; }
+
+        /** @return true if no request was made */
+        public boolean isCached() { return server == null; }
+    }
+
+    /** What one server reported about itself. */
+    public static final class ServerStatus {
+        private final URI server;
+        private final Map<String, Object> fields;
+        private final String error;
+
+        ServerStatus(URI server, Map<String, Object> fields, String error) {
+            this.server = server;
+            this.fields = fields;
+            this.error = error;
+        }
+
+        /** @return the server */
+        public URI getServer() { return server; }
+
+        /** @return status fields ({@code role}, {@code seq}, {@code stalenessMillis}, ...), or {@code null} if unreachable */
+        public Map<String, Object> getFields() { return fields; }
+
+        /** @return why the server could not be asked, or {@code null} */
+        public String getError() { return error; }
+    }
+
+    private final List<URI> servers;
+    private final String token;
+    private final RecordCache cache; // null without a cache directory
+
+    /**
+     * @param servers servers to use, primary and replicas in any order
+     * @param token   bearer token, or {@code null}
+     */
+    public RemoteClient(List<URI> servers, String token) {
+        this(servers, token, null);
+    }
+
+    /**
+     * @param servers  servers to use, primary and replicas in any order
+     * @param token    bearer token, or {@code null}
+     * @param cacheDir directory for cached versions, or {@code null} for none
+     */
+    public RemoteClient(List<URI> servers, String token, Path cacheDir) {
+        if (Objects.requireNonNull(servers, "servers").isEmpty()) throw new IllegalArgumentException("No servers configured");
+        this.servers = List.copyOf(servers);
+        this.token = token;
+        this.cache = cacheDir == null ? null : new RecordCache(cacheDir);
+    }
+
+    /**
+     * Fetches the latest version of a vault: from the cache while it is provably fresh enough,
+     * otherwise from the first server that can serve it within the bound.
+     *
+     * @param vault              vault name
+     * @param maxStalenessMillis how far behind the primary the result may be
+     * @return the version, or {@code null} if the vault was never pushed
+     * @throws IOException if no server could answer
+     */
+    public Version fetch(String vault, long maxStalenessMillis) throws IOException {
+        RecordCache.Entry cached = cache == null ? null : cache.get(vault);
+        if (cached != null && cached.ageBound(System.currentTimeMillis()) <= maxStalenessMillis) {
+            return new Version(cached.seq, cached.payload, null, cached.ageBound(System.currentTimeMillis()));
+        }
+        List<String> failures = new ArrayList<>();
+        int start = ThreadLocalRandom.current().nextInt(servers.size());
+        for (int i = 0; i < servers.size(); i++) {
+            URI server = servers.get((start + i) % servers.size());
+            HttpRequest.Builder req = request(server, "/v1/vaults/" + vault)
+                    .header(ShushServer.MAX_STALENESS_HEADER, Long.toString(maxStalenessMillis));
+            if (cached != null) req.header("If-None-Match", etag(cached.seq));
+            long started = System.currentTimeMillis();
+            HttpResponse<byte[]> r;
+            try {
+                r = send(req.GET().build());
+            } catch (IOException e) {
+                failures.add(server + ": " + e.getMessage());
+                continue;
+            }
+            // the server has answered: from here on a cache error must not count against it
+            long staleness = header(r, ShushServer.STALENESS_HEADER, 0);
+            if (r.statusCode() == 304 && cached != null) {
+                try {
+                    cache.revalidated(vault, new RecordCache.Entry(cached.seq, started, staleness, cached.payload));
+                } catch (IOException e) {
+                    cacheFailed(vault, e);
+                }
+                return new Version(cached.seq, cached.payload, server, staleness);
+            }
+            if (r.statusCode() == 200) {
+                long seq = header(r, ShushServer.SEQ_HEADER, -1);
+                if (seq < 0) {
+                    failures.add(server + ": no version in the response");
+                    continue;
+                }
+                try {
+                    if (cache != null) cache.put(vault, new RecordCache.Entry(seq, started, staleness, r.body()));
+                } catch (IOException e) {
+                    cacheFailed(vault, e);
+                }
+                return new Version(seq, r.body(), server, staleness);
+            }
+            if (r.statusCode() == 404) {
+                try {
+                    if (cache != null) cache.remove(vault);
+                } catch (IOException e) {
+                    cacheFailed(vault, e);
+                }
+                return null;
+            }
+            failures.add(server + ": " + describe(r));
+        }
+        throw new IOException("No server could serve '" + vault + "': " + String.join("; ", failures));
+    }
+
+    /**
+     * Fetches several vaults concurrently; see {@link #fetch(String, long)}.
+     *
+     * @param vaults             vault names
+     * @param maxStalenessMillis how far behind the primary each result may be
+     * @return versions by vault name, in the given order; {@code null} values for vaults never pushed
+     * @throws IOException if a vault could not be fetched from any server
+     */
+    public Map<String, Version> fetchAll(List<String> vaults, long maxStalenessMillis) throws IOException {
+        Map<String, CompletableFuture<Version>> pending = new LinkedHashMap<>();
+        for (String v : vaults) {
+            pending.put(v, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetch(v, maxStalenessMillis);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        Map<String, Version> out = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Version>> e : pending.entrySet()) {
+            try {
+                out.put(e.getKey(), e.getValue().join());
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof IOException) throw (IOException) ce.getCause();
+                throw ce;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Stores a new version of a vault on the primary (and in the cache).
+     *
+     * @param vault   vault name
+     * @param baseSeq version the payload was derived from (0 for a new vault), or -1 to overwrite
+     * @param payload encrypted vault file
+     * @return the new version's sequence number
+     * @throws IllegalStateException if the vault changed on the server since {@code baseSeq}
+     * @throws IOException           if no primary could be reached
+     */
+    public long push(String vault, long baseSeq, byte[] payload) throws IOException {
+        List<String> failures = new ArrayList<>();
+        Deque<URI> candidates = new ArrayDeque<>(servers);
+        Set<URI> tried = new HashSet<>();
+        while (!candidates.isEmpty()) {
+            URI server = candidates.poll();
+            if (!tried.add(server)) continue;
+            HttpRequest req = request(server, "/v1/vaults/" + vault)
+                    .header(ShushServer.BASE_SEQ_HEADER, Long.toString(baseSeq))
+                    .header("Content-Type", "application/octet-stream")
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(payload))
+                    .build();
+            long started = System.currentTimeMillis();
+            HttpResponse<byte[]> r;
+            try {
+                r = send(req);
+            } catch (IOException e) {
+                failures.add(server + ": " + e.getMessage());
+                continue;
+            }
+            if (r.statusCode() == 200) {
+                long seq = header(r, ShushServer.SEQ_HEADER, -1);
+                if (seq < 0) {
+                    failures.add(server + ": no version in the response");
+                    continue;
+                }
+                // the push is committed: a cache error must not make it look failed
+                try {
+                    if (cache != null) cache.put(vault, new RecordCache.Entry(seq, started, 0, payload));
+                } catch (IOException e) {
+                    cacheFailed(vault, e);
+                }
+                return seq;
+            }
+            if (r.statusCode() == 409) {
+                throw new IllegalStateException("Vault '" + vault + "' is at version "
+                        + header(r, ShushServer.SEQ_HEADER, -1) + " on the server, not " + baseSeq);
+            }
+            String primary = r.headers().firstValue(ShushServer.PRIMARY_HEADER).orElse(null);
+            if (r.statusCode() == 503 && primary != null) candidates.addFirst(parseServer(primary));
+            failures.add(server + ": " + describe(r));
+        }
+        throw new IOException("No primary accepted the push: " + String.join("; ", failures));
+    }
+
+    /** @return what each configured server reports, in configured order; servers are asked concurrently */
+    public List<ServerStatus> status() {
+        List<CompletableFuture<ServerStatus>> pending = new ArrayList<>(servers.size());
+        for (URI server : servers) {
+            pending.add(HTTP.sendAsync(request(server, "/v1/status").GET().build(), HttpResponse.BodyHandlers.ofByteArray())
+                    .handle((r, err) -> {
+                        if (err != null) return new ServerStatus(server, null, message(err));
+                        if (r.statusCode() != 200) return new ServerStatus(server, null, describe(r));
+                        try {
+                            return new ServerStatus(server, Json.parseObject(new String(r.body(), StandardCharsets.UTF_8)), null);
+                        } catch (IllegalArgumentException e) {
+                            return new ServerStatus(server, null, e.getMessage());
+                        }
+                    }));
+        }
+        List<ServerStatus> out = new ArrayList<>(servers.size());
+        for (CompletableFuture<ServerStatus> f : pending) out.add(f.join());
+        return out;
+    }
+
+    /** @return the process-wide HTTP client, shared with {@link LogShipper} */
+    static HttpClient http() {
+        return HTTP;
+    }
+
+    // ----------------- parsing -----------------
+
+    /**
+     * @param s server URL such as {@code http://127.0.0.1:7001}
+     * @return the URL without a path
+     * @throws IllegalArgumentException if it is not an http(s) URL with a host
+     */
+    public static URI parseServer(String s) {
+        try {
+            URI u = new URI(s.trim());
+            if (u.getHost() == null || !("http".equals(u.getScheme()) || "https".equals(u.getScheme()))) {
+                throw new IllegalArgumentException("not an http(s) server URL: '" + s + "'");
+            }
+            return new URI(u.getScheme(), null, u.getHost(), u.getPort(), null, null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("invalid server URL '" + s + "'");
+        }
+    }
+
+    /**
+     * @param s a duration such as {@code 500ms}, {@code 5s} or {@code 2m}; plain numbers are milliseconds
+     * @return the duration in milliseconds
+     * @throws IllegalArgumentException if {@code s} is not a positive duration
+     */
+    public static long parseMillis(String s) {
+        String t = s.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (t.endsWith("ms")) {
+            t = t.substring(0, t.length() - 2);
+        } else if (t.endsWith("s")) {
+            t = t.substring(0, t.length() - 1);
+            unit = 1000;
+        } else if (t.endsWith("m")) {
+            t = t.substring(0, t.length() - 1);
+            unit = 60_000;
+        }
+        long n = parseLong(t, -1);
+        if (n <= 0) throw new IllegalArgumentException("invalid duration '" + s + "' (use e.g. 500ms, 5s, 2m)");
+        return n * unit;
+    }
+
+    /**
+     * Reads a bearer token: the first line of {@code file}, trimmed.
+     *
+     * @param file token file
+     * @return the token
+     * @throws IllegalArgumentException if the file cannot be read or is empty
+     */
+    public static String readToken(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            String t = lines.isEmpty() ? "" : lines.get(0).trim();
+            if (t.isEmpty()) throw new IllegalArgumentException("token file is empty: " + file);
+            return t;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read token file " + file + ": " + e.getMessage());
+        }
+    }
+
+    // ---- helpers ----
+
+    private HttpRequest.Builder request(URI server, String path) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(server.resolve(path)).timeout(REQUEST_TIMEOUT);
+        // plain http: skip the h2c upgrade attempt, which ShushServer would ignore anyway
+        if ("http".equals(server.getScheme())) b.version(HttpClient.Version.HTTP_1_1);
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return b;
+    }
+
+    private static HttpResponse<byte[]> send(HttpRequest req) throws IOException {
+        try {
+            return HTTP.send(req, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    /**
+     * The cache only saves requests, so failing to update it never fails the operation. The
+     * entry is dropped if possible, so an older version it may hold is not served as fresh.
+     */
+    private void cacheFailed(String vault, IOException e) {
+        System.err.println("shush: remote cache for '" + vault + "' not updated: " + e.getMessage());
+        try {
+            cache.remove(vault);
+        } catch (IOException ignored) {
+            // refetched once its age bound runs out
+        }
+    }
+
+    /** @return the ETag a server sends for version {@code seq} */
+    static String etag(long seq) {
+        return "\"" + seq + "\"";
+    }
+
+    /** @return the status and the server's explanation */
+    private static String describe(HttpResponse<byte[]> r) {
+        String message = new String(r.body(), StandardCharsets.UTF_8).trim();
+        return "HTTP " + r.statusCode() + (message.isEmpty() ? "" : " (" + message + ")");
+    }
+
+    private static String message(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+        return t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
+    }
+
+    private static long header(HttpResponse<?> r, String name, long fallback) {
+        return parseLong(r.headers().firstValue(name).orElse(null), fallback);
+    }
+
+    private static long parseLong(String s, long fallback) {
+        if (s == null) return fallback;
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package shush.remote;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Remote settings of one Shush home, kept in {@code <home>/remote.properties}: the servers, the
+ * token file, the read staleness bound, and per vault the version last pulled or pushed and a
+ * hash of the local file at that moment (to tell unsynced local changes from remote ones).
+ * Versions fetched from the servers are cached next to it (see {@link RecordCache}).
+ */
+public final class RemoteSettings {
+
+    private static final String FILE = "remote.properties";
+    private static final String CACHE_DIR = "remote-cache";
+
+    private final Path file;
+    private final Properties props = new Properties();
+
+    private RemoteSettings(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param home Shush home directory
+     * @return the settings, empty if none were saved
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static RemoteSettings load(Path home) throws IOException {
+        RemoteSettings s = new RemoteSettings(home.resolve(FILE));
+        if (Files.exists(s.file)) {
+            try (Reader r = Files.newBufferedReader(s.file, StandardCharsets.UTF_8)) {
+                s.props.load(r);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Writes the settings atomically.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(FILE + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            props.store(w, "shush remote settings");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** @return configured servers, empty if {@code shush connect} was never run */
+    public List<URI> getServers() {
+        List<URI> out = new ArrayList<>();
+        for (String s : props.getProperty("servers", "").split(",")) {
+            if (!s.isBlank()) out.add(RemoteClient.parseServer(s));
+        }
+        return out;
+    }
+
+    /** @param servers servers, primary and replicas in any order */
+    public void setServers(List<URI> servers) {
+        List<String> s = new ArrayList<>();
+        for (URI u : servers) s.add(u.toString());
+        props.setProperty("servers", String.join(",", s));
+    }
+
+    /** @return token file, or {@code null} */
+    public String getTokenFile() {
+        return props.getProperty("token-file");
+    }
+
+    /** @param path token file, or {@code null} for none */
+    public void setTokenFile(String path) {
+        if (path == null) props.remove("token-file");
+        else props.setProperty("token-file", path);
+    }
+
+    /** @return how far behind the primary a replica may be when reading */
+    public long getMaxStalenessMillis() {
+        return Long.parseLong(props.getProperty("max-staleness", Long.toString(ShushServer.DEFAULT_MAX_STALENESS_MILLIS)));
+    }
+
+    /** @param millis staleness bound for reads */
+    public void setMaxStalenessMillis(long millis) {
+        props.setProperty("max-staleness", Long.toString(millis));
+    }
+
+    /**
+     * @param vault vault name
+     * @return version last pulled or pushed, 0 if never synced
+     */
+    public long getSyncedSeq(String vault) {
+        return Long.parseLong(props.getProperty("seq." + vault, "0"));
+    }
+
+    /**
+     * @param vault vault name
+     * @return SHA-256 (hex) of the local file when last synced, or {@code null}
+     */
+    public String getSyncedHash(String vault) {
+        return props.getProperty("hash." + vault);
+    }
+
+    /**
+     * Records a completed pull or push.
+     *
+     * @param vault vault name
+     * @param seq   version now on both sides
+     * @param hash  SHA-256 (hex) of the local file
+     */
+    public void setSynced(String vault, long seq, String hash) {
+        props.setProperty("seq." + vault, Long.toString(seq));
+        props.setProperty("hash." + vault, hash);
+    }
+
+    /**
+     * @return a client for the configured servers, caching fetched versions in {@code <home>/remote-cache/}
+     * @throws IllegalStateException    if no servers are configured
+     * @throws IllegalArgumentException if the token file cannot be read
+     */
+    public RemoteClient client() {
+        List<URI> servers = getServers();
+        if (servers.isEmpty()) throw new IllegalStateException("No servers configured; run 'shush connect <url>' first");
+        String tokenFile = getTokenFile();
+        return new RemoteClient(servers, tokenFile == null ? null : RemoteClient.readToken(Path.of(tokenFile)),
+                file.toAbsolutePath().resolveSibling(CACHE_DIR));
+    }
+}
@@ -0,0 +1,454 @@
+package shush.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import shush.util.Json;
+
+/**
+ * Remote vault server ({@code shush-server}): a primary that accepts pushes, or a read replica
+ * that follows a primary through asynchronous log shipping.
+ * <p>
+ * Every push becomes a record in the server's {@link SnapshotLog}: a whole encrypted vault file,
+ * not a single mutation (see there for what that costs). A replica's {@link LogShipper}
+ * long-polls the primary for records after its own last sequence number and appends them, so
+ * replicas lag the primary by about one round trip. Clients ({@link RemoteClient}) read from any
+ * server and write to the primary.
+ * </p>
+ * HTTP API, all under {@code /v1}:
+ * <pre>
+ * GET /v1/status                      role, last sequence number and staleness (JSON)
+ * GET /v1/vaults/&lt;name&gt;               latest encrypted version; 404 if never pushed, 304 if it
+ *                                     matches If-None-Match (the ETag is the sequence number)
+ * PUT /v1/vaults/&lt;name&gt;               new version; primary only, guarded by X-Shush-Base-Seq
+ * GET /v1/log?after=&lt;seq&gt;&amp;wait=&lt;ms&gt;   records after seq, waiting up to wait ms for the first
+ * </pre>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li><b>Bounded staleness:</b> a replica knows the latest moment it provably held everything
+ *       the primary had. It refuses reads (503) once that is longer ago than {@code --max-staleness},
+ *       or than a tighter bound the client sends in {@code X-Shush-Max-Staleness}, so a client
+ *       never gets data older than the bound it asked for; it fails over to another server instead.</li>
+ *   <li>Replicas refuse writes with 503 and name the primary in {@code X-Shush-Primary}.</li>
+ *   <li>Replicas serve {@code /v1/log} as well, so replicas can follow replicas.</li>
+ *   <li>A primary that is lost is replaced by restarting one replica without {@code --replica-of}
+ *       (it keeps its log) and pointing the others at it.</li>
+ *   <li>With {@code --token-file}, every request must carry {@code Authorization: Bearer <token>};
+ *       payloads are encrypted by the client either way.</li>
+ *   <li>With {@code --tls-keystore} (PKCS12) the server speaks HTTPS, so the token is not sent in
+ *       the clear and clients reuse TLS sessions across connections.</li>
+ * </ul>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * java -cp out shush.remote.ShushServer --port 7001 --data /tmp/shush-primary
+ * java -cp out shush.remote.ShushServer --port 7002 --data /tmp/shush-r1 --replica-of http://127.0.0.1:7001
+ * java -cp out shush.remote.ShushServer --port 7003 --data /tmp/shush-r2 --replica-of http://127.0.0.1:7001 --max-staleness 2s
+ * java -cp out shush.remote.ShushServer --port 7443 --data /tmp/shush-tls --tls-keystore server.p12 --tls-password-file pw
+ * }</pre>
+ */
+public final class ShushServer implements Closeable {
+
+    /** Sequence number of the returned or stored version; on 409, the current one. */
+    static final String SEQ_HEADER = "X-Shush-Seq";
+    /** Version a push was based on: 0 for a new vault, -1 to overwrite. */
+    static final String BASE_SEQ_HEADER = "X-Shush-Base-Seq";
+    /** Primary's URL, sent by replicas when they refuse a request. */
+    static final String PRIMARY_HEADER = "X-Shush-Primary";
+    /** How far behind the primary the serving replica may be, in milliseconds. */
+    static final String STALENESS_HEADER = "X-Shush-Staleness";
+    /** Tightest staleness the client accepts, in milliseconds. */
+    static final String MAX_STALENESS_HEADER = "X-Shush-Max-Staleness";
+    /** How long a log request was held before the sequence number was read, in milliseconds. */
+    static final String WAITED_HEADER = "X-Shush-Waited";
+
+    /** Default staleness bound for replicas. */
+    public static final long DEFAULT_MAX_STALENESS_MILLIS = 5000;
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private static final long MAX_LOG_WAIT_MILLIS = 30_000;
+    private static final long MAX_LOG_BYTES = 32L * 1024 * 1024;
+    private static final int THREADS = 32;
+
+    static {
+        // the JDK server writes headers and body separately; with Nagle on, a small body waits
+        // out the client's delayed ACK (about 40 ms) after every response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final SnapshotLog log;
+    private final URI primary;          // null on a primary
+    private final LogShipper shipper;   // null on a primary
+    private final long maxStalenessMillis;
+    private final byte[] expectedAuth;  // null without a token
+    private final HttpServer http;
+    private final ExecutorService executor;
+
+    /**
+     * Opens the data directory and binds the port; call {@link #start()} to serve.
+     *
+     * @param bind               address and port to listen on (port 0 picks a free one)
+     * @param dataDir            directory for the snapshot log
+     * @param primary            primary to follow, or {@code null} to run as the primary
+     * @param maxStalenessMillis staleness bound for reads from a replica
+     * @param token              bearer token required on every request, or {@code null}
+     * @throws IOException if the log cannot be opened or the port cannot be bound
+     */
+    public ShushServer(InetSocketAddress bind, Path dataDir, URI primary, long maxStalenessMillis, String token)
+            throws IOException {
+        this(bind, dataDir, primary, maxStalenessMillis, token, null);
+    }
+
+    /**
+     * Opens the data directory and binds the port; call {@link #start()} to serve.
+     *
+     * @param bind               address and port to listen on (port 0 picks a free one)
+     * @param dataDir            directory for the snapshot log
+     * @param primary            primary to follow, or {@code null} to run as the primary
+     * @param maxStalenessMillis staleness bound for reads from a replica
+     * @param token              bearer token required on every request, or {@code null}
+     * @param tls                TLS context to serve HTTPS with, or {@code null} for plain HTTP
+     * @throws IOException if the log cannot be opened or the port cannot be bound
+     */
+    public ShushServer(InetSocketAddress bind, Path dataDir, URI primary, long maxStalenessMillis, String token,
+                       SSLContext tls) throws IOException {
+        if (maxStalenessMillis <= 0) throw new IllegalArgumentException("maxStalenessMillis must be positive");
+        this.log = SnapshotLog.open(dataDir);
+        this.primary = primary;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.expectedAuth = token == null ? null : ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        // a replica polls often enough that an idle primary never lets it go stale
+        this.shipper = primary == null ? null
+                : new LogShipper(log, primary, token, Math.max(50, maxStalenessMillis / 2));
+        if (tls == null) {
+            this.http = HttpServer.create(bind, 0);
+        } else {
+            HttpsServer https = HttpsServer.create(bind, 0);
+            https.setHttpsConfigurator(new HttpsConfigurator(tls));
+            this.http = https;
+        }
+        this.executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "shush-server");
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(executor);
+        http.createContext("/v1/status", this::status);
+        http.createContext("/v1/vaults/", this::vault);
+        http.createContext("/v1/log", this::shipLog);
+    }
+
+    /** Starts serving and, on a replica, following the primary. */
+    public void start() {
+        http.start();
+        if (shipper != null) shipper.start();
+    }
+
+    /** @return the bound port */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /** @return true if this server follows a primary */
+    public boolean isReplica() {
+        return primary != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (shipper != null) shipper.close();
+        http.stop(0);
+        executor.shutdownNow();
+        log.close();
+    }
+
+    /**
+     * Runs a server until the process is stopped.
+     *
+     * @param args {@code --data <dir>} (required), {@code --port n} (default 7001), {@code --bind addr}
+     *             (default 127.0.0.1), {@code --replica-of <url>}, {@code --max-staleness <ms|Ns>},
+     *             {@code --token-file <path>}, {@code --tls-keystore <p12>}, {@code --tls-password-file <path>}
+     */
+    public static void main(String[] args) throws Exception {
+        int port = 7001;
+        String bind = "127.0.0.1";
+        Path data = null;
+        URI replicaOf = null;
+        long maxStaleness = DEFAULT_MAX_STALENESS_MILLIS;
+        String token = null;
+        Path keystore = null;
+        Path keystorePassword = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (i + 1 >= args.length) throw new IllegalArgumentException("missing value for " + a);
+                switch (a) {
+                    case "--port": port = Integer.parseInt(args[++i]); break;
+                    case "--bind": bind = args[++i]; break;
+                    case "--data": data = Paths.get(args[++i]); break;
+                    case "--replica-of": replicaOf = RemoteClient.parseServer(args[++i]); break;
+                    case "--max-staleness": maxStaleness = RemoteClient.parseMillis(args[++i]); break;
+                    case "--token-file": token = RemoteClient.readToken(Paths.get(args[++i])); break;
+                    case "--tls-keystore": keystore = Paths.get(args[++i]); break;
+                    case "--tls-password-file": keystorePassword = Paths.get(args[++i]); break;
+                    default: throw new IllegalArgumentException("unknown option " + a);
+                }
+            }
+            if (data == null) throw new IllegalArgumentException("--data is required");
+            if ((keystore == null) != (keystorePassword == null)) {
+                throw new IllegalArgumentException("--tls-keystore and --tls-password-file go together");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            System.out.println("Usage: ShushServer --data <dir> [--port n] [--bind addr] [--replica-of <url>]"
+                    + " [--max-staleness <ms|Ns>] [--token-file <path>] [--tls-keystore <p12> --tls-password-file <path>]");
+            System.exit(2);
+            return;
+        }
+
+        SSLContext tls = keystore == null ? null : tlsContext(keystore, keystorePassword);
+        ShushServer server = new ShushServer(new InetSocketAddress(bind, port), data, replicaOf, maxStaleness, token, tls);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // exiting anyway
+            }
+        }, "shush-server-stop"));
+        server.start();
+        System.out.println("shush-server " + (replicaOf == null ? "primary" : "replica of " + replicaOf)
+                + " listening on " + (tls == null ? "http" : "https") + "://" + bind + ":" + server.getPort() + " (data " + data + ", seq " + server.log.lastSeq() + ")");
+    }
+
+    // ----------------- handlers -----------------
+
+    private void status(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!authorized(ex)) return;
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("role", primary == null ? "primary" : "replica");
+            s.put("seq", log.lastSeq());
+            s.put("vaults", (long) log.vaultCount());
+            if (primary != null) {
+                s.put("primary", primary.toString());
+                long staleness = shipper.stalenessMillis();
+                s.put("stalenessMillis", staleness == Long.MAX_VALUE ? null : staleness);
+                s.put("maxStalenessMillis", maxStalenessMillis);
+                s.put("lastError", shipper.lastError());
+            }
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            send(ex, 200, Json.write(s).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void vault(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!authorized(ex)) return;
+            String name = ex.getRequestURI().getPath().substring("/v1/vaults/".length());
+            if (!NAME.matcher(name).matches()) {
+                sendText(ex, 400, "Invalid vault name");
+                return;
+            }
+            switch (ex.getRequestMethod()) {
+                case "GET": read(ex, name); break;
+                case "PUT": write(ex, name); break;
+                default: sendText(ex, 405, "Method not allowed");
+            }
+        }
+    }
+
+    private void read(HttpExchange ex, String name) throws IOException {
+        long staleness = 0;
+        if (primary != null) {
+            long bound = maxStalenessMillis;
+            String asked = ex.getRequestHeaders().getFirst(MAX_STALENESS_HEADER);
+            if (asked != null) {
+                try {
+                    bound = Math.min(bound, Long.parseLong(asked.trim()));
+                } catch (NumberFormatException e) {
+                    sendText(ex, 400, "Invalid " + MAX_STALENESS_HEADER);
+                    return;
+                }
+            }
+            staleness = shipper.stalenessMillis();
+            if (staleness > bound) {
+                ex.getResponseHeaders().set(PRIMARY_HEADER, primary.toString());
+                if (staleness != Long.MAX_VALUE) ex.getResponseHeaders().set(STALENESS_HEADER, Long.toString(staleness));
+                sendText(ex, 503, "Replica is behind its primary by more than " + bound + " ms");
+                return;
+            }
+        }
+        SnapshotLog.Record r = log.latest(name);
+        if (r == null) {
+            sendText(ex, 404, "No vault '" + name + "'");
+            return;
+        }
+        String etag = RemoteClient.etag(r.getSeq());
+        ex.getResponseHeaders().set(SEQ_HEADER, Long.toString(r.getSeq()));
+        ex.getResponseHeaders().set(STALENESS_HEADER, Long.toString(staleness));
+        ex.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+            send(ex, 304, new byte[0]);
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        send(ex, 200, r.getPayload());
+    }
+
+    private void write(HttpExchange ex, String name) throws IOException {
+        if (primary != null) {
+            ex.getResponseHeaders().set(PRIMARY_HEADER, primary.toString());
+            sendText(ex, 503, "Read-only replica; push to the primary");
+            return;
+        }
+        long base;
+        try {
+            base = Long.parseLong(String.valueOf(ex.getRequestHeaders().getFirst(BASE_SEQ_HEADER)).trim());
+        } catch (NumberFormatException e) {
+            sendText(ex, 400, "Missing or invalid " + BASE_SEQ_HEADER);
+            return;
+        }
+        byte[] payload = readBody(ex.getRequestBody(), SnapshotLog.MAX_PAYLOAD);
+        if (payload == null) {
+            sendText(ex, 413, "Vault larger than " + SnapshotLog.MAX_PAYLOAD + " bytes");
+            return;
+        }
+        SnapshotLog.Record r = log.append(name, base, payload);
+        if (r == null) {
+            SnapshotLog.Record current = log.latest(name);
+            ex.getResponseHeaders().set(SEQ_HEADER, Long.toString(current == null ? 0 : current.getSeq()));
+            sendText(ex, 409, "Vault '" + name + "' changed since version " + base);
+            return;
+        }
+        ex.getResponseHeaders().set(SEQ_HEADER, Long.toString(r.getSeq()));
+        send(ex, 200, new byte[0]);
+    }
+
+    /** Log shipping: records after {@code after}, holding the request up to {@code wait} ms for the first. */
+    private void shipLog(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!authorized(ex)) return;
+            long after, wait;
+            try {
+                Map<String, String> q = query(ex.getRequestURI());
+                after = Long.parseLong(q.getOrDefault("after", "0"));
+                wait = Math.min(MAX_LOG_WAIT_MILLIS, Math.max(0, Long.parseLong(q.getOrDefault("wait", "0"))));
+            } catch (NumberFormatException e) {
+                sendText(ex, 400, "Invalid after or wait");
+                return;
+            }
+            long started = System.currentTimeMillis();
+            try {
+                log.awaitAfter(after, wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // read the sequence number first: the records below include at least everything up to it
+            long seq = log.lastSeq();
+            long waited = System.currentTimeMillis() - started;
+            List<SnapshotLog.Record> records = log.readAfter(after, MAX_LOG_BYTES);
+            ex.getResponseHeaders().set(SEQ_HEADER, Long.toString(seq));
+            ex.getResponseHeaders().set(WAITED_HEADER, Long.toString(waited));
+            ex.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            ex.sendResponseHeaders(200, 0);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(ex.getResponseBody(), 64 * 1024))) {
+                for (SnapshotLog.Record r : records) r.writeTo(out);
+            }
+        }
+    }
+
+    // ---- helpers ----
+
+    /** @return a server TLS context for the key and certificate in a PKCS12 keystore */
+    private static SSLContext tlsContext(Path keystore, Path passwordFile) throws IOException, GeneralSecurityException {
+        char[] password = RemoteClient.readToken(passwordFile).toCharArray();
+        try {
+            KeyStore ks = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(keystore)) {
+                ks.load(in, password);
+            }
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(ks, password);
+            SSLContext ctx = SSLContext.getInstance("TLS");
+            ctx.init(kmf.getKeyManagers(), null, null);
+            return ctx;
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+
+    private boolean authorized(HttpExchange ex) throws IOException {
+        if (expectedAuth == null) return true;
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth != null && MessageDigest.isEqual(auth.getBytes(StandardCharsets.UTF_8), expectedAuth)) return true;
+        sendText(ex, 401, "Missing or wrong token");
+        return false;
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> q = new LinkedHashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) return q;
+        for (String kv : raw.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq > 0) q.put(kv.substring(0, eq), kv.substring(eq + 1));
+        }
+        return q;
+    }
+
+    /** @return the body, or {@code null} if it is longer than {@code max} */
+    private static byte[] readBody(InputStream in, int max) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            if (out.size() + n > max) return null;
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void sendText(HttpExchange ex, int status, String message) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(ex, status, (message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, int status, byte[] body) throws IOException {
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package shush.remote;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable log of encrypted vault snapshots, the unit of replication between a {@link ShushServer}
+ * primary and its replicas. Kept as {@code <data>/snapshots.log}.
+ * <p>
+ * Layout:
+ * <pre>
+ * [ "SHM1" ]
+ * record* = [ length i32 ][ CRC32C i32 ][ seq i64 ][ time i64 ][ vault: u16 length, UTF-8 ][ payload ]
+ * </pre>
+ * Every accepted push becomes one {@link Record} with the next sequence number, holding the whole
+ * vault file. Payloads are opaque to the server: the client encrypts the file under the master
+ * password before pushing it (see {@link shush.commands.ConnectCommand}), so neither primary nor
+ * replicas can read entries, labels included.
+ * </p>
+ * This is snapshot replication, not a log of individual mutations, and it costs accordingly:
+ * <ul>
+ *   <li>Every push uploads, fsyncs and stores a full snapshot, about 4/3 of the vault file (Base64
+ *       of the ciphertext), and pays a password-based encryption on the client. Changing one entry
+ *       of a 10 MB vault ships and stores about 13 MB.</li>
+ *   <li>Until compaction the file also keeps superseded snapshots, up to twice the size of the
+ *       latest snapshot of every vault (and at least {@value #MIN_COMPACT_BYTES} bytes).</li>
+ *   <li>A replica receives the latest snapshot of each vault that changed since its last round,
+ *       so catching up costs the size of the changed vaults, however many pushes it missed.</li>
+ * </ul>
+ * Shipping single mutations would need records the server cannot read. The vault file keeps
+ * labels in plaintext and seals fields under the data key, so each record would need its own
+ * encryption layer, and replicas would need a snapshot to apply the records to.
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>A record supersedes every earlier record of the same vault, so the log is compacted by
+ *       vault: memory holds only the latest record per vault, and the file is rewritten once
+ *       superseded records make up more than half of it. Replicas asking for records after
+ *       {@code seq} receive the latest record of each vault that changed since, in sequence
+ *       order; skipped sequence numbers are superseded versions they would overwrite anyway.</li>
+ *   <li>Appends are forced to disk before they are acknowledged. A torn record at the end of the
+ *       file (crash during an append) is cut off on open.</li>
+ *   <li>A log left as {@code mutations.log} by earlier versions is renamed on open; the format
+ *       is unchanged.</li>
+ *   <li>Thread-safe; {@link #awaitAfter(long, long)} lets log-shipping requests wait for the next
+ *       append instead of polling.</li>
+ * </ul>
+ */
+public final class SnapshotLog implements Closeable {
+
+    private static final byte[] MAGIC = new byte[]{0x53, 0x48, 0x4d, 0x31}; // "SHM1"
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    /** Largest accepted payload (an encrypted vault file). */
+    public static final int MAX_PAYLOAD = 64 * 1024 * 1024;
+
+    /** One snapshot of one vault. */
+    public static final class Record {
+        private final long seq;
+        private final long time;
+        private final String vault;
+        private final byte[] payload;
+
+        Record(long seq, long time, String vault, byte[] payload) {
+            this.seq = seq;
+            this.time = time;
+            this.vault = vault;
+            this.payload = payload;
+        }
+
+        /** @return position in the log; increases with every push */
+        public long getSeq() { return seq; }
+
+        /** @return when the primary accepted the push, in epoch millis */
+        public long getTime() { return time; }
+
+        /** @return vault name */
+        public String getVault() { return vault; }
+
+        /** @return the encrypted vault file, whole (not copied) */
+        public byte[] getPayload() { return payload; }
+
+        /** @return bytes of this record's body in the log file */
+        long size() {
+            return 8 + 8 + 2 + vault.getBytes(StandardCharsets.UTF_8).length + payload.length;
+        }
+
+        /** Writes the record for log shipping: {@code [seq i64][time i64][vault UTF][length i32][payload]}. */
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(seq);
+            out.writeLong(time);
+            out.writeUTF(vault);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+
+        /** Reads a record written by {@link #writeTo(DataOutputStream)}. */
+        static Record readFrom(DataInputStream in) throws IOException {
+            long seq = in.readLong(), time = in.readLong();
+            String vault = in.readUTF();
+            int len = in.readInt();
+            if (len < 0 || len > MAX_PAYLOAD) throw new IOException("Corrupt record length: " + len);
+            byte[] payload = new byte[len];
+            in.readFully(payload);
+            return new Record(seq, time, vault, payload);
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Record> latest = new HashMap<>();
+    private FileChannel channel;
+    private long lastSeq;
+    private long fileBytes;
+    private long liveBytes;
+
+    private SnapshotLog(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the log in {@code dir}, creating it if needed.
+     *
+     * @param dir data directory
+     * @return the open log
+     * @throws IOException if the file cannot be read or is corrupt before its last record
+     */
+    public static SnapshotLog open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("snapshots.log");
+        Path legacy = dir.resolve("mutations.log");
+        if (!Files.exists(file) && Files.exists(legacy)) Files.move(legacy, file, StandardCopyOption.ATOMIC_MOVE);
+        SnapshotLog log = new SnapshotLog(file);
+        log.load();
+        return log;
+    }
+
+    /** @return sequence number of the newest record, 0 if empty */
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /** @return number of vaults with at least one record */
+    public synchronized int vaultCount() {
+        return latest.size();
+    }
+
+    /**
+     * @param vault vault name
+     * @return the vault's newest record, or {@code null} if it was never pushed
+     */
+    public synchronized Record latest(String vault) {
+        return latest.get(vault);
+    }
+
+    /**
+     * Appends a new version of {@code vault} if the caller saw the current one (optimistic
+     * concurrency: two clients cannot both overwrite the same version).
+     *
+     * @param vault   vault name
+     * @param baseSeq sequence number of the version the caller last saw (0 for none), or -1 to
+     *                overwrite unconditionally
+     * @param payload encrypted vault file
+     * @return the appended record, or {@code null} if {@code baseSeq} is not the current version
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized Record append(String vault, long baseSeq, byte[] payload) throws IOException {
+        if (payload.length > MAX_PAYLOAD) throw new IllegalArgumentException("Payload too large: " + payload.length + " bytes");
+        Record current = latest.get(vault);
+        if (baseSeq >= 0 && baseSeq != (current == null ? 0 : current.seq)) return null;
+        Record r = new Record(lastSeq + 1, System.currentTimeMillis(), vault, payload);
+        write(r);
+        return r;
+    }
+
+    /**
+     * Applies a record shipped from the primary, keeping its sequence number.
+     *
+     * @param r record from {@link #readAfter(long, long)} on the primary
+     * @return false if the record is not newer than this log (already applied)
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized boolean applyReplicated(Record r) throws IOException {
+        if (r.seq <= lastSeq) return false;
+        write(r);
+        return true;
+    }
+
+    /**
+     * Records a replica is missing: the latest record of every vault changed after {@code seq},
+     * oldest first.
+     *
+     * @param seq      last sequence number the caller has
+     * @param maxBytes stop after this many payload bytes (at least one record is returned)
+     * @return records in sequence order, possibly empty
+     */
+    public synchronized List<Record> readAfter(long seq, long maxBytes) {
+        List<Record> out = new ArrayList<>();
+        for (Record r : latest.values()) if (r.seq > seq) out.add(r);
+        out.sort(Comparator.comparingLong(Record::getSeq));
+        long bytes = 0;
+        for (int i = 0; i < out.size(); i++) {
+            bytes += out.get(i).payload.length;
+            if (bytes > maxBytes && i > 0) return new ArrayList<>(out.subList(0, i));
+        }
+        return out;
+    }
+
+    /**
+     * Waits until the log holds a record after {@code seq}, or the timeout passes.
+     *
+     * @param seq           last sequence number the caller has
+     * @param timeoutMillis longest wait
+     * @return true if a newer record exists
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean awaitAfter(long seq, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (lastSeq <= seq) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+    }
+
+    // ---- helpers ----
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, MAGIC);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+        channel.read(head, 0);
+        if (size < MAGIC.length || !Arrays.equals(head.array(), MAGIC)) {
+            throw new IOException("Not a snapshot log: " + file);
+        }
+        long pos = MAGIC.length;
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        while (pos + 8 <= size) {
+            frame.clear();
+            readFully(frame, pos);
+            int len = frame.getInt(0), crc = frame.getInt(4);
+            if (len < 0 || pos + 8 + len > size) break; // torn append
+            ByteBuffer body = ByteBuffer.allocate(len);
+            readFully(body, pos + 8);
+            if (crc(body.array()) != crc) {
+                if (pos + 8 + len == size) break; // torn append
+                throw new IOException("Checksum mismatch in snapshot log at offset " + pos + ": " + file);
+            }
+            Record r = decode(body.flip());
+            track(r);
+            pos += 8 + len;
+        }
+        if (pos < size) channel.truncate(pos);
+        fileBytes = pos;
+    }
+
+    private void write(Record r) throws IOException {
+        byte[] body = encode(r);
+        ByteBuffer frame = ByteBuffer.allocate(8 + body.length);
+        frame.putInt(body.length).putInt(crc(body)).put(body).flip();
+        long pos = fileBytes;
+        while (frame.hasRemaining()) pos += channel.write(frame, pos);
+        channel.force(false);
+        fileBytes = pos;
+        track(r);
+        notifyAll();
+        if (fileBytes > MIN_COMPACT_BYTES && fileBytes > 2 * liveBytes) compact();
+    }
+
+    private void track(Record r) {
+        Record old = latest.put(r.vault, r);
+        if (old != null) liveBytes -= 8 + old.size();
+        liveBytes += 8 + r.size();
+        lastSeq = Math.max(lastSeq, r.seq);
+    }
+
+    /** Rewrites the file with only the latest record of each vault. */
+    private void compact() throws IOException {
+        List<Record> live = new ArrayList<>(latest.values());
+        live.sort(Comparator.comparingLong(Record::getSeq));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long pos = MAGIC.length;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(MAGIC), 0);
+            for (Record r : live) {
+                byte[] body = encode(r);
+                ByteBuffer frame = ByteBuffer.allocate(8 + body.length);
+                frame.putInt(body.length).putInt(crc(body)).put(body).flip();
+                while (frame.hasRemaining()) pos += out.write(frame, pos);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileBytes = pos;
+    }
+
+    private void readFully(ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int n = channel.read(b, pos + b.position());
+            if (n < 0) throw new IOException("Unexpected end of snapshot log: " + file);
+        }
+    }
+
+    private static byte[] encode(Record r) {
+        byte[] name = r.vault.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(8 + 8 + 2 + name.length + r.payload.length);
+        b.putLong(r.seq).putLong(r.time).putShort((short) name.length).put(name).put(r.payload);
+        return b.array();
+    }
+
+    private Record decode(ByteBuffer b) throws IOException {
+        try {
+            long seq = b.getLong(), time = b.getLong();
+            byte[] name = new byte[Short.toUnsignedInt(b.getShort())];
+            b.get(name);
+            byte[] payload = new byte[b.remaining()];
+            b.get(payload);
+            return new Record(seq, time, new String(name, StandardCharsets.UTF_8), payload);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated record in snapshot log: " + file, e);
+        }
+    }
+
+    private static int crc(byte[] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
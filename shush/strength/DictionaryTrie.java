@@ -0,0 +1,251 @@
+package shush.strength;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only succinct trie (LOUDS) over lowercase ASCII words, each mapped to the dictionary it
+ * came from and its frequency rank there.
+ * <p>
+ * The trie is used straight from a memory-mapped file produced by {@link TrieCompiler}: nothing
+ * is parsed or copied into the heap, so opening it costs one {@code mmap} and lookups touch only
+ * the pages they walk. Nodes are numbered in breadth-first order, root {@code 0}. Layout (big-endian):
+ * <pre>
+ * "SHTR" version:i32 nodes:i32 words:i32 dictCount:i32 (nameLen:u8 name)*
+ * labels:   u8[nodes]                 edge label of node v (root's is unused)
+ * louds:    i64[(2*nodes+63)/64]      per node: one 1-bit per child, then a 0-bit
+ * zeros:    i32[louds blocks + 1]     0-bits before each 512-bit block (select0 directory)
+ * terminal: i64[(nodes+63)/64]        bit v set if node v ends a word
+ * ranks:    i32[terminal words + 1]   terminal bits before each 64-bit word
+ * values:   i32[words]                dict &lt;&lt; 24 | rank, in terminal-node order
+ * </pre>
+ * The children of node {@code v} are the consecutive nodes
+ * {@code select0(v)+2-v ... } with labels in ascending order, so a child step is one select0 and
+ * a short binary search.
+ */
+public final class DictionaryTrie {
+
+    static final int MAGIC = 0x53485452; // "SHTR"
+    static final int VERSION = 1;
+    static final int BLOCK_WORDS = 8; // 512-bit select0 blocks
+
+    /** Classpath location of the bundled dictionaries. */
+    public static final String BUNDLED = "/resources/strength/dictionaries.trie";
+
+    private static final DictionaryTrie EMPTY = new DictionaryTrie();
+
+    private final ByteBuffer buf;
+    private final int nodes;
+    private final List<String> dictionaries;
+    private final int labelsOff, loudsOff, zerosOff, terminalOff, ranksOff, valuesOff;
+    private final int loudsBlocks;
+
+    private DictionaryTrie() {
+        buf = null;
+        nodes = 0;
+        dictionaries = List.of();
+        labelsOff = loudsOff = zerosOff = terminalOff = ranksOff = valuesOff = loudsBlocks = 0;
+    }
+
+    private DictionaryTrie(ByteBuffer buf) {
+        this.buf = buf;
+        if (buf.getInt(0) != MAGIC) throw new IllegalArgumentException("Not a dictionary trie");
+        if (buf.getInt(4) != VERSION) throw new IllegalArgumentException("Unsupported dictionary trie version " + buf.getInt(4));
+        nodes = buf.getInt(8);
+        int words = buf.getInt(12);
+        int dictCount = buf.getInt(16);
+        int p = 20;
+        List<String> names = new ArrayList<>(dictCount);
+        for (int i = 0; i < dictCount; i++) {
+            int len = buf.get(p++) & 0xff;
+            byte[] b = new byte[len];
+            buf.get(p, b, 0, len);
+            names.add(new String(b, java.nio.charset.StandardCharsets.US_ASCII));
+            p += len;
+        }
+        dictionaries = Collections.unmodifiableList(names);
+        int loudsWords = (2 * nodes + 63) / 64;
+        loudsBlocks = (loudsWords + BLOCK_WORDS - 1) / BLOCK_WORDS;
+        int terminalWords = (nodes + 63) / 64;
+        labelsOff = p;
+        loudsOff = labelsOff + nodes;
+        zerosOff = loudsOff + loudsWords * 8;
+        terminalOff = zerosOff + (loudsBlocks + 1) * 4;
+        ranksOff = terminalOff + terminalWords * 8;
+        valuesOff = ranksOff + (terminalWords + 1) * 4;
+        if (valuesOff + words * 4L > buf.limit()) throw new IllegalArgumentException("Truncated dictionary trie");
+    }
+
+    /**
+     * Maps a compiled trie file read-only.
+     *
+     * @param file trie written by {@link TrieCompiler}
+     * @return the trie
+     * @throws IOException              if the file cannot be mapped
+     * @throws IllegalArgumentException if the file is not a trie
+     */
+    public static DictionaryTrie open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DictionaryTrie(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Opens the dictionaries bundled on the classpath.
+     * <p>
+     * When the classpath is a directory the resource is mapped in place; from a jar it is copied
+     * once to {@code cacheDir} (keyed by size) and that copy is mapped.
+     *
+     * @param cacheDir where to extract the resource when it is not a plain file
+     * @return the bundled trie, or an empty trie if the resource is missing or unreadable
+     */
+    public static DictionaryTrie openBundled(Path cacheDir) {
+        URL url = DictionaryTrie.class.getResource(BUNDLED);
+        if (url == null) return EMPTY;
+        try {
+            if ("file".equals(url.getProtocol())) return open(Paths.get(url.toURI()));
+            long size = url.openConnection().getContentLengthLong();
+            Path cached = cacheDir.resolve("dictionaries-" + VERSION + "-" + size + ".trie");
+            if (!Files.isRegularFile(cached) || Files.size(cached) != size) {
+                Files.createDirectories(cacheDir);
+                Path tmp = Files.createTempFile(cacheDir, "dictionaries", ".tmp");
+                try (InputStream in = url.openStream()) {
+                    Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return open(cached);
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return EMPTY;
+        }
+    }
+
+    /** @return a trie containing no words */
+    public static DictionaryTrie empty() {
+        return EMPTY;
+    }
+
+    /** @return dictionary names, indexed by {@link #dictionary(int)} */
+    public List<String> getDictionaries() {
+        return dictionaries;
+    }
+
+    /** @return number of nodes, including the root */
+    public int nodeCount() {
+        return nodes;
+    }
+
+    /** @return the root node, or {@code -1} if the trie is empty */
+    public int root() {
+        return nodes == 0 ? -1 : 0;
+    }
+
+    /**
+     * Follows the edge labelled {@code c} from {@code node}.
+     *
+     * @param node a node id from {@link #root()} or a previous call
+     * @param c    the next character (matched case-sensitively; words are stored lowercase)
+     * @return the child node, or {@code -1} if there is none
+     */
+    public int child(int node, char c) {
+        if (node < 0 || c > 0x7f) return -1;
+        int start = node == 0 ? 0 : select0(node) + 1;
+        int first = start - node + 1;          // ones before start == start - zeros before start
+        int degree = onesRun(start);
+        int lo = first, hi = first + degree - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int label = buf.get(labelsOff + mid) & 0xff;
+            if (label < c) lo = mid + 1;
+            else if (label > c) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @param node a node id
+     * @return the word value ({@code dict << 24 | rank}) if {@code node} ends a word, else {@code -1}
+     */
+    public int value(int node) {
+        if (node < 0) return -1;
+        int w = node >>> 6;
+        long bits = buf.getLong(terminalOff + w * 8);
+        long bit = 1L << (node & 63);
+        if ((bits & bit) == 0) return -1;
+        int idx = buf.getInt(ranksOff + w * 4) + Long.bitCount(bits & (bit - 1));
+        return buf.getInt(valuesOff + idx * 4);
+    }
+
+    /**
+     * Looks up a whole word.
+     *
+     * @param word lowercase word
+     * @return its value, or {@code -1} if absent
+     */
+    public int lookup(CharSequence word) {
+        int node = root();
+        for (int i = 0; i < word.length() && node >= 0; i++) node = child(node, word.charAt(i));
+        return value(node);
+    }
+
+    /** @return dictionary index packed in a {@link #value(int)} */
+    public static int dictionary(int value) {
+        return value >>> 24;
+    }
+
+    /** @return 1-based frequency rank packed in a {@link #value(int)} */
+    public static int rank(int value) {
+        return value & 0xffffff;
+    }
+
+    // ---- helpers ----
+
+    /** @return position of the {@code k}-th (1-based) 0-bit in the LOUDS bitvector */
+    private int select0(int k) {
+        int lo = 0, hi = loudsBlocks - 1;
+        while (lo < hi) { // last block with fewer than k zeros before it
+            int mid = (lo + hi + 1) >>> 1;
+            if (buf.getInt(zerosOff + mid * 4) < k) lo = mid;
+            else hi = mid - 1;
+        }
+        int remaining = k - buf.getInt(zerosOff + lo * 4);
+        for (int w = lo * BLOCK_WORDS; ; w++) {
+            long zeros = ~buf.getLong(loudsOff + w * 8);
+            int n = Long.bitCount(zeros);
+            if (remaining <= n) {
+                for (int i = 1; i < remaining; i++) zeros &= zeros - 1;
+                return w * 64 + Long.numberOfTrailingZeros(zeros);
+            }
+            remaining -= n;
+        }
+    }
+
+    /** @return number of consecutive 1-bits starting at {@code pos} */
+    private int onesRun(int pos) {
+        int run = 0;
+        int w = pos >>> 6;
+        long bits = buf.getLong(loudsOff + w * 8) >>> (pos & 63);
+        int avail = 64 - (pos & 63);
+        while (true) {
+            int ones = Long.numberOfTrailingZeros(~bits);
+            if (ones < avail) return run + ones;
+            run += avail;
+            bits = buf.getLong(loudsOff + ++w * 8);
+            avail = 64;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package shush.strength;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Key adjacency for keyboard-walk matching, built from a drawing of the layout.
+ * <p>
+ * Each key is a token of its unshifted and shifted characters. For every ASCII character the graph
+ * holds the neighbouring key tokens in a fixed direction order (or {@code null} where there is no
+ * key), so a walk's turns are the changes of direction index.
+ */
+final class KeyboardGraph {
+
+    static final KeyboardGraph QWERTY = new KeyboardGraph("qwerty", true,
+            "`~ 1! 2@ 3# 4$ 5% 6^ 7& 8* 9( 0) -_ =+\n"
+            + "    qQ wW eE rR tT yY uU iI oO pP [{ ]} \\|\n"
+            + "     aA sS dD fF gG hH jJ kK lL ;: '\"\n"
+            + "      zZ xX cC vV bB nN mM ,< .> /?");
+
+    static final KeyboardGraph KEYPAD = new KeyboardGraph("keypad", false,
+            "  / * -\n"
+            + "7 8 9 +\n"
+            + "4 5 6\n"
+            + "1 2 3\n"
+            + "  0 .");
+
+    final String name;
+    /** Neighbour key tokens per character, {@code null} for characters not on the keyboard. */
+    final String[][] adjacency = new String[128][];
+    final int startingPositions;
+    final double averageDegree;
+
+    /**
+     * @param layout  rows of space-separated key tokens, indented so keys line up
+     * @param slanted {@code true} for staggered rows (6 neighbours), {@code false} for a grid (8)
+     */
+    private KeyboardGraph(String name, boolean slanted, String layout) {
+        this.name = name;
+        Map<Long, String> positions = new HashMap<>();
+        String[] rows = layout.split("\n");
+        int tokenSize = -1;
+        for (int y = 0; y < rows.length; y++) {
+            String row = rows[y];
+            int slant = slanted ? y : 0;
+            for (int p = 0; p < row.length(); ) {
+                if (row.charAt(p) == ' ') {
+                    p++;
+                    continue;
+                }
+                int end = row.indexOf(' ', p);
+                if (end < 0) end = row.length();
+                String token = row.substring(p, end);
+                if (tokenSize < 0) tokenSize = token.length();
+                positions.put(key((p - slant) / (tokenSize + 1), y), token);
+                p = end;
+            }
+        }
+        int[][] directions = slanted
+                ? new int[][]{{-1, 0}, {0, -1}, {1, -1}, {1, 0}, {0, 1}, {-1, 1}}
+                : new int[][]{{-1, 0}, {-1, -1}, {0, -1}, {1, -1}, {1, 0}, {1, 1}, {0, 1}, {-1, 1}};
+        int keys = 0, degrees = 0;
+        for (Map.Entry<Long, String> e : positions.entrySet()) {
+            int x = (int) (e.getKey() >> 32), y = (int) (long) e.getKey();
+            String[] neighbours = new String[directions.length];
+            for (int d = 0; d < directions.length; d++) {
+                neighbours[d] = positions.get(key(x + directions[d][0], y + directions[d][1]));
+                if (neighbours[d] != null) degrees++;
+            }
+            keys++;
+            for (char c : e.getValue().toCharArray()) adjacency[c] = neighbours;
+        }
+        this.startingPositions = keys;
+        this.averageDegree = (double) degrees / keys;
+    }
+
+    /**
+     * @param c a character
+     * @return neighbour tokens of the key that types {@code c}, or {@code null}
+     */
+    String[] neighbours(char c) {
+        return c < 128 ? adjacency[c] : null;
+    }
+
+    /** @return {@code true} if {@code c} needs shift on this keyboard */
+    boolean isShifted(char c) {
+        if (this != QWERTY || c >= 128 || adjacency[c] == null) return false;
+        return "~!@#$%^&*()_+{}|:\"<>?".indexOf(c) >= 0 || (c >= 'A' && c <= 'Z');
+    }
+
+    private static long key(int x, int y) {
+        return (long) x << 32 | (y & 0xffffffffL);
+    }
+}
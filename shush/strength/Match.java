@@ -0,0 +1,97 @@
+package shush.strength;
+
+/**
+ * One guessable piece of a password, such as a dictionary word, keyboard walk or date, spanning
+ * characters {@code i..j} inclusive.
+ * <p>
+ * Pattern-specific getters return {@code null}/{@code 0} for patterns they do not apply to.
+ * </p>
+ */
+public final class Match {
+
+    /** Kinds of pattern the estimator recognizes. */
+    public enum Pattern { DICTIONARY, SPATIAL, SEQUENCE, REPEAT, DATE, YEAR, BRUTEFORCE }
+
+    final Pattern pattern;
+    final int i, j;
+    final String token;
+
+    // dictionary
+    String dictionary;
+    String matchedWord;
+    int rank;
+    boolean reversed;
+    boolean l33t;
+    /** Substitution pairs {@code sub, letter, ...} for l33t matches. */
+    String subs;
+
+    // spatial
+    String graph;
+    int turns;
+    int shifted;
+
+    // sequence
+    boolean ascending;
+
+    // repeat
+    String baseToken;
+    double baseGuesses;
+    int repeatCount;
+
+    // date
+    int year;
+    String separator;
+
+    double guesses;
+
+    Match(Pattern pattern, int i, int j, String token) {
+        this.pattern = pattern;
+        this.i = i;
+        this.j = j;
+        this.token = token;
+    }
+
+    /** @return the kind of pattern */
+    public Pattern getPattern() { return pattern; }
+
+    /** @return index of the first character covered */
+    public int getStart() { return i; }
+
+    /** @return index of the last character covered (inclusive) */
+    public int getEnd() { return j; }
+
+    /** @return the covered part of the password */
+    public String getToken() { return token; }
+
+    /** @return estimated guesses needed to find this part on its own */
+    public double getGuesses() { return guesses; }
+
+    /** @return dictionary name for {@link Pattern#DICTIONARY}, e.g. {@code "passwords"} or {@code "user_inputs"} */
+    public String getDictionary() { return dictionary; }
+
+    /** @return the dictionary word the token was matched against (lowercase, un-substituted) */
+    public String getMatchedWord() { return matchedWord; }
+
+    /** @return 1-based frequency rank of the dictionary word */
+    public int getRank() { return rank; }
+
+    /** @return {@code true} if the token is a dictionary word spelled backwards */
+    public boolean isReversed() { return reversed; }
+
+    /** @return {@code true} if the token uses l33t substitutions such as {@code @} for {@code a} */
+    public boolean isL33t() { return l33t; }
+
+    /** @return keyboard name for {@link Pattern#SPATIAL} ({@code "qwerty"} or {@code "keypad"}) */
+    public String getGraph() { return graph; }
+
+    /** @return number of direction changes in a keyboard walk */
+    public int getTurns() { return turns; }
+
+    /** @return year for {@link Pattern#DATE} and {@link Pattern#YEAR} */
+    public int getYear() { return year; }
+
+    @Override
+    public String toString() {
+        return pattern.name().toLowerCase() + "[" + i + ".." + j + "] '" + token + "' ~" + Math.round(Math.log10(Math.max(guesses, 1)) * 10) / 10.0;
+    }
+}
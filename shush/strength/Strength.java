@@ -0,0 +1,75 @@
+package shush.strength;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of estimating a password's strength: a guess count, a 0-4 score and advice.
+ * <p>
+ * Scores follow the usual zxcvbn bands: 0 is under 10^3 guesses (too guessable), 1 under 10^6,
+ * 2 under 10^8, 3 under 10^10, 4 anything stronger.
+ * </p>
+ */
+public final class Strength {
+
+    /** Guesses per second assumed for an offline attack on a slow password hash. */
+    public static final double OFFLINE_SLOW_HASH_RATE = 1e4;
+
+    private final double guesses;
+    private final int score;
+    private final List<Match> sequence;
+    private final String warning;
+    private final List<String> suggestions;
+
+    Strength(double guesses, int score, List<Match> sequence, String warning, List<String> suggestions) {
+        this.guesses = guesses;
+        this.score = score;
+        this.sequence = Collections.unmodifiableList(sequence);
+        this.warning = warning;
+        this.suggestions = Collections.unmodifiableList(suggestions);
+    }
+
+    /** @return estimated number of guesses an informed attacker needs */
+    public double getGuesses() { return guesses; }
+
+    /** @return {@code log10} of {@link #getGuesses()} */
+    public double getGuessesLog10() { return Math.log10(guesses); }
+
+    /** @return score from 0 (trivial) to 4 (strong) */
+    public int getScore() { return score; }
+
+    /** @return the cheapest sequence of patterns covering the password, in order */
+    public List<Match> getSequence() { return sequence; }
+
+    /** @return a short explanation of the main weakness, or {@code null} */
+    public String getWarning() { return warning; }
+
+    /** @return suggestions for a better password; empty for strong passwords */
+    public List<String> getSuggestions() { return suggestions; }
+
+    /**
+     * @return rough time to crack offline at {@link #OFFLINE_SLOW_HASH_RATE}, e.g. {@code "3 hours"}
+     */
+    public String getCrackTimeDisplay() {
+        double seconds = guesses / OFFLINE_SLOW_HASH_RATE;
+        final double minute = 60, hour = minute * 60, day = hour * 24, month = day * 31, year = month * 12, century = year * 100;
+        if (seconds < 1) return "less than a second";
+        if (seconds < minute) return plural(seconds, "second");
+        if (seconds < hour) return plural(seconds / minute, "minute");
+        if (seconds < day) return plural(seconds / hour, "hour");
+        if (seconds < month) return plural(seconds / day, "day");
+        if (seconds < year) return plural(seconds / month, "month");
+        if (seconds < century) return plural(seconds / year, "year");
+        return "centuries";
+    }
+
+    @Override
+    public String toString() {
+        return "score " + score + "/4 (~10^" + Math.round(getGuessesLog10()) + " guesses, " + getCrackTimeDisplay() + ")";
+    }
+
+    private static String plural(double n, String unit) {
+        long r = Math.round(n);
+        return r + " " + unit + (r == 1 ? "" : "s");
+    }
+}
@@ -0,0 +1,723 @@
+package shush.strength;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import shush.vault.VaultRegistry;
+
+/**
+ * Offline password-strength estimator in the style of zxcvbn.
+ * <p>
+ * The password is broken into every overlapping pattern the matchers find (dictionary words,
+ * including reversed and l33t spellings, keyboard walks, sequences, repeats and dates). Each
+ * pattern gets a guess count, and a dynamic program picks the sequence of patterns and
+ * brute-forced gaps that an attacker would need the fewest guesses to hit:
+ * {@code l! * prod(guesses) + 10000^(l-1)} for {@code l} patterns.
+ * </p>
+ * <p>
+ * Dictionary lookups walk a memory-mapped {@link DictionaryTrie}, so an estimate costs a few
+ * microseconds and allocates only the matches it reports; one instance is safe to share
+ * between threads.
+ * </p>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * Strength s = StrengthEstimator.getDefault().estimate("Tr0ub4dour&3", List.of("github"));
+ * if (s.getScore() < 2) System.out.println(s.getWarning());
+ * }</pre>
+ */
+public final class StrengthEstimator {
+
+    /** Passwords are analysed up to this many characters; any longer is already out of reach. */
+    static final int MAX_LENGTH = 100;
+
+    static final double MIN_GUESSES_BEFORE_GROWING_SEQUENCE = 10000;
+    static final double MIN_SUBMATCH_GUESSES_SINGLE_CHAR = 10;
+    static final double MIN_SUBMATCH_GUESSES_MULTI_CHAR = 50;
+    static final int MIN_YEAR_SPACE = 20;
+    static final int DATE_MIN_YEAR = 1000;
+    static final int DATE_MAX_YEAR = 2050;
+    static final int REFERENCE_YEAR = LocalDate.now().getYear();
+    static final String USER_INPUTS = "user_inputs";
+
+    /** For each l33t character, the letters it commonly stands for. */
+    private static final String[] L33T = new String[128];
+    static {
+        String[][] table = {
+                {"a", "4@"}, {"b", "8"}, {"c", "({[<"}, {"e", "3"}, {"g", "69"}, {"i", "1!|"},
+                {"l", "1|7"}, {"o", "0"}, {"s", "$5"}, {"t", "+7"}, {"x", "%"}, {"z", "2"}};
+        for (String[] row : table) {
+            for (char sub : row[1].toCharArray()) L33T[sub] = L33T[sub] == null ? row[0] : L33T[sub] + row[0];
+        }
+    }
+
+    private static final java.util.regex.Pattern DATE_WITH_SEPARATOR =
+            java.util.regex.Pattern.compile("(\\d{1,4})([\\s/\\\\_.-])(\\d{1,2})\\2(\\d{1,4})");
+    private static final int[][][] DATE_SPLITS = {
+            null, null, null, null,
+            {{1, 2}, {2, 3}},
+            {{1, 3}, {2, 3}},
+            {{1, 2}, {2, 4}, {4, 5}},
+            {{1, 3}, {2, 3}, {4, 5}, {4, 6}},
+            {{2, 4}, {4, 6}}};
+
+    private static volatile StrengthEstimator defaultInstance;
+
+    private final DictionaryTrie trie;
+
+    /**
+     * Constructs an estimator over the given dictionaries.
+     *
+     * @param trie dictionaries; {@link DictionaryTrie#empty()} disables dictionary matching
+     */
+    public StrengthEstimator(DictionaryTrie trie) {
+        this.trie = trie;
+    }
+
+    /**
+     * Returns the shared estimator over the bundled dictionaries, mapping them on first use.
+     *
+     * @return the default estimator
+     */
+    public static StrengthEstimator getDefault() {
+        StrengthEstimator e = defaultInstance;
+        if (e == null) {
+            synchronized (StrengthEstimator.class) {
+                e = defaultInstance;
+                if (e == null) {
+                    e = new StrengthEstimator(DictionaryTrie.openBundled(
+                            VaultRegistry.defaultRegistry().getHome().resolve("cache")));
+                    defaultInstance = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    /** @return {@code true} if dictionaries are loaded */
+    public boolean hasDictionaries() {
+        return trie.root() >= 0;
+    }
+
+    /**
+     * Estimates a password's strength.
+     *
+     * @param password the password
+     * @return the estimate
+     */
+    public Strength estimate(CharSequence password) {
+        return estimate(password, List.of());
+    }
+
+    /**
+     * Estimates a password's strength, treating {@code userInputs} (label, username, ...) as an
+     * extra dictionary that an attacker who knows the context would try first.
+     *
+     * @param password   the password
+     * @param userInputs context words; may be empty
+     * @return the estimate
+     */
+    public Strength estimate(CharSequence password, Collection<String> userInputs) {
+        String pw = password.length() > MAX_LENGTH ? password.subSequence(0, MAX_LENGTH).toString() : password.toString();
+        Map<String, Integer> userDict = userDictionary(userInputs);
+        List<Match> sequence = new ArrayList<>();
+        double guesses = mostGuessableSequence(pw, matches(pw, userDict), sequence);
+        int score = score(guesses);
+        return feedback(guesses, score, sequence);
+    }
+
+    // ----------------- matching -----------------
+
+    /** @return every pattern found in {@code pw}, possibly overlapping */
+    List<Match> matches(String pw, Map<String, Integer> userDict) {
+        List<Match> out = new ArrayList<>();
+        String lower = pw.toLowerCase(Locale.ROOT);
+        dictionaryMatches(pw, lower, false, out);
+        dictionaryMatches(pw, new StringBuilder(lower).reverse().toString(), true, out);
+        if (!userDict.isEmpty()) userInputMatches(pw, lower, userDict, out);
+        spatialMatches(pw, KeyboardGraph.QWERTY, out);
+        spatialMatches(pw, KeyboardGraph.KEYPAD, out);
+        sequenceMatches(pw, out);
+        repeatMatches(pw, userDict, out);
+        dateMatches(pw, out);
+        return out;
+    }
+
+    /**
+     * Walks the trie from every start position. Forward walks also branch on l33t substitutions;
+     * each substitution character must stand for the same letter throughout one word.
+     */
+    private void dictionaryMatches(String pw, String text, boolean reversed, List<Match> out) {
+        int root = trie.root();
+        if (root < 0) return;
+        int n = text.length();
+        char[] word = new char[n];
+        char[] subs = new char[n]; // substituted character per position, 0 if literal
+        for (int i = 0; i < n; i++) walk(pw, text, reversed, i, i, root, word, subs, out);
+    }
+
+    private void walk(String pw, String text, boolean reversed, int i, int pos, int node,
+                      char[] word, char[] subs, List<Match> out) {
+        if (pos == text.length()) return;
+        char c = text.charAt(pos);
+        int next = trie.child(node, c);
+        if (next >= 0) {
+            word[pos] = c;
+            subs[pos] = 0;
+            visit(pw, text, reversed, i, pos, next, word, subs, out);
+        }
+        String letters = reversed || c >= 128 ? null : L33T[c];
+        if (letters == null) return;
+        for (int k = 0; k < letters.length(); k++) {
+            char letter = letters.charAt(k);
+            if (!consistent(text, i, pos, c, letter, subs, word)) continue;
+            next = trie.child(node, letter);
+            if (next < 0) continue;
+            word[pos] = letter;
+            subs[pos] = c;
+            visit(pw, text, reversed, i, pos, next, word, subs, out);
+        }
+    }
+
+    private void visit(String pw, String text, boolean reversed, int i, int pos, int node,
+                       char[] word, char[] subs, List<Match> out) {
+        int value = trie.value(node);
+        if (value >= 0) {
+            boolean l33t = false;
+            for (int p = i; p <= pos; p++) l33t |= subs[p] != 0;
+            if (!l33t || pos > i) {
+                int n = pw.length();
+                int mi = reversed ? n - 1 - pos : i, mj = reversed ? n - 1 - i : pos;
+                Match m = new Match(Match.Pattern.DICTIONARY, mi, mj, pw.substring(mi, mj + 1));
+                m.dictionary = trie.getDictionaries().get(DictionaryTrie.dictionary(value));
+                m.rank = DictionaryTrie.rank(value);
+                m.matchedWord = new String(word, i, pos - i + 1);
+                if (reversed) m.matchedWord = new StringBuilder(m.matchedWord).reverse().toString();
+                m.reversed = reversed;
+                m.l33t = l33t;
+                if (l33t) m.subs = substitutions(text, i, pos, subs, word);
+                out.add(m);
+            }
+        }
+        walk(pw, text, reversed, i, pos + 1, node, word, subs, out);
+    }
+
+    /** @return {@code false} if {@code sub} already stands for a different letter (or is literal) in this word */
+    private static boolean consistent(String text, int i, int pos, char sub, char letter, char[] subs, char[] word) {
+        for (int p = i; p < pos; p++) {
+            if (text.charAt(p) != sub) continue;
+            if (subs[p] == 0 || word[p] != letter) return false;
+        }
+        return true;
+    }
+
+    /** @return substitution pairs {@code sub, letter, sub, letter, ...} used between {@code i} and {@code pos} */
+    private static String substitutions(String text, int i, int pos, char[] subs, char[] word) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = i; p <= pos; p++) {
+            if (subs[p] == 0) continue;
+            boolean seen = false;
+            for (int k = 0; k < sb.length(); k += 2) seen |= sb.charAt(k) == subs[p];
+            if (!seen) sb.append(subs[p]).append(word[p]);
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Integer> userDictionary(Collection<String> inputs) {
+        if (inputs.isEmpty()) return Collections.emptyMap();
+        Map<String, Integer> dict = new HashMap<>();
+        int rank = 1;
+        for (String input : inputs) {
+            if (input == null || input.isBlank()) continue;
+            String lower = input.toLowerCase(Locale.ROOT).trim();
+            dict.putIfAbsent(lower, rank++);
+            for (String part : lower.split("[^\\p{L}\\p{N}]+")) {
+                if (part.length() >= 3) dict.putIfAbsent(part, rank++);
+            }
+        }
+        return dict;
+    }
+
+    private static void userInputMatches(String pw, String lower, Map<String, Integer> dict, List<Match> out) {
+        int maxLen = 0;
+        for (String w : dict.keySet()) maxLen = Math.max(maxLen, w.length());
+        for (int i = 0; i < lower.length(); i++) {
+            for (int j = i; j < lower.length() && j - i < maxLen; j++) {
+                Integer rank = dict.get(lower.substring(i, j + 1));
+                if (rank == null) continue;
+                Match m = new Match(Match.Pattern.DICTIONARY, i, j, pw.substring(i, j + 1));
+                m.dictionary = USER_INPUTS;
+                m.matchedWord = lower.substring(i, j + 1);
+                m.rank = rank;
+                out.add(m);
+            }
+        }
+    }
+
+    /** Keyboard walks of three or more keys, counting direction changes and shifted keys. */
+    private static void spatialMatches(String pw, KeyboardGraph graph, List<Match> out) {
+        int n = pw.length();
+        int i = 0;
+        while (i < n - 1) {
+            int j = i + 1;
+            int lastDirection = -1, turns = 0;
+            int shifted = graph.isShifted(pw.charAt(i)) ? 1 : 0;
+            while (true) {
+                boolean found = false;
+                String[] adjacent = graph.neighbours(pw.charAt(j - 1));
+                if (j < n && adjacent != null) {
+                    char cur = pw.charAt(j);
+                    for (int d = 0; d < adjacent.length; d++) {
+                        String key = adjacent[d];
+                        int at = key == null ? -1 : key.indexOf(cur);
+                        if (at < 0) continue;
+                        found = true;
+                        if (at == 1) shifted++;
+                        if (lastDirection != d) {
+                            turns++;
+                            lastDirection = d;
+                        }
+                        break;
+                    }
+                }
+                if (found) {
+                    j++;
+                } else {
+                    if (j - i > 2) {
+                        Match m = new Match(Match.Pattern.SPATIAL, i, j - 1, pw.substring(i, j));
+                        m.graph = graph.name;
+                        m.turns = turns;
+                        m.shifted = shifted;
+                        out.add(m);
+                    }
+                    i = j;
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Runs of characters with a constant code-point step of 1 to 5, such as {@code abc} or {@code 9753}. */
+    private static void sequenceMatches(String pw, List<Match> out) {
+        int n = pw.length();
+        if (n < 2) return;
+        int i = 0;
+        int lastDelta = pw.charAt(1) - pw.charAt(0);
+        for (int k = 2; k < n; k++) {
+            int delta = pw.charAt(k) - pw.charAt(k - 1);
+            if (delta == lastDelta) continue;
+            addSequence(pw, i, k - 1, lastDelta, out);
+            i = k - 1;
+            lastDelta = delta;
+        }
+        addSequence(pw, i, n - 1, lastDelta, out);
+    }
+
+    private static void addSequence(String pw, int i, int j, int delta, List<Match> out) {
+        int abs = Math.abs(delta);
+        if ((j - i > 1 || abs == 1) && abs > 0 && abs <= 5) {
+            Match m = new Match(Match.Pattern.SEQUENCE, i, j, pw.substring(i, j + 1));
+            m.ascending = delta > 0;
+            out.add(m);
+        }
+    }
+
+    /**
+     * Repeated units such as {@code aaa} or {@code abcabc}. At the first position with a repeat,
+     * the longer of the shortest-unit and longest-unit repetitions wins, as a greedy versus lazy
+     * {@code (.+)\1+} search would choose.
+     */
+    private void repeatMatches(String pw, Map<String, Integer> userDict, List<Match> out) {
+        int n = pw.length();
+        int i = 0;
+        while (i < n - 1) {
+            int lazyUnit = 0, lazySpan = 0, greedyUnit = 0, greedySpan = 0;
+            for (int u = 1; u <= (n - i) / 2; u++) {
+                int r = 1;
+                while (i + (r + 1) * u <= n && pw.regionMatches(i, pw, i + r * u, u)) r++;
+                if (r < 2) continue;
+                if (lazyUnit == 0) {
+                    lazyUnit = u;
+                    lazySpan = r * u;
+                }
+                greedyUnit = u;
+                greedySpan = r * u;
+            }
+            if (lazyUnit == 0) {
+                i++;
+                continue;
+            }
+            int span = greedySpan > lazySpan ? greedySpan : lazySpan;
+            String token = pw.substring(i, i + span);
+            int unit = greedySpan > lazySpan ? period(token) : lazyUnit;
+            Match m = new Match(Match.Pattern.REPEAT, i, i + span - 1, token);
+            m.baseToken = token.substring(0, unit);
+            m.repeatCount = span / unit;
+            m.baseGuesses = mostGuessableSequence(m.baseToken, matches(m.baseToken, userDict), new ArrayList<>());
+            out.add(m);
+            i += span;
+        }
+    }
+
+    /** @return length of the shortest unit that {@code token} is two or more copies of */
+    private static int period(String token) {
+        int n = token.length();
+        for (int u = 1; u <= n / 2; u++) {
+            if (n % u == 0 && token.regionMatches(0, token, u, n - u)) return u;
+        }
+        return n;
+    }
+
+    /** Dates with or without separators ({@code 13.05.1987}, {@code 870513}) and 19xx/20xx years. */
+    private static void dateMatches(String pw, List<Match> out) {
+        int n = pw.length();
+        List<Match> dates = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!isDigit(pw.charAt(i))) continue;
+            int digits = i;
+            while (digits < n && isDigit(pw.charAt(digits))) digits++;
+            for (int j = i + 3; j < Math.min(digits, i + 8); j++) {
+                String token = pw.substring(i, j + 1);
+                int best = -1;
+                for (int[] split : DATE_SPLITS[token.length()]) {
+                    int year = dmyYear(Integer.parseInt(token.substring(0, split[0])),
+                            Integer.parseInt(token.substring(split[0], split[1])),
+                            Integer.parseInt(token.substring(split[1])));
+                    if (year >= 0 && (best < 0 || Math.abs(year - REFERENCE_YEAR) < Math.abs(best - REFERENCE_YEAR))) best = year;
+                }
+                if (best >= 0) dates.add(date(pw, i, j, best, ""));
+            }
+            for (int j = i + 5; j < Math.min(n, i + 10); j++) {
+                Matcher dm = DATE_WITH_SEPARATOR.matcher(pw).region(i, j + 1);
+                if (!dm.matches()) continue;
+                int year = dmyYear(Integer.parseInt(dm.group(1)), Integer.parseInt(dm.group(3)), Integer.parseInt(dm.group(4)));
+                if (year >= 0) dates.add(date(pw, i, j, year, dm.group(2)));
+            }
+            if (i + 3 < n && (pw.startsWith("19", i) || pw.startsWith("20", i))
+                    && isDigit(pw.charAt(i + 2)) && isDigit(pw.charAt(i + 3))) {
+                Match m = new Match(Match.Pattern.YEAR, i, i + 3, pw.substring(i, i + 4));
+                m.year = Integer.parseInt(m.token);
+                out.add(m);
+            }
+        }
+        for (Match d : dates) {
+            boolean inner = false;
+            for (Match o : dates) inner |= o != d && o.i <= d.i && o.j >= d.j;
+            if (!inner) out.add(d);
+        }
+    }
+
+    private static Match date(String pw, int i, int j, int year, String separator) {
+        Match m = new Match(Match.Pattern.DATE, i, j, pw.substring(i, j + 1));
+        m.year = year;
+        m.separator = separator;
+        return m;
+    }
+
+    /** @return the year if the three numbers read as a day, month and year in some order, else {@code -1} */
+    private static int dmyYear(int a, int b, int c) {
+        if (b > 31 || b <= 0) return -1;
+        int over12 = 0, over31 = 0, under1 = 0;
+        for (int v : new int[]{a, b, c}) {
+            if ((v > 99 && v < DATE_MIN_YEAR) || v > DATE_MAX_YEAR) return -1;
+            if (v > 31) over31++;
+            if (v > 12) over12++;
+            if (v <= 0) under1++;
+        }
+        if (over31 >= 2 || over12 == 3 || under1 >= 2) return -1;
+        int[][] yearSplits = {{c, a, b}, {a, b, c}};
+        for (int[] s : yearSplits) {
+            if (s[0] >= DATE_MIN_YEAR && s[0] <= DATE_MAX_YEAR) return isDayMonth(s[1], s[2]) ? s[0] : -1;
+        }
+        for (int[] s : yearSplits) {
+            if (isDayMonth(s[1], s[2])) return s[0] > 99 ? s[0] : s[0] > 50 ? s[0] + 1900 : s[0] + 2000;
+        }
+        return -1;
+    }
+
+    private static boolean isDayMonth(int x, int y) {
+        return (x >= 1 && x <= 31 && y >= 1 && y <= 12) || (y >= 1 && y <= 31 && x >= 1 && x <= 12);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // ----------------- scoring -----------------
+
+    /**
+     * Finds the sequence of non-overlapping matches (gaps filled by brute force) that minimizes
+     * {@code l! * prod(guesses) + 10000^(l-1)}.
+     *
+     * @param pw       the password
+     * @param matches  candidate matches
+     * @param sequence receives the optimal sequence
+     * @return its guess count
+     */
+    static double mostGuessableSequence(String pw, List<Match> matches, List<Match> sequence) {
+        int n = pw.length();
+        if (n == 0) return 1;
+        List<List<Match>> byEnd = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) byEnd.add(new ArrayList<>(2));
+        for (Match m : matches) byEnd.get(m.j).add(m);
+
+        // best[k][l]: cheapest way to cover pw[0..k] with exactly l matches
+        double[][] g = new double[n][n + 1];
+        double[][] pi = new double[n][n + 1];
+        Match[][] last = new Match[n][n + 1];
+        for (int k = 0; k < n; k++) {
+            for (Match m : byEnd.get(k)) {
+                if (m.i == 0) {
+                    update(pw, m, 1, g, pi, last);
+                } else {
+                    for (int l = 1; l <= n; l++) if (last[m.i - 1][l] != null) update(pw, m, l + 1, g, pi, last);
+                }
+            }
+            update(pw, bruteforce(pw, 0, k), 1, g, pi, last);
+            for (int i = 1; i <= k; i++) {
+                Match m = null;
+                for (int l = 1; l <= n; l++) {
+                    Match prev = last[i - 1][l];
+                    if (prev == null || prev.pattern == Match.Pattern.BRUTEFORCE) continue;
+                    if (m == null) m = bruteforce(pw, i, k);
+                    update(pw, m, l + 1, g, pi, last);
+                }
+            }
+        }
+
+        int k = n - 1, l = 0;
+        double best = Double.POSITIVE_INFINITY;
+        for (int c = 1; c <= n; c++) {
+            if (last[k][c] != null && g[k][c] < best) {
+                best = g[k][c];
+                l = c;
+            }
+        }
+        List<Match> reversed = new ArrayList<>(l);
+        while (k >= 0) {
+            Match m = last[k][l];
+            reversed.add(m);
+            k = m.i - 1;
+            l--;
+        }
+        for (int x = reversed.size() - 1; x >= 0; x--) sequence.add(reversed.get(x));
+        return best;
+    }
+
+    private static void update(String pw, Match m, int l, double[][] g, double[][] pi, Match[][] last) {
+        if (l >= g[0].length) return;
+        int k = m.j;
+        double p = guesses(pw, m);
+        if (l > 1) p *= pi[m.i - 1][l - 1];
+        double total = factorial(l) * p + Math.pow(MIN_GUESSES_BEFORE_GROWING_SEQUENCE, l - 1);
+        for (int c = 1; c <= l; c++) {
+            if (last[k][c] != null && g[k][c] <= total) return;
+        }
+        g[k][l] = total;
+        pi[k][l] = p;
+        last[k][l] = m;
+    }
+
+    private static Match bruteforce(String pw, int i, int j) {
+        return new Match(Match.Pattern.BRUTEFORCE, i, j, pw.substring(i, j + 1));
+    }
+
+    /** @return guesses for {@code m} on its own, cached on the match */
+    static double guesses(String pw, Match m) {
+        if (m.guesses > 0) return m.guesses;
+        double min = 1;
+        int len = m.token.length();
+        if (len < pw.length()) min = len == 1 ? MIN_SUBMATCH_GUESSES_SINGLE_CHAR : MIN_SUBMATCH_GUESSES_MULTI_CHAR;
+        double g;
+        switch (m.pattern) {
+            case DICTIONARY:
+                g = m.rank * uppercaseVariations(m.token) * l33tVariations(m) * (m.reversed ? 2 : 1);
+                break;
+            case SPATIAL:
+                g = spatialGuesses(m);
+                break;
+            case SEQUENCE: {
+                char first = m.token.charAt(0);
+                double base = "aAzZ019".indexOf(first) >= 0 ? 4 : isDigit(first) ? 10 : 26;
+                g = (m.ascending ? base : base * 2) * len;
+                break;
+            }
+            case REPEAT:
+                g = m.baseGuesses * m.repeatCount;
+                break;
+            case DATE:
+                g = Math.max(Math.abs(m.year - REFERENCE_YEAR), MIN_YEAR_SPACE) * 365.0 * (m.separator.isEmpty() ? 1 : 4);
+                break;
+            case YEAR:
+                g = Math.max(Math.abs(m.year - REFERENCE_YEAR), MIN_YEAR_SPACE);
+                break;
+            default:
+                g = Math.min(Math.pow(10, len), Double.MAX_VALUE);
+                min = Math.max(min, (len == 1 ? MIN_SUBMATCH_GUESSES_SINGLE_CHAR : MIN_SUBMATCH_GUESSES_MULTI_CHAR) + 1);
+        }
+        m.guesses = Math.max(g, min);
+        return m.guesses;
+    }
+
+    private static double uppercaseVariations(String token) {
+        int upper = 0, lower = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (Character.isUpperCase(c)) upper++;
+            else if (Character.isLowerCase(c)) lower++;
+        }
+        if (upper == 0) return 1;
+        boolean firstOnly = upper == 1 && Character.isUpperCase(token.charAt(0));
+        boolean lastOnly = upper == 1 && Character.isUpperCase(token.charAt(token.length() - 1));
+        if (firstOnly || lastOnly || lower == 0) return 2;
+        double v = 0;
+        for (int i = 1; i <= Math.min(upper, lower); i++) v += choose(upper + lower, i);
+        return v;
+    }
+
+    private static double l33tVariations(Match m) {
+        if (!m.l33t) return 1;
+        double v = 1;
+        String lower = m.token.toLowerCase(Locale.ROOT);
+        for (int k = 0; k < m.subs.length(); k += 2) {
+            char sub = m.subs.charAt(k), letter = m.subs.charAt(k + 1);
+            int s = 0, u = 0;
+            for (int i = 0; i < lower.length(); i++) {
+                if (lower.charAt(i) == sub) s++;
+                else if (lower.charAt(i) == letter) u++;
+            }
+            if (s == 0 || u == 0) {
+                v *= 2;
+            } else {
+                double p = 0;
+                for (int i = 1; i <= Math.min(s, u); i++) p += choose(s + u, i);
+                v *= p;
+            }
+        }
+        return v;
+    }
+
+    private static double spatialGuesses(Match m) {
+        KeyboardGraph graph = "keypad".equals(m.graph) ? KeyboardGraph.KEYPAD : KeyboardGraph.QWERTY;
+        int len = m.token.length();
+        double g = 0;
+        for (int i = 2; i <= len; i++) {
+            int possibleTurns = Math.min(m.turns, i - 1);
+            for (int j = 1; j <= possibleTurns; j++) {
+                g += choose(i - 1, j - 1) * graph.startingPositions * Math.pow(graph.averageDegree, j);
+            }
+        }
+        if (m.shifted > 0) {
+            int s = m.shifted, u = len - m.shifted;
+            if (s == 0 || u == 0) {
+                g *= 2;
+            } else {
+                double v = 0;
+                for (int i = 1; i <= Math.min(s, u); i++) v += choose(s + u, i);
+                g *= v;
+            }
+        }
+        return g;
+    }
+
+    private static double choose(int n, int k) {
+        if (k > n) return 0;
+        double r = 1;
+        for (int d = 1; d <= k; d++) r = r * (n - k + d) / d;
+        return r;
+    }
+
+    private static double factorial(int n) {
+        double f = 1;
+        for (int i = 2; i <= n; i++) f *= i;
+        return f;
+    }
+
+    static int score(double guesses) {
+        final double delta = 5;
+        if (guesses < 1e3 + delta) return 0;
+        if (guesses < 1e6 + delta) return 1;
+        if (guesses < 1e8 + delta) return 2;
+        if (guesses < 1e10 + delta) return 3;
+        return 4;
+    }
+
+    // ----------------- feedback -----------------
+
+    private static Strength feedback(double guesses, int score, List<Match> sequence) {
+        List<String> suggestions = new ArrayList<>();
+        if (sequence.isEmpty()) {
+            suggestions.add("Use a few words, avoid common phrases.");
+            suggestions.add("No need for symbols, digits, or uppercase letters.");
+            return new Strength(guesses, score, sequence, null, suggestions);
+        }
+        if (score > 2) return new Strength(guesses, score, sequence, null, suggestions);
+
+        Match longest = sequence.get(0);
+        for (Match m : sequence) if (m.token.length() > longest.token.length()) longest = m;
+        suggestions.add("Add another word or two. Uncommon words are better.");
+        String warning = null;
+        switch (longest.pattern) {
+            case DICTIONARY:
+                warning = dictionaryWarning(longest, sequence.size() == 1);
+                String t = longest.token;
+                if (Character.isUpperCase(t.charAt(0)) && !t.substring(1).chars().anyMatch(Character::isUpperCase)) {
+                    suggestions.add("Capitalization doesn't help very much.");
+                } else if (!t.toLowerCase(Locale.ROOT).equals(t) && t.toUpperCase(Locale.ROOT).equals(t)) {
+                    suggestions.add("All-uppercase is almost as easy to guess as all-lowercase.");
+                }
+                if (longest.reversed && t.length() >= 4) suggestions.add("Reversed words aren't much harder to guess.");
+                if (longest.l33t) suggestions.add("Predictable substitutions like '@' instead of 'a' don't help very much.");
+                break;
+            case SPATIAL:
+                warning = longest.turns == 1 ? "Straight rows of keys are easy to guess." : "Short keyboard patterns are easy to guess.";
+                suggestions.add("Use a longer keyboard pattern with more turns.");
+                break;
+            case REPEAT:
+                warning = longest.baseToken.length() == 1
+                        ? "Repeats like \"aaa\" are easy to guess."
+                        : "Repeats like \"abcabcabc\" are only slightly harder to guess than \"abc\".";
+                suggestions.add("Avoid repeated words and characters.");
+                break;
+            case SEQUENCE:
+                warning = "Sequences like abc or 6543 are easy to guess.";
+                suggestions.add("Avoid sequences.");
+                break;
+            case DATE:
+            case YEAR:
+                warning = longest.pattern == Match.Pattern.YEAR ? "Recent years are easy to guess." : "Dates are often easy to guess.";
+                suggestions.add("Avoid dates and years that are associated with you.");
+                break;
+            default:
+                break;
+        }
+        return new Strength(guesses, score, sequence, warning, suggestions);
+    }
+
+    private static String dictionaryWarning(Match m, boolean sole) {
+        switch (m.dictionary) {
+            case "passwords":
+                if (sole && !m.l33t && !m.reversed) {
+                    if (m.rank <= 10) return "This is a top-10 common password.";
+                    if (m.rank <= 100) return "This is a top-100 common password.";
+                    return "This is a very common password.";
+                }
+                return Math.log10(m.guesses) <= 4 ? "This is similar to a commonly used password." : null;
+            case "english":
+                return sole ? "A word by itself is easy to guess." : null;
+            case "names":
+            case "surnames":
+                return sole ? "Names and surnames by themselves are easy to guess." : "Common names and surnames are easy to guess.";
+            case USER_INPUTS:
+                return "This is close to the entry's label or username.";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package shush.strength;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles frequency-ordered wordlists into the {@link DictionaryTrie} file format.
+ * <p>
+ * Each wordlist holds one word per line, most common first; a word's rank is its line number
+ * among accepted words. Words are lowercased, blank lines and lines starting with {@code #} are
+ * skipped, as are words with non-ASCII characters. A word in several lists keeps its best rank
+ * (ties go to the earlier list). Run at build time, not by the CLI:
+ * <pre>{@code
+ * java shush.strength.TrieCompiler resources/strength/dictionaries.trie \
+ *     passwords=resources/strength/passwords.txt english=resources/strength/english.txt ...
+ * }</pre>
+ * With no arguments the bundled lists under {@code resources/strength} are compiled in place.
+ */
+public final class TrieCompiler {
+
+    /** Bundled lists, in tie-break order. */
+    static final String[] BUNDLED_LISTS = {"passwords", "english", "names", "surnames"};
+
+    private final Map<String, Path> lists = new LinkedHashMap<>();
+
+    /**
+     * Adds a wordlist.
+     *
+     * @param name dictionary name reported in matches (at most 255 ASCII bytes)
+     * @param file wordlist file
+     * @return this compiler
+     * @throws IllegalArgumentException if more than 255 lists are added
+     */
+    public TrieCompiler add(String name, Path file) {
+        if (lists.size() == 255) throw new IllegalArgumentException("At most 255 dictionaries");
+        lists.put(name, file);
+        return this;
+    }
+
+    /**
+     * Builds the trie and writes it atomically to {@code out}.
+     *
+     * @param out destination file
+     * @return number of distinct words written
+     * @throws IOException if a wordlist cannot be read or the file cannot be written
+     */
+    public int compile(Path out) throws IOException {
+        Node root = new Node((char) 0);
+        int words = 0, dict = 0;
+        for (Map.Entry<String, Path> list : lists.entrySet()) {
+            int rank = 0;
+            try (BufferedReader r = Files.newBufferedReader(list.getValue(), StandardCharsets.UTF_8)) {
+                for (String line; (line = r.readLine()) != null; ) {
+                    String w = line.trim().toLowerCase(Locale.ROOT);
+                    if (w.isEmpty() || w.startsWith("#") || !ascii(w)) continue;
+                    rank++;
+                    Node n = root;
+                    for (int i = 0; i < w.length(); i++) n = n.children.computeIfAbsent(w.charAt(i), Node::new);
+                    if (n.value < 0) {
+                        words++;
+                        n.value = dict << 24 | rank;
+                    } else if (DictionaryTrie.rank(n.value) > rank) {
+                        n.value = dict << 24 | rank;
+                    }
+                }
+            }
+            dict++;
+        }
+
+        // Breadth-first numbering
+        List<Node> order = new ArrayList<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node n = queue.poll();
+            order.add(n);
+            queue.addAll(n.children.values());
+        }
+        int nodes = order.size();
+
+        long[] louds = new long[(2 * nodes + 63) / 64];
+        long[] terminal = new long[(nodes + 63) / 64];
+        byte[] labels = new byte[nodes];
+        int[] values = new int[words];
+        int pos = 0, v = 0;
+        for (int id = 0; id < nodes; id++) {
+            Node n = order.get(id);
+            labels[id] = (byte) n.label;
+            for (int c = 0; c < n.children.size(); c++, pos++) louds[pos >>> 6] |= 1L << (pos & 63);
+            pos++; // terminating 0-bit
+            if (n.value >= 0) {
+                terminal[id >>> 6] |= 1L << (id & 63);
+                values[v++] = n.value;
+            }
+        }
+        int blocks = (louds.length + DictionaryTrie.BLOCK_WORDS - 1) / DictionaryTrie.BLOCK_WORDS;
+        int[] zeros = new int[blocks + 1];
+        int seen = 0, bits = 0;
+        for (int w = 0; w < louds.length; w++) {
+            if (w % DictionaryTrie.BLOCK_WORDS == 0) zeros[w / DictionaryTrie.BLOCK_WORDS] = seen;
+            int width = Math.min(64, 2 * nodes - bits);
+            seen += width - Long.bitCount(louds[w]);
+            bits += width;
+        }
+        zeros[blocks] = seen;
+        int[] ranks = new int[terminal.length + 1];
+        for (int w = 0; w < terminal.length; w++) ranks[w + 1] = ranks[w] + Long.bitCount(terminal[w]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream o = new DataOutputStream(bytes)) {
+            o.writeInt(DictionaryTrie.MAGIC);
+            o.writeInt(DictionaryTrie.VERSION);
+            o.writeInt(nodes);
+            o.writeInt(words);
+            o.writeInt(lists.size());
+            for (String name : lists.keySet()) {
+                byte[] b = name.getBytes(StandardCharsets.US_ASCII);
+                o.writeByte(b.length);
+                o.write(b);
+            }
+            o.write(labels);
+            for (long l : louds) o.writeLong(l);
+            for (int z : zeros) o.writeInt(z);
+            for (long l : terminal) o.writeLong(l);
+            for (int r : ranks) o.writeInt(r);
+            for (int x : values) o.writeInt(x);
+        }
+        Path dir = out.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "trie", ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return words;
+    }
+
+    /**
+     * Command-line entry point: {@code TrieCompiler [out.trie name=wordlist...]}.
+     *
+     * @param args output file followed by {@code name=path} pairs, or nothing for the bundled lists
+     * @throws IOException if compiling fails
+     */
+    public static void main(String[] args) throws IOException {
+        TrieCompiler compiler = new TrieCompiler();
+        Path out;
+        if (args.length == 0) {
+            Path dir = Paths.get("resources", "strength");
+            for (String name : BUNDLED_LISTS) compiler.add(name, dir.resolve(name + ".txt"));
+            out = dir.resolve("dictionaries.trie");
+        } else {
+            out = Paths.get(args[0]);
+            for (int i = 1; i < args.length; i++) {
+                int eq = args[i].indexOf('=');
+                if (eq <= 0) throw new IllegalArgumentException("Expected name=wordlist, got " + args[i]);
+                compiler.add(args[i].substring(0, eq), Paths.get(args[i].substring(eq + 1)));
+            }
+        }
+        int words = compiler.compile(out);
+        System.out.println("Wrote " + words + " words (" + Files.size(out) + " bytes) to " + out);
+    }
+
+    // ---- helpers ----
+
+    private static boolean ascii(String s) {
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) > 0x7f) return false;
+        return true;
+    }
+
+    private static final class Node {
+        final char label;
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        int value = -1;
+
+        Node(char label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package shush.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Locale;
+
+/**
+ * Registry of AEAD cipher suites usable for vault payloads.
+ * <p>
+ * Every suite has a stable one-byte id that is stored in the payload header, so readers
+ * dispatch on the stored id while writers use {@link #preferred()}. {@link Cipher} instances
+ * are pooled per thread and per suite, so {@code Cipher.getInstance} runs once per thread
+ * rather than once per operation.
+ * </p>
+ *
+ * <h2>Selection</h2>
+ * {@link #preferred()} is resolved once per process:
+ * <ol>
+ *   <li>{@code -Dshush.cipher=aes-gcm|chacha20-poly1305} forces a suite.</li>
+ *   <li>On HotSpot, the VM's {@code UseAES} flag tells whether AES hardware instructions are in use:
+ *       AES-GCM if so, ChaCha20-Poly1305 otherwise (many ARM and older x86 machines).</li>
+ *   <li>Otherwise a short self-benchmark seals a small buffer with every available suite and picks the
+ *       fastest.</li>
+ * </ol>
+ * A cold-JVM benchmark mostly measures the interpreter, where the AES intrinsics are not used, so
+ * the VM flag is preferred whenever it can be read.
+ */
+public enum CipherSuite {
+
+    /** AES-256-GCM, 96-bit IV, 128-bit tag. */
+    AES_256_GCM(1, "aes-gcm", "AES/GCM/NoPadding", "AES"),
+
+    /** ChaCha20-Poly1305 (RFC 8439), 96-bit nonce, 128-bit tag. */
+    CHACHA20_POLY1305(2, "chacha20-poly1305", "ChaCha20-Poly1305", "ChaCha20");
+
+    /** Nonce/IV length shared by all suites. */
+    public static final int IV_LEN = 12;
+    /** Authentication tag length shared by all suites. */
+    public static final int TAG_LEN = 16;
+
+    private final int id;
+    private final String displayName;
+    private final String transformation;
+    private final String keyAlgorithm;
+    private final ThreadLocal<Cipher> pool;
+
+    CipherSuite(int id, String displayName, String transformation, String keyAlgorithm) {
+        this.id = id;
+        this.displayName = displayName;
+        this.transformation = transformation;
+        this.keyAlgorithm = keyAlgorithm;
+        this.pool = ThreadLocal.withInitial(() -> {
+            try {
+                return Cipher.getInstance(transformation);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(transformation + " unavailable", e);
+            }
+        });
+    }
+
+    /** @return the id stored in payload headers. */
+    public int id() { return id; }
+
+    /** @return the name accepted by {@code -Dshush.cipher}. */
+    public String displayName() { return displayName; }
+
+    // ----------------- operations -----------------
+
+    /**
+     * Encrypts {@code data} with a pooled cipher.
+     *
+     * @param rawKey 256-bit key
+     * @param iv     {@value #IV_LEN}-byte nonce; must never repeat for the same key
+     * @param aad    additional authenticated data (may be {@code null})
+     * @param data   plaintext
+     * @return ciphertext with appended tag
+     * @throws GeneralSecurityException if encryption fails
+     */
+    public byte[] seal(byte[] rawKey, byte[] iv, byte[] aad, byte[] data) throws GeneralSecurityException {
+        Cipher c = pool.get();
+        c.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(rawKey, keyAlgorithm), params(iv));
+        if (aad != null) c.updateAAD(aad);
+        return c.doFinal(data);
+    }
+
+    /**
+     * Decrypts and authenticates {@code ct[off, off+len)} with a pooled cipher.
+     *
+     * @param rawKey 256-bit key
+     * @param iv     nonce used at encryption time
+     * @param aad    additional authenticated data (may be {@code null})
+     * @param ct     buffer holding ciphertext and tag
+     * @param off    offset of the ciphertext
+     * @param len    length of ciphertext plus tag
+     * @return plaintext
+     * @throws GeneralSecurityException if authentication fails
+     */
+    public byte[] open(byte[] rawKey, byte[] iv, byte[] aad, byte[] ct, int off, int len) throws GeneralSecurityException {
+        SecretKeySpec key = new SecretKeySpec(rawKey, keyAlgorithm);
+        Cipher c = pool.get();
+        try {
+            c.init(Cipher.DECRYPT_MODE, key, params(iv));
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            // The JDK ChaCha20 provider refuses to re-init with the previous key+nonce even for
+            // decryption, which happens when one thread opens the same payload twice. Swap in a fresh instance.
+            c = Cipher.getInstance(transformation);
+            c.init(Cipher.DECRYPT_MODE, key, params(iv));
+            pool.set(c);
+        }
+        if (aad != null) c.updateAAD(aad);
+        return c.doFinal(ct, off, len);
+    }
+
+    private AlgorithmParameterSpec params(byte[] iv) {
+        return this == AES_256_GCM ? new GCMParameterSpec(TAG_LEN * 8, iv) : new IvParameterSpec(iv);
+    }
+
+    // ----------------- registry -----------------
+
+    /**
+     * Looks up a suite by its stored id.
+     *
+     * @param id payload suite id
+     * @return the suite
+     * @throws GeneralSecurityException if the id is unknown
+     */
+    public static CipherSuite byId(int id) throws GeneralSecurityException {
+        for (CipherSuite s : values()) {
+            if (s.id == id) return s;
+        }
+        throw new GeneralSecurityException("Unknown cipher suite id: " + id);
+    }
+
+    /** @return the suite used for new writes (resolved once per process). */
+    public static CipherSuite preferred() {
+        return Preferred.SUITE;
+    }
+
+    /** Lazy holder so selection only runs if something is actually encrypted. */
+    private static final class Preferred {
+        static final CipherSuite SUITE = select();
+    }
+
+    private static CipherSuite select() {
+        String forced = System.getProperty("shush.cipher");
+        if (forced != null && !forced.isEmpty()) {
+            String f = forced.toLowerCase(Locale.ROOT);
+            for (CipherSuite s : values()) {
+                if (s.displayName.equals(f)) return s;
+            }
+        }
+
+        Boolean aesHardware = probeAesHardware();
+        if (aesHardware != null) return aesHardware ? AES_256_GCM : CHACHA20_POLY1305;
+
+        CipherSuite best = AES_256_GCM;
+        long bestNanos = Long.MAX_VALUE;
+        byte[] key = new byte[32];
+        byte[] iv = new byte[IV_LEN];
+        byte[] data = new byte[4 * 1024];
+        for (CipherSuite s : values()) {
+            try {
+                long t = benchmark(s, key, iv, data);
+                if (t < bestNanos) {
+                    bestNanos = t;
+                    best = s;
+                }
+            } catch (GeneralSecurityException | IllegalStateException e) {
+                // suite unavailable on this JVM; skip it
+            }
+        }
+        return best;
+    }
+
+    /** @return whether HotSpot uses AES instructions, or {@code null} if that cannot be determined. */
+    private static Boolean probeAesHardware() {
+        try {
+            com.sun.management.HotSpotDiagnosticMXBean vm = java.lang.management.ManagementFactory
+                    .getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+            return vm == null ? null : Boolean.valueOf(vm.getVMOption("UseAES").getValue());
+        } catch (RuntimeException | LinkageError e) {
+            return null; // not HotSpot, flag absent on this architecture, or jdk.management missing
+        }
+    }
+
+    /** @return best-of-N nanoseconds to seal {@code data}, after a short warm-up. */
+    private static long benchmark(CipherSuite s, byte[] key, byte[] iv, byte[] data) throws GeneralSecurityException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            iv[0] = (byte) i; // distinct nonce per run (cipher refuses key+IV reuse)
+            iv[1] = (byte) s.id;
+            long t0 = System.nanoTime();
+            s.seal(key, iv, null, data);
+            long t = System.nanoTime() - t0;
+            if (i >= 8 && t < best) best = t;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,31 @@
+package shush.util;
+
+import java.awt.AWTError;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.datatransfer.StringSelection;
+
+/**
+ * System clipboard access for commands that hand a secret to the user without printing it.
+ */
+public final class Clipboard {
+
+    private Clipboard() { /* no instances */ }
+
+    /**
+     * Places text on the system clipboard.
+     *
+     * @param text text to copy ({@code null} treated as empty)
+     * @return false if no clipboard is available (headless or no display)
+     */
+    public static boolean copy(String text) {
+        if (GraphicsEnvironment.isHeadless()) return false;
+        try {
+            Toolkit.getDefaultToolkit().getSystemClipboard()
+                    .setContents(new StringSelection(text == null ? "" : text), null);
+            return true;
+        } catch (RuntimeException | AWTError e) {
+            return false;
+        }
+    }
+}
@@ -1,36 +1,45 @@
 package shush.util;
 
-import javax.crypto.Cipher;
 import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
-import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
 /**
  * Cryptographic helpers for Shush.
  * <p>
- * Implements AES-256-GCM authenticated encryption with keys derived from a master password
- * via PBKDF2-HMAC-SHA256. Each encryption uses a fresh random salt and IV.
+ * Implements authenticated encryption with keys derived from a master password via
+ * PBKDF2-HMAC-SHA256. Each encryption uses a fresh random salt and IV. The AEAD algorithm is
+ * pluggable: new payloads use {@link CipherSuite#preferred()} and record the suite id, so the
+ * reader always dispatches on what was stored.
  * </p>
  *
  * <h2>Payload format</h2>
  * The encoded string returned by {@link #encrypt(String, String)} is URL-safe Base64 (no padding)
  * over the following binary layout:
  * <pre>
- * [ 5 bytes magic "SV1\0" ][ 16 bytes salt ][ 12 bytes IV ][ N bytes ciphertext (includes GCM tag) ]
+ * [ 4 bytes magic "SV2\0" ][ 1 byte suite id ][ 16 bytes salt ][ 12 bytes IV ][ N bytes ciphertext (includes tag) ]
  * </pre>
  * Where:
  * <ul>
- *   <li>Magic/version: {@code "SV1\0"} (Shush Version 1)</li>
+ *   <li>Magic/version: {@code "SV2\0"} (Shush Version 2)</li>
+ *   <li>Suite id: see {@link CipherSuite#id()} (1 = AES-256-GCM, 2 = ChaCha20-Poly1305)</li>
  *   <li>Salt: 16 random bytes for PBKDF2</li>
- *   <li>IV: 12 random bytes for AES-GCM</li>
- *   <li>Ciphertext: AES-GCM output of the UTF-8 plaintext</li>
+ *   <li>IV: 12 random bytes (nonce)</li>
+ *   <li>Ciphertext: AEAD output of the UTF-8 plaintext; magic and suite id are authenticated as AAD</li>
  * </ul>
+ * Version 1 payloads ({@code "SV1\0"}, no suite byte, AES-256-GCM, no AAD) are still readable.
+ *
+ * <h2>Raw-key payloads</h2>
+ * {@link #encryptWithKey(byte[], byte[])} encrypts under an already-derived 256-bit key (e.g. a vault
+ * data key) and skips PBKDF2 entirely:
+ * <pre>
+ * [ 4 bytes magic "SK2\0" ][ 1 byte suite id ][ 12 bytes IV ][ N bytes ciphertext (includes tag) ]
+ * </pre>
  *
  * <h2>Key derivation</h2>
  * PBKDF2WithHmacSHA256, 210,000 iterations, 256-bit key.
@@ -40,19 +49,24 @@ import java.util.Base64;
  */
 public final class CryptoUtils {
 
-    /** Magic/version marker: 'S','V','1','\0' */
+    /** Magic/version marker: 'S','V','1','\0' (legacy, read-only) */
     private static final byte[] MAGIC_V1 = new byte[]{0x53, 0x56, 0x31, 0x00}; // "SV1\0"
+    /** Magic/version marker: 'S','V','2','\0' */
+    private static final byte[] MAGIC_V2 = new byte[]{0x53, 0x56, 0x32, 0x00}; // "SV2\0"
+    /** Magic/version marker for raw-key payloads: 'S','K','2','\0' */
+    private static final byte[] MAGIC_K2 = new byte[]{0x53, 0x4B, 0x32, 0x00}; // "SK2\0"
+    private static final int MAGIC_LEN = 4;
     private static final int SALT_LEN = 16;          // 128-bit salt for PBKDF2
-    private static final int IV_LEN = 12;            // 96-bit IV for GCM
-    private static final int KEY_BITS = 256;         // AES-256
+    private static final int IV_LEN = CipherSuite.IV_LEN;
+    private static final int KEY_BITS = 256;         // 256-bit keys for every suite
     private static final int PBKDF2_ITERATIONS = 210_000;
-    private static final int GCM_TAG_BITS = 128;     // 16-byte tag
+    private static final int TAG_LEN = CipherSuite.TAG_LEN;
     private static final SecureRandom RNG = new SecureRandom();
 
     private CryptoUtils() { /* no instances */ }
 
     /**
-     * Encrypts a UTF-8 string using AES-256-GCM with a key derived from the provided master password.
+     * Encrypts a UTF-8 string using the preferred {@link CipherSuite} with a key derived from the provided master password.
      *
      * @param plaintext      the plaintext string (UTF-8)
      * @param masterPassword the master password
@@ -85,7 +99,7 @@ public final class CryptoUtils {
     }
 
     /**
-     * Encrypts arbitrary bytes using AES-256-GCM with a key derived from the master password.
+     * Encrypts arbitrary bytes using the preferred {@link CipherSuite} with a key derived from the master password.
      * Returns URL-safe Base64 (unpadded) encoded payload.
      *
      * @param data           plaintext bytes
@@ -97,18 +111,222 @@ public final class CryptoUtils {
         if (data == null) data = new byte[0];
         if (masterPassword == null) throw new IllegalArgumentException("masterPassword cannot be null");
 
+        CipherSuite suite = CipherSuite.preferred();
         byte[] salt = new byte[SALT_LEN];
         byte[] iv = new byte[IV_LEN];
         RNG.nextBytes(salt);
         RNG.nextBytes(iv);
 
-        SecretKeySpec key = null;
+        // Build binary payload: MAGIC | SUITE | SALT | IV | CT
+        byte[] header = new byte[MAGIC_LEN + 1];
+        System.arraycopy(MAGIC_V2, 0, header, 0, MAGIC_LEN);
+        header[MAGIC_LEN] = (byte) suite.id();
+
+        byte[] key = deriveKey(masterPassword, salt);
+        final byte[] ct;
+        Stats.Timer t = Stats.time(Stats.Phase.ENCRYPT);
+        try {
+            ct = suite.seal(key, iv, header, data);
+        } finally {
+            t.close();
+            zero(key);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(header.length + SALT_LEN + IV_LEN + ct.length);
+        buf.put(header).put(salt).put(iv).put(ct);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.array());
+    }
+
+    /**
+     * Decrypts an encoded payload into raw bytes, dispatching on the stored version and suite id.
+     *
+     * @param payload        URL-safe Base64 (unpadded) encoded payload
+     * @param masterPassword master password as {@code char[]}
+     * @return plaintext bytes (caller should zero when finished)
+     * @throws GeneralSecurityException if decryption fails or authentication fails
+     */
+    public static byte[] decryptToBytes(String payload, char[] masterPassword) throws GeneralSecurityException {
+        if (payload == null) throw new IllegalArgumentException("payload cannot be null");
+        if (masterPassword == null) throw new IllegalArgumentException("masterPassword cannot be null");
+
+        final byte[] all;
+        try {
+            all = Base64.getUrlDecoder().decode(payload);
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Invalid payload encoding", e);
+        }
+        if (all.length < MAGIC_LEN + SALT_LEN + IV_LEN + TAG_LEN) {
+            throw new GeneralSecurityException("Payload too short");
+        }
+
+        // Parse binary payload: MAGIC | [SUITE] | SALT | IV | CT
+        byte[] magic = Arrays.copyOf(all, MAGIC_LEN);
+        final CipherSuite suite;
+        final byte[] aad;
+        int pos = MAGIC_LEN;
+        if (Arrays.equals(magic, MAGIC_V2)) {
+            suite = CipherSuite.byId(Byte.toUnsignedInt(all[pos++]));
+            aad = Arrays.copyOf(all, pos);
+        } else if (Arrays.equals(magic, MAGIC_V1)) {
+            suite = CipherSuite.AES_256_GCM;
+            aad = null;
+        } else {
+            throw new GeneralSecurityException("Unsupported payload version");
+        }
+        if (all.length < pos + SALT_LEN + IV_LEN + TAG_LEN) {
+            throw new GeneralSecurityException("Payload too short");
+        }
+        byte[] salt = Arrays.copyOfRange(all, pos, pos + SALT_LEN);
+        pos += SALT_LEN;
+        byte[] iv = Arrays.copyOfRange(all, pos, pos + IV_LEN);
+        pos += IV_LEN;
+
+        byte[] key = deriveKey(masterPassword, salt);
+        Stats.Timer t = Stats.time(Stats.Phase.DECRYPT);
+        try {
+            return suite.open(key, iv, aad, all, pos, all.length - pos);
+        } finally {
+            t.close();
+            zero(key);
+        }
+    }
+
+    /**
+     * Encrypts bytes under a raw 256-bit key using the preferred {@link CipherSuite}. No KDF is run.
+     *
+     * @param data plaintext bytes ({@code null} treated as empty)
+     * @param key  256-bit key
+     * @return URL-safe Base64 (unpadded) {@code SK2} payload
+     * @throws GeneralSecurityException if encryption fails
+     */
+    public static String encryptWithKey(byte[] data, byte[] key) throws GeneralSecurityException {
+        if (data == null) data = new byte[0];
+        if (key == null || key.length != KEY_BITS / 8) throw new IllegalArgumentException("key must be 256 bits");
+
+        CipherSuite suite = CipherSuite.preferred();
+        byte[] iv = new byte[IV_LEN];
+        RNG.nextBytes(iv);
+
+        // Build binary payload: MAGIC | SUITE | IV | CT
+        byte[] header = new byte[MAGIC_LEN + 1];
+        System.arraycopy(MAGIC_K2, 0, header, 0, MAGIC_LEN);
+        header[MAGIC_LEN] = (byte) suite.id();
+
+        final byte[] ct;
+        Stats.Timer t = Stats.time(Stats.Phase.ENCRYPT);
+        try {
+            ct = suite.seal(key, iv, header, data);
+        } finally {
+            t.close();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(header.length + IV_LEN + ct.length);
+        buf.put(header).put(iv).put(ct);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.array());
+    }
+
+    /**
+     * Decrypts a payload produced by {@link #encryptWithKey(byte[], byte[])}.
+     *
+     * @param payload URL-safe Base64 (unpadded) {@code SK2} payload
+     * @param key     256-bit key
+     * @return plaintext bytes (caller should zero when finished)
+     * @throws GeneralSecurityException if the payload is malformed or authentication fails
+     */
+    public static byte[] decryptWithKey(String payload, byte[] key) throws GeneralSecurityException {
+        if (payload == null) throw new IllegalArgumentException("payload cannot be null");
+        if (key == null || key.length != KEY_BITS / 8) throw new IllegalArgumentException("key must be 256 bits");
+
+        final byte[] all;
         try {
-            key = deriveKey(masterPassword, salt);
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec gcm = new GCMParameterSpec(GCM_TAG_BITS, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, key, gcm);
-            byte[] ct = cipher.doFinal(data);
-
-            // Build binary payload: MAGIC | SALT | IV | CT
-            ByteBuffer buf = ByteBuffer.allocate(MAGIC_V1.length + SALT_LEN + IV_LEN + c_
+            all = Base64.getUrlDecoder().decode(payload);
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Invalid payload encoding", e);
+        }
+        int pos = MAGIC_LEN + 1;
+        if (all.length < pos + IV_LEN + TAG_LEN || !Arrays.equals(Arrays.copyOf(all, MAGIC_LEN), MAGIC_K2)) {
+            throw new GeneralSecurityException("Not a raw-key payload");
+        }
+        CipherSuite suite = CipherSuite.byId(Byte.toUnsignedInt(all[MAGIC_LEN]));
+        byte[] aad = Arrays.copyOf(all, pos);
+        byte[] iv = Arrays.copyOfRange(all, pos, pos + IV_LEN);
+        pos += IV_LEN;
+        Stats.Timer t = Stats.time(Stats.Phase.DECRYPT);
+        try {
+            return suite.open(key, iv, aad, all, pos, all.length - pos);
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * @param payload an encoded payload
+     * @return true if {@code payload} was produced by {@link #encryptWithKey(byte[], byte[])}
+     */
+    public static boolean isKeyPayload(String payload) {
+        // "SK2\0" encodes to the Base64 prefix "U0sy"
+        return payload != null && payload.startsWith("U0sy");
+    }
+
+    /**
+     * Generates a random 256-bit key.
+     *
+     * @return fresh key bytes
+     */
+    public static byte[] randomKey() {
+        byte[] k = new byte[KEY_BITS / 8];
+        RNG.nextBytes(k);
+        return k;
+    }
+
+    /**
+     * Generates random bytes (e.g. salts) from the shared {@link SecureRandom}.
+     *
+     * @param len number of bytes
+     * @return fresh random bytes
+     */
+    public static byte[] randomBytes(int len) {
+        byte[] b = new byte[len];
+        RNG.nextBytes(b);
+        return b;
+    }
+
+    /**
+     * Derives a 256-bit key-encryption key via PBKDF2-HMAC-SHA256 with explicit parameters.
+     *
+     * @param secret     password, PIN or recovery code
+     * @param salt       random salt
+     * @param iterations PBKDF2 iterations
+     * @return raw key bytes (caller zeroes when finished)
+     * @throws GeneralSecurityException if the KDF is unavailable
+     */
+    public static byte[] deriveKey(char[] secret, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(secret, salt, iterations, KEY_BITS);
+        Stats.Timer t = Stats.time(Stats.Phase.KDF);
+        try {
+            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            return skf.generateSecret(spec).getEncoded();
+        } finally {
+            t.close();
+            spec.clearPassword();
+        }
+    }
+
+    // ---- helpers ----
+
+    /**
+     * Derives a 256-bit key from the master password and salt via PBKDF2-HMAC-SHA256.
+     *
+     * @param masterPassword master password chars
+     * @param salt           16-byte salt
+     * @return raw key bytes (caller zeroes when finished)
+     * @throws GeneralSecurityException if the KDF is unavailable
+     */
+    static byte[] deriveKey(char[] masterPassword, byte[] salt) throws GeneralSecurityException {
+        return deriveKey(masterPassword, salt, PBKDF2_ITERATIONS);
+    }
+
+    /** Best-effort zeroing of sensitive byte arrays. */
+    private static void zero(byte[] arr) {
+        if (arr != null) for (int i = 0; i < arr.length; i++) arr[i] = 0;
+    }
+}
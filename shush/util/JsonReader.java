@@ -0,0 +1,367 @@
+package shush.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming (pull) JSON reader for documents too large to hold in memory.
+ * <p>
+ * Unlike {@link Json}, which parses a whole value into maps and lists, this reader hands out one
+ * token at a time from a fixed 8 KB buffer: the caller walks the document with
+ * {@link #beginObject()}, {@link #nextName()}, {@link #nextString()} and friends, and
+ * {@link #skipValue()} discards whole subtrees (or huge strings) without materializing them.
+ * Memory use depends on nesting depth and the longest string actually read, not on document size.
+ * </p>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * try (JsonReader r = new JsonReader(reader)) {
+ *     r.beginObject();
+ *     while (r.hasNext()) {
+ *         if ("items".equals(r.nextName())) { ... } else r.skipValue();
+ *     }
+ *     r.endObject();
+ * }
+ * }</pre>
+ */
+public final class JsonReader implements Closeable {
+
+    /** Kinds of token returned by {@link #peek()}. */
+    public enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    // Enclosing scopes
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos, limit;
+    private long consumed; // chars before buf[0], for error offsets
+
+    private int[] stack = new int[32];
+    private int depth;
+
+    private Token peeked;
+    private String literal; // text of a peeked number or boolean
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Constructs a reader over {@code in}; wrap files in a {@link java.io.BufferedReader} or not,
+     * this reader buffers on its own.
+     *
+     * @param in character source
+     */
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the next token without consuming it.
+     *
+     * @return the next token
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if the document is malformed
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) return peeked;
+        int scope = stack[depth - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') return peeked = Token.END_ARRAY;
+                if (scope == NONEMPTY_ARRAY) {
+                    if (c != ',') throw error("Expected ',' or ']'");
+                    c = nextNonWhitespace();
+                }
+                return peeked = value(c);
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') return peeked = Token.END_OBJECT;
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') throw error("Expected ',' or '}'");
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') throw error("Expected a member name");
+                stack[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') throw error("Expected ':'");
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return peeked = value(nextNonWhitespace());
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return peeked = value(nextNonWhitespace());
+            default:
+                c = nextNonWhitespace();
+                if (c != -1) throw error("Trailing characters");
+                return peeked = Token.END_DOCUMENT;
+        }
+    }
+
+    /** Consumes the start of an object. */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /** Consumes the end of an object. */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    /** Consumes the start of an array. */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /** Consumes the end of an array. */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    /** @return {@code true} if the current object or array has another member or element */
+    public boolean hasNext() throws IOException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    /** @return the next member name */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /**
+     * Consumes a string; numbers and booleans are returned as their literal text.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the next token is not a scalar
+     */
+    public String nextString() throws IOException {
+        Token t = peek();
+        if (t == Token.STRING) {
+            peeked = null;
+            return readString();
+        }
+        if (t == Token.NUMBER || t == Token.BOOLEAN) {
+            peeked = null;
+            return literal;
+        }
+        throw error("Expected a string but was " + t);
+    }
+
+    /**
+     * Consumes a string, number, boolean or {@code null}.
+     *
+     * @return the value as text, or {@code null} for JSON {@code null}
+     */
+    public String nextStringOrNull() throws IOException {
+        if (peek() == Token.NULL) {
+            peeked = null;
+            return null;
+        }
+        return nextString();
+    }
+
+    /** @return the next boolean */
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return Boolean.parseBoolean(literal);
+    }
+
+    /** @return the next number as a {@code long} */
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            double d = Double.parseDouble(literal);
+            if (d != Math.rint(d)) throw error("Expected an integer but was " + literal);
+            return (long) d;
+        }
+    }
+
+    /** Consumes a {@code null}. */
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    /**
+     * Skips the next value, including whole objects and arrays, without building strings.
+     */
+    public void skipValue() throws IOException {
+        int level = 0;
+        do {
+            Token t = peek();
+            peeked = null;
+            switch (t) {
+                case BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    level++;
+                    break;
+                case BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    level++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    level--;
+                    break;
+                case NAME:
+                case STRING:
+                    skipString();
+                    break;
+                case END_DOCUMENT:
+                    throw error("Unexpected end of document");
+                default:
+                    break;
+            }
+        } while (level > 0);
+    }
+
+    /** @return character offset of the reader, for diagnostics */
+    public long getOffset() {
+        return consumed + pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ---- helpers ----
+
+    private void expect(Token t) throws IOException {
+        Token actual = peek();
+        if (actual != t) throw error("Expected " + t + " but was " + actual);
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) stack = java.util.Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = scope;
+    }
+
+    /** Classifies a value starting with {@code c}; strings are left unread after the opening quote. */
+    private Token value(int c) throws IOException {
+        switch (c) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't': literal("rue"); literal = "true"; return Token.BOOLEAN;
+            case 'f': literal("alse"); literal = "false"; return Token.BOOLEAN;
+            case 'n': literal("ull"); return Token.NULL;
+            case -1: throw error("Unexpected end of document");
+            default:
+                if (c != '-' && (c < '0' || c > '9')) throw error("Unexpected character '" + (char) c + "'");
+                sb.setLength(0);
+                sb.append((char) c);
+                while (fill()) {
+                    char d = buf[pos];
+                    if ((d >= '0' && d <= '9') || d == '.' || d == 'e' || d == 'E' || d == '+' || d == '-') {
+                        sb.append(d);
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+                literal = sb.toString();
+                return Token.NUMBER;
+        }
+    }
+
+    private void literal(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (!fill() || buf[pos++] != rest.charAt(i)) throw error("Unexpected token");
+        }
+    }
+
+    /** Reads the rest of a string whose opening quote was consumed. */
+    private String readString() throws IOException {
+        sb.setLength(0);
+        while (true) {
+            if (!fill()) throw error("Unterminated string");
+            int start = pos;
+            while (pos < limit && buf[pos] != '"' && buf[pos] != '\\') pos++;
+            sb.append(buf, start, pos - start);
+            if (pos == limit) continue;
+            char c = buf[pos++];
+            if (c == '"') return sb.toString();
+            sb.append(escape());
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            if (!fill()) throw error("Unterminated string");
+            char c = buf[pos++];
+            if (c == '"') return;
+            if (c == '\\') escape();
+        }
+    }
+
+    private char escape() throws IOException {
+        if (!fill()) throw error("Unterminated escape");
+        char e = buf[pos++];
+        switch (e) {
+            case '"': case '\\': case '/': return e;
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u': {
+                int v = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (!fill()) throw error("Truncated \\u escape");
+                    int d = Character.digit(buf[pos++], 16);
+                    if (d < 0) throw error("Bad \\u escape");
+                    v = v << 4 | d;
+                }
+                return (char) v;
+            }
+            default:
+                throw error("Bad escape '\\" + e + "'");
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (fill()) {
+            char c = buf[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+        }
+        return -1;
+    }
+
+    /** @return {@code true} if at least one character is buffered */
+    private boolean fill() throws IOException {
+        if (pos < limit) return true;
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) == 0) { /* retry */ }
+        if (n < 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException(msg + " at offset " + getOffset());
+    }
+}
@@ -0,0 +1,38 @@
+package shush.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted for every timed {@link Stats.Phase}.
+ * <p>
+ * Disabled unless a recording enables {@code shush.Phase}, e.g.
+ * {@code java -XX:StartFlightRecording:settings=profile ...}. When disabled, the
+ * begin/end/commit calls compile down to almost nothing.
+ * </p>
+ * <p>
+ * Events of a {@link Stats.Timer} span the timed work. Samples measured elsewhere
+ * ({@link Stats#record}, e.g. JVM startup) are committed when recorded, so read
+ * {@code measured} rather than the event's own duration.
+ * </p>
+ */
+@Name("shush.Phase")
+@Label("Shush Phase")
+@Category("Shush")
+@Description("Time spent in a Shush operation phase (KDF, cipher, unlock, lock wait, I/O, TOTP)")
+@StackTrace(false)
+final class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Measured")
+    @Description("Duration of the phase, for timed and recorded samples alike")
+    @Timespan(Timespan.NANOSECONDS)
+    long measured;
+}
@@ -0,0 +1,232 @@
+package shush.util;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Process-wide, always-on timing for the expensive phases of a Shush command.
+ * <p>
+ * Each {@link Phase} keeps a lock-free log2 latency histogram (count, total, max and
+ * power-of-two buckets) and, when a JFR recording is active, emits a {@link PhaseEvent} for
+ * every sample, timed or {@linkplain #record(Phase, long) recorded}.
+ * Recording a sample costs two {@link System#nanoTime()} calls and a few atomic adds.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <pre>{@code
+ * Stats.Timer t = Stats.time(Stats.Phase.KDF);
+ * try {
+ *     ... derive key ...
+ * } finally {
+ *     t.close();
+ * }
+ * }</pre>
+ * <ul>
+ *   <li>{@code shush --stats <command>} prints {@link #printReport(PrintStream)} at exit.</li>
+ *   <li>Long-running modes can call {@link #serve(int)} to expose the same counters over HTTP on loopback.</li>
+ * </ul>
+ */
+public final class Stats {
+
+    /** Instrumented phases. */
+    public enum Phase {
+        /** JVM start until {@code Main.main} was entered. */
+        JVM_STARTUP("jvm_startup"),
+        /** PBKDF2 key derivation for field encryption. */
+        KDF("kdf"),
+        /** Cipher init + doFinal when encrypting. */
+        ENCRYPT("encrypt"),
+        /** Cipher init + doFinal when decrypting. */
+        DECRYPT("decrypt"),
+        /** Unlocking a vault's data key with any credential, including the KDF of its key slot. */
+        UNLOCK("unlock"),
+        /** Waiting to acquire {@code VaultManager} read/write locks. */
+        LOCK_WAIT("lock_wait"),
+        /** Reading and parsing a vault body. */
+        LOAD("load"),
+        /** Writing a vault file. */
+        PERSIST("persist"),
+        /** TOTP code verification. */
+        TOTP("totp");
+
+        private final String key;
+        private final Histogram histogram = new Histogram();
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        /** @return stable lowercase identifier used in reports and metric names. */
+        public String key() {
+            return key;
+        }
+    }
+
+    private Stats() { /* no instances */ }
+
+    // ----------------- recording -----------------
+
+    /**
+     * Starts timing {@code phase}. Close the returned timer to record the sample.
+     *
+     * @param phase the phase being timed
+     * @return a running timer
+     */
+    public static Timer time(Phase phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Records an externally measured duration. The {@link PhaseEvent} is committed now and carries
+     * the duration in {@code measured}, since the event itself did not span the measurement.
+     *
+     * @param phase the phase
+     * @param nanos duration in nanoseconds
+     */
+    public static void record(Phase phase, long nanos) {
+        phase.histogram.record(nanos);
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = phase.key;
+            event.measured = nanos;
+            event.commit();
+        }
+    }
+
+    /** Running measurement for one phase; see {@link #time(Phase)}. */
+    public static final class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final long start;
+        private final PhaseEvent event;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            this.event = new PhaseEvent();
+            this.event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /** Stops the timer and records the sample. */
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - start;
+            phase.histogram.record(nanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.key;
+                event.measured = nanos;
+                event.commit();
+            }
+        }
+    }
+
+    // ----------------- reporting -----------------
+
+    /**
+     * Prints a per-phase breakdown of all phases with at least one sample.
+     *
+     * @param out destination stream (typically {@code System.err})
+     */
+    public static void printReport(PrintStream out) {
+        out.printf("%-14s %8s %12s %10s %10s %10s %10s%n",
+                "phase", "count", "total ms", "mean ms", "p50 ms", "p99 ms", "max ms");
+        for (Phase p : Phase.values()) {
+            Histogram h = p.histogram;
+            long n = h.count.sum();
+            if (n == 0) continue;
+            long total = h.totalNanos.sum();
+            out.printf("%-14s %8d %12.3f %10.3f %10.3f %10.3f %10.3f%n",
+                    p.key, n, ms(total), ms(total / n), ms(h.percentile(0.50)), ms(h.percentile(0.99)), ms(h.max.get()));
+        }
+    }
+
+    /**
+     * Renders all counters in the Prometheus text exposition format.
+     *
+     * @return metrics text
+     */
+    public static String renderMetrics() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("# TYPE shush_phase_seconds summary\n");
+        for (Phase p : Phase.values()) {
+            Histogram h = p.histogram;
+            sb.append("shush_phase_seconds_count{phase=\"").append(p.key).append("\"} ").append(h.count.sum()).append('\n');
+            sb.append("shush_phase_seconds_sum{phase=\"").append(p.key).append("\"} ").append(h.totalNanos.sum() / 1e9).append('\n');
+            sb.append("shush_phase_seconds{phase=\"").append(p.key).append("\",quantile=\"0.5\"} ").append(h.percentile(0.50) / 1e9).append('\n');
+            sb.append("shush_phase_seconds{phase=\"").append(p.key).append("\",quantile=\"0.99\"} ").append(h.percentile(0.99) / 1e9).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Exposes {@link #renderMetrics()} at {@code http://127.0.0.1:<port>/metrics}.
+     * The server binds to loopback only and runs on a daemon thread.
+     *
+     * @param port TCP port (0 picks a free port)
+     * @return the started server (call {@code stop(0)} to shut it down)
+     * @throws IOException if the port cannot be bound
+     */
+    public static HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = renderMetrics().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(null);
+        Thread t = new Thread(server::start, "shush-metrics");
+        t.setDaemon(true);
+        t.start();
+        return server;
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // ----------------- histogram -----------------
+
+    /** Lock-free log2 histogram: bucket {@code i} counts samples in {@code [2^(i-1), 2^i)} ns. */
+    private static final class Histogram {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            count.increment();
+            totalNanos.add(nanos);
+            max.accumulate(nanos);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        }
+
+        /** @return upper bound (ns) of the bucket containing quantile {@code q}, capped at the max. */
+        long percentile(double q) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long target = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                    return Math.min(upper, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+}
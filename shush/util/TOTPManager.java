@@ -9,6 +9,7 @@ import com.google.zxing.qrcode.QRCodeWriter;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
@@ -92,4 +93,29 @@ public class TOTPManager {
         String generatedCode = String.format("%06d", totp.generateOneTimePassword(key, Instant.now()));
         return generatedCode.equals(code);
     }
+
+    /**
+     * Validates a user-provided TOTP code against a stored secret.
+     *
+     * @param secret the secret as produced by {@link #getBase32Secret(SecretKey)}
+     * @param code   the 6-digit code entered by the user
+     * @return true if the code is valid for the current time window, false otherwise
+     * @throws NoSuchAlgorithmException if TOTP algorithm is not available
+     * @throws InvalidKeyException if the secret is malformed
+     */
+    public static boolean verifyCode(String secret, String code) throws NoSuchAlgorithmException, InvalidKeyException {
+        Stats.Timer t = Stats.time(Stats.Phase.TOTP);
+        try {
+            final byte[] raw;
+            try {
+                raw = Base64.getDecoder().decode(secret);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidKeyException("Malformed TOTP secret", e);
+            }
+            SecretKey key = new SecretKeySpec(raw, TimeBasedOneTimePasswordGenerator.TOTP_ALGORITHM_HMAC_SHA1);
+            return validateCode(code == null ? "" : code.trim(), key);
+        } finally {
+            t.close();
+        }
+    }
 }
@@ -1,21 +1,29 @@
 package shush.util;
 
 import shush.util.TOTPManager;
+import shush.vault.MemberIdentity;
+import shush.vault.VaultKey;
 import shush.vault.VaultManager;
 
+import java.io.BufferedReader;
 import java.io.Console;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
 import java.util.Objects;
-import java.util.Scanner;
 
 /**
  * Centralized verification helper for Shush commands.
  * <p>
  * Responsibilities:
  * <ul>
- *   <li>Prompt for and verify the master password via {@link VaultManager}.</li>
+ *   <li>Prompt for the master password (and PIN, if the vault has one) and unlock the vault data key via {@link VaultManager}.</li>
+ *   <li>On team vaults, unlock with the local {@link MemberIdentity} instead when it is a member.</li>
  *   <li>Optionally prompt for and verify a TOTP code via {@link TOTPManager}.</li>
- *   <li>Provide the caller with an ephemeral {@code char[]} master password to use for crypto operations.</li>
+ *   <li>Provide the caller with the unlocked {@link VaultKey} (and the ephemeral master password) to use for crypto operations.</li>
  * </ul>
  *
  * <h2>Security notes</h2>
@@ -23,78 +31,239 @@ import java.util.Scanner;
  *   <li>This class never persists secrets. The returned {@link VerificationResult} holds secrets in memory only.</li>
  *   <li>Callers <b>must</b> invoke {@link VerificationResult#close()} or {@link VerificationResult#zeroSecrets()} to wipe memory ASAP.</li>
  *   <li>Where possible, {@code char[]} is used instead of {@code String} to minimize immutable secret lifetimes.</li>
+ *   <li>Long-running modes ({@code shush batch}) verify once and share the result through a
+ *       {@linkplain #beginSession session}; commands then receive a borrowed result whose
+ *       {@code close()} leaves the secrets to the session owner.</li>
  * </ul>
  */
 public final class VerifyUtils {
 
     private VerifyUtils() { /* no instances */ }
 
+    /** Verified credentials shared by all commands of a batch; {@code null} outside batch mode. */
+    private static volatile Session session;
+
+    private static final class Session {
+        final VaultManager vaultManager;
+        final VerificationResult result;
+        final boolean totpVerified;
+
+        Session(VaultManager vaultManager, VerificationResult result, boolean totpVerified) {
+            this.vaultManager = vaultManager;
+            this.result = result;
+            this.totpVerified = totpVerified;
+        }
+    }
+
+    /**
+     * Makes {@code result} answer every subsequent verification for {@code vaultManager} without
+     * prompting, until {@link #endSession()}. The caller keeps ownership and closes it afterwards.
+     *
+     * @param vaultManager vault the session unlocks
+     * @param result       successful verification result
+     * @param totpVerified whether a TOTP code was checked; if not, actions requiring 2FA fail
+     */
+    public static void beginSession(VaultManager vaultManager, VerificationResult result, boolean totpVerified) {
+        if (!result.isSuccess()) throw new IllegalArgumentException("Session requires a successful verification");
+        session = new Session(Objects.requireNonNull(vaultManager, "vaultManager"), result, totpVerified);
+    }
+
+    /** Ends the current session; later verifications prompt again. */
+    public static void endSession() {
+        session = null;
+    }
+
+    /** @return a borrowed result from the active session, or {@code null} if it does not apply. */
+    private static VerificationResult fromSession(VaultManager vaultManager, boolean requires2FA, boolean owner) {
+        Session s = session;
+        if (s == null || s.vaultManager != vaultManager) return null;
+        if (requires2FA && !s.totpVerified) {
+            return VerificationResult.failure("TOTP required; start the session with TOTP verification.");
+        }
+        if (owner && s.result.getMasterPassword() == null) {
+            return VerificationResult.failure("This action needs the master password, not a team identity.");
+        }
+        return VerificationResult.borrowed(s.result);
+    }
+
+    /**
+     * Performs the standard verification flow used by commands like {@code shush add}.
+     * <p>
+     * If the registry the vault was opened from has a local team identity
+     * ({@link VaultManager#getIdentityPath()}, {@code $SHUSH_HOME/identity}) and it is a member of the vault,
+     * the identity passphrase unlocks the member's wrapping of the data key and no master password
+     * is returned. Otherwise this is {@link #promptAndVerifyOwner(VaultManager, boolean)}.
+     * </p>
+     *
+     * @param vaultManager active vault manager instance
+     * @param requires2FA  whether this action requires TOTP verification
+     * @return a {@link VerificationResult} containing success state and (on success) the unlocked key
+     */
+    public static VerificationResult promptAndVerify(VaultManager vaultManager, boolean requires2FA) {
+        Objects.requireNonNull(vaultManager, "vaultManager");
+        VerificationResult shared = fromSession(vaultManager, requires2FA, false);
+        if (shared != null) return shared;
+        MemberIdentity identity = localIdentity(vaultManager);
+        if (identity != null && vaultManager.isMember(identity.getId())) {
+            return promptAndVerifyMember(vaultManager, identity, requires2FA);
+        }
+        return promptAndVerifyOwner(vaultManager, requires2FA);
+    }
+
     /**
-     * Performs the standard verification flow used by commands like {@code shush add}:
+     * Verification flow for operations that need the vault credentials themselves
+     * (changing the password or PIN, recovery keys, team membership):
      * <ol>
-     *   <li>Prompt for master password and verify against {@link VaultManager}.</li>
+     *   <li>Prompt for master password (and PIN, if set) and unlock the vault data key.
+     *       The unwrap is authenticated, so this also verifies the credentials with a single KDF run.</li>
      *   <li>If {@code requires2FA} is true, prompt for a TOTP code and verify.</li>
      * </ol>
      *
      * @param vaultManager active vault manager instance
      * @param requires2FA  whether this action requires TOTP verification
-     * @return a {@link VerificationResult} containing success state and (on success) the master password chars
+     * @return a {@link VerificationResult} containing success state and (on success) the unlocked key and master password chars
      */
-    public static VerificationResult promptAndVerify(VaultManager vaultManager, boolean requires2FA) {
+    public static VerificationResult promptAndVerifyOwner(VaultManager vaultManager, boolean requires2FA) {
         Objects.requireNonNull(vaultManager, "vaultManager");
+        VerificationResult shared = fromSession(vaultManager, requires2FA, true);
+        if (shared != null) return shared;
 
-        Console console = System.console();
         char[] master = null;
+        char[] pin = null;
+        VaultKey key = null;
 
-        try (Scanner scanner = (console == null ? new Scanner(System.in) : null)) {
+        try {
             // --- Prompt master password ---
-            if (console != null) {
-                master = console.readPassword("Master password: ");
-            } else {
-                System.out.print("Master password: ");
-                master = scanner.nextLine().toCharArray();
-            }
+            master = promptSecret("Master password: ");
 
             if (master == null || master.length == 0) {
                 return VerificationResult.failure("Empty master password.");
             }
 
-            if (!vaultManager.verifyMasterPassword(master)) {
-                return VerificationResult.failureAndZero(master, "Invalid master password.");
+            // --- Optional PIN (data key is wrapped under password + PIN) ---
+            if (vaultManager.hasPin()) {
+                pin = promptSecret("PIN: ");
+            }
+
+            // --- Unlock the data key ---
+            key = vaultManager.unlock(master, pin);
+            if (key == null) {
+                zeroChars(pin);
+                return VerificationResult.failureAndZero(master, pin == null ? "Invalid master password." : "Invalid master password or PIN.");
             }
 
             // --- Optional TOTP ---
             if (requires2FA) {
-                final String totpSecret = vaultManager.getTOTPSecret();
-                if (totpSecret == null || totpSecret.isEmpty()) {
-                    return VerificationResult.failureAndZero(master, "TOTP required, but no TOTP secret is configured.");
-                }
-
-                final String code;
-                if (console != null) {
-                    char[] codeChars = console.readPassword("TOTP code: ");
-                    code = (codeChars == null) ? "" : new String(codeChars);
-                    zeroChars(codeChars);
-                } else {
-                    System.out.print("TOTP code: ");
-                    code = scanner.nextLine();
-                }
-
-                if (!TOTPManager.verifyCode(totpSecret, code)) {
-                    return VerificationResult.failureAndZero(master, "Invalid TOTP code.");
-                }
+                String totpFailure = checkTOTP(vaultManager, key);
+                if (totpFailure != null) return fail(master, pin, key, totpFailure);
             }
 
-            // Success: return master password to caller (they must zero it when finished)
-            return VerificationResult.success(master);
+            // Success: return secrets to caller (they must close the result when finished)
+            return VerificationResult.success(master, pin, key);
 
         } catch (GeneralSecurityException gse) {
-            return VerificationResult.failureAndZero(master, "Verification failed: " + gse.getMessage());
+            return fail(master, pin, key, "Verification failed: " + gse.getMessage());
         } catch (RuntimeException re) {
-            return VerificationResult.failureAndZero(master, "Verification error: " + re.getMessage());
+            return fail(master, pin, key, "Verification error: " + re.getMessage());
         }
     }
 
+    /** Member flow: identity passphrase, then the member's wrapping of the data key. */
+    private static VerificationResult promptAndVerifyMember(VaultManager vaultManager, MemberIdentity identity,
+                                                            boolean requires2FA) {
+        VaultKey key = null;
+        char[] passphrase = promptSecret("Identity passphrase (" + identity.getId() + "): ");
+        try {
+            PrivateKey privateKey;
+            try {
+                privateKey = identity.unlock(passphrase);
+            } catch (GeneralSecurityException e) {
+                return VerificationResult.failure("Invalid identity passphrase.");
+            }
+            key = vaultManager.unlockAsMember(identity.getId(), privateKey);
+            if (key == null) {
+                return VerificationResult.failure("Identity '" + identity.getId() + "' cannot unlock this vault.");
+            }
+            if (requires2FA) {
+                String totpFailure = checkTOTP(vaultManager, key);
+                if (totpFailure != null) return fail(null, null, key, totpFailure);
+            }
+            return VerificationResult.success(null, null, key);
+        } catch (GeneralSecurityException gse) {
+            return fail(null, null, key, "Verification failed: " + gse.getMessage());
+        } catch (RuntimeException re) {
+            return fail(null, null, key, "Verification error: " + re.getMessage());
+        } finally {
+            zeroChars(passphrase);
+        }
+    }
+
+    /** Prompts for and checks a TOTP code; returns a failure reason, or {@code null} on success. */
+    private static String checkTOTP(VaultManager vaultManager, VaultKey key) throws GeneralSecurityException {
+        final String totpSecret = vaultManager.getTOTPSecret(key);
+        if (totpSecret == null || totpSecret.isEmpty()) {
+            return "TOTP required, but no TOTP secret is configured.";
+        }
+
+        char[] codeChars = promptSecret("TOTP code: ");
+        final String code = (codeChars == null) ? "" : new String(codeChars);
+        zeroChars(codeChars);
+
+        return TOTPManager.verifyCode(totpSecret, code) ? null : "Invalid TOTP code.";
+    }
+
+    /** @return the team identity beside {@code vaultManager}, or {@code null} if none exists or it cannot be read. */
+    private static MemberIdentity localIdentity(VaultManager vaultManager) {
+        Path path = vaultManager.getIdentityPath();
+        if (path == null) return null;
+        try {
+            return MemberIdentity.load(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a secret without echo when a console is attached, or a plain line from stdin otherwise.
+     *
+     * @param prompt prompt text
+     * @return the entered characters (caller zeroes when finished); empty on end of input
+     */
+    public static char[] promptSecret(String prompt) {
+        Console console = System.console();
+        if (console != null) {
+            char[] c = console.readPassword(prompt);
+            return c == null ? new char[0] : c;
+        }
+        System.out.print(prompt);
+        System.out.flush();
+        try {
+            String line = stdin().readLine();
+            return line == null ? new char[0] : line.toCharArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Shared, never-closed stdin reader. Prompts read through it so successive prompts do not lose
+     * buffered input; modes that also read data from stdin must use the same reader.
+     *
+     * @return the shared reader
+     */
+    public static synchronized BufferedReader stdin() {
+        if (stdin == null) stdin = new BufferedReader(new InputStreamReader(System.in));
+        return stdin;
+    }
+
+    private static BufferedReader stdin;
+
+    private static VerificationResult fail(char[] master, char[] pin, VaultKey key, String reason) {
+        zeroChars(pin);
+        if (key != null) key.close();
+        return VerificationResult.failureAndZero(master, reason);
+    }
+
     /** Best-effort zeroing of sensitive char arrays. */
     private static void zeroChars(char[] arr) {
         if (arr != null) for (int i = 0; i < arr.length; i++) arr[i] = 0;
@@ -108,10 +277,21 @@ public final class VerifyUtils {
         private final boolean success;
         private final String failureReason;
         private char[] masterPassword; // present only if success == true
+        private char[] pin;            // present only if success == true and the vault has a PIN
+        private VaultKey vaultKey;     // present only if success == true
+        private final boolean borrowed; // secrets belong to a session; close() only drops references
+
+        private VerificationResult(boolean success, char[] masterPassword, char[] pin, VaultKey vaultKey, String failureReason) {
+            this(success, masterPassword, pin, vaultKey, failureReason, false);
+        }
 
-        private VerificationResult(boolean success, char[] masterPassword, String failureReason) {
+        private VerificationResult(boolean success, char[] masterPassword, char[] pin, VaultKey vaultKey,
+                                   String failureReason, boolean borrowed) {
+            this.borrowed = borrowed;
             this.success = success;
             this.masterPassword = masterPassword;
+            this.pin = pin;
+            this.vaultKey = vaultKey;
             this.failureReason = failureReason;
         }
 
@@ -121,25 +301,47 @@ public final class VerifyUtils {
         /** @return the master password as {@code char[]} if {@link #isSuccess()} is true; otherwise {@code null}. */
         public char[] getMasterPassword() { return masterPassword; }
 
+        /** @return the PIN if one was required and {@link #isSuccess()} is true; otherwise {@code null}. */
+        public char[] getPin() { return pin; }
+
+        /** @return the unlocked vault data key if {@link #isSuccess()} is true; otherwise {@code null}. */
+        public VaultKey getVaultKey() { return vaultKey; }
+
         /** @return a human-readable reason when {@link #isSuccess()} is false; otherwise {@code null}. */
         public String getFailureReason() { return failureReason; }
 
-        /** Wipes the master password from memory (best-effort). Safe to call multiple times. */
-        public void zeroSecrets() { VerifyUtils.zeroChars(masterPassword); masterPassword = null; }
+        /** Wipes the master password, PIN and data key from memory (best-effort). Safe to call multiple times. */
+        public void zeroSecrets() {
+            if (borrowed) {
+                masterPassword = null;
+                pin = null;
+                vaultKey = null;
+                return;
+            }
+            VerifyUtils.zeroChars(masterPassword);
+            masterPassword = null;
+            VerifyUtils.zeroChars(pin);
+            pin = null;
+            if (vaultKey != null) vaultKey.close();
+            vaultKey = null;
+        }
 
         /** Equivalent to {@link #zeroSecrets()}. */
         @Override public void close() { zeroSecrets(); }
 
         // ---- factories ----
-        static VerificationResult success(char[] master) {
-            return new VerificationResult(true, master, null);
+        static VerificationResult success(char[] master, char[] pin, VaultKey key) {
+            return new VerificationResult(true, master, pin, key, null);
+        }
+        static VerificationResult borrowed(VerificationResult owner) {
+            return new VerificationResult(true, owner.masterPassword, owner.pin, owner.vaultKey, null, true);
         }
         static VerificationResult failure(String reason) {
-            return new VerificationResult(false, null, reason);
+            return new VerificationResult(false, null, null, null, reason);
         }
         static VerificationResult failureAndZero(char[] master, String reason) {
             VerifyUtils.zeroChars(master);
-            return new VerificationResult(false, null, reason);
+            return new VerificationResult(false, null, null, null, reason);
         }
     }
 }
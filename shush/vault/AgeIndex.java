@@ -0,0 +1,260 @@
+package shush.vault;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Time-ordered index over entry timestamps, one ordering per {@link VaultEntry.Timestamp}.
+ * <p>
+ * Each ordering is a pair of parallel primitive arrays, timestamps and entry ids, sorted by
+ * (timestamp, id), so "entries last rotated before T" is a binary search and a prefix:
+ * {@code O(log n + k)} for {@code k} results, without touching sealed fields or scanning the
+ * vault. Entries whose timestamp was never recorded sort first, as the oldest. At 16 bytes per
+ * entry and ordering, the index stays small next to the entries even for very large vaults.
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>Entries are tracked by {@link VaultEntry#id()}, like every other {@link VaultManager}
+ *       lookup, and resolved back to entries through the store (or an own map for heap stores).</li>
+ *   <li>Inserts and removals shift the arrays, which is far cheaper than the vault write that
+ *       accompanies them; new entries carry the newest timestamps and mostly land at the end.
+ *       Batches are sorted and merged in one pass ({@link #addAll(Collection)}).</li>
+ *   <li>Not thread-safe; {@link VaultManager} guards it with its read/write lock.</li>
+ * </ul>
+ */
+final class AgeIndex {
+
+    private static final VaultEntry.Timestamp[] FIELDS = VaultEntry.Timestamp.values();
+
+    private final LongFunction<VaultEntry> resolver;
+    private final Map<Long, VaultEntry> own; // only when no resolver was given
+    private final long[][] times = new long[FIELDS.length][];
+    private final long[][] ids = new long[FIELDS.length][];
+    private int size;
+
+    /** Index that keeps its own id-to-entry map, for heap stores. */
+    AgeIndex() {
+        this(null);
+    }
+
+    /**
+     * @param resolver returns the stored entry with a given id; {@code null} to keep an own map
+     */
+    AgeIndex(LongFunction<VaultEntry> resolver) {
+        this.resolver = resolver;
+        this.own = resolver == null ? new HashMap<>() : null;
+        for (int f = 0; f < FIELDS.length; f++) {
+            times[f] = new long[16];
+            ids[f] = new long[16];
+        }
+    }
+
+    /** Replaces the contents with {@code entries}. */
+    void rebuild(Collection<VaultEntry> entries) {
+        size = 0;
+        if (own != null) own.clear();
+        addAll(entries);
+    }
+
+    /** Adds an entry; adding the same entry twice is a no-op. */
+    void add(VaultEntry e) {
+        if (find(0, FIELDS[0].of(e), e.id()) >= 0) return;
+        ensureCapacity(size + 1);
+        for (VaultEntry.Timestamp f : FIELDS) {
+            int i = f.ordinal();
+            long t = f.of(e);
+            int pos = -find(i, t, e.id()) - 1;
+            System.arraycopy(times[i], pos, times[i], pos + 1, size - pos);
+            System.arraycopy(ids[i], pos, ids[i], pos + 1, size - pos);
+            times[i][pos] = t;
+            ids[i][pos] = e.id();
+        }
+        size++;
+        if (own != null) own.put(e.id(), e);
+    }
+
+    /** Adds entries in one sort and merge per ordering; entries already indexed are skipped. */
+    void addAll(Collection<VaultEntry> entries) {
+        // one pass over the entries: a columnar store hands out a view per element
+        int n = entries.size();
+        long[][] bt = new long[FIELDS.length][n];
+        long[] bi = new long[n];
+        int k = 0;
+        for (VaultEntry e : entries) {
+            if (find(0, FIELDS[0].of(e), e.id()) >= 0) continue;
+            for (VaultEntry.Timestamp f : FIELDS) bt[f.ordinal()][k] = f.of(e);
+            bi[k++] = e.id();
+            if (own != null) own.put(e.id(), e);
+        }
+        if (k == 0) return;
+        ensureCapacity(size + k);
+        long[] sortedIds = new long[k], tt = new long[k], ti = new long[k];
+        for (VaultEntry.Timestamp f : FIELDS) {
+            System.arraycopy(bi, 0, sortedIds, 0, k);
+            sort(bt[f.ordinal()], sortedIds, tt, ti, k);
+            merge(f.ordinal(), bt[f.ordinal()], sortedIds, k);
+        }
+        size += k;
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @return true if it was indexed
+     */
+    boolean remove(VaultEntry e) {
+        if (find(0, FIELDS[0].of(e), e.id()) < 0) return false;
+        for (VaultEntry.Timestamp f : FIELDS) {
+            int i = f.ordinal();
+            int pos = find(i, f.of(e), e.id());
+            System.arraycopy(times[i], pos + 1, times[i], pos, size - pos - 1);
+            System.arraycopy(ids[i], pos + 1, ids[i], pos, size - pos - 1);
+        }
+        size--;
+        if (own != null) own.remove(e.id());
+        return true;
+    }
+
+    /**
+     * Entries whose timestamp is at or before {@code cutoff}, oldest first.
+     *
+     * @param field  timestamp to compare
+     * @param cutoff epoch millis (inclusive)
+     * @return matching entries; unrecorded timestamps (0) first
+     */
+    List<VaultEntry> atOrBefore(VaultEntry.Timestamp field, long cutoff) {
+        return collect(field.ordinal(), 0, after(field.ordinal(), cutoff));
+    }
+
+    /**
+     * Entries whose timestamp is after {@code from} and at or before {@code to}, oldest first.
+     *
+     * @param field timestamp to compare
+     * @param from  epoch millis (exclusive)
+     * @param to    epoch millis (inclusive)
+     * @return matching entries
+     */
+    List<VaultEntry> between(VaultEntry.Timestamp field, long from, long to) {
+        if (to <= from) return List.of();
+        int f = field.ordinal();
+        return collect(f, after(f, from), after(f, to));
+    }
+
+    /**
+     * @param field timestamp to compare
+     * @param after epoch millis (exclusive)
+     * @return the earliest timestamp after {@code after}, or {@code -1} if none
+     */
+    long nextAfter(VaultEntry.Timestamp field, long after) {
+        int f = field.ordinal();
+        int pos = after(f, after);
+        return pos == size ? -1 : times[f][pos];
+    }
+
+    /** @return number of indexed entries */
+    int size() {
+        return size;
+    }
+
+    // ---- helpers ----
+
+    /** Binary search for (t, id) in ordering {@code f}; {@code -(insertion point) - 1} if absent. */
+    private int find(int f, long t, long id) {
+        long[] ts = times[f], is = ids[f];
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = ts[mid] != t ? Long.compare(ts[mid], t) : Long.compare(is[mid], id);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -lo - 1;
+    }
+
+    /** @return the first position in ordering {@code f} whose timestamp is after {@code t} */
+    private int after(int f, long t) {
+        long[] ts = times[f];
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ts[mid] <= t) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private List<VaultEntry> collect(int f, int from, int to) {
+        List<VaultEntry> out = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            long id = ids[f][i];
+            out.add(own != null ? own.get(id) : resolver.apply(id));
+        }
+        return out;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= times[0].length) return;
+        int cap = Math.max(n, times[0].length * 2);
+        for (int f = 0; f < FIELDS.length; f++) {
+            times[f] = Arrays.copyOf(times[f], cap);
+            ids[f] = Arrays.copyOf(ids[f], cap);
+        }
+    }
+
+    /** Merges the sorted batch into ordering {@code f} from the back, in place. */
+    private void merge(int f, long[] bt, long[] bi, int k) {
+        long[] ts = times[f], is = ids[f];
+        int a = size - 1, b = k - 1, out = size + k - 1;
+        while (b >= 0) {
+            if (a >= 0 && (ts[a] != bt[b] ? ts[a] > bt[b] : is[a] > bi[b])) {
+                ts[out] = ts[a];
+                is[out--] = is[a--];
+            } else {
+                ts[out] = bt[b];
+                is[out--] = bi[b--];
+            }
+        }
+    }
+
+    /** Bottom-up merge sort of the first {@code n} (time, id) pairs; {@code tt}/{@code ti} are scratch. */
+    private static void sort(long[] t, long[] id, long[] tt, long[] ti, int n) {
+        long[] st = t, si = id, dt = tt, di = ti;
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                int a = lo, b = mid, out = lo;
+                while (a < mid && b < hi) {
+                    boolean left = st[a] != st[b] ? st[a] < st[b] : si[a] < si[b];
+                    if (left) {
+                        dt[out] = st[a];
+                        di[out++] = si[a++];
+                    } else {
+                        dt[out] = st[b];
+                        di[out++] = si[b++];
+                    }
+                }
+                while (a < mid) {
+                    dt[out] = st[a];
+                    di[out++] = si[a++];
+                }
+                while (b < hi) {
+                    dt[out] = st[b];
+                    di[out++] = si[b++];
+                }
+            }
+            long[] x = st; st = dt; dt = x;
+            x = si; si = di; di = x;
+        }
+        if (st != t) {
+            System.arraycopy(st, 0, t, 0, n);
+            System.arraycopy(si, 0, id, 0, n);
+        }
+    }
+}
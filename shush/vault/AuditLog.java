@@ -0,0 +1,809 @@
+package shush.vault;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import shush.util.CryptoUtils;
+
+/**
+ * Tamper-evident, encrypted audit trail of vault access, kept next to the vault as {@code <vault>.audit}.
+ * <p>
+ * Recording is off the caller's path: {@link #record} puts the event into a lock-free ring
+ * ({@link AuditRing}) and returns. A shared background thread drains every log's ring a few times
+ * a second, or as soon as one is half full, and appends what it found as one frame; a shutdown hook drains the rest, so a CLI
+ * command's events are written before the process exits.
+ * </p>
+ * Layout:
+ * <pre>
+ * [ "SHL1" ][ version u8 ][ public key: u16 length, X.509 ][ sealed private key ][ sealed chain seed ][ CRC32C ]
+ * frame* = [ body length i32 ][ body: u16 length, ephemeral public key, sealed batch ][ MAC 32 ]
+ * </pre>
+ * <ul>
+ *   <li><b>Encrypted:</b> each frame's events are sealed to the log's X25519 public key through a
+ *       fresh ephemeral key (as in {@link TeamMember}), so appending needs no vault key while
+ *       reading needs the private key, which is sealed under the vault key.</li>
+ *   <li><b>Hash-chained:</b> {@code H[i] = SHA-256(H[i-1] || body[i])}, starting from a hash of the
+ *       header's fixed part, so frames cannot be removed, reordered or altered in place.</li>
+ *   <li><b>Forward-secure MACs:</b> {@code MAC[i] = HMAC(K[i], H[i])} with
+ *       {@code K[i+1] = SHA-256(label || K[i])}. The next key sits in {@code <vault>.audit.state}
+ *       with the chain head; the seed {@code K[1]} is sealed under the vault key. Whoever can read
+ *       the state file can append forged frames, but cannot rewrite earlier ones: their keys are
+ *       gone (Schneier and Kelsey's scheme). Verification walks the chain from the seed and
+ *       compares the result with the state file, so a cut-off tail shows as well.</li>
+ * </ul>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>The log is created at the first unlock (the seal needs the vault key); events recorded
+ *       earlier, such as failed unlocks of a vault that never had a log, are discarded.</li>
+ *   <li>If the ring overflows because the writer stalls, events are dropped rather than waited
+ *       for, and a {@link Event.Action#DROPPED} event records how many.</li>
+ *   <li>Appends from several processes are serialized with a lock on the log file, held until
+ *       the channel that took it is closed.</li>
+ * </ul>
+ */
+public final class AuditLog {
+
+    private static final byte[] MAGIC = new byte[]{0x53, 0x48, 0x4c, 0x31}; // "SHL1"
+    private static final byte[] STATE_MAGIC = new byte[]{0x53, 0x48, 0x53, 0x31}; // "SHS1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int STATE_SIZE = 4 + 8 + 32 + 32 + 8 + 4;
+    private static final int MAX_HEADER = 64 * 1024;
+    private static final int MAC_SIZE = 32;
+
+    private static final String ALG = "X25519";
+    private static final byte[] INFO = "shush-audit-v1".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] KEY_STEP = "shush-audit-key".getBytes(StandardCharsets.UTF_8);
+
+    private static final int RING_CAPACITY = 4096;
+    private static final int MAX_BATCH = 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+
+    private static final String USER = System.getProperty("user.name", "?");
+
+    /** One audited operation. */
+    public static final class Event {
+
+        /** What happened. */
+        public enum Action {
+            UNLOCK(1), UNLOCK_FAILED(2), GET(3), ADD(4), UPDATE(5), REMOVE(6), DROPPED(7);
+
+            final int code;
+
+            Action(int code) {
+                this.code = code;
+            }
+
+            static Action of(int code) throws IOException {
+                for (Action a : values()) if (a.code == code) return a;
+                throw new IOException("Unknown audit action " + code);
+            }
+        }
+
+        private final long time;
+        private final Action action;
+        private final String user;
+        private final String via;
+        private final String label;
+
+        Event(long time, Action action, String user, String via, String label) {
+            this.time = time;
+            this.action = action;
+            this.user = user;
+            this.via = via;
+            this.label = label;
+        }
+
+        /** @return when it happened, in epoch millis */
+        public long getTime() { return time; }
+
+        /** @return what happened */
+        public Action getAction() { return action; }
+
+        /** @return operating-system user of the process */
+        public String getUser() { return user; }
+
+        /** @return credential the vault was unlocked with ({@code password}, {@code recovery}, {@code member:<id>}), or {@code null} */
+        public String getVia() { return via; }
+
+        /** @return entry label, the number of events lost for {@code DROPPED}, or {@code null} */
+        public String getLabel() { return label; }
+    }
+
+    /** Outcome of {@link VaultManager#verifyAudit(VaultKey)}. */
+    public static final class Verification {
+        private boolean exists;
+        private int batches;
+        private int events;
+        private long first;
+        private long last;
+        private long dropped;
+        private final List<String> problems = new ArrayList<>();
+
+        /** @return false if the vault has no audit log yet */
+        public boolean exists() { return exists; }
+
+        /** @return frames whose MAC and encryption checked out */
+        public int getBatches() { return batches; }
+
+        /** @return events in those frames */
+        public int getEvents() { return events; }
+
+        /** @return time of the first event, or 0 */
+        public long getFirst() { return first; }
+
+        /** @return time of the last event, or 0 */
+        public long getLast() { return last; }
+
+        /** @return events recorded as lost to a full buffer */
+        public long getDropped() { return dropped; }
+
+        /** @return what is wrong with the log; empty if the chain is intact */
+        public List<String> getProblems() { return Collections.unmodifiableList(problems); }
+
+        /** @return true if the log exists and every check passed */
+        public boolean isIntact() { return exists && problems.isEmpty(); }
+    }
+
+    /** Parsed header. */
+    private static final class Header {
+        final byte[] publicKey;
+        final String sealedPrivateKey;
+        final String sealedSeed;
+        final int length;
+
+        Header(byte[] publicKey, String sealedPrivateKey, String sealedSeed, int length) {
+            this.publicKey = publicKey;
+            this.sealedPrivateKey = sealedPrivateKey;
+            this.sealedSeed = sealedSeed;
+            this.length = length;
+        }
+
+        /** Hash the chain starts from: the fixed part of the header, never resealed. */
+        byte[] chainStart() throws IOException {
+            MessageDigest md = sha256();
+            md.update(MAGIC);
+            md.update((byte) FORMAT_VERSION);
+            md.update(publicKey);
+            return md.digest();
+        }
+    }
+
+    /** Contents of the state file: chain head after {@code count} frames and the next MAC key. */
+    private static final class State {
+        final long count;
+        final byte[] head;
+        final byte[] nextKey;
+        final long logSize;
+
+        State(long count, byte[] head, byte[] nextKey, long logSize) {
+            this.count = count;
+            this.head = head;
+            this.nextKey = nextKey;
+            this.logSize = logSize;
+        }
+    }
+
+    // Appends of every log in the process go through one writer at a time
+    private static final ReentrantLock WRITE_LOCK = new ReentrantLock();
+    private static final Set<AuditLog> ACTIVE = ConcurrentHashMap.newKeySet();
+
+    private final Path file;
+    private final Path stateFile;
+    private final Path pendingStateFile; // state for a resealed log that may not have replaced the old one yet
+    private final AuditRing<Event> ring = new AuditRing<>(RING_CAPACITY);
+    private volatile boolean registered;
+    private volatile IOException lastError;
+
+    AuditLog(Path vaultFile) {
+        this.file = vaultFile.resolveSibling(vaultFile.getFileName() + ".audit");
+        this.stateFile = vaultFile.resolveSibling(vaultFile.getFileName() + ".audit.state");
+        this.pendingStateFile = vaultFile.resolveSibling(vaultFile.getFileName() + ".audit.state.next");
+    }
+
+    /** @return true once the log has been created */
+    boolean exists() {
+        return Files.exists(file);
+    }
+
+    /**
+     * Creates the log if it does not exist yet: a fresh X25519 key pair and chain seed, both
+     * sealed under {@code key}.
+     *
+     * @param key unlocked vault key
+     * @throws IOException              if the files cannot be written
+     * @throws GeneralSecurityException if key generation or sealing fails
+     */
+    void initialize(VaultKey key) throws IOException, GeneralSecurityException {
+        if (exists()) return;
+        KeyPair pair = KeyPairGenerator.getInstance(ALG).generateKeyPair();
+        byte[] seed = CryptoUtils.randomKey();
+        byte[] priv = pair.getPrivate().getEncoded();
+        try {
+            byte[] pub = pair.getPublic().getEncoded();
+            Header h = new Header(pub, key.seal(priv), key.seal(seed), 0);
+            byte[] header = encodeHeader(h);
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tmp, header);
+                Files.move(tmp, file); // fails if another process created the log first
+            } catch (FileAlreadyExistsException e) {
+                return;
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            writeState(new State(0, h.chainStart(), seed.clone(), header.length));
+        } finally {
+            Arrays.fill(seed, (byte) 0);
+            Arrays.fill(priv, (byte) 0);
+        }
+    }
+
+    /**
+     * Queues an event without blocking; it reaches the file within {@value #FLUSH_INTERVAL_MILLIS} ms
+     * or at exit.
+     *
+     * @param action what happened
+     * @param via    credential the vault was unlocked with, or {@code null}
+     * @param label  entry label, or {@code null}
+     */
+    void record(Event.Action action, String via, String label) {
+        ring.offer(new Event(System.currentTimeMillis(), action, USER, via, label));
+        if (!registered) {
+            registered = true;
+            ACTIVE.add(this);
+            Writer.start();
+        }
+        if (ring.size() >= RING_CAPACITY / 2) Writer.wake(); // a burst; don't wait for the interval
+    }
+
+    /**
+     * Writes every queued event now. Events are discarded if the log has not been created.
+     *
+     * @throws IOException if the log cannot be appended to
+     */
+    void flush() throws IOException {
+        WRITE_LOCK.lock();
+        try {
+            List<Event> batch = new ArrayList<>();
+            while (true) {
+                batch.clear();
+                long lost = ring.takeDropped();
+                if (lost > 0) batch.add(new Event(System.currentTimeMillis(), Event.Action.DROPPED, USER, null, Long.toString(lost)));
+                ring.drainTo(batch, MAX_BATCH);
+                if (batch.isEmpty()) return;
+                if (exists()) append(batch);
+            }
+        } catch (IOException e) {
+            lastError = e;
+            throw e;
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Checks the whole chain: every MAC from the sealed seed on, every frame's encryption, and the
+     * state file against where the chain ends.
+     *
+     * @param key unlocked vault key
+     * @return the outcome
+     * @throws IOException if the log cannot be read
+     */
+    Verification verify(VaultKey key) throws IOException {
+        return walk(key, null);
+    }
+
+    /**
+     * Reads every event of the verified prefix of the chain, oldest first.
+     *
+     * @param key unlocked vault key
+     * @param out destination for the events
+     * @return the verification outcome; events after the first problem are not returned
+     * @throws IOException if the log cannot be read
+     */
+    Verification read(VaultKey key, List<Event> out) throws IOException {
+        return walk(key, out);
+    }
+
+    /**
+     * Re-seals the header's private key and seed, e.g. before the key they were sealed under is
+     * retired. The chain does not cover them, so it stays valid.
+     * <p>
+     * A header of a new length moves every frame, and with them the log size in the state file,
+     * so the log is rewritten to a temporary file and both are replaced in three atomic steps:
+     * the new state is written to {@code <vault>.audit.state.next}, the new log moved over the
+     * old one, then the new state over the old one. The log's size tells which of the two states
+     * belongs to it, so a crash at any point is completed or rolled back by the next writer
+     * ({@link #settlePendingState()}).
+     * </p>
+     *
+     * @param resealer re-encrypts one sealed payload
+     * @throws IOException              if the log cannot be rewritten
+     * @throws GeneralSecurityException if a payload cannot be opened
+     */
+    void reseal(HistoryLog.Resealer resealer) throws IOException, GeneralSecurityException {
+        if (!exists()) return;
+        WRITE_LOCK.lock();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.lock();
+            settlePendingState();
+            Header h = readHeader(ch);
+            Header fresh = new Header(h.publicKey, resealer.apply(h.sealedPrivateKey), resealer.apply(h.sealedSeed), 0);
+            byte[] header = encodeHeader(fresh);
+            if (header.length == h.length) {
+                writeFully(ch, ByteBuffer.wrap(header), 0);
+                ch.force(false);
+                return;
+            }
+            State s = readState();
+            if (s == null) throw new IOException("Audit state file is missing: " + stateFile);
+            // drop an append whose state update never landed, as append() would; the old log's
+            // size then differs from the new one's, which recovery relies on
+            if (ch.size() > s.logSize) ch.truncate(s.logSize);
+            ByteBuffer frames = ByteBuffer.allocate((int) (s.logSize - h.length));
+            while (frames.hasRemaining() && ch.read(frames, h.length + frames.position()) > 0) { /* fill */ }
+            frames.flip();
+
+            Path dir = file.toAbsolutePath().getParent();
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeFully(out, ByteBuffer.wrap(header), 0);
+                    writeFully(out, frames, header.length);
+                    out.force(true);
+                }
+                writeState(pendingStateFile, new State(s.count, s.head, s.nextKey, s.logSize - h.length + header.length));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(pendingStateFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+    }
+
+    // ---- helpers ----
+
+    /** Appends one frame for {@code batch} and advances the state. Caller holds {@link #WRITE_LOCK}. */
+    private void append(List<Event> batch) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.lock();
+            settlePendingState();
+            Header h = readHeader(ch);
+            State s = readState();
+            if (s == null) throw new IOException("Audit state file is missing: " + stateFile);
+            // an append whose state update never landed (crash) is dropped; a shorter log is left
+            // for verification to report
+            if (ch.size() > s.logSize) ch.truncate(s.logSize);
+
+            byte[] body = seal(encodeEvents(batch), h.publicKey);
+            MessageDigest md = sha256();
+            md.update(s.head);
+            md.update(body);
+            byte[] head = md.digest();
+            byte[] mac = mac(s.nextKey, head);
+
+            ByteBuffer frame = ByteBuffer.allocate(4 + body.length + MAC_SIZE);
+            frame.putInt(body.length).put(body).put(mac).flip();
+            long pos = ch.size();
+            writeFully(ch, frame, pos);
+            ch.force(false);
+            writeState(new State(s.count + 1, head, step(s.nextKey), pos + 4 + body.length + MAC_SIZE));
+            Arrays.fill(s.nextKey, (byte) 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot seal audit events: " + e.getMessage(), e);
+        }
+    }
+
+    private Verification walk(VaultKey key, List<Event> out) throws IOException {
+        try {
+            flush();
+        } catch (IOException e) {
+            // reported below from lastError
+        }
+        Verification v = new Verification();
+        if (!exists()) return v;
+        v.exists = true;
+        WRITE_LOCK.lock();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ch.lock();
+            settlePendingState();
+        } finally {
+            WRITE_LOCK.unlock();
+        }
+        IOException writeError = lastError;
+        if (writeError != null) v.problems.add("Last append in this process failed: " + writeError.getMessage());
+
+        byte[] all = Files.readAllBytes(file);
+        ByteBuffer buf = ByteBuffer.wrap(all);
+        Header h = parseHeader(buf);
+        PrivateKey priv;
+        byte[] k;
+        try {
+            byte[] encoded = key.open(h.sealedPrivateKey);
+            try {
+                priv = KeyFactory.getInstance(ALG).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+            } finally {
+                Arrays.fill(encoded, (byte) 0);
+            }
+            k = key.open(h.sealedSeed);
+        } catch (GeneralSecurityException e) {
+            v.problems.add("Audit keys cannot be opened with this vault key: " + e.getMessage());
+            return v;
+        }
+
+        int before = v.problems.size();
+        byte[] head = h.chainStart();
+        long offset = h.length;
+        try {
+            while (buf.hasRemaining()) {
+                int frame = v.batches + 1;
+                if (buf.remaining() < 4) {
+                    v.problems.add("Frame " + frame + " at offset " + offset + " is truncated");
+                    break;
+                }
+                int len = buf.getInt();
+                if (len < 0 || (long) len + MAC_SIZE > buf.remaining()) {
+                    v.problems.add("Frame " + frame + " at offset " + offset + " is truncated or has a corrupt length");
+                    break;
+                }
+                byte[] body = new byte[len];
+                byte[] stored = new byte[MAC_SIZE];
+                buf.get(body).get(stored);
+                MessageDigest md = sha256();
+                md.update(head);
+                md.update(body);
+                head = md.digest();
+                if (!MessageDigest.isEqual(mac(k, head), stored)) {
+                    v.problems.add("Frame " + frame + " at offset " + offset
+                            + " fails its MAC: the log was modified, reordered or cut here");
+                    break;
+                }
+                List<Event> events;
+                try {
+                    events = decodeEvents(open(body, priv, h.publicKey));
+                } catch (GeneralSecurityException | IOException e) {
+                    v.problems.add("Frame " + frame + " at offset " + offset + " cannot be decrypted: " + e.getMessage());
+                    break;
+                }
+                for (Event e : events) {
+                    if (v.first == 0) v.first = e.getTime();
+                    v.last = e.getTime();
+                    if (e.getAction() == Event.Action.DROPPED) v.dropped += Long.parseLong(e.getLabel());
+                }
+                v.events += events.size();
+                if (out != null) out.addAll(events);
+                v.batches++;
+                byte[] next = step(k);
+                Arrays.fill(k, (byte) 0);
+                k = next;
+                offset += 4 + len + MAC_SIZE;
+            }
+            if (v.problems.size() == before) checkState(v, head, k, offset);
+        } finally {
+            Arrays.fill(k, (byte) 0);
+        }
+        return v;
+    }
+
+    /** Compares the end of a fully verified chain with the state file. */
+    private void checkState(Verification v, byte[] head, byte[] nextKey, long size) throws IOException {
+        State s;
+        try {
+            s = readState();
+        } catch (IOException e) {
+            v.problems.add(e.getMessage());
+            return;
+        }
+        if (s == null) {
+            v.problems.add("State file is missing: " + stateFile);
+        } else if (s.count > v.batches) {
+            v.problems.add((s.count - v.batches) + " frame(s) were cut from the end of the log");
+        } else if (s.count < v.batches || s.logSize != size) {
+            v.problems.add("State file records " + s.count + " frame(s) ending at offset " + s.logSize
+                    + ", the log has " + v.batches + " ending at " + size);
+        } else if (!MessageDigest.isEqual(s.head, head) || !MessageDigest.isEqual(s.nextKey, nextKey)) {
+            v.problems.add("State file does not match the end of the chain");
+        }
+    }
+
+    /** Seals {@code plain} to {@code publicKey}: ephemeral X25519, HKDF-SHA256, then the vault cipher. */
+    private static byte[] seal(byte[] plain, byte[] publicKey) throws GeneralSecurityException {
+        KeyPair eph = KeyPairGenerator.getInstance(ALG).generateKeyPair();
+        byte[] ephPub = eph.getPublic().getEncoded();
+        byte[] k = deriveKey(eph.getPrivate(), decodePublic(publicKey), ephPub, publicKey);
+        try {
+            byte[] sealed = CryptoUtils.encryptWithKey(plain, k).getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer b = ByteBuffer.allocate(2 + ephPub.length + sealed.length);
+            b.putShort((short) ephPub.length).put(ephPub).put(sealed);
+            return b.array();
+        } finally {
+            Arrays.fill(k, (byte) 0);
+        }
+    }
+
+    private static byte[] open(byte[] body, PrivateKey priv, byte[] publicKey) throws GeneralSecurityException {
+        ByteBuffer b = ByteBuffer.wrap(body);
+        int n = Short.toUnsignedInt(b.getShort());
+        if (n > b.remaining()) throw new GeneralSecurityException("Corrupt ephemeral key");
+        byte[] ephPub = new byte[n];
+        b.get(ephPub);
+        String sealed = new String(body, b.position(), b.remaining(), StandardCharsets.US_ASCII);
+        byte[] k = deriveKey(priv, decodePublic(ephPub), ephPub, publicKey);
+        try {
+            return CryptoUtils.decryptWithKey(sealed, k);
+        } finally {
+            Arrays.fill(k, (byte) 0);
+        }
+    }
+
+    /** X25519 agreement followed by HKDF-SHA256 (RFC 5869, single output block). */
+    private static byte[] deriveKey(PrivateKey priv, PublicKey pub, byte[] ephPub, byte[] logPub)
+            throws GeneralSecurityException {
+        KeyAgreement ka = KeyAgreement.getInstance(ALG);
+        ka.init(priv);
+        ka.doPhase(pub, true);
+        byte[] shared = ka.generateSecret();
+        byte[] prk = null;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            byte[] salt = new byte[ephPub.length + logPub.length];
+            System.arraycopy(ephPub, 0, salt, 0, ephPub.length);
+            System.arraycopy(logPub, 0, salt, ephPub.length, logPub.length);
+            mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+            prk = mac.doFinal(shared);
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            mac.update(INFO);
+            mac.update((byte) 1);
+            return mac.doFinal();
+        } finally {
+            Arrays.fill(shared, (byte) 0);
+            if (prk != null) Arrays.fill(prk, (byte) 0);
+        }
+    }
+
+    private static PublicKey decodePublic(byte[] encoded) throws GeneralSecurityException {
+        return KeyFactory.getInstance(ALG).generatePublic(new X509EncodedKeySpec(encoded));
+    }
+
+    private static byte[] mac(byte[] key, byte[] head) throws IOException {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(head);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    /** @return the MAC key after {@code key}; the old key cannot be recovered from it */
+    private static byte[] step(byte[] key) throws IOException {
+        MessageDigest md = sha256();
+        md.update(KEY_STEP);
+        md.update(key);
+        return md.digest();
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static byte[] encodeEvents(List<Event> events) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * events.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(events.size());
+        for (Event e : events) {
+            out.writeLong(e.time);
+            out.writeByte(e.action.code);
+            VaultFile.writeString(out, e.user);
+            VaultFile.writeString(out, e.via);
+            VaultFile.writeString(out, e.label);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<Event> decodeEvents(byte[] plain) throws IOException {
+        try {
+            ByteBuffer p = ByteBuffer.wrap(plain);
+            int n = p.getInt();
+            if (n < 0) throw new IOException("Corrupt event count: " + n);
+            List<Event> out = new ArrayList<>(Math.min(n, MAX_BATCH + 1));
+            for (int i = 0; i < n; i++) {
+                long time = p.getLong();
+                Event.Action action = Event.Action.of(Byte.toUnsignedInt(p.get()));
+                out.add(new Event(time, action, VaultFile.readString(p), VaultFile.readString(p), VaultFile.readString(p)));
+            }
+            return out;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated audit batch", e);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    private static byte[] encodeHeader(Header h) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeShort(h.publicKey.length);
+        out.write(h.publicKey);
+        VaultFile.writeString(out, h.sealedPrivateKey);
+        VaultFile.writeString(out, h.sealedSeed);
+        out.flush();
+        byte[] head = bytes.toByteArray();
+        out.writeInt(crc(ByteBuffer.wrap(head)));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private Header readHeader(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(ch.size(), MAX_HEADER));
+        while (buf.hasRemaining() && ch.read(buf, buf.position()) > 0) { /* fill */ }
+        buf.flip();
+        return parseHeader(buf);
+    }
+
+    /** Parses the header at the start of {@code buf}, leaving it positioned after it. */
+    private Header parseHeader(ByteBuffer buf) throws IOException {
+        try {
+            for (byte m : MAGIC) {
+                if (buf.get() != m) throw new IOException("Not an audit log: " + file);
+            }
+            int version = Byte.toUnsignedInt(buf.get());
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported audit log version " + version + ": " + file);
+            byte[] pub = new byte[Short.toUnsignedInt(buf.getShort())];
+            buf.get(pub);
+            String priv = VaultFile.readString(buf);
+            String seed = VaultFile.readString(buf);
+            int end = buf.position();
+            int stored = buf.getInt();
+            if (crc(buf.duplicate().position(0).limit(end)) != stored) {
+                throw new IOException("Checksum mismatch in audit log header: " + file);
+            }
+            return new Header(pub, priv, seed, buf.position());
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated audit log header: " + file, e);
+        }
+    }
+
+    /** @return the state, or {@code null} if the file does not exist */
+    private State readState() throws IOException {
+        if (!Files.exists(stateFile)) return null;
+        byte[] b = Files.readAllBytes(stateFile);
+        ByteBuffer p = ByteBuffer.wrap(b);
+        if (b.length != STATE_SIZE || !Arrays.equals(b, 0, 4, STATE_MAGIC, 0, 4)
+                || crc(ByteBuffer.wrap(b, 0, STATE_SIZE - 4)) != p.getInt(STATE_SIZE - 4)) {
+            throw new IOException("Audit state file is corrupt: " + stateFile);
+        }
+        p.position(4);
+        long count = p.getLong();
+        byte[] head = new byte[32];
+        byte[] key = new byte[32];
+        p.get(head).get(key);
+        return new State(count, head, key, p.getLong());
+    }
+
+    /**
+     * Completes or rolls back a {@link #reseal} that stopped between its atomic steps: the pending
+     * state replaces the current one if the log already has the size it records, and is deleted
+     * otherwise. Caller holds {@link #WRITE_LOCK} and the file lock.
+     */
+    private void settlePendingState() throws IOException {
+        if (!Files.exists(pendingStateFile)) return;
+        byte[] b = Files.readAllBytes(pendingStateFile);
+        if (b.length == STATE_SIZE && ByteBuffer.wrap(b).getLong(STATE_SIZE - 12) == Files.size(file)) {
+            Files.move(pendingStateFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.delete(pendingStateFile);
+        }
+    }
+
+    private void writeState(State s) throws IOException {
+        writeState(stateFile, s);
+    }
+
+    private static void writeState(Path stateFile, State s) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(STATE_SIZE);
+        b.put(STATE_MAGIC).putLong(s.count).put(s.head).put(s.nextKey).putLong(s.logSize);
+        b.putInt(crc(ByteBuffer.wrap(b.array(), 0, STATE_SIZE - 4)));
+        Path tmp = Files.createTempFile(stateFile.toAbsolutePath().getParent(), stateFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(ch, ByteBuffer.wrap(b.array()), 0);
+                ch.force(true);
+            }
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Arrays.fill(b.array(), (byte) 0);
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+    }
+
+    private static int crc(ByteBuffer data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /** The shared background writer, started with the first recorded event. */
+    private static final class Writer {
+        private static final Thread THREAD = new Thread(Writer::run, "shush-audit-writer");
+
+        static {
+            THREAD.setDaemon(true);
+            THREAD.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Writer::flushAll, "shush-audit-flush"));
+        }
+
+        /** Triggers the class initializer once. */
+        static void start() {
+        }
+
+        /** Drains now instead of at the end of the interval. */
+        static void wake() {
+            LockSupport.unpark(THREAD);
+        }
+
+        private static void run() {
+            while (true) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS));
+                flushAll();
+            }
+        }
+
+        private static void flushAll() {
+            for (AuditLog log : ACTIVE) {
+                try {
+                    log.flush();
+                } catch (IOException e) {
+                    // kept in lastError and reported by verification
+                }
+            }
+        }
+    }
+}
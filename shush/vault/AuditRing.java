@@ -0,0 +1,99 @@
+package shush.vault;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer queue.
+ * <p>
+ * A producer claims a sequence number with one CAS on {@code tail} and publishes its element
+ * with an ordered store into the slot; it never blocks and never waits for the consumer. When
+ * the ring is full the element is refused and counted instead, so a stalled writer can cost
+ * events but never latency. The consumer takes published elements in sequence order and stops
+ * at the first slot that was claimed but not yet filled.
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>Only one thread at a time may call {@link #drainTo(List, int)}; {@link AuditLog} serializes
+ *       its writers.</li>
+ *   <li>Capacity is rounded up to a power of two so a sequence maps to a slot with a mask.</li>
+ * </ul>
+ *
+ * @param <T> element type
+ */
+final class AuditRing<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next sequence to claim
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head;                        // next sequence to consume; written by the consumer only
+
+    /** @param capacity maximum number of queued elements */
+    AuditRing(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        int n = Integer.highestOneBit(capacity - 1) << 1;
+        if (n <= 0) n = 1;
+        slots = new AtomicReferenceArray<>(n);
+        mask = n - 1;
+    }
+
+    /**
+     * Enqueues an element without blocking.
+     *
+     * @param e element, not {@code null}
+     * @return false if the ring was full and {@code e} was dropped
+     */
+    boolean offer(T e) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.lazySet((int) t & mask, e);
+        return true;
+    }
+
+    /**
+     * Moves published elements to {@code out}, oldest first.
+     *
+     * @param out destination
+     * @param max maximum number of elements to move
+     * @return number of elements moved
+     */
+    int drainTo(List<T> out, int max) {
+        long h = head;
+        int n = 0;
+        while (n < max) {
+            int i = (int) h & mask;
+            T e = slots.get(i);
+            if (e == null) break; // empty, or claimed and not yet published
+            slots.lazySet(i, null);
+            out.add(e);
+            h++;
+            n++;
+        }
+        head = h;
+        return n;
+    }
+
+    /** @return number of claimed, unconsumed elements (a snapshot) */
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    /** @return true if nothing has been claimed beyond what was consumed */
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    /** @return the number of elements refused since the last call, resetting the count */
+    long takeDropped() {
+        return dropped.getAndSet(0);
+    }
+}
@@ -0,0 +1,335 @@
+package shush.vault;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints (entry ordinals) in the style of a Roaring bitmap.
+ * <p>
+ * Values are split into 65536-wide chunks by their high 16 bits. A sparse chunk stores its low
+ * halves as a sorted {@code char[]}; once it holds more than {@link #ARRAY_MAX} values it switches
+ * to a 1024-word bitset. AND, OR and AND-NOT therefore work chunk by chunk, either as sorted-array
+ * merges or as word-wise bit operations, and never touch chunks absent from both sides.
+ * </p>
+ * Instances are not thread-safe while being built; the set operations return new bitmaps and
+ * leave their inputs unchanged.
+ */
+final class Bitmap {
+
+    /** Largest cardinality kept as a sorted array (4096 chars = the size of a bitset chunk). */
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int size;
+
+    /** One 65536-value chunk: either {@code array[0..card)} or {@code bits}. */
+    private static final class Chunk {
+        char[] array;
+        long[] bits;
+        int card;
+
+        static Chunk ofArray(char[] array, int card) {
+            Chunk c = new Chunk();
+            c.array = array;
+            c.card = card;
+            return c;
+        }
+
+        static Chunk ofBits(long[] bits, int card) {
+            Chunk c = new Chunk();
+            c.bits = bits;
+            c.card = card;
+            return c;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) return (bits[low >>> 6] & (1L << low)) != 0;
+            return Arrays.binarySearch(array, 0, card, low) >= 0;
+        }
+
+        void add(char low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) == 0) {
+                    bits[low >>> 6] |= mask;
+                    card++;
+                }
+                return;
+            }
+            // fast path: ordinals are usually added in increasing order
+            int at = card > 0 && array[card - 1] < low ? -card - 1 : Arrays.binarySearch(array, 0, card, low);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (card == ARRAY_MAX) {
+                toBits();
+                add(low);
+                return;
+            }
+            if (card == array.length) array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(4, card * 2)));
+            System.arraycopy(array, at, array, at + 1, card - at);
+            array[at] = low;
+            card++;
+        }
+
+        private void toBits() {
+            long[] b = new long[WORDS];
+            for (int i = 0; i < card; i++) b[array[i] >>> 6] |= 1L << array[i];
+            bits = b;
+            array = null;
+        }
+
+        long[] asBits() {
+            if (bits != null) return bits;
+            long[] b = new long[WORDS];
+            for (int i = 0; i < card; i++) b[array[i] >>> 6] |= 1L << array[i];
+            return b;
+        }
+
+        /** Picks the cheaper representation for a computed bitset. */
+        static Chunk fromBits(long[] bits) {
+            int card = 0;
+            for (long w : bits) card += Long.bitCount(w);
+            if (card == 0) return null;
+            if (card > ARRAY_MAX) return ofBits(bits, card);
+            char[] out = new char[card];
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    out[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return ofArray(out, card);
+        }
+    }
+
+    /**
+     * Returns a bitmap holding {@code 0..n-1}.
+     *
+     * @param n number of values
+     * @return the bitmap
+     */
+    static Bitmap range(int n) {
+        Bitmap b = new Bitmap();
+        for (int base = 0; base < n; base += 1 << 16) {
+            int count = Math.min(1 << 16, n - base);
+            if (count > ARRAY_MAX) {
+                long[] bits = new long[WORDS];
+                for (int w = 0; w < count >>> 6; w++) bits[w] = -1L;
+                if ((count & 63) != 0) bits[count >>> 6] = (1L << count) - 1;
+                b.append((char) (base >>> 16), Chunk.ofBits(bits, count));
+            } else {
+                char[] arr = new char[count];
+                for (int i = 0; i < count; i++) arr[i] = (char) i;
+                b.append((char) (base >>> 16), Chunk.ofArray(arr, count));
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value non-negative value
+     */
+    void add(int value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value: " + value);
+        char high = (char) (value >>> 16);
+        int at = size > 0 && keys[size - 1] == high ? size - 1 : Arrays.binarySearch(keys, 0, size, high);
+        if (at < 0) {
+            at = -at - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                chunks = Arrays.copyOf(chunks, size * 2);
+            }
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            System.arraycopy(chunks, at, chunks, at + 1, size - at);
+            keys[at] = high;
+            chunks[at] = Chunk.ofArray(new char[4], 0);
+            size++;
+        }
+        chunks[at].add((char) value);
+    }
+
+    /**
+     * @param value value to test
+     * @return whether the bitmap contains {@code value}
+     */
+    boolean contains(int value) {
+        if (value < 0) return false;
+        int at = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return at >= 0 && chunks[at].contains((char) value);
+    }
+
+    /** @return number of values */
+    int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += chunks[i].card;
+        return n;
+    }
+
+    /** @return the values in ascending order */
+    int[] toArray() {
+        int[] out = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int base = keys[i] << 16;
+            Chunk c = chunks[i];
+            if (c.bits == null) {
+                for (int j = 0; j < c.card; j++) out[n++] = base | c.array[j];
+            } else {
+                for (int w = 0; w < WORDS; w++) {
+                    long word = c.bits[w];
+                    while (word != 0) {
+                        out[n++] = base | ((w << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param other right operand
+     * @return values in both bitmaps
+     */
+    Bitmap and(Bitmap other) {
+        Bitmap out = new Bitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Chunk a = chunks[i], b = other.chunks[j];
+                Chunk c;
+                if (a.bits == null || b.bits == null) {
+                    c = andArray(a.bits == null ? a : b, a.bits == null ? b : a);
+                } else {
+                    long[] bits = new long[WORDS];
+                    for (int w = 0; w < WORDS; w++) bits[w] = a.bits[w] & b.bits[w];
+                    c = Chunk.fromBits(bits);
+                }
+                if (c != null) out.append(keys[i], c);
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /** Intersects an array chunk with any chunk; the result is never larger than the array. */
+    private static Chunk andArray(Chunk array, Chunk other) {
+        char[] out = new char[array.card];
+        int n = 0;
+        for (int k = 0; k < array.card; k++) if (other.contains(array.array[k])) out[n++] = array.array[k];
+        return n == 0 ? null : Chunk.ofArray(out, n);
+    }
+
+    /**
+     * @param other right operand
+     * @return values in either bitmap
+     */
+    Bitmap or(Bitmap other) {
+        Bitmap out = new Bitmap();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                out.append(keys[i], copy(chunks[i++]));
+            } else if (i == size || keys[i] > other.keys[j]) {
+                out.append(other.keys[j], copy(other.chunks[j++]));
+            } else {
+                Chunk a = chunks[i], b = other.chunks[j];
+                if (a.bits == null && b.bits == null && a.card + b.card <= ARRAY_MAX) {
+                    out.append(keys[i], mergeArrays(a, b));
+                } else {
+                    long[] bits = a.asBits().clone();
+                    if (b.bits != null) {
+                        for (int w = 0; w < WORDS; w++) bits[w] |= b.bits[w];
+                    } else {
+                        for (int k = 0; k < b.card; k++) bits[b.array[k] >>> 6] |= 1L << b.array[k];
+                    }
+                    out.append(keys[i], Chunk.fromBits(bits));
+                }
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    private static Chunk mergeArrays(Chunk a, Chunk b) {
+        char[] out = new char[a.card + b.card];
+        int x = 0, y = 0, n = 0;
+        while (x < a.card && y < b.card) {
+            char va = a.array[x], vb = b.array[y];
+            if (va < vb) {
+                out[n++] = va;
+                x++;
+            } else if (va > vb) {
+                out[n++] = vb;
+                y++;
+            } else {
+                out[n++] = va;
+                x++;
+                y++;
+            }
+        }
+        while (x < a.card) out[n++] = a.array[x++];
+        while (y < b.card) out[n++] = b.array[y++];
+        return Chunk.ofArray(out, n);
+    }
+
+    /**
+     * @param other values to remove
+     * @return values in this bitmap but not in {@code other}
+     */
+    Bitmap andNot(Bitmap other) {
+        Bitmap out = new Bitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            Chunk a = chunks[i];
+            if (j == other.size || other.keys[j] != keys[i]) {
+                out.append(keys[i], copy(a));
+                continue;
+            }
+            Chunk b = other.chunks[j];
+            Chunk c;
+            if (a.bits == null) {
+                char[] arr = new char[a.card];
+                int n = 0;
+                for (int k = 0; k < a.card; k++) if (!b.contains(a.array[k])) arr[n++] = a.array[k];
+                c = n == 0 ? null : Chunk.ofArray(arr, n);
+            } else {
+                long[] bits = a.bits.clone();
+                if (b.bits != null) {
+                    for (int w = 0; w < WORDS; w++) bits[w] &= ~b.bits[w];
+                } else {
+                    for (int k = 0; k < b.card; k++) bits[b.array[k] >>> 6] &= ~(1L << b.array[k]);
+                }
+                c = Chunk.fromBits(bits);
+            }
+            if (c != null) out.append(keys[i], c);
+        }
+        return out;
+    }
+
+    private static Chunk copy(Chunk c) {
+        return c.bits != null ? Chunk.ofBits(c.bits.clone(), c.card) : Chunk.ofArray(Arrays.copyOf(c.array, c.card), c.card);
+    }
+
+    /** Appends a chunk whose key is greater than every existing key. */
+    private void append(char key, Chunk chunk) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        keys[size] = key;
+        chunks[size++] = chunk;
+    }
+}
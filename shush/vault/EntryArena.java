@@ -0,0 +1,556 @@
+package shush.vault;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+
+/**
+ * Columnar entry store for very large vaults, opt-in through {@code shush.store}: it trades
+ * load and listing speed for a smaller heap (see {@link EntryStoreBenchmark}).
+ * <p>
+ * A heap {@link VaultEntry} costs about half a kilobyte: an object plus up to six {@code String}s,
+ * each with its own header and backing array, for what is mostly Base64 of ciphertext. Here every
+ * field is a column instead: one growable {@code byte[]} holding the values back to back, with a
+ * primitive array of end offsets per column (a row's value starts where the previous row's ends);
+ * null and encoding bits, flags, key epochs, ids and timestamps are primitive arrays of their own. Sealed payloads are kept as their decoded bytes (a quarter
+ * smaller than the Base64) and re-encoded on read. {@link #get(int)} hands out a lightweight
+ * {@link VaultEntry} view whose getters read the columns.
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>Rows are append-only: {@link #set(int, VaultEntry)} appends the replacement and
+ *       {@link #remove(int)} only drops the row from the list order. Dead rows are reclaimed by
+ *       compaction once they outnumber live ones.</li>
+ *   <li>Views never see a row change. Growth and compaction build a new {@link Rows} generation
+ *       and leave the old one to the views still holding it, so entries handed out earlier stay
+ *       valid (and readable without the lock), just as heap entries do. A {@link #snapshot()}
+ *       therefore only needs the list order, which it shares until a change inside it.</li>
+ *   <li>A view is not the stored object, so lookups match entries by {@link VaultEntry#id()}
+ *       rather than by reference.</li>
+ *   <li>Not thread-safe; {@link VaultManager} guards it with its read/write lock.</li>
+ * </ul>
+ */
+final class EntryArena extends AbstractList<VaultEntry> implements EntryStore {
+
+    private static final int LABEL = 0, USERNAME = 1, PASSWORD = 2, COMMENT = 3, TAGS = 4, FOLDER = 5;
+    private static final int COLUMNS = 6;
+
+    // Two bits per column in a row's kinds: value is null, value is a decoded sealed payload (else UTF-8)
+    private static final int KIND_NULL = 1;
+    private static final int KIND_SEALED = 2;
+
+    private static final byte FLAG_2FA = 1;
+
+    // Compaction waits until at least this many rows are dead, so small vaults never compact
+    private static final int MIN_COMPACT = 1024;
+
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+    private static final Base64.Encoder B64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * One generation of columns. Array references are final, and a row's cells are never written
+     * again once the row is appended, so a view reads its row without locking.
+     */
+    private static final class Rows {
+        final byte[][] data;
+        final int[][] ends;   // per column: offset just past each row's value
+        final short[] kinds;  // per row: KIND_* bits, two per column
+        final long[] ids;
+        final int[] keyEpochs;
+        final byte[] flags;
+        final long[] created;
+        final long[] updated;
+        final long[] rotated;
+
+        Rows(int capacity, int[] dataCapacity) {
+            data = new byte[COLUMNS][];
+            ends = new int[COLUMNS][];
+            for (int c = 0; c < COLUMNS; c++) {
+                data[c] = new byte[dataCapacity[c]];
+                ends[c] = new int[capacity];
+            }
+            kinds = new short[capacity];
+            ids = new long[capacity];
+            keyEpochs = new int[capacity];
+            flags = new byte[capacity];
+            created = new long[capacity];
+            updated = new long[capacity];
+            rotated = new long[capacity];
+        }
+
+        /** Copy with room for {@code capacity} rows and data columns of {@code dataCapacity} bytes. */
+        Rows(Rows r, int capacity, int[] dataCapacity) {
+            data = new byte[COLUMNS][];
+            ends = new int[COLUMNS][];
+            for (int c = 0; c < COLUMNS; c++) {
+                data[c] = dataCapacity[c] == r.data[c].length ? r.data[c] : Arrays.copyOf(r.data[c], dataCapacity[c]);
+                ends[c] = Arrays.copyOf(r.ends[c], capacity);
+            }
+            kinds = Arrays.copyOf(r.kinds, capacity);
+            ids = Arrays.copyOf(r.ids, capacity);
+            keyEpochs = Arrays.copyOf(r.keyEpochs, capacity);
+            flags = Arrays.copyOf(r.flags, capacity);
+            created = Arrays.copyOf(r.created, capacity);
+            updated = Arrays.copyOf(r.updated, capacity);
+            rotated = Arrays.copyOf(r.rotated, capacity);
+        }
+
+        /** Copy with column {@code column} grown to {@code bytes}; everything else is shared. */
+        Rows(Rows r, int column, int bytes) {
+            data = r.data.clone();
+            data[column] = Arrays.copyOf(r.data[column], bytes);
+            ends = r.ends;
+            kinds = r.kinds;
+            ids = r.ids;
+            keyEpochs = r.keyEpochs;
+            flags = r.flags;
+            created = r.created;
+            updated = r.updated;
+            rotated = r.rotated;
+        }
+
+        int start(int column, int row) {
+            return row == 0 ? 0 : ends[column][row - 1];
+        }
+
+        int kind(int column, int row) {
+            return kinds[row] >>> (2 * column) & 3;
+        }
+
+        /** @return the string stored in {@code column} of {@code row} */
+        String get(int column, int row) {
+            int kind = kind(column, row);
+            if ((kind & KIND_NULL) != 0) return null;
+            int off = start(column, row), end = ends[column][row];
+            byte[] d = data[column];
+            if ((kind & KIND_SEALED) == 0) return new String(d, off, end - off, StandardCharsets.UTF_8);
+            return B64_ENCODER.encodeToString(Arrays.copyOfRange(d, off, end));
+        }
+    }
+
+    /** A stored entry; getters decode the row on each call. */
+    private static final class View extends VaultEntry {
+        private final Rows rows;
+        private final int row;
+        private final int hint; // list position when handed out, tried first by indexOfSame
+
+        View(Rows rows, int row, int hint) {
+            super(rows.ids[row]);
+            this.rows = rows;
+            this.row = row;
+            this.hint = hint;
+        }
+
+        @Override public String getLabel() { return rows.get(LABEL, row); }
+        @Override public String getUsername() { return rows.get(USERNAME, row); }
+        @Override public String getPassword() { return rows.get(PASSWORD, row); }
+        @Override public String getComment() { return rows.get(COMMENT, row); }
+        @Override public boolean requires2FA() { return (rows.flags[row] & FLAG_2FA) != 0; }
+        @Override public int getKeyEpoch() { return rows.keyEpochs[row]; }
+        @Override public String getTags() { return rows.get(TAGS, row); }
+        @Override public String getFolder() { return rows.get(FOLDER, row); }
+        @Override public long getCreatedAt() { return rows.created[row]; }
+        @Override public long getUpdatedAt() { return rows.updated[row]; }
+        @Override public long getRotatedAt() { return rows.rotated[row]; }
+    }
+
+    /** Read-only list over the first {@code size} positions of an order array no one writes there again. */
+    private static final class Snapshot extends AbstractList<VaultEntry> implements RandomAccess {
+        private final Rows rows;
+        private final int[] order;
+        private final int size;
+
+        Snapshot(Rows rows, int[] order, int size) {
+            this.rows = rows;
+            this.order = order;
+            this.size = size;
+        }
+
+        @Override
+        public VaultEntry get(int index) {
+            Objects.checkIndex(index, size);
+            return new View(rows, order[index], index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Spliterator<VaultEntry> spliterator() {
+            return new EntrySpliterator(this, 0, size);
+        }
+    }
+
+    private Rows rows;
+    private final int[] used = new int[COLUMNS]; // bytes used per data column
+    private int rowCount;                        // rows appended to the current generation
+    private int[] order;                         // list position -> row
+    private int shared;                          // prefix of order that snapshots read; copy before writing inside it
+    private long[] seqs;                         // list position -> sequence number, see EntryStore
+    private long lastSeq;
+    private int size;
+    private final IdMap byId = new IdMap();
+
+    /** @param expected number of entries to size the columns for */
+    EntryArena(int expected) {
+        int capacity = Math.max(16, expected);
+        int[] dataCapacity = new int[COLUMNS];
+        // typical sizes: short labels, sealed fields of a few dozen bytes, tags and folder mostly absent
+        dataCapacity[LABEL] = capacity * 24;
+        dataCapacity[USERNAME] = capacity * 48;
+        dataCapacity[PASSWORD] = capacity * 56;
+        dataCapacity[COMMENT] = capacity * 48;
+        dataCapacity[TAGS] = capacity * 16;
+        dataCapacity[FOLDER] = capacity * 24;
+        rows = new Rows(capacity, dataCapacity);
+        order = new int[capacity];
+        seqs = new long[capacity];
+    }
+
+    @Override
+    public VaultEntry get(int index) {
+        Objects.checkIndex(index, size);
+        return new View(rows, order[index], index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Appends {@code e}; as with {@link EntryList}, entries cannot be inserted elsewhere. */
+    @Override
+    public boolean add(VaultEntry e) {
+        int row = append(e);
+        if (size == order.length) {
+            int capacity = grow(size + 1, size);
+            order = Arrays.copyOf(order, capacity);
+            seqs = Arrays.copyOf(seqs, capacity);
+            shared = 0;
+        }
+        order[size] = row;
+        seqs[size] = ++lastSeq;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public VaultEntry set(int index, VaultEntry e) {
+        Objects.checkIndex(index, size);
+        VaultEntry old = get(index);
+        byId.remove(old.id());
+        int row = append(e);
+        if (index < shared) {
+            order = order.clone();
+            shared = 0;
+        }
+        order[index] = row;
+        compactIfSparse();
+        return old;
+    }
+
+    @Override
+    public VaultEntry remove(int index) {
+        Objects.checkIndex(index, size);
+        VaultEntry old = get(index);
+        byId.remove(old.id());
+        int tail = size - index - 1;
+        if (index < shared) {
+            int[] copy = new int[order.length];
+            System.arraycopy(order, 0, copy, 0, index);
+            System.arraycopy(order, index + 1, copy, index, tail);
+            order = copy;
+            shared = 0;
+        } else {
+            System.arraycopy(order, index + 1, order, index, tail);
+        }
+        System.arraycopy(seqs, index + 1, seqs, index, tail);
+        size--;
+        modCount++;
+        compactIfSparse();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        int[] dataCapacity = new int[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) dataCapacity[c] = rows.data[c].length;
+        rows = new Rows(rows.ids.length, dataCapacity); // fresh arrays: views of the old rows stay intact
+        Arrays.fill(used, 0);
+        rowCount = 0;
+        size = 0;
+        byId.clear();
+        modCount++;
+    }
+
+    /**
+     * @param entry an entry handed out by this store, or the one that was added
+     * @return its list position, or {@code -1} if it was replaced or removed since
+     */
+    int indexOfSame(VaultEntry entry) {
+        int row = byId.get(entry.id());
+        if (row < 0) return -1;
+        if (entry instanceof View) {
+            int hint = ((View) entry).hint;
+            if (hint < size && order[hint] == row) return hint;
+        }
+        for (int i = 0; i < size; i++) if (order[i] == row) return i;
+        return -1;
+    }
+
+    /** @return the stored entry with id {@code id}, or {@code null} */
+    VaultEntry byId(long id) {
+        int row = byId.get(id);
+        return row < 0 ? null : new View(rows, row, 0);
+    }
+
+    /**
+     * Entries whose label equals {@code label}, compared as UTF-8 without decoding any row.
+     *
+     * @return matching entries in list order
+     */
+    List<VaultEntry> findByLabel(String label) {
+        List<VaultEntry> out = new ArrayList<>(1);
+        Rows r = rows;
+        if (label == null) {
+            for (int i = 0; i < size; i++) if ((r.kind(LABEL, order[i]) & KIND_NULL) != 0) out.add(get(i));
+            return out;
+        }
+        byte[] key = label.getBytes(StandardCharsets.UTF_8);
+        byte[] d = r.data[LABEL];
+        int[] ends = r.ends[LABEL];
+        for (int i = 0; i < size; i++) {
+            int row = order[i];
+            int off = row == 0 ? 0 : ends[row - 1];
+            if (ends[row] - off != key.length || (r.kind(LABEL, row) & KIND_NULL) != 0) continue;
+            if (Arrays.equals(d, off, ends[row], key, 0, key.length)) out.add(get(i));
+        }
+        return out;
+    }
+
+    /** Drops spare capacity, e.g. once a vault has been loaded. */
+    void trimToSize() {
+        if (size < rowCount) {
+            compact();
+            return;
+        }
+        int[] dataCapacity = used.clone();
+        rows = new Rows(rows, rowCount, dataCapacity);
+        order = Arrays.copyOf(order, size);
+        seqs = Arrays.copyOf(seqs, size);
+        shared = 0;
+    }
+
+    @Override
+    public List<VaultEntry> snapshot() {
+        shared = Math.max(shared, size);
+        return new Snapshot(rows, order, size);
+    }
+
+    @Override
+    public long seqAt(int index) {
+        Objects.checkIndex(index, size);
+        return seqs[index];
+    }
+
+    @Override
+    public int indexAfter(long seq) {
+        int i = Arrays.binarySearch(seqs, 0, size, seq);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    // ---- helpers ----
+
+    /** Appends {@code e} as a new row of the current generation and returns the row. */
+    private int append(VaultEntry e) {
+        Objects.requireNonNull(e, "entry");
+        if (rowCount == rows.ids.length) {
+            int[] dataCapacity = new int[COLUMNS];
+            for (int c = 0; c < COLUMNS; c++) dataCapacity[c] = rows.data[c].length;
+            rows = new Rows(rows, grow(rowCount + 1, rowCount), dataCapacity);
+        }
+        int row = rowCount++;
+        put(LABEL, row, e.getLabel(), false);
+        put(USERNAME, row, e.getUsername(), true);
+        put(PASSWORD, row, e.getPassword(), true);
+        put(COMMENT, row, e.getComment(), true);
+        put(TAGS, row, e.getTags(), true);
+        put(FOLDER, row, e.getFolder(), true);
+        Rows r = rows;
+        r.ids[row] = e.id();
+        r.keyEpochs[row] = e.getKeyEpoch();
+        r.flags[row] = e.requires2FA() ? FLAG_2FA : 0;
+        r.created[row] = e.getCreatedAt();
+        r.updated[row] = e.getUpdatedAt();
+        r.rotated[row] = e.getRotatedAt();
+        byId.put(e.id(), row);
+        return row;
+    }
+
+    private void put(int column, int row, String value, boolean sealed) {
+        int kind;
+        if (value == null) {
+            kind = KIND_NULL;
+        } else {
+            byte[] raw = sealed ? decodeSealed(value) : null;
+            kind = raw != null ? KIND_SEALED : 0;
+            if (raw == null) raw = value.getBytes(StandardCharsets.UTF_8);
+            long need = (long) used[column] + raw.length;
+            if (need > MAX_ARRAY) throw new IllegalStateException("Entry store column is full");
+            if (need > rows.data[column].length) {
+                rows = new Rows(rows, column, grow((int) need, rows.data[column].length));
+            }
+            System.arraycopy(raw, 0, rows.data[column], used[column], raw.length);
+            used[column] += raw.length;
+        }
+        rows.ends[column][row] = used[column];
+        rows.kinds[row] |= (short) (kind << (2 * column));
+    }
+
+    /** @return a capacity of at least {@code need}, a quarter above {@code current}: little slack in very large stores */
+    private static int grow(int need, int current) {
+        long grown = Math.max(need, current + (current >> 2) + 16L);
+        return (int) Math.min(grown, MAX_ARRAY);
+    }
+
+    /**
+     * @return the bytes of a sealed payload (unpadded URL-safe Base64), or {@code null} if
+     *         {@code value} would not encode back to itself, e.g. a legacy or plaintext field
+     */
+    private static byte[] decodeSealed(String value) {
+        int n = value.length();
+        if (n % 4 == 1) return null;
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            boolean ok = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+            if (!ok) return null;
+        }
+        byte[] raw = B64_DECODER.decode(value);
+        return B64_ENCODER.encodeToString(raw).equals(value) ? raw : null;
+    }
+
+    /** Rewrites the live rows into a fresh generation once dead rows outnumber them. */
+    private void compactIfSparse() {
+        int dead = rowCount - size;
+        if (dead >= MIN_COMPACT && dead >= size) compact();
+    }
+
+    /** Rewrites the live rows, in list order, into a fresh generation without spare capacity. */
+    private void compact() {
+        Rows old = rows;
+        int[] dataCapacity = new int[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            long live = 0;
+            for (int i = 0; i < size; i++) live += old.ends[c][order[i]] - old.start(c, order[i]);
+            dataCapacity[c] = (int) Math.min(live, MAX_ARRAY);
+        }
+        Rows r = new Rows(size, dataCapacity);
+        Arrays.fill(used, 0);
+        byId.clear();
+        int[] compacted = new int[size]; // a fresh order: snapshots may share the old one
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            for (int c = 0; c < COLUMNS; c++) {
+                int off = old.start(c, from), len = old.ends[c][from] - off;
+                System.arraycopy(old.data[c], off, r.data[c], used[c], len);
+                used[c] += len;
+                r.ends[c][i] = used[c];
+            }
+            r.kinds[i] = old.kinds[from];
+            r.ids[i] = old.ids[from];
+            r.keyEpochs[i] = old.keyEpochs[from];
+            r.flags[i] = old.flags[from];
+            r.created[i] = old.created[from];
+            r.updated[i] = old.updated[from];
+            r.rotated[i] = old.rotated[from];
+            byId.put(r.ids[i], i);
+            compacted[i] = i;
+        }
+        rows = r;
+        rowCount = size;
+        order = compacted;
+        seqs = Arrays.copyOf(seqs, size);
+        shared = 0;
+    }
+
+    /** Open-addressing map from entry id to row, with linear probing and backward-shift removal; at most 3/4 full. */
+    private static final class IdMap {
+        private long[] keys = new long[16];
+        private int[] values = new int[16];
+        private boolean[] full = new boolean[16];
+        private int count;
+
+        int get(long id) {
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); full[i]; i = (i + 1) & mask) if (keys[i] == id) return values[i];
+            return -1;
+        }
+
+        void put(long id, int row) {
+            if ((count + 1) * 4L > keys.length * 3L) resize(keys.length * 2);
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            for (; full[i]; i = (i + 1) & mask) {
+                if (keys[i] == id) {
+                    values[i] = row;
+                    return;
+                }
+            }
+            keys[i] = id;
+            values[i] = row;
+            full[i] = true;
+            count++;
+        }
+
+        void remove(long id) {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (full[i] && keys[i] != id) i = (i + 1) & mask;
+            if (!full[i]) return;
+            // shift later members of the probe run back so lookups never stop at the hole
+            for (int j = (i + 1) & mask; full[j]; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    i = j;
+                }
+            }
+            full[i] = false;
+            count--;
+        }
+
+        void clear() {
+            Arrays.fill(full, false);
+            count = 0;
+        }
+
+        private void resize(int capacity) {
+            long[] k = keys;
+            int[] v = values;
+            boolean[] f = full;
+            keys = new long[capacity];
+            values = new int[capacity];
+            full = new boolean[capacity];
+            count = 0;
+            for (int i = 0; i < k.length; i++) if (f[i]) put(k[i], v[i]);
+        }
+
+        private static int slot(long id, int mask) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package shush.vault;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tag, folder and 2FA filter for {@link VaultManager#filterEntries(EntryFilter, VaultKey)}.
+ * <p>
+ * Clauses are combined with AND. Each {@link #tag(String...)} clause matches entries carrying
+ * <em>any</em> of its tags (OR); {@link #notTag(String)} excludes entries carrying the tag.
+ * {@link #folder(String)} matches the folder and everything below it.
+ * </p>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * // prod database credentials that require 2FA, excluding legacy ones
+ * EntryFilter f = new EntryFilter().tag("prod").tag("db", "database").notTag("legacy").requires2FA(true);
+ * }</pre>
+ */
+public final class EntryFilter {
+
+    private final List<Set<String>> anyOf = new ArrayList<>();
+    private final Set<String> excluded = new LinkedHashSet<>();
+    private String folder;
+    private Boolean requires2FA;
+
+    /**
+     * Requires at least one of {@code tags}. Calling it again adds another AND-ed clause.
+     *
+     * @param tags alternative tags; each may itself be comma-separated
+     * @return this filter
+     */
+    public EntryFilter tag(String... tags) {
+        Set<String> clause = new LinkedHashSet<>(VaultEntry.splitTags(VaultEntry.joinTags(List.of(tags))));
+        if (clause.isEmpty()) throw new IllegalArgumentException("Empty tag");
+        anyOf.add(clause);
+        return this;
+    }
+
+    /**
+     * Excludes entries carrying {@code tag}.
+     *
+     * @param tag tag to exclude; may be comma-separated to exclude several
+     * @return this filter
+     */
+    public EntryFilter notTag(String tag) {
+        List<String> tags = VaultEntry.splitTags(VaultEntry.joinTags(List.of(tag)));
+        if (tags.isEmpty()) throw new IllegalArgumentException("Empty tag");
+        excluded.addAll(tags);
+        return this;
+    }
+
+    /**
+     * Restricts to a folder and its subfolders (case-insensitive).
+     *
+     * @param path folder path such as {@code "work/db"}
+     * @return this filter
+     */
+    public EntryFilter folder(String path) {
+        String normalized = VaultEntry.normalizeFolder(path);
+        if (normalized == null) throw new IllegalArgumentException("Empty folder");
+        this.folder = normalized.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    /**
+     * Restricts to entries that do (or do not) require 2FA.
+     *
+     * @param required required state of the entry's 2FA flag
+     * @return this filter
+     */
+    public EntryFilter requires2FA(boolean required) {
+        this.requires2FA = required;
+        return this;
+    }
+
+    /** @return {@code true} if no clause was added, i.e. the filter matches every entry */
+    public boolean isEmpty() {
+        return anyOf.isEmpty() && excluded.isEmpty() && folder == null && requires2FA == null;
+    }
+
+    /** @return OR-clauses that must all match */
+    List<Set<String>> getAnyOf() {
+        return Collections.unmodifiableList(anyOf);
+    }
+
+    /** @return tags that must not be present */
+    Set<String> getExcluded() {
+        return Collections.unmodifiableSet(excluded);
+    }
+
+    /** @return lower-case folder path, or {@code null} */
+    String getFolder() {
+        return folder;
+    }
+
+    /** @return required 2FA state, or {@code null} if any */
+    Boolean getRequires2FA() {
+        return requires2FA;
+    }
+}
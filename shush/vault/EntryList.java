@@ -0,0 +1,158 @@
+package shush.vault;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+
+/**
+ * Heap entry store: one {@link VaultEntry} object per entry, as an array list whose
+ * {@link #snapshot()} shares the array. Only writes inside the part a snapshot can see copy it;
+ * appends land past that part and copy nothing.
+ * <p>
+ * Only appending is supported ({@link #add(VaultEntry)}); {@link #set(int, VaultEntry)} and
+ * {@link #remove(int)} keep the order of the rest, as {@link EntryStore} requires.
+ * </p>
+ */
+final class EntryList extends AbstractList<VaultEntry> implements EntryStore {
+
+    private static final VaultEntry[] EMPTY = new VaultEntry[0];
+
+    private VaultEntry[] elements;
+    private long[] seqs;
+    private int size;
+    private long lastSeq;
+    private int shared;     // prefix of elements that snapshots read; copy before writing inside it
+
+    /** @param expected number of entries to size the list for */
+    EntryList(int expected) {
+        elements = expected == 0 ? EMPTY : new VaultEntry[expected];
+        seqs = new long[expected];
+    }
+
+    /** @param entries initial entries, in order */
+    EntryList(Collection<? extends VaultEntry> entries) {
+        this(entries.size());
+        for (VaultEntry e : entries) add(e);
+    }
+
+    @Override
+    public VaultEntry get(int index) {
+        Objects.checkIndex(index, size);
+        return elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(VaultEntry e) {
+        Objects.requireNonNull(e, "entry");
+        if (size == elements.length) {
+            // appending past the shared prefix needs no copy, only growing does
+            elements = Arrays.copyOf(elements, Math.max(16, size + (size >> 1)));
+            shared = 0;
+        }
+        if (size == seqs.length) seqs = Arrays.copyOf(seqs, elements.length);
+        elements[size] = e;
+        seqs[size] = ++lastSeq;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public VaultEntry set(int index, VaultEntry e) {
+        Objects.requireNonNull(e, "entry");
+        VaultEntry old = get(index);
+        if (index < shared) {
+            elements = elements.clone();
+            shared = 0;
+        }
+        elements[index] = e;
+        return old;
+    }
+
+    @Override
+    public VaultEntry remove(int index) {
+        VaultEntry old = get(index);
+        int tail = size - index - 1;
+        if (index < shared) {
+            // one copy that leaves the gap out, rather than a copy and then a shift
+            VaultEntry[] copy = new VaultEntry[elements.length];
+            System.arraycopy(elements, 0, copy, 0, index);
+            System.arraycopy(elements, index + 1, copy, index, tail);
+            elements = copy;
+            shared = 0;
+        } else {
+            System.arraycopy(elements, index + 1, elements, index, tail);
+            elements[size - 1] = null;
+        }
+        System.arraycopy(seqs, index + 1, seqs, index, tail);
+        size--;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (shared > 0) {
+            elements = new VaultEntry[elements.length];
+            shared = 0;
+        } else {
+            Arrays.fill(elements, 0, size, null);
+        }
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public List<VaultEntry> snapshot() {
+        shared = Math.max(shared, size);
+        return new Snapshot(elements, size);
+    }
+
+    @Override
+    public long seqAt(int index) {
+        Objects.checkIndex(index, size);
+        return seqs[index];
+    }
+
+    @Override
+    public int indexAfter(long seq) {
+        int i = Arrays.binarySearch(seqs, 0, size, seq);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /** Read-only list over the first {@code size} elements of an array no one writes there again. */
+    private static final class Snapshot extends AbstractList<VaultEntry> implements RandomAccess {
+        private final VaultEntry[] elements;
+        private final int size;
+
+        Snapshot(VaultEntry[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        public VaultEntry get(int index) {
+            Objects.checkIndex(index, size);
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Spliterator<VaultEntry> spliterator() {
+            return new EntrySpliterator(this, 0, size);
+        }
+    }
+}
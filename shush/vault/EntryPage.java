@@ -0,0 +1,27 @@
+package shush.vault;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a resumable entry listing; see {@link VaultManager#listPage(String, int)}.
+ */
+public final class EntryPage {
+
+    private final List<VaultEntry> entries;
+    private final String nextToken;
+
+    EntryPage(List<VaultEntry> entries, String nextToken) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.nextToken = nextToken;
+    }
+
+    /** @return the entries of this page (still encrypted), in vault order */
+    public List<VaultEntry> getEntries() { return entries; }
+
+    /** @return token for the following page, or {@code null} if this page reached the end */
+    public String getNextToken() { return nextToken; }
+
+    /** @return {@code true} if there may be more entries after this page */
+    public boolean hasMore() { return nextToken != null; }
+}
@@ -0,0 +1,65 @@
+package shush.vault;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over an entry snapshot (see {@link EntryStore#snapshot()}).
+ * <p>
+ * A snapshot never changes, so the spliterator reports its exact size, splits by halving the
+ * index range (both halves {@code SIZED} again, which lets parallel streams presize their
+ * results and balance work), and needs no concurrent-modification checks.
+ * </p>
+ */
+final class EntrySpliterator implements Spliterator<VaultEntry> {
+
+    private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+
+    private final List<VaultEntry> entries; // random access, immutable
+    private int index;
+    private final int fence;
+
+    /**
+     * @param entries immutable random-access list
+     * @param origin  first index covered
+     * @param fence   one past the last index covered
+     */
+    EntrySpliterator(List<VaultEntry> entries, int origin, int fence) {
+        this.entries = entries;
+        this.index = origin;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super VaultEntry> action) {
+        if (index >= fence) return false;
+        action.accept(entries.get(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super VaultEntry> action) {
+        int i = index, hi = fence;
+        index = hi;
+        for (; i < hi; i++) action.accept(entries.get(i));
+    }
+
+    @Override
+    public Spliterator<VaultEntry> trySplit() {
+        int lo = index, mid = (lo + fence) >>> 1;
+        if (lo >= mid) return null;
+        index = mid;
+        return new EntrySpliterator(entries, lo, mid);
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+}
@@ -0,0 +1,41 @@
+package shush.vault;
+
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The in-memory entry list of a {@link VaultManager}: an {@link EntryList}, or an
+ * {@link EntryArena} when opted into (see {@link VaultManager#newEntryStore(int)}).
+ * <p>
+ * Besides the list itself a store offers what enumeration needs without copying it:
+ * </p>
+ * <ul>
+ *   <li>{@link #snapshot()} in constant time: the snapshot shares the store's arrays, and the
+ *       store copies them on its next change instead (copy-on-write). A writer pays that copy at
+ *       most once per snapshot, next to a {@link VaultManager#persist()} that rewrites the whole
+ *       file anyway.</li>
+ *   <li>A sequence number per position, handed out in increasing order as entries are appended
+ *       and kept when an entry is replaced in place. Stores only append, so sequence numbers
+ *       increase along the list and a page cursor can resume with a binary search
+ *       ({@link #indexAfter(long)}) however the list changed since.</li>
+ * </ul>
+ * Not thread-safe; {@link VaultManager} guards stores with its read/write lock. Snapshots may be
+ * used without the lock.
+ */
+interface EntryStore extends List<VaultEntry>, RandomAccess {
+
+    /** @return an immutable view of the current entries, valid after later changes; constant time */
+    List<VaultEntry> snapshot();
+
+    /**
+     * @param index list position
+     * @return the sequence number of the entry at {@code index}
+     */
+    long seqAt(int index);
+
+    /**
+     * @param seq a sequence number, possibly of an entry removed since
+     * @return the position of the first entry with a larger sequence number, or {@link #size()}
+     */
+    int indexAfter(long seq);
+}
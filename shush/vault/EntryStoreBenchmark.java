@@ -0,0 +1,191 @@
+package shush.vault;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Heap footprint and lookup benchmark for the entry stores ({@code shush.store}).
+ * <p>
+ * Writes one synthetic vault of the requested size, then loads it once per store and reports the
+ * retained heap per entry (used heap after full collections, before and after the load), the load
+ * time, and the latency of exact-label lookups, a full listing (sequential, as a parallel stream
+ * and in pages of {@value #PAGE}) and a staleness query. Entries look
+ * like real ones: a short plaintext label, sealed username, password and comment, and sealed tags
+ * and folder on some entries, at the sizes {@link VaultKey#seal(byte[])} produces (33 bytes of
+ * overhead, unpadded URL-safe Base64). Everything runs in a temporary directory that is deleted
+ * afterwards.
+ * </p>
+ * <p>
+ * Heap figures include the label and age indexes, which every store keeps. A million entries in the
+ * heap store need a heap of about 2 GB for the benchmark itself (the writer buffers the file).
+ * </p>
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * java -Xmx3g -cp out shush.vault.EntryStoreBenchmark --entries 1000000
+ * java -cp out shush.vault.EntryStoreBenchmark --entries 200000 --stores columnar
+ * }</pre>
+ */
+public final class EntryStoreBenchmark {
+
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final int SEAL_OVERHEAD = 4 + 1 + 12 + 16; // magic, suite, IV, GCM tag
+    private static final int LOOKUPS = 2000;
+    private static final int PAGE = 1000;
+
+    private EntryStoreBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args {@code --entries n} (default 1,000,000), {@code --stores heap,columnar}
+     */
+    public static void main(String[] args) throws Exception {
+        int n = 1_000_000;
+        List<String> stores = List.of("heap", "columnar");
+        for (int i = 0; i < args.length; i++) {
+            if ("--entries".equals(args[i]) && i + 1 < args.length) {
+                n = Integer.parseInt(args[++i]);
+            } else if ("--stores".equals(args[i]) && i + 1 < args.length) {
+                stores = Arrays.asList(args[++i].split(","));
+            } else {
+                System.out.println("Usage: EntryStoreBenchmark [--entries n] [--stores heap,columnar]");
+                System.exit(2);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("shush-store-bench");
+        try {
+            Path file = dir.resolve("bench.shush");
+            long t0 = System.nanoTime();
+            writeVault(file, n);
+            System.out.printf(Locale.ROOT, "Wrote %,d entries (%,d MB) in %.1f s%n", n,
+                    Files.size(file) >> 20, (System.nanoTime() - t0) / 1e9);
+            for (String store : stores) run(file, n, store.trim());
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    // ---- helpers ----
+
+    private static void run(Path file, int n, String store) {
+        System.setProperty(VaultManager.STORE_PROPERTY, store);
+        long before = usedHeap();
+        long t0 = System.nanoTime();
+        VaultManager vm = new VaultManager(file, readHeader(file));
+        vm.load();
+        double loadSeconds = (System.nanoTime() - t0) / 1e9;
+        long after = usedHeap();
+
+        Random rnd = new Random(7);
+        long[] find = new long[LOOKUPS];
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            String label = label(rnd.nextInt(n));
+            long s = System.nanoTime();
+            found += vm.findEntries(label).size();
+            find[i] = System.nanoTime() - s;
+        }
+        if (found != LOOKUPS) throw new IllegalStateException("lookups found " + found + " of " + LOOKUPS);
+
+        long s = System.nanoTime();
+        int listed = 0;
+        for (VaultEntry e : vm.listEntries()) if (e.getLabel() != null && e.getPassword() != null) listed++;
+        if (listed != n) throw new IllegalStateException("listed " + listed + " of " + n);
+        double listMillis = (System.nanoTime() - s) / 1e6;
+
+        s = System.nanoTime();
+        long streamed = vm.streamEntries().parallel().filter(e -> e.getLabel() != null && e.getPassword() != null).count();
+        if (streamed != n) throw new IllegalStateException("streamed " + streamed + " of " + n);
+        double parallelMillis = (System.nanoTime() - s) / 1e6;
+
+        s = System.nanoTime();
+        int paged = 0;
+        String token = null;
+        do {
+            EntryPage page = vm.listPage(token, PAGE);
+            paged += page.getEntries().size();
+            token = page.getNextToken();
+        } while (token != null);
+        if (paged != n) throw new IllegalStateException("paged " + paged + " of " + n);
+        double pagedMillis = (System.nanoTime() - s) / 1e6;
+
+        s = System.nanoTime();
+        int stale = vm.staleEntries(VaultEntry.Timestamp.ROTATED, Duration.ofDays(365)).size();
+        double staleMillis = (System.nanoTime() - s) / 1e6;
+
+        Arrays.sort(find);
+        System.out.printf(Locale.ROOT, "%-8s %,6d B/entry (%,d MB)  load %.1f s  find p50 %,.0f us p99 %,.0f us"
+                        + "  list+read %,.0f ms (parallel %,.0f ms, paged %,.0f ms)  stale(%,d) %,.0f ms%n",
+                store, (after - before) / n, (after - before) >> 20, loadSeconds,
+                find[LOOKUPS / 2] / 1e3, find[LOOKUPS * 99 / 100] / 1e3, listMillis, parallelMillis, pagedMillis,
+                stale, staleMillis);
+    }
+
+    /** Writes {@code n} synthetic entries, ten percent of them not rotated for over a year. */
+    private static void writeVault(Path file, int n) throws IOException {
+        Random rnd = new Random(42);
+        long now = System.currentTimeMillis(), year = 365L * 24 * 3600 * 1000;
+        List<VaultEntry> entries = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long created = now - (long) (rnd.nextDouble() * 3 * year);
+            long rotated = i % 10 == 0 ? created : Math.max(created, now - (long) (rnd.nextDouble() * year / 2));
+            entries.add(new VaultEntry(label(i),
+                    sealed(rnd, 8 + rnd.nextInt(16)),
+                    sealed(rnd, 16 + rnd.nextInt(8)),
+                    sealed(rnd, rnd.nextInt(4) == 0 ? 60 + rnd.nextInt(120) : 0),
+                    false, 0,
+                    rnd.nextInt(3) == 0 ? sealed(rnd, 5 + rnd.nextInt(12)) : null,
+                    rnd.nextInt(2) == 0 ? sealed(rnd, 4 + rnd.nextInt(16)) : null,
+                    created, rotated, rotated));
+        }
+        VaultHeader header = VaultHeader.create(0, 1, 256);
+        VaultFile.write(file, header, new VaultFile.Body(null, List.of(), entries));
+    }
+
+    private static String label(int i) {
+        return "site-" + i + ".example.com";
+    }
+
+    /** @return random bytes shaped like a payload sealed from {@code plain} bytes */
+    private static String sealed(Random rnd, int plain) {
+        byte[] b = new byte[plain + SEAL_OVERHEAD];
+        rnd.nextBytes(b);
+        return B64.encodeToString(b);
+    }
+
+    private static VaultHeader readHeader(Path file) {
+        try {
+            return VaultHeader.read(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
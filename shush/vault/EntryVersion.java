@@ -0,0 +1,44 @@
+package shush.vault;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An earlier version of a vault entry, rebuilt from the history log.
+ * <p>
+ * Fields of {@link #getEntry()} are sealed exactly as they were stored, possibly under an
+ * earlier key epoch; {@link VaultKey#open(String)} still opens them while that epoch is retained.
+ * </p>
+ */
+public final class EntryVersion {
+
+    private final String head;
+    private final VaultEntry entry;
+    private final Instant replacedAt;
+    private final boolean removed;
+    private final List<String> changedFields;
+
+    EntryVersion(String head, VaultEntry entry, Instant replacedAt, boolean removed, List<String> changedFields) {
+        this.head = head;
+        this.entry = entry;
+        this.replacedAt = replacedAt;
+        this.removed = removed;
+        this.changedFields = Collections.unmodifiableList(changedFields);
+    }
+
+    /** @return label of the entry this version belongs to now (or had when it was removed) */
+    public String getHead() { return head; }
+
+    /** @return the entry as it was, with sealed fields */
+    public VaultEntry getEntry() { return entry; }
+
+    /** @return when this version was replaced or removed */
+    public Instant getReplacedAt() { return replacedAt; }
+
+    /** @return {@code true} if this version is the entry as it was when removed */
+    public boolean isRemoved() { return removed; }
+
+    /** @return names of the fields the following change modified ({@code "label"}, {@code "password"}, ...) */
+    public List<String> getChangedFields() { return changedFields; }
+}
@@ -0,0 +1,376 @@
+package shush.vault;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only store of earlier entry versions, kept next to the vault as {@code <vault>.history}.
+ * <p>
+ * Layout:
+ * <pre>
+ * [ "SHH1" ][ maxVersions i32 ][ maxAgeDays i32 ][ compactAt i64 ][ CRC32C of the preceding 20 bytes ]
+ * record* = [ payload length i32 ][ CRC32C i32 ][ payload ]
+ * </pre>
+ * Each {@link Record} is a delta: an update stores only the fields the update changed, as the
+ * sealed payloads they had before, so no field is copied unless it actually changed. A removal
+ * stores every field. Versions are rebuilt by walking records newest to oldest from the current
+ * entries (see {@link VaultManager#history(String)}).
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>The vault load path never touches this file; it is read only for history and restore.</li>
+ *   <li>Appends are O(1). When the file outgrows {@code compactAt} (twice its size after the last
+ *       compaction), it is rewritten with the retention limits applied.</li>
+ *   <li>Payloads stay sealed; labels and timestamps are plaintext, as in the vault itself.</li>
+ * </ul>
+ */
+final class HistoryLog {
+
+    private static final byte[] MAGIC = new byte[]{0x53, 0x48, 0x48, 0x31}; // "SHH1"
+    private static final int HEADER_SIZE = 24;
+    private static final long MIN_COMPACT_AT = 64 * 1024;
+
+    /** Default number of earlier versions kept per label. */
+    static final int DEFAULT_MAX_VERSIONS = 20;
+    /** Default age limit for earlier versions, in days. */
+    static final int DEFAULT_MAX_AGE_DAYS = 365;
+
+    static final int KIND_UPDATE = 1;
+    static final int KIND_REMOVE = 2;
+
+    static final int F_USERNAME = 1;
+    static final int F_PASSWORD = 1 << 1;
+    static final int F_COMMENT = 1 << 2;
+    static final int F_TAGS = 1 << 3;
+    static final int F_FOLDER = 1 << 4;
+    static final int F_LABEL = 1 << 5;
+    static final int F_2FA = 1 << 6;
+    static final int F_ALL = 0x7f;
+
+    private final Path file;
+
+    HistoryLog(Path vaultFile) {
+        this.file = vaultFile.resolveSibling(vaultFile.getFileName() + ".history");
+    }
+
+    /** Retention limits stored in the log header. */
+    static final class Retention {
+        final int maxVersions;
+        final int maxAgeDays;
+
+        Retention(int maxVersions, int maxAgeDays) {
+            if (maxVersions < 1) throw new IllegalArgumentException("Must keep at least one version");
+            if (maxAgeDays < 0) throw new IllegalArgumentException("Age limit must not be negative");
+            this.maxVersions = maxVersions;
+            this.maxAgeDays = maxAgeDays;
+        }
+    }
+
+    /**
+     * One earlier version of an entry. {@code label} is the entry's label <em>after</em> the change
+     * (for removals: the removed label); a rename stores the previous label under {@link #F_LABEL}.
+     */
+    static final class Record {
+        final int kind;
+        final long timestamp;
+        final int keyEpoch;
+        final String label;
+        final int fields;
+        final String username, password, comment, tags, folder, oldLabel;
+        final boolean requires2FA;
+
+        Record(int kind, long timestamp, int keyEpoch, String label, int fields, String username, String password,
+               String comment, String tags, String folder, String oldLabel, boolean requires2FA) {
+            this.kind = kind;
+            this.timestamp = timestamp;
+            this.keyEpoch = keyEpoch;
+            this.label = label;
+            this.fields = fields;
+            this.username = username;
+            this.password = password;
+            this.comment = comment;
+            this.tags = tags;
+            this.folder = folder;
+            this.oldLabel = oldLabel;
+            this.requires2FA = requires2FA;
+        }
+
+        boolean has(int field) {
+            return (fields & field) != 0;
+        }
+    }
+
+    /** Re-seals one payload; see {@link #reseal(int, Resealer)}. */
+    interface Resealer {
+        String apply(String payload) throws GeneralSecurityException;
+    }
+
+    /**
+     * Appends a record, compacting the log if it has outgrown its threshold.
+     *
+     * @param r record to append
+     * @throws IOException if the log cannot be written
+     */
+    void append(Record r) throws IOException {
+        if (!Files.exists(file)) rewrite(new ArrayList<>(), readRetention());
+        byte[] payload = encode(r);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt(crc(ByteBuffer.wrap(payload))).put(payload).flip();
+        long size;
+        long compactAt;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = readHeader(ch);
+            compactAt = header.getLong(12);
+            long pos = ch.size();
+            while (frame.hasRemaining()) pos += ch.write(frame, pos);
+            ch.force(false);
+            size = pos;
+        }
+        if (size > compactAt) compact();
+    }
+
+    /**
+     * Reads every record, oldest first.
+     *
+     * @return the records; empty if the log does not exist
+     * @throws IOException if the log is corrupt
+     */
+    List<Record> read() throws IOException {
+        List<Record> out = new ArrayList<>();
+        if (!Files.exists(file)) return out;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            readHeader(ch);
+            long size = ch.size();
+            ByteBuffer body = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size - HEADER_SIZE);
+            while (body.remaining() >= 8) {
+                int len = body.getInt();
+                int crc = body.getInt();
+                if (len < 0 || len > body.remaining()) {
+                    // a torn final append is dropped; anything else is corruption
+                    if (len >= 0) break;
+                    throw new IOException("Corrupt history record length at " + (HEADER_SIZE + body.position() - 8));
+                }
+                ByteBuffer payload = body.slice(body.position(), len);
+                body.position(body.position() + len);
+                if (crc(payload.duplicate()) != crc) {
+                    throw new IOException("Checksum mismatch in history record at " + (HEADER_SIZE + body.position() - len - 8));
+                }
+                out.add(decode(payload));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Reads the records that are within the retention limits. Records past them may remain in
+     * the file until the next compaction, but are never returned.
+     *
+     * @return retained records, oldest first
+     * @throws IOException if the log is corrupt
+     */
+    List<Record> readRetained() throws IOException {
+        return applyRetention(read(), readRetention(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return the retention limits, or the defaults if the log does not exist yet
+     * @throws IOException if the header is corrupt
+     */
+    Retention readRetention() throws IOException {
+        if (!Files.exists(file)) return new Retention(DEFAULT_MAX_VERSIONS, DEFAULT_MAX_AGE_DAYS);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer h = readHeader(ch);
+            return new Retention(h.getInt(4), h.getInt(8));
+        }
+    }
+
+    /**
+     * Stores new retention limits and applies them right away.
+     *
+     * @param retention new limits
+     * @return number of records dropped
+     * @throws IOException if the log cannot be rewritten
+     */
+    int setRetention(Retention retention) throws IOException {
+        List<Record> all = read();
+        List<Record> kept = applyRetention(all, retention, System.currentTimeMillis());
+        rewrite(kept, retention);
+        return all.size() - kept.size();
+    }
+
+    /**
+     * Applies retention and rewrites the log.
+     *
+     * @throws IOException if the log cannot be rewritten
+     */
+    void compact() throws IOException {
+        Retention retention = readRetention();
+        rewrite(applyRetention(read(), retention, System.currentTimeMillis()), retention);
+    }
+
+    /**
+     * Re-seals every payload of records older than {@code epoch}, so the retired keys they were
+     * sealed with can be dropped.
+     *
+     * @param epoch    current key epoch
+     * @param resealer opens a payload and seals it under the current key
+     * @throws IOException              if the log cannot be rewritten
+     * @throws GeneralSecurityException if a payload cannot be opened
+     */
+    void reseal(int epoch, Resealer resealer) throws IOException, GeneralSecurityException {
+        if (!Files.exists(file)) return;
+        List<Record> all = read();
+        boolean stale = false;
+        for (Record r : all) if (r.keyEpoch < epoch) stale = true;
+        if (!stale) return;
+        List<Record> out = new ArrayList<>(all.size());
+        for (Record r : all) {
+            if (r.keyEpoch >= epoch) {
+                out.add(r);
+                continue;
+            }
+            out.add(new Record(r.kind, r.timestamp, epoch, r.label, r.fields,
+                    r.has(F_USERNAME) ? reseal(r.username, resealer) : null,
+                    r.has(F_PASSWORD) ? reseal(r.password, resealer) : null,
+                    r.has(F_COMMENT) ? reseal(r.comment, resealer) : null,
+                    r.has(F_TAGS) ? reseal(r.tags, resealer) : null,
+                    r.has(F_FOLDER) ? reseal(r.folder, resealer) : null,
+                    r.oldLabel, r.requires2FA));
+        }
+        rewrite(out, readRetention());
+    }
+
+    private static String reseal(String payload, Resealer resealer) throws GeneralSecurityException {
+        return payload == null ? null : resealer.apply(payload);
+    }
+
+    // ---- retention ----
+
+    /** Drops records past the age limit, and all but the newest {@code maxVersions} per label. */
+    static List<Record> applyRetention(List<Record> records, Retention retention, long now) {
+        long cutoff = retention.maxAgeDays == 0 ? Long.MIN_VALUE : now - retention.maxAgeDays * 86_400_000L;
+        Map<String, Integer> seen = new HashMap<>();
+        boolean[] keep = new boolean[records.size()];
+        for (int i = records.size() - 1; i >= 0; i--) {
+            Record r = records.get(i);
+            if (r.timestamp < cutoff) continue;
+            // older records are deltas on newer ones, so the newest N per label are always self-consistent
+            int n = seen.merge(r.label, 1, Integer::sum);
+            keep[i] = n <= retention.maxVersions;
+        }
+        List<Record> out = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) if (keep[i]) out.add(records.get(i));
+        return out;
+    }
+
+    // ---- encoding ----
+
+    private void rewrite(List<Record> records, Retention retention) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Record r : records) {
+            byte[] payload = encode(r);
+            out.writeInt(payload.length);
+            out.writeInt(crc(ByteBuffer.wrap(payload)));
+            out.write(payload);
+        }
+        out.flush();
+        long size = HEADER_SIZE + bytes.size();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putInt(retention.maxVersions).putInt(retention.maxAgeDays)
+                .putLong(Math.max(MIN_COMPACT_AT, size * 2));
+        header.putInt(crc(header.duplicate().flip()));
+        header.flip();
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (header.hasRemaining()) ch.write(header);
+                ByteBuffer body = ByteBuffer.wrap(bytes.toByteArray());
+                while (body.hasRemaining()) ch.write(body);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private ByteBuffer readHeader(FileChannel ch) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+        while (h.hasRemaining() && ch.read(h, h.position()) > 0) { /* fill */ }
+        h.flip();
+        if (h.remaining() < HEADER_SIZE) throw new IOException("Truncated history header: " + file);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (h.get(i) != MAGIC[i]) throw new IOException("Not a history file: " + file);
+        }
+        if (crc(h.duplicate().limit(HEADER_SIZE - 4)) != h.getInt(HEADER_SIZE - 4)) {
+            throw new IOException("Checksum mismatch in history header: " + file);
+        }
+        return h;
+    }
+
+    private static byte[] encode(Record r) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(r.kind);
+        out.writeLong(r.timestamp);
+        out.writeInt(r.keyEpoch);
+        VaultFile.writeString(out, r.label);
+        out.writeByte(r.fields);
+        if (r.has(F_USERNAME)) VaultFile.writeString(out, r.username);
+        if (r.has(F_PASSWORD)) VaultFile.writeString(out, r.password);
+        if (r.has(F_COMMENT)) VaultFile.writeString(out, r.comment);
+        if (r.has(F_TAGS)) VaultFile.writeString(out, r.tags);
+        if (r.has(F_FOLDER)) VaultFile.writeString(out, r.folder);
+        if (r.has(F_LABEL)) VaultFile.writeString(out, r.oldLabel);
+        if (r.has(F_2FA)) out.writeByte(r.requires2FA ? 1 : 0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Record decode(ByteBuffer p) throws IOException {
+        try {
+            int kind = Byte.toUnsignedInt(p.get());
+            long timestamp = p.getLong();
+            int keyEpoch = p.getInt();
+            String label = VaultFile.readString(p);
+            int fields = Byte.toUnsignedInt(p.get());
+            String username = (fields & F_USERNAME) != 0 ? VaultFile.readString(p) : null;
+            String password = (fields & F_PASSWORD) != 0 ? VaultFile.readString(p) : null;
+            String comment = (fields & F_COMMENT) != 0 ? VaultFile.readString(p) : null;
+            String tags = (fields & F_TAGS) != 0 ? VaultFile.readString(p) : null;
+            String folder = (fields & F_FOLDER) != 0 ? VaultFile.readString(p) : null;
+            String oldLabel = (fields & F_LABEL) != 0 ? VaultFile.readString(p) : null;
+            boolean requires2FA = (fields & F_2FA) != 0 && p.get() != 0;
+            return new Record(kind, timestamp, keyEpoch, label, fields, username, password, comment, tags, folder,
+                    oldLabel, requires2FA);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated history record", e);
+        }
+    }
+
+    private static int crc(ByteBuffer data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,126 @@
+package shush.vault;
+
+import shush.util.CryptoUtils;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * One wrapped copy of the vault data key.
+ * <p>
+ * Entries are encrypted under a random 256-bit data key. Each slot stores that key encrypted
+ * under a key-encryption key (KEK) derived from one credential, so changing a credential only
+ * re-wraps one slot (32 bytes of key plus AEAD overhead) instead of re-encrypting every entry.
+ * </p>
+ *
+ * <h2>Slot types</h2>
+ * <ul>
+ *   <li>{@link Type#PASSWORD}: KEK from the master password alone.</li>
+ *   <li>{@link Type#PASSWORD_PIN}: KEK from master password and PIN together; replaces the
+ *       {@code PASSWORD} slot while a PIN is set, so the PIN is a real second factor.</li>
+ *   <li>{@link Type#RECOVERY}: KEK from a high-entropy recovery code; any number may exist.</li>
+ * </ul>
+ */
+public final class KeySlot {
+
+    /** Credential a slot is bound to. */
+    public enum Type {
+        PASSWORD(1), PASSWORD_PIN(2), RECOVERY(3);
+
+        final int code;
+
+        Type(int code) {
+            this.code = code;
+        }
+
+        static Type of(int code) {
+            for (Type t : values()) if (t.code == code) return t;
+            throw new IllegalArgumentException("Unknown key slot type: " + code);
+        }
+    }
+
+    /** PBKDF2 iterations for password-derived KEKs. */
+    static final int PASSWORD_ITERATIONS = 210_000;
+    /** Recovery codes carry 160 bits of entropy, so a light KDF suffices. */
+    static final int RECOVERY_ITERATIONS = 10_000;
+
+    private static final int SALT_LEN = 16;
+
+    private final Type type;
+    private final String id;
+    private final byte[] salt;
+    private final int iterations;
+    private final String wrappedKey;
+
+    KeySlot(Type type, String id, byte[] salt, int iterations, String wrappedKey) {
+        this.type = Objects.requireNonNull(type, "type");
+        this.id = id;
+        this.salt = Objects.requireNonNull(salt, "salt").clone();
+        this.iterations = iterations;
+        this.wrappedKey = Objects.requireNonNull(wrappedKey, "wrappedKey");
+    }
+
+    /**
+     * Wraps {@code dataKey} under a KEK derived from {@code secret}.
+     *
+     * @param type       slot type
+     * @param id         slot identifier (recovery key id; may be {@code null} for password slots)
+     * @param secret     credential the KEK is derived from (not zeroed)
+     * @param dataKey    vault data key
+     * @param iterations PBKDF2 iterations
+     * @return the new slot
+     * @throws GeneralSecurityException if the KDF or wrapping fails
+     */
+    static KeySlot wrap(Type type, String id, char[] secret, byte[] dataKey, int iterations)
+            throws GeneralSecurityException {
+        byte[] salt = CryptoUtils.randomBytes(SALT_LEN);
+        byte[] kek = CryptoUtils.deriveKey(secret, salt, iterations);
+        try {
+            return new KeySlot(type, id, salt, iterations, CryptoUtils.encryptWithKey(dataKey, kek));
+        } finally {
+            Arrays.fill(kek, (byte) 0);
+        }
+    }
+
+    /**
+     * Unwraps the data key.
+     *
+     * @param secret credential (not zeroed)
+     * @return the data key (caller zeroes when finished)
+     * @throws GeneralSecurityException if the credential is wrong (authentication failure)
+     */
+    byte[] unwrap(char[] secret) throws GeneralSecurityException {
+        byte[] kek = CryptoUtils.deriveKey(secret, salt, iterations);
+        try {
+            return CryptoUtils.decryptWithKey(wrappedKey, kek);
+        } finally {
+            Arrays.fill(kek, (byte) 0);
+        }
+    }
+
+    /**
+     * Joins password and PIN into the secret used for {@link Type#PASSWORD_PIN} slots.
+     *
+     * @return a new array (caller zeroes when finished)
+     */
+    static char[] combine(char[] password, char[] pin) {
+        char[] out = new char[password.length + 1 + pin.length];
+        System.arraycopy(password, 0, out, 0, password.length);
+        out[password.length] = '\0';
+        System.arraycopy(pin, 0, out, password.length + 1, pin.length);
+        return out;
+    }
+
+    /** @return the slot type. */
+    public Type getType() { return type; }
+
+    /** @return the slot id (recovery key id), or {@code null}. */
+    public String getId() { return id; }
+
+    byte[] getSalt() { return salt.clone(); }
+
+    int getIterations() { return iterations; }
+
+    String getWrappedKey() { return wrappedKey; }
+}
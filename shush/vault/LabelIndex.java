@@ -0,0 +1,239 @@
+package shush.vault;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Typo-tolerant index over entry labels.
+ * <p>
+ * Labels are kept lower-cased in a sorted array, which is walked as an implicit trie: every run of
+ * keys sharing a prefix is one trie node. A query simulates a Levenshtein automaton over that trie
+ * by carrying one dynamic-programming row per depth; a whole subtree is skipped as soon as its
+ * row minimum exceeds the allowed distance. Only prefixes within reach of the query are visited,
+ * so lookups stay sub-millisecond at 100k labels instead of scoring every label.
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>Distance is optimal string alignment (Levenshtein plus adjacent transpositions), since
+ *       swapped characters are the most common label typo.</li>
+ *   <li>Inserts and removals shift the array ({@code O(n)} reference copies), which is far cheaper
+ *       than the vault write that accompanies them.</li>
+ *   <li>Not thread-safe; {@link VaultManager} guards it with its read/write lock.</li>
+ * </ul>
+ */
+final class LabelIndex {
+
+    private String[] keys = new String[16];   // lower-cased, sorted
+    private String[] labels = new String[16]; // original label for keys[i]
+    private int size;
+
+    /**
+     * Adds a label. Duplicate labels are kept (one per entry).
+     *
+     * @param label entry label; {@code null} is ignored
+     */
+    void add(String label) {
+        if (label == null) return;
+        String key = label.toLowerCase(Locale.ROOT);
+        int pos = Arrays.binarySearch(keys, 0, size, key);
+        if (pos < 0) pos = -pos - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            labels = Arrays.copyOf(labels, size * 2);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        System.arraycopy(labels, pos, labels, pos + 1, size - pos);
+        keys[pos] = key;
+        labels[pos] = label;
+        size++;
+    }
+
+    /**
+     * Removes one occurrence of a label.
+     *
+     * @param label entry label
+     * @return true if it was present
+     */
+    boolean remove(String label) {
+        if (label == null) return false;
+        String key = label.toLowerCase(Locale.ROOT);
+        int pos = Arrays.binarySearch(keys, 0, size, key);
+        if (pos < 0) return false;
+        while (pos > 0 && keys[pos - 1].equals(key)) pos--;
+        for (; pos < size && keys[pos].equals(key); pos++) {
+            if (labels[pos].equals(label)) {
+                System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+                System.arraycopy(labels, pos + 1, labels, pos, size - pos - 1);
+                size--;
+                keys[size] = null;
+                labels[size] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the contents with {@code all} in one sort, for loading a vault.
+     *
+     * @param all labels; {@code null}s are skipped
+     */
+    void rebuild(List<String> all) {
+        clear();
+        String[] k = new String[Math.max(16, all.size())];
+        String[] src = new String[k.length];
+        Integer[] order = new Integer[all.size()];
+        int n = 0;
+        for (String label : all) {
+            if (label == null) continue;
+            k[n] = label.toLowerCase(Locale.ROOT);
+            src[n] = label;
+            order[n] = n;
+            n++;
+        }
+        Arrays.sort(order, 0, n, (a, b) -> k[a].compareTo(k[b]));
+        keys = new String[k.length];
+        labels = new String[k.length];
+        for (int i = 0; i < n; i++) {
+            keys[i] = k[order[i]];
+            labels[i] = src[order[i]];
+        }
+        size = n;
+    }
+
+    /** Removes all labels. */
+    void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(labels, 0, size, null);
+        size = 0;
+    }
+
+    /** @return number of indexed labels. */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns up to {@code limit} labels closest to {@code query}, using a distance bound
+     * scaled to the query length (1 for up to 3 characters, 2 up to 8, otherwise 3).
+     *
+     * @param query label as typed
+     * @param limit maximum number of suggestions
+     * @return distinct labels ranked by distance, then alphabetically
+     */
+    List<String> suggest(String query, int limit) {
+        int n = query == null ? 0 : query.length();
+        return suggest(query, limit, n <= 3 ? 1 : n <= 8 ? 2 : 3);
+    }
+
+    /**
+     * Returns up to {@code limit} labels within {@code maxDistance} edits of {@code query}.
+     *
+     * @param query       label as typed
+     * @param limit       maximum number of suggestions
+     * @param maxDistance maximum edit distance (case-insensitive)
+     * @return distinct labels ranked by distance, then alphabetically
+     */
+    List<String> suggest(String query, int limit, int maxDistance) {
+        if (query == null || limit <= 0 || size == 0) return new ArrayList<>();
+        Search s = new Search(query.toLowerCase(Locale.ROOT), limit, maxDistance);
+        s.walk(0, size, 0);
+        List<String> out = new ArrayList<>(s.count);
+        for (int i = 0; i < s.count; i++) out.add(labels[s.hits[i]]);
+        return out;
+    }
+
+    // ---- search ----
+
+    /** State of one query: the DP rows along the current trie path and the running top-k. */
+    private final class Search {
+        private final String q;
+        private final int m;
+        private final int maxDistance;
+        private int[][] rows;
+        private final int[] hits;   // key indexes, ranked
+        private final int[] dists;
+        private int count;
+
+        Search(String q, int limit, int maxDistance) {
+            this.q = q;
+            this.m = q.length();
+            this.maxDistance = maxDistance;
+            this.rows = new int[Math.max(16, m + maxDistance + 2)][];
+            this.hits = new int[limit];
+            this.dists = new int[limit];
+            int[] first = new int[m + 1];
+            for (int j = 0; j <= m; j++) first[j] = j;
+            rows[0] = first;
+        }
+
+        /** Visits keys[lo, hi), which share their first {@code depth} characters; rows[depth] is set. */
+        void walk(int lo, int hi, int depth) {
+            int[] row = rows[depth];
+            // the key equal to the shared prefix sorts first
+            while (lo < hi && keys[lo].length() == depth) {
+                offer(lo, row[m]);
+                lo++;
+            }
+            while (lo < hi) {
+                char c = keys[lo].charAt(depth);
+                int end = groupEnd(lo, hi, depth, c);
+                if (nextRow(depth, c, keys[lo]) <= bound()) walk(lo, end, depth + 1);
+                lo = end;
+            }
+        }
+
+        /** Fills rows[depth + 1] for appending {@code c}; returns the row minimum. */
+        private int nextRow(int depth, char c, String key) {
+            if (depth + 1 >= rows.length) rows = Arrays.copyOf(rows, rows.length * 2);
+            int[] prev = rows[depth];
+            int[] next = rows[depth + 1];
+            if (next == null) next = rows[depth + 1] = new int[m + 1];
+            char pc = depth > 0 ? key.charAt(depth - 1) : 0;
+            int[] prev2 = depth > 0 ? rows[depth - 1] : null;
+            next[0] = depth + 1;
+            int min = next[0];
+            for (int j = 1; j <= m; j++) {
+                char qj = q.charAt(j - 1);
+                int v = Math.min(Math.min(prev[j] + 1, next[j - 1] + 1), prev[j - 1] + (qj == c ? 0 : 1));
+                if (prev2 != null && j > 1 && qj == pc && q.charAt(j - 2) == c) v = Math.min(v, prev2[j - 2] + 1);
+                next[j] = v;
+                if (v < min) min = v;
+            }
+            return min;
+        }
+
+        /** First index in [lo, hi) whose character at {@code depth} is greater than {@code c}. */
+        private int groupEnd(int lo, int hi, int depth, char c) {
+            int a = lo + 1, b = hi;
+            while (a < b) {
+                int mid = (a + b) >>> 1;
+                if (keys[mid].charAt(depth) <= c) a = mid + 1;
+                else b = mid;
+            }
+            return a;
+        }
+
+        /** Largest distance still worth visiting: once the top-k is full only strictly better hits count. */
+        private int bound() {
+            return count == hits.length ? Math.min(maxDistance, dists[count - 1] - 1) : maxDistance;
+        }
+
+        private void offer(int idx, int d) {
+            if (d > bound()) return;
+            for (int i = 0; i < count; i++) if (labels[hits[i]].equals(labels[idx])) return;
+            int i = Math.min(count, hits.length - 1);
+            while (i > 0 && dists[i - 1] > d) {
+                hits[i] = hits[i - 1];
+                dists[i] = dists[i - 1];
+                i--;
+            }
+            hits[i] = idx;
+            dists[i] = d;
+            if (count < hits.length) count++;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package shush.vault;
+
+import shush.util.CryptoUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The local user's team identity: a member id and an X25519 key pair.
+ * <p>
+ * Stored as a small text file ({@code $SHUSH_HOME/identity}) holding the id, the public key and
+ * the PKCS#8 private key encrypted with {@link CryptoUtils#encrypt(byte[], char[])} under the
+ * identity passphrase. The public key is what a vault owner adds with {@code shush team add}.
+ * </p>
+ */
+public final class MemberIdentity {
+
+    private static final String MAGIC = "shush-identity-v1";
+
+    private final String id;
+    private final byte[] publicKey;
+    private final String encryptedPrivateKey;
+
+    private MemberIdentity(String id, byte[] publicKey, String encryptedPrivateKey) {
+        this.id = id;
+        this.publicKey = publicKey;
+        this.encryptedPrivateKey = encryptedPrivateKey;
+    }
+
+    /**
+     * Generates a new identity and writes it to {@code file}.
+     *
+     * @param file       destination (must not exist)
+     * @param id         member id
+     * @param passphrase passphrase protecting the private key (not zeroed)
+     * @return the new identity
+     * @throws IOException              if the file exists or cannot be written
+     * @throws GeneralSecurityException if key generation fails
+     */
+    public static MemberIdentity generate(Path file, String id, char[] passphrase) throws IOException, GeneralSecurityException {
+        Objects.requireNonNull(id, "id");
+        if (Files.exists(file)) throw new IOException("Identity already exists: " + file);
+        KeyPair kp = TeamMember.generateKeyPair();
+        byte[] pkcs8 = kp.getPrivate().getEncoded();
+        try {
+            MemberIdentity idt = new MemberIdentity(id, kp.getPublic().getEncoded(), CryptoUtils.encrypt(pkcs8, passphrase));
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "identity", ".tmp");
+            try {
+                Files.write(tmp, Arrays.asList(MAGIC, idt.id, idt.getPublicKeyBase64(), idt.encryptedPrivateKey),
+                        StandardCharsets.UTF_8);
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            return idt;
+        } finally {
+            Arrays.fill(pkcs8, (byte) 0);
+        }
+    }
+
+    /**
+     * Reads an identity file. The private key stays encrypted until {@link #unlock(char[])}.
+     *
+     * @param file identity file
+     * @return the identity, or {@code null} if the file does not exist
+     * @throws IOException if the file is malformed
+     */
+    public static MemberIdentity load(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.size() < 4 || !MAGIC.equals(lines.get(0))) throw new IOException("Malformed identity file: " + file);
+        try {
+            return new MemberIdentity(lines.get(1), TeamMember.parsePublicKey(lines.get(2)), lines.get(3));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Malformed identity public key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decrypts the private key.
+     *
+     * @param passphrase identity passphrase (not zeroed)
+     * @return the X25519 private key
+     * @throws GeneralSecurityException if the passphrase is wrong
+     */
+    public PrivateKey unlock(char[] passphrase) throws GeneralSecurityException {
+        byte[] pkcs8 = CryptoUtils.decryptToBytes(encryptedPrivateKey, passphrase);
+        try {
+            return KeyFactory.getInstance("X25519").generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+        } finally {
+            Arrays.fill(pkcs8, (byte) 0);
+        }
+    }
+
+    /** @return the member id. */
+    public String getId() { return id; }
+
+    /** @return the X.509-encoded public key as Base64. */
+    public String getPublicKeyBase64() { return Base64.getEncoder().encodeToString(publicKey); }
+}
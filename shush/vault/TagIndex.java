@@ -0,0 +1,133 @@
+package shush.vault;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory posting lists for tags, folders and the 2FA flag, over a snapshot of vault entries.
+ * <p>
+ * Tags and folders are sealed on disk, so the index can only be built after unlock. Building
+ * opens each entry's tags and folder once (in parallel); afterwards every
+ * {@link EntryFilter} is answered with {@link Bitmap} operations over entry ordinals, without
+ * decrypting or scanning entries again. A folder posting list covers the folder and all of its
+ * subfolders, so folder filters are a single lookup.
+ * </p>
+ * Instances are immutable once built and tied to the entry list they were built from;
+ * {@link VaultManager} rebuilds the index after the entry list changes.
+ */
+final class TagIndex {
+
+    private final List<VaultEntry> entries;
+    private final long version;
+    private final Map<String, Bitmap> tags = new HashMap<>();
+    private final Map<String, Bitmap> folders = new HashMap<>();
+    private final Bitmap twoFA = new Bitmap();
+
+    private TagIndex(List<VaultEntry> entries, long version) {
+        this.entries = entries;
+        this.version = version;
+    }
+
+    /**
+     * Builds the index.
+     *
+     * @param entries snapshot of the vault's entries; ordinals are positions in this list
+     * @param version modification count of the entry list the snapshot was taken at
+     * @param key     unlocked vault key
+     * @return the index
+     * @throws GeneralSecurityException if a tag list or folder cannot be opened
+     */
+    static TagIndex build(List<VaultEntry> entries, long version, VaultKey key) throws GeneralSecurityException {
+        int n = entries.size();
+        String[] tagLists = new String[n];
+        String[] folderPaths = new String[n];
+        GeneralSecurityException[] failure = new GeneralSecurityException[1];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            VaultEntry e = entries.get(i);
+            try {
+                if (e.getTags() != null) tagLists[i] = key.openString(e.getTags());
+                if (e.getFolder() != null) folderPaths[i] = key.openString(e.getFolder());
+            } catch (GeneralSecurityException ex) {
+                synchronized (failure) {
+                    failure[0] = ex;
+                }
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+
+        // ordinals are added in increasing order, which is the bitmaps' fast path
+        TagIndex idx = new TagIndex(entries, version);
+        for (int i = 0; i < n; i++) {
+            for (String t : VaultEntry.splitTags(tagLists[i])) idx.tags.computeIfAbsent(t, k -> new Bitmap()).add(i);
+            String f = VaultEntry.normalizeFolder(folderPaths[i]);
+            if (f != null) {
+                f = f.toLowerCase(Locale.ROOT);
+                for (int slash = f.indexOf('/'); slash >= 0; slash = f.indexOf('/', slash + 1)) {
+                    idx.folders.computeIfAbsent(f.substring(0, slash), k -> new Bitmap()).add(i);
+                }
+                idx.folders.computeIfAbsent(f, k -> new Bitmap()).add(i);
+            }
+            if (entries.get(i).requires2FA()) idx.twoFA.add(i);
+        }
+        return idx;
+    }
+
+    /** @return modification count of the entry list this index was built from */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Evaluates a filter.
+     *
+     * @param filter filter to apply
+     * @return matching entries, in vault order
+     */
+    List<VaultEntry> select(EntryFilter filter) {
+        List<Bitmap> required = new ArrayList<>();
+        for (Set<String> clause : filter.getAnyOf()) {
+            Bitmap any = null;
+            for (String t : clause) {
+                Bitmap b = tags.get(t);
+                if (b != null) any = any == null ? b : any.or(b);
+            }
+            if (any == null) return List.of();
+            required.add(any);
+        }
+        if (filter.getFolder() != null) {
+            Bitmap b = folders.get(filter.getFolder());
+            if (b == null) return List.of();
+            required.add(b);
+        }
+        if (Boolean.TRUE.equals(filter.getRequires2FA())) required.add(twoFA);
+
+        // intersect smallest first so intermediate results stay small
+        required.sort(Comparator.comparingInt(Bitmap::cardinality));
+        Bitmap hits = required.isEmpty() ? Bitmap.range(entries.size()) : required.get(0);
+        for (int i = 1; i < required.size(); i++) hits = hits.and(required.get(i));
+        for (String t : filter.getExcluded()) {
+            Bitmap b = tags.get(t);
+            if (b != null) hits = hits.andNot(b);
+        }
+        if (Boolean.FALSE.equals(filter.getRequires2FA())) hits = hits.andNot(twoFA);
+
+        int[] ordinals = hits.toArray();
+        List<VaultEntry> out = new ArrayList<>(ordinals.length);
+        for (int o : ordinals) out.add(entries.get(o));
+        return out;
+    }
+
+    /** @return every tag with its number of entries */
+    Map<String, Integer> tagCounts() {
+        Map<String, Integer> out = new HashMap<>();
+        tags.forEach((t, b) -> out.put(t, b.cardinality()));
+        return out;
+    }
+}
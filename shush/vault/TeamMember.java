@@ -0,0 +1,163 @@
+package shush.vault;
+
+import shush.util.CryptoUtils;
+
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * A team member's wrapped copy of the current vault data key.
+ * <p>
+ * Wrapping uses X25519 from the JDK in an ECIES-style construction: a fresh ephemeral key pair
+ * is agreed with the member's public key, HKDF-SHA256 turns the shared secret into a
+ * key-encryption key bound to the member id and key epoch, and the data key is sealed under it.
+ * Only the member's private key can unwrap. Adding a member costs one agreement; rotating the
+ * key costs one agreement per remaining member, independent of the number of entries.
+ * </p>
+ */
+public final class TeamMember {
+
+    private static final String ALG = "X25519";
+    private static final byte[] INFO_PREFIX = "shush-member-wrap-v1".getBytes(StandardCharsets.UTF_8);
+
+    private final String id;
+    private final byte[] publicKey;     // X.509 encoding
+    private final int keyEpoch;
+    private final byte[] ephemeralKey;  // X.509 encoding
+    private final String wrappedKey;
+
+    TeamMember(String id, byte[] publicKey, int keyEpoch, byte[] ephemeralKey, String wrappedKey) {
+        this.id = Objects.requireNonNull(id, "id");
+        this.publicKey = Objects.requireNonNull(publicKey, "publicKey").clone();
+        this.keyEpoch = keyEpoch;
+        this.ephemeralKey = Objects.requireNonNull(ephemeralKey, "ephemeralKey").clone();
+        this.wrappedKey = Objects.requireNonNull(wrappedKey, "wrappedKey");
+    }
+
+    /**
+     * Wraps {@code dataKey} for a member.
+     *
+     * @param id        member id
+     * @param publicKey member's X25519 public key (X.509 encoding)
+     * @param keyEpoch  epoch of {@code dataKey}
+     * @param dataKey   vault data key for that epoch
+     * @return the member record
+     * @throws GeneralSecurityException if the key is not a valid X25519 public key
+     */
+    static TeamMember wrap(String id, byte[] publicKey, int keyEpoch, byte[] dataKey) throws GeneralSecurityException {
+        PublicKey memberPub = decodePublic(publicKey);
+        KeyPair eph = KeyPairGenerator.getInstance(ALG).generateKeyPair();
+        byte[] ephPub = eph.getPublic().getEncoded();
+        byte[] kek = deriveKek(eph.getPrivate(), memberPub, ephPub, publicKey, id, keyEpoch);
+        try {
+            return new TeamMember(id, publicKey, keyEpoch, ephPub, CryptoUtils.encryptWithKey(dataKey, kek));
+        } finally {
+            Arrays.fill(kek, (byte) 0);
+        }
+    }
+
+    /**
+     * Unwraps the data key with the member's private key.
+     *
+     * @param privateKey member's X25519 private key
+     * @return the data key for {@link #getKeyEpoch()} (caller zeroes when finished)
+     * @throws GeneralSecurityException if the private key does not match
+     */
+    byte[] unwrap(PrivateKey privateKey) throws GeneralSecurityException {
+        byte[] kek = deriveKek(privateKey, decodePublic(ephemeralKey), ephemeralKey, publicKey, id, keyEpoch);
+        try {
+            return CryptoUtils.decryptWithKey(wrappedKey, kek);
+        } finally {
+            Arrays.fill(kek, (byte) 0);
+        }
+    }
+
+    /** @return a fresh X25519 key pair for a new member identity. */
+    public static KeyPair generateKeyPair() throws GeneralSecurityException {
+        return KeyPairGenerator.getInstance(ALG).generateKeyPair();
+    }
+
+    /**
+     * Parses a Base64 (standard or URL-safe) X.509-encoded X25519 public key.
+     *
+     * @param text encoded key
+     * @return encoded bytes, validated
+     * @throws GeneralSecurityException if the text is not an X25519 public key
+     */
+    public static byte[] parsePublicKey(String text) throws GeneralSecurityException {
+        byte[] raw;
+        try {
+            raw = Base64.getDecoder().decode(text.trim().replace('-', '+').replace('_', '/'));
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Public key is not valid Base64", e);
+        }
+        try {
+            decodePublic(raw);
+        } catch (InvalidKeySpecException e) {
+            throw new GeneralSecurityException("Public key is not an X25519 key", e);
+        }
+        return raw;
+    }
+
+    // ---- helpers ----
+
+    private static PublicKey decodePublic(byte[] encoded) throws GeneralSecurityException {
+        return KeyFactory.getInstance(ALG).generatePublic(new X509EncodedKeySpec(encoded));
+    }
+
+    /** X25519 agreement followed by HKDF-SHA256 (RFC 5869, single output block). */
+    private static byte[] deriveKek(PrivateKey priv, PublicKey pub, byte[] ephPub, byte[] memberPub,
+                                    String id, int epoch) throws GeneralSecurityException {
+        KeyAgreement ka = KeyAgreement.getInstance(ALG);
+        ka.init(priv);
+        ka.doPhase(pub, true);
+        byte[] shared = ka.generateSecret();
+        byte[] prk = null;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            byte[] salt = new byte[ephPub.length + memberPub.length];
+            System.arraycopy(ephPub, 0, salt, 0, ephPub.length);
+            System.arraycopy(memberPub, 0, salt, ephPub.length, memberPub.length);
+            mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+            prk = mac.doFinal(shared);
+
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            mac.update(INFO_PREFIX);
+            mac.update(id.getBytes(StandardCharsets.UTF_8));
+            mac.update(new byte[]{0, (byte) (epoch >>> 24), (byte) (epoch >>> 16), (byte) (epoch >>> 8), (byte) epoch});
+            mac.update((byte) 1);
+            return mac.doFinal();
+        } finally {
+            Arrays.fill(shared, (byte) 0);
+            if (prk != null) Arrays.fill(prk, (byte) 0);
+        }
+    }
+
+    /** @return the member id. */
+    public String getId() { return id; }
+
+    /** @return the member's public key as Base64. */
+    public String getPublicKeyBase64() { return Base64.getEncoder().encodeToString(publicKey); }
+
+    /** @return the key epoch this record wraps. */
+    public int getKeyEpoch() { return keyEpoch; }
+
+    byte[] getPublicKey() { return publicKey.clone(); }
+
+    byte[] getEphemeralKey() { return ephemeralKey.clone(); }
+
+    String getWrappedKey() { return wrappedKey; }
+}
@@ -1,18 +1,193 @@
 package shush.vault;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class VaultEntry {
+        private static final AtomicLong NEXT_ID = new AtomicLong();
+
+        private final String label;
         private final String username;
         private final String password;
+        private final String comment;
         private final boolean requires2FA;
+        private final int keyEpoch;
+        private final String tags;
+        private final String folder;
+        // Plaintext metadata, epoch millis; 0 when not recorded (entries written before timestamps)
+        private final long createdAt;
+        private final long updatedAt;
+        private final long rotatedAt;
+        // Identity of this entry for VaultManager lookups; views handed out by EntryArena share the id of the stored entry
+        private final long id;
+
+        /** Entry timestamps that staleness can be measured by. */
+        public enum Timestamp {
+            /** When the entry was added. */
+            CREATED,
+            /** When any field last changed. */
+            UPDATED,
+            /** When the password last changed. */
+            ROTATED;
+
+            /** @return this timestamp of {@code e} in epoch millis, or 0 if not recorded */
+            public long of(VaultEntry e) {
+                switch (this) {
+                    case CREATED: return e.getCreatedAt();
+                    case UPDATED: return e.getUpdatedAt();
+                    default: return e.getRotatedAt();
+                }
+            }
+        }
 
         public VaultEntry(String label, String username, String password, String comment, boolean requires2FA) {
+            this(label, username, password, comment, requires2FA, 0);
+        }
+
+        /** @param keyEpoch epoch of the vault key the fields were sealed with ({@link VaultKey#getEpoch()}) */
+        public VaultEntry(String label, String username, String password, String comment, boolean requires2FA, int keyEpoch) {
+            this(label, username, password, comment, requires2FA, keyEpoch, null, null);
+        }
+
+        /**
+         * @param tags   sealed {@linkplain #joinTags(Collection) tag list}, or {@code null} for none
+         * @param folder sealed {@linkplain #normalizeFolder(String) folder path}, or {@code null} for none
+         */
+        public VaultEntry(String label, String username, String password, String comment, boolean requires2FA, int keyEpoch,
+                          String tags, String folder) {
+            this(label, username, password, comment, requires2FA, keyEpoch, tags, folder, 0, 0, 0);
+        }
+
+        /**
+         * Timestamps are stored in plaintext next to the label and are normally set by
+         * {@link VaultManager} when the entry is added or replaced.
+         *
+         * @param createdAt when the entry was added (epoch millis, 0 if unknown)
+         * @param updatedAt when any field last changed (epoch millis, 0 if unknown)
+         * @param rotatedAt when the password last changed (epoch millis, 0 if unknown)
+         */
+        public VaultEntry(String label, String username, String password, String comment, boolean requires2FA, int keyEpoch,
+                          String tags, String folder, long createdAt, long updatedAt, long rotatedAt) {
+            this(label, username, password, comment, requires2FA, keyEpoch, tags, folder, createdAt, updatedAt, rotatedAt,
+                    NEXT_ID.incrementAndGet());
+        }
+
+        /** For views whose getters read their fields from elsewhere (see {@link EntryArena}). */
+        VaultEntry(long id) {
+            this(null, null, null, null, false, 0, null, null, 0, 0, 0, id);
+        }
+
+        private VaultEntry(String label, String username, String password, String comment, boolean requires2FA, int keyEpoch,
+                           String tags, String folder, long createdAt, long updatedAt, long rotatedAt, long id) {
+            this.label = label;
             this.username = username;
             this.password = password;
+            this.comment = comment;
             this.requires2FA = requires2FA;
+            this.keyEpoch = keyEpoch;
+            this.tags = tags;
+            this.folder = folder;
+            this.createdAt = createdAt;
+            this.updatedAt = updatedAt;
+            this.rotatedAt = rotatedAt;
+            this.id = id;
+        }
+
+        public String getLabel() { return label; }
+
+        public String getUsername() { return username; }
+
+        public String getPassword() { return password; }
+
+        public String getComment() { return comment; }
+
+        public boolean requires2FA() { return requires2FA; }
+
+        public int getKeyEpoch() { return keyEpoch; }
+
+        /** @return sealed tag list, or {@code null} if the entry has no tags */
+        public String getTags() { return tags; }
+
+        /** @return sealed folder path, or {@code null} if the entry is not in a folder */
+        public String getFolder() { return folder; }
+
+        /** @return when the entry was added, in epoch millis, or 0 if not recorded */
+        public long getCreatedAt() { return createdAt; }
+
+        /** @return when any field last changed, in epoch millis, or 0 if not recorded */
+        public long getUpdatedAt() { return updatedAt; }
+
+        /** @return when the password last changed, in epoch millis, or 0 if not recorded */
+        public long getRotatedAt() { return rotatedAt; }
+
+        /** @return a copy of this entry with the given timestamps */
+        VaultEntry withTimestamps(long createdAt, long updatedAt, long rotatedAt) {
+            return new VaultEntry(getLabel(), getUsername(), getPassword(), getComment(), requires2FA(), getKeyEpoch(),
+                    getTags(), getFolder(), createdAt, updatedAt, rotatedAt);
+        }
+
+        /**
+         * Identity used by {@link VaultManager} to match an entry handed out earlier against the
+         * stored one. Unique per constructed entry, so copies are distinct, as with {@code ==}.
+         */
+        long id() { return id; }
+
+        /**
+         * Canonical form of a tag list before sealing: trimmed, lower-case, de-duplicated, sorted
+         * and comma-separated.
+         *
+         * @param tags tags; entries may themselves be comma-separated
+         * @return the joined tags, or {@code null} if there are none
+         */
+        public static String joinTags(Collection<String> tags) {
+            TreeSet<String> set = new TreeSet<>();
+            for (String t : tags) {
+                if (t == null) continue;
+                for (String part : t.split(",")) {
+                    String tag = part.trim().toLowerCase(Locale.ROOT);
+                    if (!tag.isEmpty()) set.add(tag);
+                }
+            }
+            return set.isEmpty() ? null : String.join(",", set);
+        }
+
+        /**
+         * @param joined opened tag list from {@link #joinTags(Collection)}, or {@code null}
+         * @return the individual tags
+         */
+        public static List<String> splitTags(String joined) {
+            if (joined == null || joined.isEmpty()) return Collections.emptyList();
+            List<String> out = new ArrayList<>();
+            for (String t : joined.split(",")) if (!t.isEmpty()) out.add(t);
+            return out;
+        }
+
+        /**
+         * Canonical form of a folder path before sealing: {@code /}-separated, without empty
+         * segments or leading/trailing slashes. Case is kept; matching ignores it.
+         *
+         * @param folder folder path such as {@code "work/db/"}
+         * @return the normalized path, or {@code null} if it is empty
+         */
+        public static String normalizeFolder(String folder) {
+            if (folder == null) return null;
+            StringBuilder sb = new StringBuilder();
+            for (String seg : folder.split("/")) {
+                String s = seg.trim();
+                if (s.isEmpty()) continue;
+                if (sb.length() > 0) sb.append('/');
+                sb.append(s);
+            }
+            return sb.length() == 0 ? null : sb.toString();
         }
 
         public String toJson() {
             return String.format("{\"username\":\"%s\",\"password\":\"%s\",\"2fa\":%b}",
-                    username, password, requires2FA);
+                    getUsername(), getPassword(), requires2FA());
         }
-    }
\ No newline at end of file
+    }
@@ -0,0 +1,557 @@
+package shush.vault;
+
+import shush.util.CryptoUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes the body of a vault file.
+ * <p>
+ * A vault file is a {@link VaultHeader} followed by a body of typed records and a record index:
+ * <pre>
+ * [ header (128 bytes) ][ body: record* ][ index: entryCount x 8-byte record offsets ]
+ * record = [ 1 byte type ][ 4 bytes payload length ][ 4 bytes CRC32C ][ payload ]
+ * </pre>
+ * The CRC32C covers the type, length and payload. Format 1 files have no CRC field and are read
+ * as before. Strings inside payloads are encoded as a 4-byte length ({@code -1} for {@code null})
+ * followed by UTF-8.
+ * </p>
+ *
+ * <h2>Notes</h2>
+ * <ul>
+ *   <li>Checksums are verified on every load, so structural damage is caught without a key.
+ *       {@link #scan(Path, VaultHeader)} is the tolerant variant used by {@link VaultFsck}.</li>
+ *   <li>The body is memory-mapped on read, so opening a vault never copies the file into the heap up front.</li>
+ *   <li>Writes go to a temporary sibling file which is then atomically moved over the original.</li>
+ * </ul>
+ */
+final class VaultFile {
+
+    /** Vault configuration record (TOTP secret sealed under the data key, current key epoch). */
+    static final int REC_CONFIG = 1;
+    /** A single {@link VaultEntry}. */
+    static final int REC_ENTRY = 2;
+    /** A {@link KeySlot} wrapping the vault data key. */
+    static final int REC_KEYSLOT = 3;
+    /** A {@link TeamMember}'s public-key wrapping of the data key. */
+    static final int REC_MEMBER = 4;
+    /** A {@link RetiredKey}: an earlier data key sealed under its successor. */
+    static final int REC_RETIRED_KEY = 5;
+
+    private static final int ENTRY_FLAG_2FA = 1;
+
+    /** Bytes before the payload: type, length and (format 2+) CRC32C. */
+    private static final int FRAME_V1 = 5;
+    private static final int FRAME_V2 = 9;
+
+    private VaultFile() { /* no instances */ }
+
+    /** Body contents, as read or to be written. */
+    static final class Body {
+        /** Sealed under the data key ({@link CryptoUtils#isKeyPayload}); plaintext only in files written before that. */
+        final String totpSecret;
+        final int keyEpoch;
+        final List<KeySlot> keySlots;
+        final List<TeamMember> members;
+        final List<RetiredKey> retiredKeys;
+        final List<VaultEntry> entries;
+
+        Body(String totpSecret, List<KeySlot> keySlots, List<VaultEntry> entries) {
+            this(totpSecret, 0, keySlots, Collections.emptyList(), Collections.emptyList(), entries);
+        }
+
+        Body(String totpSecret, int keyEpoch, List<KeySlot> keySlots, List<TeamMember> members,
+             List<RetiredKey> retiredKeys, List<VaultEntry> entries) {
+            this.totpSecret = totpSecret;
+            this.keyEpoch = keyEpoch;
+            this.keySlots = keySlots;
+            this.members = members;
+            this.retiredKeys = retiredKeys;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * The data key of {@code epoch}, sealed under the key of {@code epoch + 1}. Following the
+     * chain from the current key recovers every retired key, but never the reverse.
+     */
+    static final class RetiredKey {
+        final int epoch;
+        final String wrapped;
+
+        RetiredKey(int epoch, String wrapped) {
+            this.epoch = epoch;
+            this.wrapped = wrapped;
+        }
+    }
+
+    // ----------------- read -----------------
+
+    /**
+     * Maps and parses the body described by {@code header}, verifying record checksums.
+     *
+     * @param file   vault file
+     * @param header header previously read from the same file
+     * @return parsed body
+     * @throws IOException if the body is truncated, malformed or fails a checksum
+     */
+    static Body readBody(Path file, VaultHeader header) throws IOException {
+        return readBody(file, header, new ArrayList<>(header.getEntryCount()));
+    }
+
+    /**
+     * As {@link #readBody(Path, VaultHeader)}, parsing entries straight into {@code entries}, e.g.
+     * an {@link EntryArena}, so a large vault is never held as entry objects all at once.
+     *
+     * @param entries empty list that becomes the body's entry list
+     */
+    static Body readBody(Path file, VaultHeader header, List<VaultEntry> entries) throws IOException {
+        BodyBuilder out = new BodyBuilder(entries);
+        if (header.getBodyLength() == 0) return out.build();
+        int frame = header.isChecksummed() ? FRAME_V2 : FRAME_V1;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < header.getBodyOffset() + header.getBodyLength()) {
+                throw new IOException("Vault body is truncated");
+            }
+            MappedByteBuffer body = ch.map(FileChannel.MapMode.READ_ONLY, header.getBodyOffset(), header.getBodyLength());
+            CRC32C crc = new CRC32C();
+            while (body.hasRemaining()) {
+                int start = body.position();
+                if (body.remaining() < frame) throw new IOException("Truncated record at offset " + (header.getBodyOffset() + start));
+                int type = Byte.toUnsignedInt(body.get());
+                int len = body.getInt();
+                int stored = frame == FRAME_V2 ? body.getInt() : 0;
+                if (len < 0 || len > body.remaining()) throw new IOException("Corrupt record length: " + len);
+                ByteBuffer payload = body.slice();
+                payload.limit(len);
+                body.position(body.position() + len);
+
+                if (frame == FRAME_V2 && stored != checksum(crc, type, len, payload)) {
+                    throw new IOException("Checksum mismatch in record at offset " + (header.getBodyOffset() + start)
+                            + "; run 'shush fsck'");
+                }
+                out.accept(type, payload);
+            }
+        }
+        if (out.entries.size() != header.getEntryCount()) {
+            throw new IOException("Entry count mismatch: header=" + header.getEntryCount() + " body=" + out.entries.size());
+        }
+        return out.build();
+    }
+
+    /** CRC32C over type, length and payload (payload position is left unchanged). */
+    private static int checksum(CRC32C crc, int type, int len, ByteBuffer payload) {
+        crc.reset();
+        crc.update(type);
+        crc.update(len >>> 24);
+        crc.update(len >>> 16);
+        crc.update(len >>> 8);
+        crc.update(len);
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /** Accumulates parsed records into a {@link Body}. */
+    private static final class BodyBuilder {
+        final List<VaultEntry> entries;
+        final List<KeySlot> keySlots = new ArrayList<>();
+        final List<TeamMember> members = new ArrayList<>();
+        final List<RetiredKey> retiredKeys = new ArrayList<>();
+        String totpSecret;
+        int keyEpoch;
+
+        BodyBuilder(List<VaultEntry> entries) {
+            this.entries = entries;
+        }
+
+        /** Parses one record; returns the entry if it was one. */
+        VaultEntry accept(int type, ByteBuffer payload) throws IOException {
+            try {
+                switch (type) {
+                    case REC_CONFIG:
+                        totpSecret = readString(payload);
+                        if (payload.remaining() >= Integer.BYTES) keyEpoch = payload.getInt();
+                        return null;
+                    case REC_ENTRY:
+                        VaultEntry e = readEntry(payload);
+                        entries.add(e);
+                        return e;
+                    case REC_KEYSLOT:
+                        keySlots.add(readKeySlot(payload));
+                        return null;
+                    case REC_MEMBER:
+                        members.add(readMember(payload));
+                        return null;
+                    case REC_RETIRED_KEY:
+                        retiredKeys.add(new RetiredKey(payload.getInt(), readString(payload)));
+                        return null;
+                    default:
+                        // Unknown record types are skipped so newer writers stay readable.
+                        return null;
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Truncated record payload (type " + type + ")", e);
+            }
+        }
+
+        Body build() {
+            return new Body(totpSecret, keyEpoch, keySlots, members, retiredKeys, entries);
+        }
+    }
+
+    // ----------------- tolerant scan (fsck) -----------------
+
+    /** Location of one record, or of an unparseable region, in the file. */
+    static final class Frame {
+        /** Record type, or {@code -1} for a region whose framing could not be read and that is not a known entry. */
+        final int type;
+        /** Absolute file offset of the frame. */
+        final long offset;
+        /** Total bytes including the frame header. */
+        final int size;
+        /** Why the frame is damaged, or {@code null} if it is intact. */
+        volatile String damage;
+
+        Frame(int type, long offset, int size, String damage) {
+            this.type = type;
+            this.offset = offset;
+            this.size = size;
+            this.damage = damage;
+        }
+    }
+
+    /** Result of {@link #scan(Path, VaultHeader)}. */
+    static final class Scan {
+        final Body body;
+        final List<Frame> frames;
+        final Map<VaultEntry, Frame> entryFrames;
+
+        Scan(Body body, List<Frame> frames, Map<VaultEntry, Frame> entryFrames) {
+            this.body = body;
+            this.frames = frames;
+            this.entryFrames = entryFrames;
+        }
+    }
+
+    /**
+     * Walks every record without stopping at the first problem. Framing is walked sequentially
+     * (it only follows length fields), checksums are then verified in parallel across cores, and
+     * intact records are parsed. When a length field is corrupt the walk resynchronizes at the
+     * next entry offset from the record index, so one bad record does not hide the rest.
+     *
+     * @param file   vault file
+     * @param header header of {@code file}
+     * @return the intact records as a body, plus every frame with its damage (if any)
+     * @throws IOException if the file cannot be read
+     */
+    static Scan scan(Path file, VaultHeader header) throws IOException {
+        BodyBuilder out = new BodyBuilder(new ArrayList<>(header.getEntryCount()));
+        List<Frame> frames = new ArrayList<>();
+        Map<VaultEntry, Frame> entryFrames = new IdentityHashMap<>();
+        int frameLen = header.isChecksummed() ? FRAME_V2 : FRAME_V1;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long bodyStart = header.getBodyOffset();
+            long bodyLen = Math.max(0, Math.min(header.getBodyLength(), ch.size() - bodyStart));
+            if (bodyLen == 0) return new Scan(out.build(), frames, entryFrames);
+            MappedByteBuffer body = ch.map(FileChannel.MapMode.READ_ONLY, bodyStart, bodyLen);
+            long[] resync = indexOffsets(ch, header, bodyStart, bodyLen);
+            if (bodyLen < header.getBodyLength()) {
+                frames.add(new Frame(-1, bodyStart + bodyLen, (int) Math.min(Integer.MAX_VALUE, header.getBodyLength() - bodyLen),
+                        "body truncated"));
+            }
+
+            // 1) framing: follow length fields, resync from the index on damage
+            int pos = 0;
+            while (pos < bodyLen) {
+                int type = pos + frameLen <= bodyLen ? Byte.toUnsignedInt(body.get(pos)) : -1;
+                int len = pos + frameLen <= bodyLen ? body.getInt(pos + 1) : -1;
+                if (type < 0 || len < 0 || (long) pos + frameLen + len > bodyLen) {
+                    int next = (int) nextResync(resync, bodyStart + pos, bodyStart, bodyLen);
+                    // a region starting at an indexed offset spans exactly one entry record
+                    int regionType = Arrays.binarySearch(resync, pos) >= 0 ? REC_ENTRY : -1;
+                    frames.add(new Frame(regionType, bodyStart + pos, next - pos, "corrupt record length"));
+                    pos = next;
+                    continue;
+                }
+                frames.add(new Frame(type, bodyStart + pos, frameLen + len, null));
+                pos += frameLen + len;
+            }
+
+            // 2) checksums, in parallel
+            if (frameLen == FRAME_V2) {
+                IntStream.range(0, frames.size()).parallel().forEach(i -> {
+                    Frame f = frames.get(i);
+                    if (f.damage != null) return;
+                    int at = (int) (f.offset - bodyStart);
+                    int len = f.size - FRAME_V2;
+                    ByteBuffer payload = body.slice(at + FRAME_V2, len);
+                    if (body.getInt(at + 5) != checksum(new CRC32C(), f.type, len, payload)) f.damage = "checksum mismatch";
+                });
+            }
+
+            // 3) parse intact records
+            for (Frame f : frames) {
+                if (f.damage != null) continue;
+                int at = (int) (f.offset - bodyStart);
+                try {
+                    VaultEntry e = out.accept(f.type, body.slice(at + frameLen, f.size - frameLen));
+                    if (e != null) entryFrames.put(e, f);
+                } catch (IOException | RuntimeException ex) {
+                    f.damage = "unparseable payload: " + ex.getMessage();
+                }
+            }
+        }
+        return new Scan(out.build(), frames, entryFrames);
+    }
+
+    /**
+     * Reads raw bytes of a frame, for quarantining.
+     *
+     * @param file  vault file
+     * @param frame frame from {@link #scan(Path, VaultHeader)}
+     * @return the frame's bytes as stored
+     * @throws IOException if the file cannot be read
+     */
+    static byte[] readRaw(Path file, Frame frame) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(frame.size);
+            long pos = frame.offset;
+            while (buf.hasRemaining()) {
+                int n = ch.read(buf, pos);
+                if (n < 0) break;
+                pos += n;
+            }
+            return buf.array();
+        }
+    }
+
+    /** Sorted entry offsets (relative to the body) from the index, ignoring implausible values. */
+    private static long[] indexOffsets(FileChannel ch, VaultHeader header, long bodyStart, long bodyLen) throws IOException {
+        long idx = header.getIndexOffset();
+        int count = header.getIndexLength() / Long.BYTES;
+        if (count == 0 || idx < 0 || idx + (long) count * Long.BYTES > ch.size()) return new long[0];
+        ByteBuffer buf = ByteBuffer.allocate(count * Long.BYTES);
+        while (buf.hasRemaining() && ch.read(buf, idx + buf.position()) > 0) { /* fill */ }
+        buf.flip();
+        long[] out = new long[count];
+        int n = 0;
+        while (buf.remaining() >= Long.BYTES) {
+            long off = buf.getLong() - bodyStart;
+            if (off >= 0 && off < bodyLen) out[n++] = off;
+        }
+        long[] sorted = Arrays.copyOf(out, n);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /** Next index offset after {@code absPos}, or the body end. Returns a body-relative position. */
+    private static long nextResync(long[] offsets, long absPos, long bodyStart, long bodyLen) {
+        long rel = absPos - bodyStart;
+        for (long off : offsets) if (off > rel) return off;
+        return bodyLen;
+    }
+
+    private static TeamMember readMember(ByteBuffer p) throws IOException {
+        String id = readString(p);
+        byte[] publicKey = readBytes(p);
+        int epoch = p.getInt();
+        byte[] ephemeral = readBytes(p);
+        String wrapped = readString(p);
+        try {
+            return new TeamMember(id, publicKey, epoch, ephemeral, wrapped);
+        } catch (NullPointerException e) {
+            throw new IOException("Corrupt member record: " + e.getMessage(), e);
+        }
+    }
+
+    private static KeySlot readKeySlot(ByteBuffer p) throws IOException {
+        int type = Byte.toUnsignedInt(p.get());
+        String id = readString(p);
+        byte[] salt = readBytes(p);
+        int iterations = p.getInt();
+        String wrapped = readString(p);
+        try {
+            return new KeySlot(KeySlot.Type.of(type), id, salt, iterations, wrapped);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IOException("Corrupt key slot: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer p) throws IOException {
+        int len = p.getInt();
+        if (len < 0 || len > p.remaining()) throw new IOException("Corrupt byte string length: " + len);
+        byte[] b = new byte[len];
+        p.get(b);
+        return b;
+    }
+
+    private static VaultEntry readEntry(ByteBuffer p) throws IOException {
+        String label = readString(p);
+        String user = readString(p);
+        String pass = readString(p);
+        String comment = readString(p);
+        int flags = Byte.toUnsignedInt(p.get());
+        int keyEpoch = p.remaining() >= Integer.BYTES ? p.getInt() : 0;
+        // sealed tags and folder, then plaintext timestamps, were appended later; older records end sooner
+        String tags = p.hasRemaining() ? readString(p) : null;
+        String folder = p.hasRemaining() ? readString(p) : null;
+        long created = 0, updated = 0, rotated = 0;
+        if (p.remaining() >= 3 * Long.BYTES) {
+            created = p.getLong();
+            updated = p.getLong();
+            rotated = p.getLong();
+        }
+        return new VaultEntry(label, user, pass, comment, (flags & ENTRY_FLAG_2FA) != 0, keyEpoch, tags, folder,
+                created, updated, rotated);
+    }
+
+    static String readString(ByteBuffer p) throws IOException {
+        int len = p.getInt();
+        if (len == -1) return null;
+        if (len < 0 || len > p.remaining()) throw new IOException("Corrupt string length: " + len);
+        byte[] b = new byte[len];
+        p.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // ----------------- write -----------------
+
+    /**
+     * Writes a complete vault file atomically and returns the header that was written.
+     *
+     * @param file       destination path
+     * @param header     header carrying flags and KDF parameters; layout fields are recomputed
+     * @param contents   config, key slots and entries to store
+     * @return the header as written (with updated entry count and offsets)
+     * @throws IOException if writing fails
+     */
+    static VaultHeader write(Path file, VaultHeader header, Body contents) throws IOException {
+        List<VaultEntry> entries = contents.entries;
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyBytes);
+        ByteArrayOutputStream recBytes = new ByteArrayOutputStream();
+        DataOutputStream rec = new DataOutputStream(recBytes);
+        long[] offsets = new long[entries.size()];
+
+        writeString(rec, contents.totpSecret);
+        rec.writeInt(contents.keyEpoch);
+        writeRecord(body, REC_CONFIG, recBytes);
+
+        for (KeySlot slot : contents.keySlots) {
+            rec.writeByte(slot.getType().code);
+            writeString(rec, slot.getId());
+            byte[] salt = slot.getSalt();
+            rec.writeInt(salt.length);
+            rec.write(salt);
+            rec.writeInt(slot.getIterations());
+            writeString(rec, slot.getWrappedKey());
+            writeRecord(body, REC_KEYSLOT, recBytes);
+        }
+
+        for (TeamMember m : contents.members) {
+            writeString(rec, m.getId());
+            byte[] pub = m.getPublicKey();
+            rec.writeInt(pub.length);
+            rec.write(pub);
+            rec.writeInt(m.getKeyEpoch());
+            byte[] eph = m.getEphemeralKey();
+            rec.writeInt(eph.length);
+            rec.write(eph);
+            writeString(rec, m.getWrappedKey());
+            writeRecord(body, REC_MEMBER, recBytes);
+        }
+
+        for (RetiredKey r : contents.retiredKeys) {
+            rec.writeInt(r.epoch);
+            writeString(rec, r.wrapped);
+            writeRecord(body, REC_RETIRED_KEY, recBytes);
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            VaultEntry e = entries.get(i);
+            offsets[i] = VaultHeader.SIZE + body.size();
+            writeString(rec, e.getLabel());
+            writeString(rec, e.getUsername());
+            writeString(rec, e.getPassword());
+            writeString(rec, e.getComment());
+            rec.writeByte(e.requires2FA() ? ENTRY_FLAG_2FA : 0);
+            rec.writeInt(e.getKeyEpoch());
+            writeString(rec, e.getTags());
+            writeString(rec, e.getFolder());
+            rec.writeLong(e.getCreatedAt());
+            rec.writeLong(e.getUpdatedAt());
+            rec.writeLong(e.getRotatedAt());
+            writeRecord(body, REC_ENTRY, recBytes);
+        }
+        body.flush();
+
+        long bodyLength = bodyBytes.size();
+        long indexOffset = VaultHeader.SIZE + bodyLength;
+        ByteBuffer index = ByteBuffer.allocate(offsets.length * Long.BYTES);
+        for (long off : offsets) index.putLong(off);
+        index.flip();
+
+        VaultHeader written = header.withLayout(entries.size(), VaultHeader.SIZE, bodyLength,
+                indexOffset, offsets.length * Long.BYTES);
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(ch, written.encode());
+                writeFully(ch, ByteBuffer.wrap(bodyBytes.toByteArray()));
+                writeFully(ch, index);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return written;
+    }
+
+    private static void writeRecord(DataOutputStream out, int type, ByteArrayOutputStream payload) throws IOException {
+        byte[] bytes = payload.toByteArray();
+        out.writeByte(type);
+        out.writeInt(bytes.length);
+        out.writeInt(checksum(new CRC32C(), type, bytes.length, ByteBuffer.wrap(bytes)));
+        out.write(bytes);
+        payload.reset();
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+}
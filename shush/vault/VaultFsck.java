@@ -0,0 +1,236 @@
+package shush.vault;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Integrity checker behind {@code shush fsck}.
+ * <p>
+ * Two passes:
+ * <ol>
+ *   <li>{@link #open(Path)} checks structure without a key: the header checksum, record framing
+ *       and every record's CRC32C (in parallel). Intact records are parsed even when others are
+ *       damaged.</li>
+ *   <li>{@link #verifyEntries(VaultKey)} authenticates every sealed entry field against its AEAD
+ *       tag, in parallel across cores, after the caller unlocked {@link #manager()}.</li>
+ * </ol>
+ * {@link #quarantine(List)} moves damaged entry records into a side file next to the vault and
+ * rewrites the vault without them.
+ * </p>
+ */
+public final class VaultFsck {
+
+    private static final byte[] QUARANTINE_MAGIC = new byte[]{0x53, 0x48, 0x51, 0x00}; // "SHQ\0"
+
+    private final Path file;
+    private final VaultHeader header;
+    private final VaultFile.Scan scan;
+    private final VaultManager manager;
+
+    private VaultFsck(Path file, VaultHeader header, VaultFile.Scan scan) {
+        this.file = file;
+        this.header = header;
+        this.scan = scan;
+        this.manager = VaultManager.detached(header, scan.body);
+    }
+
+    /** One damaged record. */
+    public static final class Problem {
+        private final long offset;
+        private final String recordType;
+        private final String label;
+        private final String reason;
+        private final VaultFile.Frame frame;
+
+        Problem(VaultFile.Frame frame, String label, String reason) {
+            this.frame = frame;
+            this.offset = frame == null ? -1 : frame.offset;
+            this.recordType = frame == null ? "unknown" : typeName(frame.type);
+            this.label = label;
+            this.reason = reason;
+        }
+
+        /** @return absolute file offset of the record, or -1 if unknown. */
+        public long getOffset() { return offset; }
+
+        /** @return record kind ("entry", "key slot", ...). */
+        public String getRecordType() { return recordType; }
+
+        /** @return entry label, if the record is a readable entry; otherwise {@code null}. */
+        public String getLabel() { return label; }
+
+        /** @return description of the damage. */
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return (offset >= 0 ? "@" + offset + " " : "") + recordType
+                    + (label != null ? " '" + label + "'" : "") + ": " + reason;
+        }
+    }
+
+    /**
+     * Reads the header and scans the body. Needs no key.
+     *
+     * @param file vault file
+     * @return the checker
+     * @throws IOException if the file or its header cannot be read (header damage is fatal)
+     */
+    public static VaultFsck open(Path file) throws IOException {
+        VaultHeader header = VaultHeader.read(file);
+        return new VaultFsck(file, header, VaultFile.scan(file, header));
+    }
+
+    /** @return the vault header. */
+    public VaultHeader getHeader() { return header; }
+
+    /** @return number of records (or damaged regions) found in the body. */
+    public int getRecordCount() { return scan.frames.size(); }
+
+    /** @return number of entries parsed from intact records. */
+    public int getEntryCount() { return scan.body.entries.size(); }
+
+    /**
+     * @return structural problems: damaged records, unreadable regions, a missing password slot
+     *         and entries the header counts but the body does not contain
+     */
+    public List<Problem> getStructuralProblems() {
+        List<Problem> out = new ArrayList<>();
+        for (VaultFile.Frame f : scan.frames) if (f.damage != null) out.add(new Problem(f, null, f.damage));
+        if (!hasPasswordSlot() && !scan.body.entries.isEmpty()) {
+            out.add(new Problem(null, null, "no intact password key slot"));
+        }
+        // damaged frames already explain missing entries; report the count only when nothing else does
+        int missing = header.getEntryCount() - scan.body.entries.size();
+        if (missing > 0 && out.isEmpty()) out.add(new Problem(null, null, missing + " entries counted in the header are missing"));
+        return out;
+    }
+
+    /**
+     * @return {@code true} if an intact password key slot exists, i.e. {@link #manager()} can be
+     *         unlocked with the master password
+     */
+    public boolean hasPasswordSlot() {
+        for (KeySlot s : scan.body.keySlots) {
+            if (s.getType() == KeySlot.Type.PASSWORD || s.getType() == KeySlot.Type.PASSWORD_PIN) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return an in-memory manager over the intact records, for unlocking. It never writes to disk.
+     */
+    public VaultManager manager() {
+        return manager;
+    }
+
+    /**
+     * Authenticates every sealed field of every intact entry, in parallel.
+     *
+     * @param key key unlocked from {@link #manager()}
+     * @return entries whose fields fail authentication
+     */
+    public List<Problem> verifyEntries(VaultKey key) {
+        List<VaultEntry> entries = scan.body.entries;
+        ConcurrentLinkedQueue<Problem> bad = new ConcurrentLinkedQueue<>();
+        IntStream.range(0, entries.size()).parallel().forEach(i -> {
+            VaultEntry e = entries.get(i);
+            String field = null;
+            try {
+                field = "username";
+                check(key, e.getUsername());
+                field = "password";
+                check(key, e.getPassword());
+                field = "comment";
+                check(key, e.getComment());
+                field = "tags";
+                check(key, e.getTags());
+                field = "folder";
+                check(key, e.getFolder());
+            } catch (GeneralSecurityException | RuntimeException ex) {
+                bad.add(new Problem(scan.entryFrames.get(e), e.getLabel(), field + " fails authentication"));
+            }
+        });
+        List<Problem> out = new ArrayList<>(bad);
+        out.sort((a, b) -> Long.compare(a.getOffset(), b.getOffset()));
+        return out;
+    }
+
+    private static void check(VaultKey key, String payload) throws GeneralSecurityException {
+        if (payload == null) return;
+        byte[] plain = key.open(payload);
+        Arrays.fill(plain, (byte) 0);
+    }
+
+    /**
+     * Moves the records behind {@code problems} into {@code <vault>.quarantine-<timestamp>} and
+     * rewrites the vault from the remaining intact records.
+     * <p>
+     * The side file is {@code "SHQ\0"} followed by {@code [8-byte offset][4-byte length][raw bytes]}
+     * per record, so nothing is lost for later forensic recovery. Refuses to run if any damaged
+     * record is not an entry, because dropping configuration or key material could lock the
+     * owner out; restore such vaults from a backup.
+     * </p>
+     *
+     * @param problems problems from {@link #getStructuralProblems()} and {@link #verifyEntries(VaultKey)}
+     * @return the quarantine file
+     * @throws IOException           if writing fails
+     * @throws IllegalStateException if a non-entry record is damaged
+     */
+    public Path quarantine(List<Problem> problems) throws IOException {
+        Set<VaultFile.Frame> frames = new LinkedHashSet<>();
+        for (Problem p : problems) {
+            if (p.frame == null || p.frame.type != VaultFile.REC_ENTRY) {
+                throw new IllegalStateException("Cannot quarantine " + p + "; restore this vault from a backup");
+            }
+            frames.add(p.frame);
+        }
+
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        Path side = file.resolveSibling(file.getFileName() + ".quarantine-" + stamp);
+        try (OutputStream os = Files.newOutputStream(side);
+             DataOutputStream out = new DataOutputStream(os)) {
+            out.write(QUARANTINE_MAGIC);
+            for (VaultFile.Frame f : frames) {
+                byte[] raw = VaultFile.readRaw(file, f);
+                out.writeLong(f.offset);
+                out.writeInt(raw.length);
+                out.write(raw);
+            }
+        }
+
+        List<VaultEntry> keep = new ArrayList<>(scan.body.entries.size());
+        for (VaultEntry e : scan.body.entries) {
+            if (!frames.contains(scan.entryFrames.get(e))) keep.add(e);
+        }
+        VaultFile.Body b = scan.body;
+        VaultFile.write(file, header, new VaultFile.Body(b.totpSecret, b.keyEpoch, b.keySlots, b.members,
+                b.retiredKeys, keep));
+        return side;
+    }
+
+    private static String typeName(int type) {
+        switch (type) {
+            case VaultFile.REC_CONFIG: return "config";
+            case VaultFile.REC_ENTRY: return "entry";
+            case VaultFile.REC_KEYSLOT: return "key slot";
+            case VaultFile.REC_MEMBER: return "member";
+            case VaultFile.REC_RETIRED_KEY: return "retired key";
+            case -1: return "region";
+            default: return "record type " + type;
+        }
+    }
+}
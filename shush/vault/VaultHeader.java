@@ -0,0 +1,275 @@
+package shush.vault;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Fixed-size plaintext header stored at the start of every vault file.
+ * <p>
+ * The header carries everything needed to list, select and unlock a vault without touching
+ * its body: format version, flags, the entry count and the location of the body and its record
+ * index. Vaults written before key slots existed also keep a PBKDF2 verifier of the master
+ * password here; it is cleared (zeroed) once they are migrated, since anyone holding the file
+ * could otherwise test passwords against it without the PIN. Reading a header costs a
+ * single {@value #SIZE}-byte read regardless of vault size.
+ * </p>
+ *
+ * <h2>Layout (big-endian)</h2>
+ * <pre>
+ * [  0] 4  magic "SHV\0"
+ * [  4] 2  format version
+ * [  6] 2  flags (bit 0: global TOTP)
+ * [  8] 4  PBKDF2 iterations
+ * [ 12] 4  PBKDF2 hash bits
+ * [ 16] 16 master salt (zero without a verifier)
+ * [ 32] 32 master hash (first hashBits/8 bytes used; zero without a verifier)
+ * [ 64] 4  entry count
+ * [ 68] 8  index offset
+ * [ 76] 4  index length
+ * [ 80] 8  body offset
+ * [ 88] 8  body length
+ * [ 96] 28 reserved (zero)
+ * [124] 4  CRC32C of bytes 0-123 (format 2+; zero in format 1)
+ * </pre>
+ * Format 2 also frames every body record with a CRC32C (see {@link VaultFile}). Format 1 files
+ * stay readable and are upgraded on the next write.
+ */
+public final class VaultHeader {
+
+    /** Total header size in bytes. */
+    public static final int SIZE = 128;
+
+    /** Current on-disk format version. */
+    public static final int FORMAT_VERSION = 2;
+
+    /** First format version with checksummed header and records. */
+    public static final int CHECKSUM_VERSION = 2;
+
+    /** Flag bit: all entries require TOTP by default. */
+    public static final int FLAG_GLOBAL_TOTP = 1;
+
+    private static final byte[] MAGIC = new byte[]{0x53, 0x48, 0x56, 0x00}; // "SHV\0"
+    private static final int SALT_LEN = 16;
+    private static final int HASH_SLOT = 32;
+    private static final int CRC_OFFSET = SIZE - 4;
+
+    private final int formatVersion;
+    private final int flags;
+    private final int kdfIterations;
+    private final int kdfHashBits;
+    private final byte[] salt;
+    private final byte[] masterHash;
+    private final int entryCount;
+    private final long indexOffset;
+    private final int indexLength;
+    private final long bodyOffset;
+    private final long bodyLength;
+
+    VaultHeader(int formatVersion, int flags, int kdfIterations, int kdfHashBits,
+                byte[] salt, byte[] masterHash, int entryCount,
+                long indexOffset, int indexLength, long bodyOffset, long bodyLength) {
+        Objects.requireNonNull(salt, "salt");
+        Objects.requireNonNull(masterHash, "masterHash");
+        if (salt.length != SALT_LEN) throw new IllegalArgumentException("salt must be " + SALT_LEN + " bytes");
+        if (masterHash.length > HASH_SLOT || masterHash.length * 8 != kdfHashBits) {
+            throw new IllegalArgumentException("masterHash length does not match kdfHashBits (max 256)");
+        }
+        this.formatVersion = formatVersion;
+        this.flags = flags;
+        this.kdfIterations = kdfIterations;
+        this.kdfHashBits = kdfHashBits;
+        this.salt = salt.clone();
+        this.masterHash = masterHash.clone();
+        this.entryCount = entryCount;
+        this.indexOffset = indexOffset;
+        this.indexLength = indexLength;
+        this.bodyOffset = bodyOffset;
+        this.bodyLength = bodyLength;
+    }
+
+    /**
+     * Creates a header for a new, empty vault, without a password verifier.
+     *
+     * @param flags      header flags (see {@link #FLAG_GLOBAL_TOTP})
+     * @param iterations PBKDF2 iterations recorded for the (absent) verifier
+     * @param hashBits   PBKDF2 output length in bits (at most 256)
+     * @return a header describing an empty body
+     */
+    static VaultHeader create(int flags, int iterations, int hashBits) {
+        return new VaultHeader(FORMAT_VERSION, flags, iterations, hashBits, new byte[SALT_LEN], new byte[hashBits / 8],
+                0, SIZE, 0, SIZE, 0);
+    }
+
+    // ----------------- I/O -----------------
+
+    /**
+     * Reads only the header of the vault file at {@code file}.
+     *
+     * @param file vault file path
+     * @return the parsed header
+     * @throws IOException if the file cannot be read or is not a Shush vault
+     */
+    public static VaultHeader read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(ch);
+        }
+    }
+
+    /**
+     * Reads the header from the start of an open channel.
+     *
+     * @param ch channel positioned anywhere; the header is read from offset 0
+     * @return the parsed header
+     * @throws IOException if the header is truncated or malformed
+     */
+    static VaultHeader read(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SIZE);
+        long pos = 0;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("Truncated vault header");
+            pos += n;
+        }
+        buf.flip();
+        return decode(buf);
+    }
+
+    private static int crc(ByteBuffer buf) {
+        CRC32C crc = new CRC32C();
+        crc.update(buf.duplicate().position(0).limit(CRC_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    private static VaultHeader decode(ByteBuffer buf) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a Shush vault (bad magic)");
+
+        int version = Short.toUnsignedInt(buf.getShort());
+        if (version > FORMAT_VERSION) throw new IOException("Unsupported vault format version: " + version);
+        if (version >= CHECKSUM_VERSION && buf.getInt(CRC_OFFSET) != crc(buf)) {
+            throw new IOException("Vault header checksum mismatch");
+        }
+        int flags = Short.toUnsignedInt(buf.getShort());
+        int iterations = buf.getInt();
+        int hashBits = buf.getInt();
+        if (hashBits <= 0 || hashBits > HASH_SLOT * 8 || hashBits % 8 != 0) {
+            throw new IOException("Invalid KDF hash length: " + hashBits);
+        }
+        byte[] salt = new byte[SALT_LEN];
+        buf.get(salt);
+        byte[] slot = new byte[HASH_SLOT];
+        buf.get(slot);
+        byte[] hash = Arrays.copyOf(slot, hashBits / 8);
+        int entryCount = buf.getInt();
+        long indexOffset = buf.getLong();
+        int indexLength = buf.getInt();
+        long bodyOffset = buf.getLong();
+        long bodyLength = buf.getLong();
+        if (entryCount < 0 || bodyOffset < SIZE || bodyLength < 0 || indexOffset < SIZE || indexLength < 0) {
+            throw new IOException("Corrupt vault header");
+        }
+        return new VaultHeader(version, flags, iterations, hashBits, salt, hash,
+                entryCount, indexOffset, indexLength, bodyOffset, bodyLength);
+    }
+
+    /**
+     * Encodes this header into a new {@value #SIZE}-byte buffer, ready for writing.
+     *
+     * @return a flipped buffer containing the encoded header
+     */
+    ByteBuffer encode() {
+        ByteBuffer buf = ByteBuffer.allocate(SIZE);
+        buf.put(MAGIC);
+        buf.putShort((short) formatVersion);
+        buf.putShort((short) flags);
+        buf.putInt(kdfIterations);
+        buf.putInt(kdfHashBits);
+        buf.put(salt);
+        buf.put(Arrays.copyOf(masterHash, HASH_SLOT));
+        buf.putInt(entryCount);
+        buf.putLong(indexOffset);
+        buf.putInt(indexLength);
+        buf.putLong(bodyOffset);
+        buf.putLong(bodyLength);
+        // remaining bytes stay zero (reserved)
+        if (formatVersion >= CHECKSUM_VERSION) buf.putInt(CRC_OFFSET, crc(buf));
+        buf.position(SIZE);
+        buf.flip();
+        return buf;
+    }
+
+    // ----------------- derived copies -----------------
+
+    /** @return a copy of this header with the given flags. */
+    VaultHeader withFlags(int newFlags) {
+        return new VaultHeader(formatVersion, newFlags, kdfIterations, kdfHashBits, salt, masterHash,
+                entryCount, indexOffset, indexLength, bodyOffset, bodyLength);
+    }
+
+    /** @return a copy of this header with the master password verifier zeroed. */
+    VaultHeader withoutVerifier() {
+        return new VaultHeader(formatVersion, flags, kdfIterations, kdfHashBits, new byte[SALT_LEN], new byte[masterHash.length],
+                entryCount, indexOffset, indexLength, bodyOffset, bodyLength);
+    }
+
+    /** @return a copy of this header describing a newly written body and index. */
+    VaultHeader withLayout(int newEntryCount, long newBodyOffset, long newBodyLength,
+                           long newIndexOffset, int newIndexLength) {
+        return new VaultHeader(FORMAT_VERSION, flags, kdfIterations, kdfHashBits, salt, masterHash,
+                newEntryCount, newIndexOffset, newIndexLength, newBodyOffset, newBodyLength);
+    }
+
+    // ----------------- getters -----------------
+
+    /** @return true if body records carry CRC32C checksums. */
+    public boolean isChecksummed() { return formatVersion >= CHECKSUM_VERSION; }
+
+    /** @return the on-disk format version. */
+    public int getFormatVersion() { return formatVersion; }
+
+    /** @return raw header flags. */
+    public int getFlags() { return flags; }
+
+    /** @return true if the global TOTP flag is set. */
+    public boolean isGlobalTOTPEnabled() { return (flags & FLAG_GLOBAL_TOTP) != 0; }
+
+    /** @return PBKDF2 iterations for master password verification. */
+    public int getKdfIterations() { return kdfIterations; }
+
+    /** @return PBKDF2 output length in bits. */
+    public int getKdfHashBits() { return kdfHashBits; }
+
+    /** @return a copy of the master salt. */
+    public byte[] getSalt() { return salt.clone(); }
+
+    /** @return a copy of the stored master hash (all zero without a verifier). */
+    byte[] getMasterHash() { return masterHash.clone(); }
+
+    /** @return true if the header keeps a master password verifier (legacy vaults without key slots). */
+    boolean hasVerifier() {
+        for (byte b : masterHash) if (b != 0) return true;
+        return false;
+    }
+
+    /** @return number of entries in the body. */
+    public int getEntryCount() { return entryCount; }
+
+    /** @return absolute file offset of the record index. */
+    public long getIndexOffset() { return indexOffset; }
+
+    /** @return record index length in bytes. */
+    public int getIndexLength() { return indexLength; }
+
+    /** @return absolute file offset of the body. */
+    public long getBodyOffset() { return bodyOffset; }
+
+    /** @return body length in bytes. */
+    public long getBodyLength() { return bodyLength; }
+}
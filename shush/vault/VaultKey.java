@@ -0,0 +1,147 @@
+package shush.vault;
+
+import shush.util.CryptoUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+
+/**
+ * An unlocked vault data key.
+ * <p>
+ * Obtained from {@link VaultManager#unlock(char[], char[])}. Field encryption and decryption use
+ * the key directly, so no KDF runs per field. Holders <b>must</b> {@link #close()} the key as soon
+ * as they are done so the key material is wiped from memory (best-effort).
+ * </p>
+ * <p>
+ * Team vaults rotate the data key when a member is removed. Each key carries its epoch; after a
+ * rotation the key also holds the retired keys of earlier epochs (recovered from the vault's
+ * retired-key chain) so entries not yet re-encrypted stay readable. New data is always sealed
+ * under the current key.
+ * </p>
+ */
+public final class VaultKey implements AutoCloseable {
+
+    private byte[] key;
+    private final int epoch;
+    private byte[][] retired; // retired[i] is the key of epoch (epoch - 1 - i)
+
+    VaultKey(byte[] key) {
+        this(key, 0, new byte[0][]);
+    }
+
+    VaultKey(byte[] key, int epoch, byte[][] retired) {
+        this.key = key;
+        this.epoch = epoch;
+        this.retired = retired;
+    }
+
+    /**
+     * Encrypts bytes under the data key.
+     *
+     * @param data plaintext bytes ({@code null} treated as empty)
+     * @return encoded payload
+     * @throws GeneralSecurityException if encryption fails
+     */
+    public String seal(byte[] data) throws GeneralSecurityException {
+        return CryptoUtils.encryptWithKey(data, live());
+    }
+
+    /**
+     * Encrypts a UTF-8 string under the data key.
+     *
+     * @param s plaintext ({@code null} treated as empty)
+     * @return encoded payload
+     * @throws GeneralSecurityException if encryption fails
+     */
+    public String sealString(String s) throws GeneralSecurityException {
+        return seal(s == null ? null : s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decrypts a payload produced by {@link #seal(byte[])}, under this or any retired key.
+     *
+     * @param payload encoded payload
+     * @return plaintext bytes (caller should zero when finished)
+     * @throws GeneralSecurityException if authentication fails under every key
+     */
+    public byte[] open(String payload) throws GeneralSecurityException {
+        try {
+            return CryptoUtils.decryptWithKey(payload, live());
+        } catch (AEADBadTagException e) {
+            for (byte[] old : retired) {
+                try {
+                    return CryptoUtils.decryptWithKey(payload, old);
+                } catch (AEADBadTagException ignored) {
+                    // try the next older key
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Decrypts a payload produced by {@link #sealString(String)}.
+     *
+     * @param payload encoded payload, or {@code null}
+     * @return plaintext string, or {@code null} if {@code payload} is {@code null}
+     * @throws GeneralSecurityException if authentication fails
+     */
+    public String openString(String payload) throws GeneralSecurityException {
+        if (payload == null) return null;
+        byte[] b = open(payload);
+        try {
+            return new String(b, StandardCharsets.UTF_8);
+        } finally {
+            Arrays.fill(b, (byte) 0);
+        }
+    }
+
+    /** @return the key epoch; entries sealed with this key should be tagged with it. */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Builds the key for the next epoch after a rotation. The returned key keeps this key and
+     * its retired keys (copied) so entries sealed under any of them stay readable.
+     *
+     * @param next fresh data key for {@code getEpoch() + 1}
+     * @return the successor key (this key remains open and must still be closed)
+     */
+    VaultKey successor(byte[] next) {
+        byte[][] chain = new byte[retired.length + 1][];
+        chain[0] = live().clone();
+        for (int i = 0; i < retired.length; i++) chain[i + 1] = retired[i].clone();
+        return new VaultKey(next, epoch + 1, chain);
+    }
+
+    /** @return the raw key bytes (package use only: re-wrapping). */
+    byte[] raw() {
+        return live();
+    }
+
+    /** @return true once {@link #close()} has been called. */
+    public boolean isClosed() {
+        return key == null;
+    }
+
+    /** Wipes the key. Safe to call multiple times. */
+    @Override
+    public void close() {
+        if (key != null) {
+            Arrays.fill(key, (byte) 0);
+            key = null;
+        }
+        for (byte[] old : retired) Arrays.fill(old, (byte) 0);
+        retired = new byte[0][];
+    }
+
+    private byte[] live() {
+        byte[] k = key;
+        if (k == null) throw new IllegalStateException("Vault key has been closed");
+        return k;
+    }
+}
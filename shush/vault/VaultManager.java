@@ -1,15 +1,39 @@
 package shush.vault;
 
 import shush.util.CryptoUtils;
+import shush.util.Stats;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
@@ -19,41 +43,117 @@ import javax.crypto.spec.PBEKeySpec;
  * Responsibilities:
  * <ul>
  *   <li>Holds global configuration (e.g., "Require TOTP for all entries").</li>
- *   <li>Verifies master password (against a persisted PBKDF2 hash).</li>
- *   <li>Exposes TOTP secret for verification (secret itself should be stored securely).</li>
+ *   <li>Verifies the master password of legacy vaults (against a persisted PBKDF2 hash) to migrate them.</li>
+ *   <li>Unlocks the vault data key from its {@link KeySlot}s (envelope encryption).</li>
+ *   <li>Wraps the data key for team members and rotates it when a member is removed.</li>
+ *   <li>Keeps the TOTP secret sealed under the data key and opens it for verification.</li>
  *   <li>Adds/updates/removes entries and persists changes.</li>
  * </ul>
  *
  * <h2>Notes</h2>
  * <ul>
- *   <li>This reference implementation keeps entries in-memory and omits real file I/O;
- *       integrate your chosen storage later (JSON/DB) inside {@link #persist()} and {@link #load()}.</li>
- *   <li>Master password verification uses PBKDF2-HMAC-SHA256 with a stored salt+hash.</li>
+ *   <li>Managers created through {@link VaultRegistry} are backed by a vault file. Only the
+ *       {@link VaultHeader} is read up front; the body is mapped and parsed on first use.</li>
+ *   <li>Managers built with the public constructor are in-memory only; {@link #persist()} is a no-op.</li>
+ *   <li>Only vaults written before key slots existed keep a PBKDF2-HMAC-SHA256 verifier of the
+ *       password in the plaintext header. It would let an attacker test passwords without the
+ *       PIN, so it is cleared once the vault has a key slot; unlocking is the only check.</li>
+ *   <li>Entry fields are encrypted under a random data key, which each key slot wraps under a
+ *       credential-derived key. Changing the password or PIN re-wraps one slot; entries are untouched.</li>
+ *   <li>Team membership changes cost O(members): adding wraps the key once for the new member;
+ *       removing rotates to a new key epoch and re-wraps it for the remaining members and the
+ *       password slot. Entries sealed under older epochs stay readable through the retired-key
+ *       chain and are re-encrypted lazily on write and by {@link #startKeyCatchUp(VaultKey)}.</li>
+ *   <li>File-backed vaults keep an {@link AuditLog} of unlocks, reads and changes. Recording
+ *       queues the event and returns; a background thread writes it.</li>
  * </ul>
  */
 public class VaultManager {
 
     // ---- configuration & state (backed by persistence in your final build) ----
     private volatile boolean globalTOTPEnabled;
-    private volatile String totpSecret; // store securely; rotate via your init/config flows
+    // TOTP secret sealed under the data key; plaintext only until the first unlock seals it
+    // (vaults written before sealing, and the public constructor's argument)
+    private volatile String totpSecret;
 
-    // Master password verifier (salted PBKDF2 hash)
-    private final byte[] masterSalt;
-    private final byte[] masterHash;
-    private final int masterHashIterations;
-    private final int masterHashBits;
+    // Backing file (null for in-memory vaults) and its last written header
+    private final Path file;
+    // Earlier entry versions, in a side file read only on demand (null for in-memory vaults)
+    private final HistoryLog history;
+    private final AuditLog audit;      // null for in-memory vaults
+    private volatile String auditVia;  // credential of the last successful unlock, for audit events
+    private volatile boolean unlocked; // some unlock succeeded in this process
+    private volatile VaultHeader header;
+    private volatile boolean bodyLoaded;
 
-    // Entries (encrypted strings, as produced by CryptoUtils)
-    private final List<VaultEntry> entries = new ArrayList<>();
+    // Master password verifier (salted PBKDF2 hash) of a vault without key slots; null once migrated
+    private volatile Verifier verifier;
+
+    // Wrapped copies of the vault data key
+    private final List<KeySlot> keySlots = new ArrayList<>();
+
+    // Team vaults: current key epoch, per-member wrappings and the retired-key chain
+    private volatile Path identityPath; // local identity of the registry that opened this vault, or null
+    private volatile int keyEpoch;
+    private final List<TeamMember> members = new ArrayList<>();
+    private final List<VaultFile.RetiredKey> retiredKeys = new ArrayList<>();
+
+    // Entries (encrypted strings, as produced by CryptoUtils); an EntryArena if opted into, see newEntryStore
+    private EntryStore entries = new EntryList(0);
+    // Random per loaded store, so page tokens from an earlier load (or another vault) are refused
+    private long listingGeneration = ThreadLocalRandom.current().nextLong();
+
+    // Typo-tolerant label index, kept in step with every change to entries
+    private final LabelIndex labelIndex = new LabelIndex();
+
+    // Entries ordered by each plaintext timestamp, kept in step with every change to entries
+    private AgeIndex ageIndex = new AgeIndex();
+
+    // Tag/folder posting lists, built after unlock; stale once entriesVersion moves past it
+    private long entriesVersion;
+    private volatile TagIndex tagIndex;
 
     // Concurrency
     private final ReentrantReadWriteLock rw = new ReentrantReadWriteLock(true);
 
+    /**
+     * System property choosing how loaded entries are held: {@code heap} (one object per entry),
+     * the default, {@code columnar} ({@link EntryArena}) or {@code auto} (columnar from
+     * {@value #COLUMNAR_THRESHOLD} entries on). The columnar store is opt-in: it saves only about
+     * 1.6x heap per entry (see {@link EntryStoreBenchmark}), while loading about 2.5x and listing
+     * about 10x slower, which {@code list}, {@code check} and exports of large vaults would pay.
+     */
+    static final String STORE_PROPERTY = "shush.store";
+    static final int COLUMNAR_THRESHOLD = 100_000;
+
+    private static final int DEFAULT_ITERATIONS = 210_000;
+    private static final int DEFAULT_HASH_BITS = 256;
+
+    // Stale entries re-encrypted per write, and per background catch-up batch
+    private static final int LAZY_BATCH = 32;
+    private static final int CATCH_UP_BATCH = 256;
+
+    private static final ExecutorService CATCH_UP = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "shush-key-catch-up");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Staleness watchers re-check at least this often, in case timestamps arrive out of order
+    private static final long WATCH_POLL_SECONDS = 60;
+
+    private static final ScheduledExecutorService WATCH = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "shush-stale-watch");
+        t.setDaemon(true);
+        return t;
+    });
+
     /**
      * Constructs a {@code VaultManager}.
      *
      * @param globalTOTPEnabled whether all entries require TOTP by default
-     * @param totpSecret        the configured TOTP secret (Base32 or whatever encoding your TOTPManager expects)
+     * @param totpSecret        the configured TOTP secret (Base32 or whatever encoding your TOTPManager expects);
+     *                          sealed by the first unlock
      * @param masterSalt        salt used for master password PBKDF2 verification
      * @param masterHash        stored PBKDF2 hash of the master password
      * @param iterations        PBKDF2 iterations (e.g., 210_000)
@@ -67,53 +167,176 @@ public class VaultManager {
                         int hashBits) {
         this.globalTOTPEnabled = globalTOTPEnabled;
         this.totpSecret = totpSecret;
-        this.masterSalt = Objects.requireNonNull(masterSalt, "masterSalt");
-        this.masterHash = Objects.requireNonNull(masterHash, "masterHash");
-        this.masterHashIterations = iterations;
-        this.masterHashBits = hashBits;
+        this.verifier = new Verifier(Objects.requireNonNull(masterSalt, "masterSalt"),
+                Objects.requireNonNull(masterHash, "masterHash"), iterations, hashBits);
+        this.file = null;
+        this.history = null;
+        this.audit = null;
+        this.bodyLoaded = true;
+    }
+
+    /**
+     * Constructs a file-backed {@code VaultManager} from an already-read header.
+     * The body is not read until an operation needs it.
+     *
+     * @param file   vault file
+     * @param header header read from {@code file}
+     */
+    VaultManager(Path file, VaultHeader header) {
+        this.file = Objects.requireNonNull(file, "file");
+        this.history = new HistoryLog(file);
+        this.audit = new AuditLog(file);
+        this.header = Objects.requireNonNull(header, "header");
+        this.globalTOTPEnabled = header.isGlobalTOTPEnabled();
+        this.verifier = verifierOf(header);
+        this.bodyLoaded = false;
+    }
+
+    /**
+     * Creates a new, empty vault file and returns a manager for it.
+     *
+     * @param file              destination path (must not exist)
+     * @param masterPassword    master password (zeroed after hashing)
+     * @param pin               optional PIN required alongside the password (may be {@code null} or empty; not zeroed)
+     * @param globalTOTPEnabled whether all entries require TOTP by default
+     * @param totpSecret        TOTP secret, or {@code null} if TOTP is disabled
+     * @return a loaded manager for the new vault
+     * @throws GeneralSecurityException if the KDF fails
+     * @throws IOException              if the file cannot be written
+     */
+    static VaultManager createVault(Path file, char[] masterPassword, char[] pin, boolean globalTOTPEnabled, String totpSecret)
+            throws GeneralSecurityException, IOException {
+        Objects.requireNonNull(masterPassword, "masterPassword");
+        byte[] dataKey = CryptoUtils.randomKey();
+        try (VaultKey key = new VaultKey(dataKey)) {
+            KeySlot slot = wrapPasswordSlot(key, masterPassword, pin);
+            int flags = globalTOTPEnabled ? VaultHeader.FLAG_GLOBAL_TOTP : 0;
+            // no verifier: the key slot is the only way to test a password
+            VaultHeader header = VaultHeader.create(flags, DEFAULT_ITERATIONS, DEFAULT_HASH_BITS);
+            String sealedTotp = totpSecret == null ? null : key.sealString(totpSecret);
+            header = VaultFile.write(file, header,
+                    new VaultFile.Body(sealedTotp, Collections.singletonList(slot), Collections.emptyList()));
+            VaultManager vm = new VaultManager(file, header);
+            vm.totpSecret = sealedTotp;
+            vm.keySlots.add(slot);
+            vm.bodyLoaded = true;
+            vm.audit.initialize(key);
+            vm.auditVia = "password";
+            return vm;
+        } finally {
+            zeroChars(masterPassword);
+        }
     }
 
     // ----------------- config getters -----------------
 
+    /**
+     * @return the local team identity file ({@link MemberIdentity}) of the registry this vault was
+     *         opened from, which may not exist; {@code null} for vaults not opened by a registry
+     */
+    public Path getIdentityPath() {
+        return identityPath;
+    }
+
+    /** Set by {@link VaultRegistry} for the vaults it opens or creates. */
+    void setIdentityPath(Path identityPath) {
+        this.identityPath = identityPath;
+    }
+
     /** @return true if "Require TOTP for all entries" is enabled. */
     public boolean isGlobalTOTPEnabled() {
         return globalTOTPEnabled;
     }
 
-    /** Allows toggling global TOTP (should be gated by your config command). */
+    /**
+     * Allows toggling global TOTP (should be gated by your config command). The change and its
+     * persist happen under the write lock, so a concurrent {@link #load()} cannot slip in between
+     * and revert it; if the persist fails the old value is restored.
+     *
+     * @throws UncheckedIOException if the vault file cannot be written
+     */
     public void setGlobalTOTPEnabled(boolean enabled) {
-        this.globalTOTPEnabled = enabled;
-        persistQuietly();
+        ensureLoaded();
+        lockWrite();
+        try {
+            boolean previous = globalTOTPEnabled;
+            globalTOTPEnabled = enabled;
+            try {
+                persist();
+            } catch (RuntimeException e) {
+                globalTOTPEnabled = previous;
+                throw e;
+            }
+        } finally {
+            rw.writeLock().unlock();
+        }
     }
 
-    /** @return the configured TOTP secret (managed elsewhere; this manager only exposes it for verification). */
-    public String getTOTPSecret() {
-        return totpSecret;
+    /**
+     * Opens the configured TOTP secret for verification. The secret is kept sealed under the data
+     * key, so a copy of the vault file alone does not yield it.
+     *
+     * @param key unlocked vault key
+     * @return the TOTP secret, or {@code null} if none is configured
+     * @throws GeneralSecurityException if {@code key} cannot open it
+     */
+    public String getTOTPSecret(VaultKey key) throws GeneralSecurityException {
+        ensureLoaded();
+        String s = totpSecret;
+        return CryptoUtils.isKeyPayload(s) ? key.openString(s) : s;
     }
 
-    /** Updates the TOTP secret (use from your init/config flows). */
-    public void setTOTPSecret(String secret) {
-        this.totpSecret = secret;
-        persistQuietly();
+    /**
+     * Updates the TOTP secret (use from your init/config flows), sealed under {@code key}. Atomic
+     * with its persist, as {@link #setGlobalTOTPEnabled(boolean)} is.
+     *
+     * @param secret new secret, or {@code null} to remove it
+     * @param key    unlocked, current vault key
+     * @throws GeneralSecurityException if sealing fails
+     * @throws IllegalStateException    if {@code key} predates a rotation
+     * @throws UncheckedIOException     if the vault file cannot be written
+     */
+    public void setTOTPSecret(String secret, VaultKey key) throws GeneralSecurityException {
+        ensureLoaded();
+        String sealed = secret == null ? null : key.sealString(secret);
+        lockWrite();
+        try {
+            requireCurrent(key);
+            String previous = totpSecret;
+            totpSecret = sealed;
+            try {
+                persist();
+            } catch (RuntimeException e) {
+                totpSecret = previous;
+                throw e;
+            }
+        } finally {
+            rw.writeLock().unlock();
+        }
     }
 
     // ----------------- master password verification -----------------
 
     /**
-     * Verifies the supplied master password against the stored PBKDF2-HMAC-SHA256 hash.
+     * Verifies the supplied master password against the stored PBKDF2-HMAC-SHA256 hash. Only vaults
+     * written before key slots existed have one, until {@link #unlock(char[], char[])} migrates
+     * them; check the credentials of any other vault by unlocking it.
      *
      * @param masterPassword master password as {@code char[]} (will not be persisted)
-     * @return true if the password matches
+     * @return true if the password matches; false if it does not, or the vault keeps no verifier
      * @throws GeneralSecurityException if the KDF fails
      */
     public boolean verifyMasterPassword(char[] masterPassword) throws GeneralSecurityException {
         Objects.requireNonNull(masterPassword, "masterPassword");
+        Verifier v = verifier;
+        if (v == null) {
+            zeroChars(masterPassword);
+            return false;
+        }
         byte[] derived = null;
-        try {
-            PBEKeySpec spec = new PBEKeySpec(masterPassword, masterSalt, masterHashIterations, masterHashBits);
-            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            derived = skf.generateSecret(spec).getEncoded();
-            return constantTimeEquals(derived, masterHash);
+        try { // timed as part of the unlock that migrates the vault
+            derived = pbkdf2(masterPassword, v.salt, v.iterations, v.bits);
+            return constantTimeEquals(derived, v.hash);
         } finally {
             zero(derived);
             zeroChars(masterPassword);
@@ -127,57 +350,1606 @@ public class VaultManager {
         return verifyMasterPassword(masterPassword == null ? new char[0] : masterPassword.toCharArray());
     }
 
-    // ----------------- entries -----------------
+    // ----------------- data key (envelope) -----------------
 
     /**
-     * Adds an entry to the vault and persists the change.
+     * Unlocks the vault data key with the master password (and PIN, if one is set).
+     * <p>
+     * Unwrapping is authenticated, so a successful unlock also proves the credentials. Vaults
+     * written before key slots existed are migrated here: the password is checked against the
+     * header verifier, a data key is generated and every entry field is re-encrypted under it once.
+     * </p>
      *
-     * @param entry a {@link VaultEntry} with encrypted fields
+     * @param masterPassword master password (not zeroed)
+     * @param pin            PIN, or {@code null} if the vault has none
+     * @return the unlocked key (caller must close it), or {@code null} if the credentials are wrong
+     * @throws GeneralSecurityException if the KDF or cipher fails for reasons other than a wrong credential
      */
-    public void addEntry(VaultEntry entry) {
-        Objects.requireNonNull(entry, "entry");
-        rw.writeLock().lock();
+    public VaultKey unlock(char[] masterPassword, char[] pin) throws GeneralSecurityException {
+        VaultKey key;
+        Stats.Timer t = Stats.time(Stats.Phase.UNLOCK);
         try {
-            // Optional: enforce unique labels here if that's a rule.
-            entries.add(entry);
+            key = openWithPassword(masterPassword, pin);
+        } finally {
+            t.close();
+        }
+        return audited(key, "password");
+    }
+
+    /** {@link #unlock(char[], char[])} without an audit event, for internal credential checks. */
+    private VaultKey openWithPassword(char[] masterPassword, char[] pin) throws GeneralSecurityException {
+        Objects.requireNonNull(masterPassword, "masterPassword");
+        ensureLoaded();
+        KeySlot slot;
+        int epoch;
+        List<VaultFile.RetiredKey> chain;
+        lockRead();
+        try {
+            slot = findSlot(hasPinLocked() ? KeySlot.Type.PASSWORD_PIN : KeySlot.Type.PASSWORD);
+            epoch = keyEpoch;
+            chain = new ArrayList<>(retiredKeys);
+        } finally {
+            rw.readLock().unlock();
+        }
+        if (slot == null) return migrateToEnvelope(masterPassword);
+
+        char[] secret = slot.getType() == KeySlot.Type.PASSWORD_PIN
+                ? KeySlot.combine(masterPassword, pin == null ? new char[0] : pin)
+                : masterPassword.clone();
+        try {
+            return openChain(slot.unwrap(secret), epoch, chain);
+        } catch (AEADBadTagException e) {
+            return null;
+        } finally {
+            zeroChars(secret);
+        }
+    }
+
+    /**
+     * Unlocks the vault data key with a recovery code from {@link #addRecoveryKey(VaultKey)}.
+     *
+     * @param recoveryCode recovery code (dashes and case are ignored)
+     * @return the unlocked key, or {@code null} if no recovery slot matches
+     * @throws GeneralSecurityException if the KDF or cipher fails
+     */
+    public VaultKey unlockWithRecoveryKey(String recoveryCode) throws GeneralSecurityException {
+        VaultKey key;
+        Stats.Timer t = Stats.time(Stats.Phase.UNLOCK);
+        try {
+            key = openWithRecoveryKey(recoveryCode);
+        } finally {
+            t.close();
+        }
+        return audited(key, "recovery");
+    }
+
+    private VaultKey openWithRecoveryKey(String recoveryCode) throws GeneralSecurityException {
+        ensureLoaded();
+        List<KeySlot> candidates = new ArrayList<>();
+        int epoch;
+        List<VaultFile.RetiredKey> chain;
+        lockRead();
+        try {
+            for (KeySlot s : keySlots) if (s.getType() == KeySlot.Type.RECOVERY) candidates.add(s);
+            epoch = keyEpoch;
+            chain = new ArrayList<>(retiredKeys);
+        } finally {
+            rw.readLock().unlock();
+        }
+        char[] code = normalizeRecoveryCode(recoveryCode);
+        try {
+            for (KeySlot s : candidates) {
+                try {
+                    return openChain(s.unwrap(code), epoch, chain);
+                } catch (AEADBadTagException e) {
+                    // try the next slot
+                }
+            }
+            return null;
+        } finally {
+            zeroChars(code);
+        }
+    }
+
+    /** @return true if unlocking requires a PIN in addition to the master password. */
+    public boolean hasPin() {
+        ensureLoaded();
+        lockRead();
+        try {
+            return hasPinLocked();
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the master password by re-wrapping the data key. Entries are not touched, and no
+     * verifier of the new password is stored.
+     *
+     * @param key         unlocked vault key
+     * @param newPassword new master password (not zeroed)
+     * @param pin         current PIN, or {@code null} if none is set
+     * @throws GeneralSecurityException if the KDF or wrapping fails
+     */
+    public void changeMasterPassword(VaultKey key, char[] newPassword, char[] pin) throws GeneralSecurityException {
+        Objects.requireNonNull(newPassword, "newPassword");
+        ensureLoaded();
+        boolean withPin = hasPin();
+        KeySlot slot = wrapPasswordSlot(key, newPassword, withPin ? pin : null);
+        lockWrite();
+        try {
+            requireCurrent(key);
+            replacePasswordSlot(slot);
             persist();
         } finally {
             rw.writeLock().unlock();
         }
     }
 
-    /** Returns an immutable snapshot of entries (still encrypted). */
-    public List<VaultEntry> listEntries() {
-        rw.readLock().lock();
+    /**
+     * Sets, changes or removes the PIN by re-wrapping the data key under password+PIN.
+     *
+     * @param key            unlocked vault key
+     * @param masterPassword current master password (not zeroed)
+     * @param newPin         new PIN, or {@code null} to remove the PIN
+     * @throws GeneralSecurityException if the KDF or wrapping fails
+     */
+    public void setPin(VaultKey key, char[] masterPassword, char[] newPin) throws GeneralSecurityException {
+        Objects.requireNonNull(masterPassword, "masterPassword");
+        ensureLoaded();
+        KeySlot slot = wrapPasswordSlot(key, masterPassword, newPin);
+        lockWrite();
+        try {
+            requireCurrent(key);
+            replacePasswordSlot(slot);
+            persist();
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a recovery slot and returns its code. The code is shown once and never stored.
+     *
+     * @param key unlocked vault key
+     * @return the recovery code, formatted as {@code <id>-XXXX-XXXX-...}
+     * @throws GeneralSecurityException if wrapping fails
+     */
+    public String addRecoveryKey(VaultKey key) throws GeneralSecurityException {
+        ensureLoaded();
+        String id = base32(CryptoUtils.randomBytes(5)).substring(0, 6);
+        String secret = base32(CryptoUtils.randomBytes(20));
+        char[] code = (id + secret).toCharArray();
+        try {
+            KeySlot slot = KeySlot.wrap(KeySlot.Type.RECOVERY, id, code, key.raw(), KeySlot.RECOVERY_ITERATIONS);
+            lockWrite();
+            try {
+                requireCurrent(key);
+                keySlots.add(slot);
+                persist();
+            } finally {
+                rw.writeLock().unlock();
+            }
+        } finally {
+            zeroChars(code);
+        }
+        StringBuilder sb = new StringBuilder(id);
+        for (int i = 0; i < secret.length(); i += 4) sb.append('-').append(secret, i, Math.min(i + 4, secret.length()));
+        return sb.toString();
+    }
+
+    /**
+     * Removes a recovery slot.
+     *
+     * @param id recovery key id (the first group of the code)
+     * @return true if a slot was removed
+     */
+    public boolean removeRecoveryKey(String id) {
+        ensureLoaded();
+        lockWrite();
+        try {
+            boolean removed = keySlots.removeIf(s -> s.getType() == KeySlot.Type.RECOVERY
+                    && s.getId() != null && s.getId().equalsIgnoreCase(id));
+            if (removed) persist();
+            return removed;
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /** @return ids of all recovery slots. */
+    public List<String> listRecoveryKeyIds() {
+        ensureLoaded();
+        lockRead();
         try {
-            return Collections.unmodifiableList(new ArrayList<>(entries));
+            List<String> ids = new ArrayList<>();
+            for (KeySlot s : keySlots) if (s.getType() == KeySlot.Type.RECOVERY) ids.add(s.getId());
+            return ids;
         } finally {
             rw.readLock().unlock();
         }
     }
 
-    // ----------------- persistence hooks (stubbed) -----------------
+    private static KeySlot wrapPasswordSlot(VaultKey key, char[] password, char[] pin) throws GeneralSecurityException {
+        if (pin == null || pin.length == 0) {
+            return KeySlot.wrap(KeySlot.Type.PASSWORD, null, password, key.raw(), KeySlot.PASSWORD_ITERATIONS);
+        }
+        char[] secret = KeySlot.combine(password, pin);
+        try {
+            return KeySlot.wrap(KeySlot.Type.PASSWORD_PIN, null, secret, key.raw(), KeySlot.PASSWORD_ITERATIONS);
+        } finally {
+            zeroChars(secret);
+        }
+    }
 
-    /** Loads vault state from disk (stub). Call during app startup. */
-    public void load() {
-        // TODO: implement disk I/O (read encrypted file, parse JSON/CBOR, hydrate entries and config).
+    /** Replaces the PASSWORD / PASSWORD_PIN slot. Caller holds the write lock. */
+    private void replacePasswordSlot(KeySlot slot) {
+        keySlots.removeIf(s -> s.getType() == KeySlot.Type.PASSWORD || s.getType() == KeySlot.Type.PASSWORD_PIN);
+        keySlots.add(0, slot);
     }
 
-    /** Persists vault state to disk (stub). */
-    public void persist() {
-        // TODO: implement disk I/O (write encrypted file).
-        // TIP: Your outer layer can encrypt a serialized structure with CryptoUtils before writing to disk.
+    /** Rejects keys from before a rotation. Caller holds a lock. */
+    private void requireCurrent(VaultKey key) {
+        if (key.getEpoch() != keyEpoch) {
+            throw new IllegalStateException("Vault key was rotated (now epoch " + keyEpoch + "); unlock again");
+        }
+    }
+
+    /**
+     * Builds a {@link VaultKey} for {@code epoch}, recovering retired keys by walking the chain
+     * downwards from the current key. Stops at the first pruned link.
+     */
+    private static VaultKey openChain(byte[] current, int epoch, List<VaultFile.RetiredKey> chain)
+            throws GeneralSecurityException {
+        List<byte[]> older = new ArrayList<>();
+        byte[] k = current;
+        try {
+            for (int e = epoch - 1; e >= 0; e--) {
+                VaultFile.RetiredKey link = null;
+                for (VaultFile.RetiredKey r : chain) if (r.epoch == e) link = r;
+                if (link == null) break;
+                k = CryptoUtils.decryptWithKey(link.wrapped, k);
+                older.add(k);
+            }
+        } catch (GeneralSecurityException ex) {
+            for (byte[] b : older) zero(b);
+            zero(current);
+            throw new GeneralSecurityException("Retired key chain is corrupt: " + ex.getMessage(), ex);
+        }
+        return new VaultKey(current, epoch, older.toArray(new byte[0][]));
+    }
+
+    private boolean hasPinLocked() {
+        return findSlot(KeySlot.Type.PASSWORD_PIN) != null;
+    }
+
+    private KeySlot findSlot(KeySlot.Type type) {
+        for (KeySlot s : keySlots) if (s.getType() == type) return s;
+        return null;
+    }
+
+    /** One-time upgrade of a vault without key slots; see {@link #unlock(char[], char[])}. */
+    private VaultKey migrateToEnvelope(char[] masterPassword) throws GeneralSecurityException {
+        if (!verifyMasterPassword(masterPassword.clone())) return null;
+        byte[] dataKey = CryptoUtils.randomKey();
+        VaultKey key = new VaultKey(dataKey);
+        KeySlot slot = KeySlot.wrap(KeySlot.Type.PASSWORD, null, masterPassword, dataKey, KeySlot.PASSWORD_ITERATIONS);
+        lockWrite();
+        try {
+            if (!keySlots.isEmpty()) {
+                // another thread migrated first; use its slot
+                key.close();
+                return openWithPassword(masterPassword, null);
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                VaultEntry e = entries.get(i);
+                entries.set(i, new VaultEntry(e.getLabel(),
+                        rewrap(e.getUsername(), masterPassword, key),
+                        rewrap(e.getPassword(), masterPassword, key),
+                        rewrap(e.getComment(), masterPassword, key),
+                        e.requires2FA(), 0,
+                        rewrap(e.getTags(), masterPassword, key),
+                        rewrap(e.getFolder(), masterPassword, key),
+                        e.getCreatedAt(), e.getUpdatedAt(), e.getRotatedAt()));
+            }
+            ageIndex.rebuild(entries);
+            entriesVersion++;
+            if (totpSecret != null && !CryptoUtils.isKeyPayload(totpSecret)) totpSecret = key.sealString(totpSecret);
+            keySlots.add(slot);
+            persist(); // also clears the header verifier
+            verifier = null;
+            return key;
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    private static String rewrap(String payload, char[] masterPassword, VaultKey key) throws GeneralSecurityException {
+        if (payload == null || CryptoUtils.isKeyPayload(payload)) return payload;
+        byte[] plain = CryptoUtils.decryptToBytes(payload, masterPassword);
+        try {
+            return key.seal(plain);
+        } finally {
+            zero(plain);
+        }
+    }
+
+
+    // ----------------- team members -----------------
+
+    /**
+     * Unlocks the vault data key with a team member's private key.
+     *
+     * @param memberId   member id
+     * @param privateKey member's X25519 private key
+     * @return the unlocked key (caller must close it), or {@code null} if the id is not a member
+     *         or the key does not match
+     * @throws GeneralSecurityException if the agreement or the retired-key chain fails
+     */
+    public VaultKey unlockAsMember(String memberId, PrivateKey privateKey) throws GeneralSecurityException {
+        VaultKey key;
+        Stats.Timer t = Stats.time(Stats.Phase.UNLOCK);
+        try {
+            key = openAsMember(memberId, privateKey);
+        } finally {
+            t.close();
+        }
+        return audited(key, "member:" + memberId);
+    }
+
+    private VaultKey openAsMember(String memberId, PrivateKey privateKey) throws GeneralSecurityException {
+        Objects.requireNonNull(privateKey, "privateKey");
+        ensureLoaded();
+        TeamMember member;
+        int epoch;
+        List<VaultFile.RetiredKey> chain;
+        lockRead();
+        try {
+            member = findMember(memberId);
+            epoch = keyEpoch;
+            chain = new ArrayList<>(retiredKeys);
+        } finally {
+            rw.readLock().unlock();
+        }
+        if (member == null) return null;
+        try {
+            return openChain(member.unwrap(privateKey), epoch, chain);
+        } catch (AEADBadTagException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param memberId member id
+     * @return true if {@code memberId} holds a wrapping of the current data key
+     */
+    public boolean isMember(String memberId) {
+        ensureLoaded();
+        lockRead();
+        try {
+            return findMember(memberId) != null;
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /** @return a snapshot of the team members. */
+    public List<TeamMember> listMembers() {
+        ensureLoaded();
+        lockRead();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(members));
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /** @return the current data key epoch (incremented on every rotation). */
+    public int getKeyEpoch() {
+        ensureLoaded();
+        return keyEpoch;
     }
 
-    private void persistQuietly() {
+    /**
+     * Adds (or re-keys) a member by wrapping the current data key to their public key.
+     * One X25519 agreement; entries are untouched.
+     *
+     * @param key       unlocked, current vault key
+     * @param memberId  member id
+     * @param publicKey member's X25519 public key (X.509 encoding, see {@link TeamMember#parsePublicKey(String)})
+     * @throws GeneralSecurityException if the public key is invalid
+     * @throws IllegalStateException    if {@code key} predates a rotation
+     */
+    public void addMember(VaultKey key, String memberId, byte[] publicKey) throws GeneralSecurityException {
+        if (memberId == null || memberId.isEmpty()) throw new IllegalArgumentException("Member id is required");
+        ensureLoaded();
+        lockWrite();
         try {
+            requireCurrent(key);
+            TeamMember m = TeamMember.wrap(memberId, publicKey, keyEpoch, key.raw());
+            members.removeIf(x -> x.getId().equals(memberId));
+            members.add(m);
             persist();
-        } catch (RuntimeException ex) {
-            // optional: log
+        } finally {
+            rw.writeLock().unlock();
         }
     }
 
-    // ----------------- utils -----------------
+    /**
+     * Removes a member and rotates the data key so the removed member's wrapping is useless
+     * for anything written afterwards.
+     * <p>
+     * A fresh key for the next epoch is wrapped for every remaining member and for the
+     * password slot, and the old key is sealed under the new one in the retired-key chain.
+     * Recovery slots wrap the old key and cannot be re-wrapped without their codes, so they are
+     * dropped and must be recreated. Entries are <b>not</b> re-encrypted here; see
+     * {@link #startKeyCatchUp(VaultKey)}.
+     * </p>
+     *
+     * @param key            unlocked, current vault key
+     * @param memberId       member to remove
+     * @param masterPassword master password (not zeroed), needed to re-wrap the password slot
+     * @param pin            PIN, or {@code null} if none is set
+     * @return the key for the new epoch (caller must close it), or {@code null} if there is no such member
+     * @throws GeneralSecurityException if the credentials do not match or wrapping fails
+     * @throws IllegalStateException    if {@code key} predates a rotation
+     */
+    public VaultKey removeMember(VaultKey key, String memberId, char[] masterPassword, char[] pin)
+            throws GeneralSecurityException {
+        Objects.requireNonNull(masterPassword, "masterPassword");
+        if (!isMember(memberId)) return null;
+        // The new password slot must open for the owner, so check the credentials first
+        try (VaultKey check = openWithPassword(masterPassword, pin)) {
+            if (check == null || !MessageDigest.isEqual(check.raw(), key.raw())) {
+                throw new GeneralSecurityException("Master password or PIN does not match this vault key");
+            }
+        }
+        VaultKey next = key.successor(CryptoUtils.randomKey());
+        boolean done = false;
+        try {
+            KeySlot slot = wrapPasswordSlot(next, masterPassword, hasPin() ? pin : null);
+            lockWrite();
+            try {
+                requireCurrent(key);
+                if (findMember(memberId) == null) return null;
+                List<TeamMember> rewrapped = new ArrayList<>(members.size());
+                for (TeamMember m : members) {
+                    if (m.getId().equals(memberId)) continue;
+                    rewrapped.add(TeamMember.wrap(m.getId(), m.getPublicKey(), next.getEpoch(), next.raw()));
+                }
+                VaultFile.RetiredKey link = new VaultFile.RetiredKey(key.getEpoch(),
+                        CryptoUtils.encryptWithKey(key.raw(), next.raw()));
+
+                members.clear();
+                members.addAll(rewrapped);
+                keySlots.removeIf(s -> s.getType() == KeySlot.Type.RECOVERY);
+                replacePasswordSlot(slot);
+                retiredKeys.add(link);
+                keyEpoch = next.getEpoch();
+                // O(1), and keeps the secret readable once the catch-up prunes the retired keys
+                if (CryptoUtils.isKeyPayload(totpSecret)) totpSecret = reseal(totpSecret, next);
+                persist();
+                done = true;
+                return next;
+            } finally {
+                rw.writeLock().unlock();
+            }
+        } finally {
+            if (!done) next.close();
+        }
+    }
+
+    /** @return the number of entries still sealed under a retired key. */
+    public int countStaleEntries() {
+        ensureLoaded();
+        lockRead();
+        try {
+            int n = 0;
+            for (VaultEntry e : entries) if (e.getKeyEpoch() < keyEpoch) n++;
+            return n;
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * Re-encrypts all stale entries under the current key on a background thread, in batches
+     * of {@value #CATCH_UP_BATCH}. Decryption happens outside the lock; each batch is swapped in
+     * and persisted under the write lock. When nothing stale remains the retired-key chain is
+     * pruned. The task stops early if another rotation happens meanwhile.
+     *
+     * @param key current vault key; must stay open until the returned future completes
+     * @return future completing with the number of entries re-encrypted
+     */
+    public CompletableFuture<Integer> startKeyCatchUp(VaultKey key) {
+        Objects.requireNonNull(key, "key");
+        return CompletableFuture.supplyAsync(() -> {
+            int total = 0;
+            try {
+                int n;
+                while ((n = reencryptStale(key, CATCH_UP_BATCH, List.of())) > 0) total += n;
+                return total;
+            } catch (GeneralSecurityException e) {
+                throw new CompletionException(e);
+            }
+        }, CATCH_UP);
+    }
+
+    /**
+     * Re-encrypts up to {@code max} stale entries and appends {@code extra} (may be empty) in the
+     * same write. Prunes the retired-key chain when nothing stale remains.
+     *
+     * @return entries re-encrypted, or 0 if none were stale or {@code key} is no longer current
+     */
+    private int reencryptStale(VaultKey key, int max, List<VaultEntry> extra) throws GeneralSecurityException {
+        List<VaultEntry> stale = new ArrayList<>();
+        int epoch;
+        lockRead();
+        try {
+            epoch = keyEpoch;
+            if (key.getEpoch() == epoch) {
+                for (VaultEntry e : entries) {
+                    if (stale.size() == max) break;
+                    if (e.getKeyEpoch() < epoch) stale.add(e);
+                }
+            }
+        } finally {
+            rw.readLock().unlock();
+        }
+
+        List<VaultEntry> fresh = new ArrayList<>(stale.size());
+        for (VaultEntry e : stale) {
+            // re-encryption is not a change: timestamps carry over
+            fresh.add(new VaultEntry(e.getLabel(), reseal(e.getUsername(), key), reseal(e.getPassword(), key),
+                    reseal(e.getComment(), key), e.requires2FA(), epoch, reseal(e.getTags(), key), reseal(e.getFolder(), key),
+                    e.getCreatedAt(), e.getUpdatedAt(), e.getRotatedAt()));
+        }
+
+        lockWrite();
+        try {
+            int replaced = 0;
+            if (keyEpoch == epoch) {
+                for (int i = 0; i < stale.size(); i++) {
+                    // match by identity: the entry may have been removed or replaced meanwhile
+                    int j = indexOf(stale.get(i));
+                    if (j < 0) continue;
+                    entries.set(j, fresh.get(i));
+                    ageIndex.remove(stale.get(i));
+                    ageIndex.add(fresh.get(i));
+                    replaced++;
+                }
+            }
+            boolean prune = !retiredKeys.isEmpty() && keyEpoch == epoch && key.getEpoch() == epoch;
+            if (prune) for (VaultEntry e : entries) if (e.getKeyEpoch() < epoch) prune = false;
+            if (prune && history != null) {
+                // history payloads may still need the retired keys
+                try {
+                    history.reseal(epoch, p -> reseal(p, key));
+                } catch (IOException e) {
+                    prune = false;
+                }
+            }
+            if (prune && audit != null) {
+                // so are the audit log's sealed keys
+                try {
+                    audit.reseal(p -> reseal(p, key));
+                } catch (IOException e) {
+                    prune = false;
+                }
+            }
+            if (prune) retiredKeys.clear();
+            for (VaultEntry e : extra) {
+                entries.add(e);
+                labelIndex.add(e.getLabel());
+                recordAudit(AuditLog.Event.Action.ADD, e.getLabel());
+            }
+            ageIndex.addAll(extra);
+            if (replaced > 0 || !extra.isEmpty()) entriesVersion++;
+            if (replaced > 0 || prune || !extra.isEmpty()) persist();
+            return replaced;
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    private static String reseal(String payload, VaultKey key) throws GeneralSecurityException {
+        if (payload == null) return null;
+        byte[] plain = key.open(payload);
+        try {
+            return key.seal(plain);
+        } finally {
+            zero(plain);
+        }
+    }
+
+    private TeamMember findMember(String memberId) {
+        for (TeamMember m : members) if (m.getId().equals(memberId)) return m;
+        return null;
+    }
+
+    // ----------------- entries -----------------
+
+    /**
+     * Adds an entry to the vault and persists the change. Timestamps the entry does not carry
+     * are set to now; the stored entry is therefore a copy when any were missing.
+     *
+     * @param entry a {@link VaultEntry} with encrypted fields
+     */
+    public void addEntry(VaultEntry entry) {
+        Objects.requireNonNull(entry, "entry");
+        ensureLoaded();
+        entry = stampNew(entry);
+        lockWrite();
+        try {
+            // Optional: enforce unique labels here if that's a rule.
+            entries.add(entry);
+            labelIndex.add(entry.getLabel());
+            ageIndex.add(entry);
+            entriesVersion++;
+            persist();
+            recordAudit(AuditLog.Event.Action.ADD, entry.getLabel());
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an entry sealed with {@code key} and, in the same write, lazily re-encrypts a few
+     * entries left over from an earlier key epoch.
+     *
+     * @param entry a {@link VaultEntry} with fields sealed under {@code key}
+     * @param key   the unlocked vault key
+     * @throws GeneralSecurityException if a stale entry cannot be re-encrypted
+     */
+    public void addEntry(VaultEntry entry, VaultKey key) throws GeneralSecurityException {
+        Objects.requireNonNull(entry, "entry");
+        Objects.requireNonNull(key, "key");
+        ensureLoaded();
+        reencryptStale(key, LAZY_BATCH, List.of(stampNew(entry)));
+    }
+
+    /**
+     * Adds a batch of entries sealed with {@code key} in a single write and a single persist,
+     * lazily re-encrypting a few stale entries alongside as {@link #addEntry(VaultEntry, VaultKey)}
+     * does. Used by bulk imports, where a persist per entry would rewrite the file once per entry.
+     *
+     * @param batch entries with fields sealed under {@code key}
+     * @param key   the unlocked vault key
+     * @throws GeneralSecurityException if a stale entry cannot be re-encrypted
+     */
+    public void addEntries(List<VaultEntry> batch, VaultKey key) throws GeneralSecurityException {
+        Objects.requireNonNull(batch, "batch");
+        Objects.requireNonNull(key, "key");
+        if (batch.isEmpty()) return;
+        ensureLoaded();
+        List<VaultEntry> stamped = new ArrayList<>(batch.size());
+        for (VaultEntry e : batch) stamped.add(stampNew(Objects.requireNonNull(e, "entry")));
+        reencryptStale(key, LAZY_BATCH, stamped);
+    }
+
+    /** @return {@code entry} with unset timestamps filled in for a new entry (created now) */
+    private static VaultEntry stampNew(VaultEntry entry) {
+        if (entry.getCreatedAt() != 0 && entry.getUpdatedAt() != 0 && entry.getRotatedAt() != 0) return entry;
+        long created = entry.getCreatedAt() != 0 ? entry.getCreatedAt() : System.currentTimeMillis();
+        return entry.withTimestamps(created,
+                entry.getUpdatedAt() != 0 ? entry.getUpdatedAt() : created,
+                entry.getRotatedAt() != 0 ? entry.getRotatedAt() : created);
+    }
+
+    /**
+     * Replaces an entry (matched by identity, as returned from {@link #findEntries(String)}) and persists.
+     * No history is recorded; see {@link #replaceEntry(VaultEntry, VaultEntry, VaultKey)}. The
+     * stored copy is marked updated now, and rotated now if the sealed password differs (without a
+     * key, re-sealing the same password counts as a rotation).
+     *
+     * @param current entry currently stored
+     * @param updated replacement
+     * @return false if {@code current} is no longer in the vault
+     */
+    public boolean replaceEntry(VaultEntry current, VaultEntry updated) {
+        Objects.requireNonNull(current, "current");
+        return replace(current, updated, null, !Objects.equals(current.getPassword(), updated.getPassword()));
+    }
+
+    /**
+     * Replaces an entry and records the fields that changed in the history log, so the previous
+     * version can be listed and restored ({@link #history(String)}). The stored copy is marked
+     * updated now, and rotated now if the password changed.
+     *
+     * @param current entry currently stored
+     * @param updated replacement
+     * @param key     unlocked vault key, used to tell which sealed fields actually changed
+     * @return false if {@code current} is no longer in the vault
+     * @throws GeneralSecurityException if a field of {@code current} or {@code updated} cannot be opened
+     * @throws UncheckedIOException     if the vault or the history log cannot be written
+     */
+    public boolean replaceEntry(VaultEntry current, VaultEntry updated, VaultKey key) throws GeneralSecurityException {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(current, "current");
+        Objects.requireNonNull(updated, "updated");
+        HistoryLog.Record delta = history == null ? null : delta(current, updated, key);
+        boolean rotated = delta != null
+                ? (delta.fields & HistoryLog.F_PASSWORD) != 0
+                : !sameValue(current.getPassword(), updated.getPassword(), key);
+        return replace(current, updated, delta, rotated);
+    }
+
+    private boolean replace(VaultEntry current, VaultEntry updated, HistoryLog.Record delta, boolean rotated) {
+        Objects.requireNonNull(updated, "updated");
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        lockWrite();
+        try {
+            int i = indexOf(current);
+            if (i < 0) return false;
+            updated = updated.withTimestamps(current.getCreatedAt(), now, rotated ? now : current.getRotatedAt());
+            entries.set(i, updated);
+            labelIndex.remove(current.getLabel());
+            labelIndex.add(updated.getLabel());
+            ageIndex.remove(current);
+            ageIndex.add(updated);
+            entriesVersion++;
+            persist();
+            recordAudit(AuditLog.Event.Action.UPDATE, updated.getLabel());
+            recordHistory(delta);
+            return true;
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an entry (matched by identity, as returned from {@link #findEntries(String)}) and persists.
+     * The removed entry is kept in the history log and can be restored.
+     *
+     * @param entry entry to remove
+     * @return false if {@code entry} is no longer in the vault
+     */
+    public boolean removeEntry(VaultEntry entry) {
+        ensureLoaded();
+        lockWrite();
+        try {
+            int i = indexOf(entry);
+            if (i < 0) return false;
+            entries.remove(i);
+            labelIndex.remove(entry.getLabel());
+            ageIndex.remove(entry);
+            entriesVersion++;
+            persist();
+            recordAudit(AuditLog.Event.Action.REMOVE, entry.getLabel());
+            if (history != null) {
+                recordHistory(new HistoryLog.Record(HistoryLog.KIND_REMOVE, System.currentTimeMillis(), entry.getKeyEpoch(),
+                        entry.getLabel(), HistoryLog.F_ALL & ~HistoryLog.F_LABEL, entry.getUsername(), entry.getPassword(),
+                        entry.getComment(), entry.getTags(), entry.getFolder(), null, entry.requires2FA()));
+            }
+            return true;
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /** Identity lookup by {@link VaultEntry#id()}; caller holds a lock. */
+    private int indexOf(VaultEntry entry) {
+        if (entries instanceof EntryArena) return ((EntryArena) entries).indexOfSame(entry);
+        long id = entry.id();
+        for (int i = 0; i < entries.size(); i++) if (entries.get(i).id() == id) return i;
+        return -1;
+    }
+
+    /** @return the current entries as a list that later changes do not affect; caller holds a lock */
+    private List<VaultEntry> snapshot() {
+        return entries.snapshot();
+    }
+
+    /** @return an opaque token for the position after sequence number {@code seq}; caller holds a lock */
+    private String pageToken(long seq) {
+        byte[] b = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            b[i] = (byte) (listingGeneration >>> (56 - 8 * i));
+            b[8 + i] = (byte) (seq >>> (56 - 8 * i));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+    }
+
+    /** @return the sequence number in {@code token}; caller holds a lock */
+    private long pageSeq(String token) {
+        byte[] b;
+        try {
+            b = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            b = null;
+        }
+        if (b == null || b.length != 16) throw new IllegalArgumentException("Malformed page token");
+        long generation = 0, seq = 0;
+        for (int i = 0; i < 8; i++) {
+            generation = generation << 8 | (b[i] & 0xFF);
+            seq = seq << 8 | (b[8 + i] & 0xFF);
+        }
+        if (generation != listingGeneration) {
+            throw new IllegalArgumentException("Page token is from an earlier load of the vault; start the listing again");
+        }
+        return seq;
+    }
+
+    /**
+     * Finds entries whose label equals {@code label} exactly.
+     *
+     * @param label entry label
+     * @return matching entries (still encrypted), possibly empty
+     */
+    public List<VaultEntry> findEntries(String label) {
+        ensureLoaded();
+        lockRead();
+        try {
+            if (entries instanceof EntryArena) return ((EntryArena) entries).findByLabel(label);
+            List<VaultEntry> out = new ArrayList<>(1);
+            for (VaultEntry e : entries) if (Objects.equals(e.getLabel(), label)) out.add(e);
+            return out;
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * Suggests labels close to {@code query} ("did you mean"), ranked by edit distance.
+     * Case is ignored and adjacent transpositions count as one edit.
+     *
+     * @param query label as typed
+     * @param limit maximum number of suggestions
+     * @return distinct labels, closest first
+     */
+    public List<String> suggestLabels(String query, int limit) {
+        ensureLoaded();
+        lockRead();
+        try {
+            return labelIndex.suggest(query, limit);
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the entries matching a tag, folder and 2FA filter.
+     * <p>
+     * The first call after unlock (or after entries change) opens every entry's tags and folder
+     * once to build bitmap posting lists; later calls are answered from the bitmaps alone.
+     * </p>
+     *
+     * @param filter filter to apply; an empty filter matches every entry
+     * @param key    unlocked vault key, used to open sealed tags and folders
+     * @return matching entries (still encrypted), in vault order
+     * @throws GeneralSecurityException if sealed tags or folders cannot be opened with {@code key}
+     */
+    public List<VaultEntry> filterEntries(EntryFilter filter, VaultKey key) throws GeneralSecurityException {
+        Objects.requireNonNull(filter, "filter");
+        return tagIndex(key).select(filter);
+    }
+
+    /**
+     * Counts entries per tag.
+     *
+     * @param key unlocked vault key
+     * @return tag to number of entries carrying it, sorted by tag
+     * @throws GeneralSecurityException if sealed tags cannot be opened with {@code key}
+     */
+    public Map<String, Integer> tagCounts(VaultKey key) throws GeneralSecurityException {
+        return new TreeMap<>(tagIndex(key).tagCounts());
+    }
+
+    /** Returns the tag index for the current entries, rebuilding it outside the lock if stale. */
+    private TagIndex tagIndex(VaultKey key) throws GeneralSecurityException {
+        Objects.requireNonNull(key, "key");
+        ensureLoaded();
+        List<VaultEntry> snapshot;
+        long version;
+        lockRead();
+        try {
+            TagIndex idx = tagIndex;
+            if (idx != null && idx.getVersion() == entriesVersion) return idx;
+            snapshot = snapshot();
+            version = entriesVersion;
+        } finally {
+            rw.readLock().unlock();
+        }
+        TagIndex built = TagIndex.build(snapshot, version, key);
+        lockWrite();
+        try {
+            if (entriesVersion == version) tagIndex = built;
+        } finally {
+            rw.writeLock().unlock();
+        }
+        return built;
+    }
+
+    /**
+     * Returns an immutable snapshot of entries (still encrypted). Taking it is constant time: the
+     * snapshot shares the store, which copies on its next change instead.
+     */
+    public List<VaultEntry> listEntries() {
+        ensureLoaded();
+        lockRead();
+        try {
+            return Collections.unmodifiableList(snapshot());
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams a snapshot of the entries (still encrypted), as {@link #listEntries()} but without
+     * the list. The stream's spliterator is {@code SIZED} and {@code SUBSIZED} and splits by
+     * halves, so {@code streamEntries().parallel()} spreads evenly over the common pool; no lock
+     * is held while it runs, and changes made meanwhile are not seen.
+     *
+     * <p><b>Usage example:</b></p>
+     * <pre>{@code
+     * long weak = vm.streamEntries().parallel()
+     *         .filter(e -> isWeak(password(key, e)))
+     *         .count();
+     *
+     * // a lambda cannot throw the checked GeneralSecurityException of openString
+     * static String password(VaultKey key, VaultEntry e) {
+     *     try {
+     *         return key.openString(e.getPassword());
+     *     } catch (GeneralSecurityException ex) {
+     *         throw new IllegalStateException("Cannot open the password of " + e.getLabel(), ex);
+     *     }
+     * }
+     * }</pre>
+     *
+     * @return a sequential stream in vault order
+     */
+    public Stream<VaultEntry> streamEntries() {
+        return StreamSupport.stream(listEntries().spliterator(), false);
+    }
+
+    /**
+     * Lists entries a page at a time, for callers that fetch pages over time, such as a remote
+     * listing. Pass {@code null} for the first page and {@link EntryPage#getNextToken()} for the
+     * next. Only the page is copied, and the read lock is held for {@code O(log n + limit)}.
+     * <p>
+     * A token names the position after the last entry returned, not an index, so listing
+     * resumes correctly across changes: every entry present for the whole listing is returned
+     * exactly once, entries added meanwhile are returned (at the end), removed ones may or may
+     * not have been, and an entry updated in place is returned in whichever version is current
+     * when its page is read. Tokens are opaque and stay valid until the vault is reloaded from
+     * disk in this process.
+     * </p>
+     *
+     * @param token {@code null}, or the next-page token of the previous page
+     * @param limit maximum entries in the page (positive)
+     * @return the page
+     * @throws IllegalArgumentException if {@code limit} is not positive, or the token is malformed
+     *                                  or from an earlier load of the vault
+     */
+    public EntryPage listPage(String token, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Page size must be positive: " + limit);
+        ensureLoaded();
+        lockRead();
+        try {
+            int from = token == null ? 0 : entries.indexAfter(pageSeq(token));
+            int to = (int) Math.min((long) from + limit, entries.size());
+            List<VaultEntry> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) page.add(entries.get(i));
+            String next = to < entries.size() ? pageToken(entries.seqAt(to - 1)) : null;
+            return new EntryPage(page, next);
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    // ----------------- staleness -----------------
+
+    /**
+     * Returns the entries whose {@code field} timestamp is at least {@code maxAge} old, oldest
+     * first. Answered from the time-ordered index in {@code O(log n + k)}: timestamps are
+     * plaintext, so no sealed field is opened and no unlock is needed. Entries whose timestamp was
+     * never recorded (written before timestamps existed) come first.
+     *
+     * @param field  which timestamp to age by
+     * @param maxAge age at which an entry is stale
+     * @return stale entries (still encrypted)
+     */
+    public List<VaultEntry> staleEntries(VaultEntry.Timestamp field, Duration maxAge) {
+        Objects.requireNonNull(field, "field");
+        long cutoff = System.currentTimeMillis() - maxAge.toMillis();
+        ensureLoaded();
+        lockRead();
+        try {
+            return ageIndex.atOrBefore(field, cutoff);
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reports entries as they cross {@code maxAge}, for long-running modes. Entries already stale
+     * are reported once right away; after that the watcher sleeps until the next entry is due
+     * (re-checking at least every {@value #WATCH_POLL_SECONDS} seconds) and reports each entry
+     * once per crossing. The listener runs on a shared daemon thread and must not block.
+     *
+     * @param field    which timestamp to age by
+     * @param maxAge   age at which an entry is stale
+     * @param listener receives each newly stale entry
+     * @return handle that stops the watch when closed
+     */
+    public StaleWatch watchStale(VaultEntry.Timestamp field, Duration maxAge, Consumer<VaultEntry> listener) {
+        Objects.requireNonNull(field, "field");
+        Objects.requireNonNull(listener, "listener");
+        StaleWatch w = new StaleWatch(field, maxAge.toMillis(), listener);
+        w.schedule(0);
+        return w;
+    }
+
+    /** A running {@link #watchStale(VaultEntry.Timestamp, Duration, Consumer)}; close to stop it. */
+    public final class StaleWatch implements AutoCloseable {
+        private final VaultEntry.Timestamp field;
+        private final long maxAgeMillis;
+        private final Consumer<VaultEntry> listener;
+        private long lastCutoff = Long.MIN_VALUE;
+        private volatile boolean closed;
+        private volatile ScheduledFuture<?> pending;
+
+        private StaleWatch(VaultEntry.Timestamp field, long maxAgeMillis, Consumer<VaultEntry> listener) {
+            this.field = field;
+            this.maxAgeMillis = maxAgeMillis;
+            this.listener = listener;
+        }
+
+        private void schedule(long delayMillis) {
+            if (!closed) pending = WATCH.schedule(this::tick, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void tick() {
+            if (closed) return;
+            long now = System.currentTimeMillis();
+            long cutoff = now - maxAgeMillis;
+            List<VaultEntry> due;
+            long next;
+            ensureLoaded();
+            lockRead();
+            try {
+                due = lastCutoff == Long.MIN_VALUE
+                        ? ageIndex.atOrBefore(field, cutoff)
+                        : ageIndex.between(field, lastCutoff, cutoff);
+                next = ageIndex.nextAfter(field, cutoff);
+            } finally {
+                rw.readLock().unlock();
+            }
+            lastCutoff = cutoff;
+            for (VaultEntry e : due) {
+                if (closed) return;
+                listener.accept(e);
+            }
+            long poll = TimeUnit.SECONDS.toMillis(WATCH_POLL_SECONDS);
+            schedule(next < 0 ? poll : Math.max(1, Math.min(poll, next + maxAgeMillis - now)));
+        }
+
+        /** Stops the watch; no events are delivered after this returns (except one already running). */
+        @Override
+        public void close() {
+            closed = true;
+            ScheduledFuture<?> f = pending;
+            if (f != null) f.cancel(false);
+        }
+    }
+
+    // ----------------- audit -----------------
+
+    /**
+     * Records that an entry's secret was read, for the audit log. Queues the event and returns
+     * without touching the disk.
+     *
+     * @param entry entry that was opened
+     */
+    public void recordRead(VaultEntry entry) {
+        recordAudit(AuditLog.Event.Action.GET, entry.getLabel());
+    }
+
+    /**
+     * Checks the audit log's hash chain, MACs and encryption, after writing any queued events.
+     *
+     * @param key unlocked vault key
+     * @return the outcome; {@link AuditLog.Verification#exists()} is false if nothing was logged yet
+     * @throws IllegalStateException if this is an in-memory vault
+     * @throws UncheckedIOException  if the log cannot be read
+     */
+    public AuditLog.Verification verifyAudit(VaultKey key) {
+        Objects.requireNonNull(key, "key");
+        requireAudit();
+        try {
+            return audit.verify(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read audit log of " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the audit events, oldest first, up to the first point where verification fails.
+     *
+     * @param key unlocked vault key
+     * @param out destination for the events
+     * @return the verification outcome
+     * @throws IllegalStateException if this is an in-memory vault
+     * @throws UncheckedIOException  if the log cannot be read
+     */
+    public AuditLog.Verification auditEvents(VaultKey key, List<AuditLog.Event> out) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(out, "out");
+        requireAudit();
+        try {
+            return audit.read(key, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read audit log of " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Records an unlock attempt and creates the audit log on the first successful one. */
+    private VaultKey audited(VaultKey key, String via) {
+        if (key != null) {
+            unlocked = true;
+            sealTotpSecret(key);
+        }
+        if (audit == null) return key;
+        if (key == null) {
+            audit.record(AuditLog.Event.Action.UNLOCK_FAILED, via, null);
+            return null;
+        }
+        auditVia = via;
+        try {
+            audit.initialize(key);
+        } catch (IOException | GeneralSecurityException e) {
+            // an unwritable log must not lock the owner out; verification reports the missing log
+        }
+        audit.record(AuditLog.Event.Action.UNLOCK, via, null);
+        return key;
+    }
+
+    /**
+     * Seals a TOTP secret still held in plaintext (a vault written before secrets were sealed, or
+     * the public constructor's argument) under {@code key}. Best effort: on failure the secret stays
+     * as it was and the next unlock tries again.
+     */
+    private void sealTotpSecret(VaultKey key) {
+        String plain = totpSecret;
+        if (plain == null || CryptoUtils.isKeyPayload(plain)) return;
+        lockWrite();
+        try {
+            plain = totpSecret;
+            if (plain == null || CryptoUtils.isKeyPayload(plain) || key.getEpoch() != keyEpoch) return;
+            totpSecret = key.sealString(plain);
+            try {
+                persist();
+            } catch (UncheckedIOException e) {
+                totpSecret = plain;
+            }
+        } catch (GeneralSecurityException e) {
+            // left in plaintext; the next unlock tries again
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    private void recordAudit(AuditLog.Event.Action action, String label) {
+        if (audit != null) audit.record(action, auditVia, label);
+    }
+
+    private void requireAudit() {
+        if (audit == null) throw new IllegalStateException("In-memory vaults have no audit log");
+    }
+
+    // ----------------- history -----------------
+
+    /**
+     * Lists earlier versions of an entry, newest first. Reads the history log; the vault itself
+     * is not re-read.
+     *
+     * @param label current label of the entry, or the label of an earlier version or removed entry
+     * @return versions with sealed fields; empty if there is no history
+     * @throws UncheckedIOException if the history log cannot be read
+     */
+    public List<EntryVersion> history(String label) {
+        Objects.requireNonNull(label, "label");
+        if (history == null) return List.of();
+        ensureLoaded();
+        List<VaultEntry> current;
+        List<HistoryLog.Record> records;
+        lockRead();
+        try {
+            current = snapshot();
+            records = history.readRetained();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history of " + file + ": " + e.getMessage(), e);
+        } finally {
+            rw.readLock().unlock();
+        }
+        return versionsOf(label, current, records);
+    }
+
+    /**
+     * Restores an earlier version: its fields are re-sealed under {@code key} and it replaces the
+     * entry it belongs to (which is recorded in history in turn), or is re-added if that entry
+     * was removed.
+     *
+     * @param label  label as passed to {@link #history(String)}
+     * @param number 1-based position in {@link #history(String)}
+     * @param key    unlocked vault key
+     * @return the restored entry
+     * @throws GeneralSecurityException if the version cannot be opened with {@code key}
+     * @throws IllegalArgumentException if there is no such version
+     * @throws IllegalStateException    if the entry changed concurrently
+     */
+    public VaultEntry restoreVersion(String label, int number, VaultKey key) throws GeneralSecurityException {
+        Objects.requireNonNull(key, "key");
+        List<EntryVersion> versions = history(label);
+        if (number < 1 || number > versions.size()) {
+            throw new IllegalArgumentException("No version " + number + " of '" + label + "' (" + versions.size() + " recorded)");
+        }
+        EntryVersion v = versions.get(number - 1);
+        VaultEntry old = v.getEntry();
+        VaultEntry restored = new VaultEntry(old.getLabel(), reseal(old.getUsername(), key), reseal(old.getPassword(), key),
+                reseal(old.getComment(), key), old.requires2FA(), key.getEpoch(), reseal(old.getTags(), key),
+                reseal(old.getFolder(), key));
+        List<VaultEntry> current = findEntries(v.getHead());
+        if (current.isEmpty()) {
+            addEntry(restored, key);
+        } else if (!replaceEntry(current.get(0), restored, key)) {
+            throw new IllegalStateException("Entry '" + v.getHead() + "' changed concurrently; try again");
+        }
+        return restored;
+    }
+
+    /**
+     * Sets how much history is kept and drops what falls outside the new limits.
+     *
+     * @param maxVersions earlier versions kept per label (at least 1)
+     * @param maxAgeDays  age limit in days, or 0 for none
+     * @return number of history records dropped
+     * @throws UncheckedIOException if the history log cannot be rewritten
+     */
+    public int setHistoryRetention(int maxVersions, int maxAgeDays) {
+        if (history == null) return 0;
+        lockWrite();
+        try {
+            return history.setRetention(new HistoryLog.Retention(maxVersions, maxAgeDays));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rewrite history of " + file + ": " + e.getMessage(), e);
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code {maxVersions, maxAgeDays}} currently applied to the history log
+     * @throws UncheckedIOException if the history log cannot be read
+     */
+    public int[] getHistoryRetention() {
+        try {
+            HistoryLog.Retention r = history == null
+                    ? new HistoryLog.Retention(HistoryLog.DEFAULT_MAX_VERSIONS, HistoryLog.DEFAULT_MAX_AGE_DAYS)
+                    : history.readRetention();
+            return new int[]{r.maxVersions, r.maxAgeDays};
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history of " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Builds the history record for an update: the prior payloads of the fields that changed. */
+    private static HistoryLog.Record delta(VaultEntry current, VaultEntry updated, VaultKey key) throws GeneralSecurityException {
+        int fields = 0;
+        if (!Objects.equals(current.getLabel(), updated.getLabel())) fields |= HistoryLog.F_LABEL;
+        if (current.requires2FA() != updated.requires2FA()) fields |= HistoryLog.F_2FA;
+        if (!sameValue(current.getUsername(), updated.getUsername(), key)) fields |= HistoryLog.F_USERNAME;
+        if (!sameValue(current.getPassword(), updated.getPassword(), key)) fields |= HistoryLog.F_PASSWORD;
+        if (!sameValue(current.getComment(), updated.getComment(), key)) fields |= HistoryLog.F_COMMENT;
+        if (!sameValue(current.getTags(), updated.getTags(), key)) fields |= HistoryLog.F_TAGS;
+        if (!sameValue(current.getFolder(), updated.getFolder(), key)) fields |= HistoryLog.F_FOLDER;
+        if (fields == 0) return null;
+        return new HistoryLog.Record(HistoryLog.KIND_UPDATE, System.currentTimeMillis(), current.getKeyEpoch(),
+                updated.getLabel(), fields, current.getUsername(), current.getPassword(), current.getComment(),
+                current.getTags(), current.getFolder(), current.getLabel(), current.requires2FA());
+    }
+
+    /** Compares two sealed payloads by plaintext (sealing is randomized, so ciphertexts always differ). */
+    private static boolean sameValue(String a, String b, VaultKey key) throws GeneralSecurityException {
+        if (a == null || b == null) return a == b;
+        byte[] x = key.open(a);
+        byte[] y = key.open(b);
+        try {
+            return MessageDigest.isEqual(x, y);
+        } finally {
+            zero(x);
+            zero(y);
+        }
+    }
+
+    /** Appends to the history log; caller holds the write lock. */
+    private void recordHistory(HistoryLog.Record r) {
+        if (r == null) return;
+        try {
+            history.append(r);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Entry saved, but its history could not be recorded in " + file + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rebuilds versions by walking the log newest to oldest, applying each delta on top of the
+     * version after it. Chains start at the current entries or at removal records, and follow
+     * renames back to earlier labels.
+     */
+    private static List<EntryVersion> versionsOf(String label, List<VaultEntry> current, List<HistoryLog.Record> records) {
+        Map<String, Chain> chains = new HashMap<>();
+        for (VaultEntry e : current) chains.putIfAbsent(e.getLabel(), new Chain(e.getLabel(), e));
+        List<EntryVersion> out = new ArrayList<>();
+        for (int i = records.size() - 1; i >= 0; i--) {
+            HistoryLog.Record r = records.get(i);
+            EntryVersion v;
+            if (r.kind == HistoryLog.KIND_REMOVE) {
+                VaultEntry snap = new VaultEntry(r.label, r.username, r.password, r.comment, r.requires2FA, r.keyEpoch,
+                        r.tags, r.folder);
+                v = new EntryVersion(r.label, snap, Instant.ofEpochMilli(r.timestamp), true, List.of());
+                chains.put(r.label, new Chain(r.label, snap));
+            } else {
+                Chain chain = chains.remove(r.label);
+                if (chain == null) continue; // base version no longer known (dropped by retention)
+                VaultEntry next = chain.entry;
+                VaultEntry prev = new VaultEntry(
+                        r.has(HistoryLog.F_LABEL) ? r.oldLabel : next.getLabel(),
+                        r.has(HistoryLog.F_USERNAME) ? r.username : next.getUsername(),
+                        r.has(HistoryLog.F_PASSWORD) ? r.password : next.getPassword(),
+                        r.has(HistoryLog.F_COMMENT) ? r.comment : next.getComment(),
+                        r.has(HistoryLog.F_2FA) ? r.requires2FA : next.requires2FA(),
+                        r.keyEpoch,
+                        r.has(HistoryLog.F_TAGS) ? r.tags : next.getTags(),
+                        r.has(HistoryLog.F_FOLDER) ? r.folder : next.getFolder());
+                v = new EntryVersion(chain.head, prev, Instant.ofEpochMilli(r.timestamp), false, fieldNames(r.fields));
+                chains.put(prev.getLabel(), new Chain(chain.head, prev));
+            }
+            if (label.equals(v.getHead()) || label.equals(v.getEntry().getLabel())) out.add(v);
+        }
+        return out;
+    }
+
+    /** Walk state for one entry: the label it has now, and its version at the point reached. */
+    private static final class Chain {
+        final String head;
+        final VaultEntry entry;
+
+        Chain(String head, VaultEntry entry) {
+            this.head = head;
+            this.entry = entry;
+        }
+    }
+
+    private static List<String> fieldNames(int fields) {
+        List<String> out = new ArrayList<>();
+        if ((fields & HistoryLog.F_LABEL) != 0) out.add("label");
+        if ((fields & HistoryLog.F_USERNAME) != 0) out.add("username");
+        if ((fields & HistoryLog.F_PASSWORD) != 0) out.add("password");
+        if ((fields & HistoryLog.F_COMMENT) != 0) out.add("comment");
+        if ((fields & HistoryLog.F_TAGS) != 0) out.add("tags");
+        if ((fields & HistoryLog.F_FOLDER) != 0) out.add("folder");
+        if ((fields & HistoryLog.F_2FA) != 0) out.add("2fa");
+        return out;
+    }
+
+    // ----------------- persistence -----------------
+
+    /** @return the cached header, or {@code null} for in-memory vaults. */
+    public VaultHeader getHeader() {
+        return header;
+    }
+
+    /** @return true once the body has been read (always true for in-memory vaults). */
+    public boolean isLoaded() {
+        return bodyLoaded;
+    }
+
+    /** @return true once the data key has been unlocked in this process, by any credential */
+    public boolean wasUnlocked() {
+        return unlocked;
+    }
+
+    /**
+     * (Re)loads the vault body from disk, replacing in-memory entries and config.
+     * No-op for in-memory vaults.
+     *
+     * @throws UncheckedIOException if the body cannot be read
+     */
+    public void load() {
+        if (file == null) return;
+        lockWrite();
+        Stats.Timer t = Stats.time(Stats.Phase.LOAD);
+        try {
+            VaultHeader h = VaultHeader.read(file);
+            applyBody(h, VaultFile.readBody(file, h, newEntryStore(h.getEntryCount())));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load vault " + file + ": " + e.getMessage(), e);
+        } finally {
+            t.close();
+            rw.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds an in-memory manager over an already-parsed body, e.g. the intact records found by
+     * {@link VaultFsck}. {@link #persist()} is a no-op, so the file is never rewritten from it.
+     */
+    static VaultManager detached(VaultHeader h, VaultFile.Body body) {
+        VaultManager vm = new VaultManager(h.isGlobalTOTPEnabled(), body.totpSecret, h.getSalt(), h.getMasterHash(),
+                h.getKdfIterations(), h.getKdfHashBits());
+        vm.applyBody(h, body);
+        return vm;
+    }
+
+    /** Replaces all in-memory state with {@code body}. Caller holds the write lock (or owns the manager). */
+    private void applyBody(VaultHeader h, VaultFile.Body body) {
+        if (body.entries instanceof EntryArena) {
+            EntryArena arena = (EntryArena) body.entries;
+            arena.trimToSize();
+            entries = arena;
+            ageIndex = new AgeIndex(arena::byId);
+        } else {
+            entries = body.entries instanceof EntryList ? (EntryList) body.entries : new EntryList(body.entries);
+            ageIndex = new AgeIndex();
+        }
+        listingGeneration = ThreadLocalRandom.current().nextLong();
+        List<String> labels = new ArrayList<>(entries.size());
+        for (VaultEntry e : entries) labels.add(e.getLabel());
+        labelIndex.rebuild(labels);
+        ageIndex.rebuild(entries);
+        entriesVersion++;
+        keySlots.clear();
+        keySlots.addAll(body.keySlots);
+        members.clear();
+        members.addAll(body.members);
+        retiredKeys.clear();
+        retiredKeys.addAll(body.retiredKeys);
+        keyEpoch = body.keyEpoch;
+        totpSecret = body.totpSecret;
+        globalTOTPEnabled = h.isGlobalTOTPEnabled();
+        if (file != null) {
+            header = h;
+            verifier = verifierOf(h);
+        }
+        bodyLoaded = true;
+    }
+
+    /**
+     * Persists vault state to disk. No-op for in-memory vaults.
+     *
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public void persist() {
+        if (file == null) return;
+        ensureLoaded();
+        lockWrite();
+        Stats.Timer t = Stats.time(Stats.Phase.PERSIST);
+        try {
+            int flags = globalTOTPEnabled
+                    ? header.getFlags() | VaultHeader.FLAG_GLOBAL_TOTP
+                    : header.getFlags() & ~VaultHeader.FLAG_GLOBAL_TOTP;
+            VaultHeader h = header.withFlags(flags);
+            // a vault with key slots keeps no password verifier; this also scrubs one left by older versions
+            if (!keySlots.isEmpty() && h.hasVerifier()) h = h.withoutVerifier();
+            header = VaultFile.write(file, h, new VaultFile.Body(totpSecret, keyEpoch, keySlots, members, retiredKeys, entries));
+            if (!h.hasVerifier()) verifier = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist vault " + file, e);
+        } finally {
+            t.close();
+            rw.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param count number of entries about to be loaded
+     * @return an empty store for them, as chosen by {@value #STORE_PROPERTY}
+     */
+    static EntryStore newEntryStore(int count) {
+        String store = System.getProperty(STORE_PROPERTY, "heap");
+        switch (store) {
+            case "heap":
+                return new EntryList(count);
+            case "columnar":
+                return new EntryArena(count);
+            case "auto":
+                return count >= COLUMNAR_THRESHOLD ? new EntryArena(count) : new EntryList(count);
+            default:
+                throw new IllegalArgumentException("Unknown " + STORE_PROPERTY + " '" + store + "'; use heap, columnar or auto");
+        }
+    }
+
+    /** Maps and parses the body on first use. Must not be called while holding the read lock. */
+    private void ensureLoaded() {
+        if (bodyLoaded) return;
+        lockWrite();
+        try {
+            if (!bodyLoaded) load();
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    // ----------------- locking -----------------
+
+    /** Acquires the write lock, timing the wait as {@link Stats.Phase#LOCK_WAIT}. */
+    private void lockWrite() {
+        Stats.Timer t = Stats.time(Stats.Phase.LOCK_WAIT);
+        rw.writeLock().lock();
+        t.close();
+    }
+
+    /** Acquires the read lock, timing the wait as {@link Stats.Phase#LOCK_WAIT}. */
+    private void lockRead() {
+        Stats.Timer t = Stats.time(Stats.Phase.LOCK_WAIT);
+        rw.readLock().lock();
+        t.close();
+    }
+
+    // ----------------- utils -----------------
+
+    /** @return the header's password verifier, or {@code null} if it keeps none */
+    private static Verifier verifierOf(VaultHeader h) {
+        return h.hasVerifier() ? new Verifier(h.getSalt(), h.getMasterHash(), h.getKdfIterations(), h.getKdfHashBits()) : null;
+    }
+
+    /** Salted PBKDF2 hash of the master password of a vault without key slots. */
+    private static final class Verifier {
+        final byte[] salt;
+        final byte[] hash;
+        final int iterations;
+        final int bits;
+
+        Verifier(byte[] salt, byte[] hash, int iterations, int bits) {
+            this.salt = salt.clone();
+            this.hash = hash.clone();
+            this.iterations = iterations;
+            this.bits = bits;
+        }
+    }
+
+    private static final char[] BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+
+    private static String base32(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length * 8 + 4) / 5);
+        int buffer = 0, bits = 0;
+        for (byte b : data) {
+            buffer = (buffer << 8) | (b & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                sb.append(BASE32[(buffer >>> (bits - 5)) & 31]);
+                bits -= 5;
+            }
+        }
+        if (bits > 0) sb.append(BASE32[(buffer << (5 - bits)) & 31]);
+        return sb.toString();
+    }
+
+    private static char[] normalizeRecoveryCode(String code) {
+        if (code == null) return new char[0];
+        StringBuilder sb = new StringBuilder(code.length());
+        for (int i = 0; i < code.length(); i++) {
+            char c = Character.toUpperCase(code.charAt(i));
+            if (c != '-' && !Character.isWhitespace(c)) sb.append(c);
+        }
+        char[] out = new char[sb.length()];
+        sb.getChars(0, sb.length(), out, 0);
+        sb.setLength(0);
+        return out;
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int iterations, int bits) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, bits);
+        try {
+            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            return skf.generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
 
     private static boolean constantTimeEquals(byte[] a, byte[] b) {
         if (a == null || b == null || a.length != b.length) return false;
@@ -0,0 +1,279 @@
+package shush.vault;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import shush.config.ConfigSource;
+import shush.config.ShushConfig;
+
+/**
+ * Registry of named vaults stored under a single Shush home directory.
+ * <p>
+ * Layout:
+ * <pre>
+ * $SHUSH_HOME/              (default: ~/.shush)
+ *   config                  settings, sshd_config style (see {@link ShushConfig})
+ *   current                 name of the selected vault
+ *   identity                local team identity (see {@link MemberIdentity})
+ *   vaults/&lt;name&gt;.vault     one file per vault
+ * </pre>
+ * <p>
+ * Listing and selecting vaults only ever reads the fixed-size {@link VaultHeader} of each file.
+ * {@link #open(String)} returns a {@link VaultManager} whose body is mapped lazily on first use;
+ * open managers are cached so long-running processes reuse them instead of re-reading the file.
+ * </p>
+ */
+public final class VaultRegistry {
+
+    private static final String VAULT_EXT = ".vault";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final Path home;
+    private final Path vaultDir;
+    private final ConcurrentMap<String, VaultManager> open = new ConcurrentHashMap<>();
+    private final ConfigSource config;
+
+    /**
+     * Constructs a registry rooted at {@code home}.
+     *
+     * @param home Shush home directory
+     */
+    public VaultRegistry(Path home) {
+        this.home = Objects.requireNonNull(home, "home");
+        this.vaultDir = home.resolve("vaults");
+        this.config = new ConfigSource(home);
+    }
+
+    /**
+     * Returns a registry rooted at {@code -Dshush.home}, {@code $SHUSH_HOME}, or {@code ~/.shush}, in that order.
+     *
+     * @return the default registry
+     */
+    public static VaultRegistry defaultRegistry() {
+        String dir = System.getProperty("shush.home");
+        if (dir == null || dir.isEmpty()) dir = System.getenv("SHUSH_HOME");
+        if (dir == null || dir.isEmpty()) dir = Paths.get(System.getProperty("user.home"), ".shush").toString();
+        return new VaultRegistry(Paths.get(dir));
+    }
+
+    /** @return the Shush home directory backing this registry. */
+    public Path getHome() {
+        return home;
+    }
+
+    /** @return the path of the local team identity file (may not exist). */
+    public Path getIdentityPath() {
+        return home.resolve("identity");
+    }
+
+    /** @return the config of this home; loaded on first use, hot-reloaded once {@linkplain ConfigSource#watch() watched} */
+    public ConfigSource getConfig() {
+        return config;
+    }
+
+    /**
+     * Resolves the config for a command run against the selected vault. The selection is only
+     * read if a {@code Match Vault} block needs it.
+     *
+     * @param command command name
+     * @return the settings in effect
+     * @throws IllegalArgumentException if the config file is invalid
+     * @throws UncheckedIOException     if it cannot be read
+     */
+    public ShushConfig.Settings settings(String command) {
+        return config.current().resolve(command, () -> {
+            try {
+                return current();
+            } catch (IOException e) {
+                return null;
+            }
+        });
+    }
+
+    // ----------------- listing & selection -----------------
+
+    /** Summary of a vault as described by its header alone. */
+    public static final class VaultInfo {
+        private final String name;
+        private final VaultHeader header;
+
+        VaultInfo(String name, VaultHeader header) {
+            this.name = name;
+            this.header = header;
+        }
+
+        /** @return the vault name. */
+        public String getName() { return name; }
+
+        /** @return the vault header. */
+        public VaultHeader getHeader() { return header; }
+    }
+
+    /**
+     * Lists all vaults by reading only their headers. Unreadable files are skipped.
+     *
+     * @return vault summaries sorted by name
+     * @throws IOException if the vault directory cannot be listed
+     */
+    public List<VaultInfo> list() throws IOException {
+        List<VaultInfo> out = new ArrayList<>();
+        if (!Files.isDirectory(vaultDir)) return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(vaultDir, "*" + VAULT_EXT)) {
+            for (Path p : ds) {
+                String fn = p.getFileName().toString();
+                String name = fn.substring(0, fn.length() - VAULT_EXT.length());
+                VaultManager cached = open.get(name);
+                try {
+                    VaultHeader h = (cached != null && cached.getHeader() != null) ? cached.getHeader() : VaultHeader.read(p);
+                    out.add(new VaultInfo(name, h));
+                } catch (IOException e) {
+                    // not a vault (or corrupt header); leave it out of the listing
+                }
+            }
+        }
+        out.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return out;
+    }
+
+    /**
+     * @param name vault name
+     * @return true if a vault with this name exists
+     */
+    public boolean exists(String name) {
+        return Files.isRegularFile(pathFor(name));
+    }
+
+    /**
+     * Returns the name of the selected vault. If none is selected and exactly one vault
+     * exists, that vault is used.
+     *
+     * @return the selected vault name, or {@code null} if none can be determined
+     * @throws IOException if the selection file cannot be read
+     */
+    public String current() throws IOException {
+        Path sel = home.resolve("current");
+        if (Files.isRegularFile(sel)) {
+            String name = new String(Files.readAllBytes(sel), StandardCharsets.UTF_8).trim();
+            if (!name.isEmpty() && exists(name)) return name;
+        }
+        List<VaultInfo> all = list();
+        return all.size() == 1 ? all.get(0).getName() : null;
+    }
+
+    /**
+     * Selects the vault used by subsequent commands. Only the header is validated.
+     *
+     * @param name vault name
+     * @throws IOException if the vault does not exist, is not a vault, or the selection cannot be written
+     */
+    public void select(String name) throws IOException {
+        VaultHeader.read(pathFor(name));
+        Files.createDirectories(home);
+        Files.write(home.resolve("current"), name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ----------------- open & create -----------------
+
+    /**
+     * Returns the (cached) manager for {@code name}. Only the header is read; the body is
+     * mapped when the manager first needs entries.
+     *
+     * @param name vault name
+     * @return the vault manager
+     * @throws UncheckedIOException if the header cannot be read
+     */
+    public VaultManager open(String name) {
+        Path p = pathFor(name);
+        return open.computeIfAbsent(name, n -> {
+            try {
+                VaultManager vm = new VaultManager(p, VaultHeader.read(p));
+                vm.setIdentityPath(getIdentityPath());
+                return vm;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open vault '" + n + "': " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Opens the currently selected vault.
+     *
+     * @return the vault manager
+     * @throws IllegalStateException if no vault is selected
+     */
+    public VaultManager openCurrent() {
+        String name;
+        try {
+            name = current();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (name == null) {
+            throw new IllegalStateException("No vault selected. Run 'shush init' or 'shush vault use <name>'.");
+        }
+        return open(name);
+    }
+
+    /**
+     * Creates a new vault file and caches its manager.
+     *
+     * @param name              vault name
+     * @param masterPassword    master password (zeroed after use)
+     * @param pin               optional PIN (may be {@code null} or empty)
+     * @param globalTOTPEnabled whether all entries require TOTP by default
+     * @param totpSecret        TOTP secret, or {@code null}
+     * @return the new manager
+     * @throws IOException              if the vault exists already or cannot be written
+     * @throws GeneralSecurityException if the KDF fails
+     */
+    public VaultManager create(String name, char[] masterPassword, char[] pin, boolean globalTOTPEnabled, String totpSecret)
+            throws IOException, GeneralSecurityException {
+        Path p = pathFor(name);
+        if (Files.exists(p)) throw new IOException("Vault '" + name + "' already exists");
+        VaultManager vm = VaultManager.createVault(p, masterPassword, pin, globalTOTPEnabled, totpSecret);
+        vm.setIdentityPath(getIdentityPath());
+        open.put(name, vm);
+        return vm;
+    }
+
+    /** @return the managers opened so far, by vault name */
+    public Map<String, VaultManager> opened() {
+        return Collections.unmodifiableMap(open);
+    }
+
+    /**
+     * Drops a cached manager so the next {@link #open(String)} re-reads the header.
+     *
+     * @param name vault name
+     */
+    public void evict(String name) {
+        open.remove(name);
+    }
+
+    /**
+     * Resolves the file for a vault name.
+     *
+     * @param name vault name ({@code [A-Za-z0-9._-]}, 1-64 chars)
+     * @return path of the vault file
+     * @throws IllegalArgumentException if the name is invalid
+     */
+    public Path pathFor(String name) {
+        if (name == null || !NAME.matcher(name).matches() || name.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid vault name: " + name);
+        }
+        return vaultDir.resolve(name + VAULT_EXT);
+    }
+}
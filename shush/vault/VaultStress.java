@@ -0,0 +1,626 @@
+package shush.vault;
+
+import shush.util.CryptoUtils;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Multi-threaded stress and correctness harness for {@link VaultManager}.
+ * <p>
+ * Three suites, each runnable on its own:
+ * <dl>
+ *   <dt>{@code litmus}</dt>
+ *   <dd>jcstress-style tests: two actor threads race one operation each against a freshly reset
+ *       vault, an arbiter records the outcome, and this repeats thousands of times. Each test lists
+ *       the outcomes the locking contract allows; any other outcome is a failure.</dd>
+ *   <dt>{@code linearizability}</dt>
+ *   <dd>Threads run short randomized histories of adds, finds, removes, config writes and reads,
+ *       persists and reloads, recording invocation and response times. Each history is split per
+ *       object (one partition per label, one per config field; linearizability is local, so the parts
+ *       are checked independently) and searched for a legal sequential order against a model,
+ *       Wing &amp; Gong style with memoization.</dd>
+ *   <dt>{@code throughput}</dt>
+ *   <dd>A read-heavy operation mix at 1, 2, 4 ... threads for a fixed time, reporting operations
+ *       per second and p50/p99/p99.9/max latency per operation.</dd>
+ * </dl>
+ * File-backed vaults are created in a temporary directory and deleted afterwards. The process
+ * exits with status 1 if any litmus or linearizability check fails.
+ *
+ * <p><b>Usage example:</b></p>
+ * <pre>{@code
+ * java -cp out shush.vault.VaultStress
+ * java -cp out shush.vault.VaultStress throughput --threads 16 --seconds 10 --in-memory
+ * java -cp out shush.vault.VaultStress linearizability --rounds 5000
+ * }</pre>
+ */
+public final class VaultStress {
+
+    private static final char[] MASTER = "stress".toCharArray();
+    // Seals the TOTP secret, which the tests use as a register; any current-epoch key will do
+    private static final VaultKey KEY = new VaultKey(CryptoUtils.randomKey());
+
+    private final Path dir;
+    private int litmusRounds = 2000;
+    private int linRounds = 1000;
+    private int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private int seconds = 3;
+    private boolean inMemory;
+    private int failures;
+
+    private VaultStress(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Runs the suites named in {@code args} ({@code litmus}, {@code linearizability},
+     * {@code throughput}; all when none is named).
+     *
+     * @param args suites and options: {@code --rounds n}, {@code --threads n}, {@code --seconds n}, {@code --in-memory}
+     */
+    public static void main(String[] args) throws Exception {
+        Set<String> suites = new HashSet<>();
+        Path dir = Files.createTempDirectory("shush-stress");
+        VaultStress s = new VaultStress(dir);
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if ("--rounds".equals(a) && i + 1 < args.length) {
+                    s.litmusRounds = s.linRounds = Integer.parseInt(args[++i]);
+                } else if ("--threads".equals(a) && i + 1 < args.length) {
+                    s.maxThreads = Integer.parseInt(args[++i]);
+                } else if ("--seconds".equals(a) && i + 1 < args.length) {
+                    s.seconds = Integer.parseInt(args[++i]);
+                } else if ("--in-memory".equals(a)) {
+                    s.inMemory = true;
+                } else if (a.equals("litmus") || a.equals("linearizability") || a.equals("throughput")) {
+                    suites.add(a);
+                } else {
+                    System.out.println("Usage: VaultStress [litmus] [linearizability] [throughput] [--rounds n] [--threads n] [--seconds n] [--in-memory]");
+                    System.exit(2);
+                }
+            }
+            if (suites.isEmpty()) suites.addAll(List.of("litmus", "linearizability", "throughput"));
+
+            if (suites.contains("litmus")) s.litmus();
+            if (suites.contains("linearizability")) s.linearizability();
+            if (suites.contains("throughput")) s.throughput();
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+        if (s.failures > 0) {
+            System.out.println(s.failures + " check(s) FAILED.");
+            System.exit(1);
+        }
+        System.out.println("All checks passed.");
+    }
+
+    // ----------------- litmus -----------------
+
+    /** One jcstress-style test: reset, two racing actors, then an arbiter that names the outcome. */
+    private abstract static class Litmus {
+        final String name;
+        final Set<String> allowed;
+
+        Litmus(String name, String... allowed) {
+            this.name = name;
+            this.allowed = new HashSet<>(Arrays.asList(allowed));
+        }
+
+        abstract void reset() throws Exception;
+
+        abstract void actor1() throws Exception;
+
+        abstract void actor2() throws Exception;
+
+        abstract String arbiter() throws Exception;
+    }
+
+    private void litmus() throws Exception {
+        System.out.println("== litmus (" + litmusRounds + " rounds each)");
+        VaultManager mem = inMemoryVault();
+        VaultManager disk = fileVault("litmus");
+        Path diskFile = dir.resolve("litmus.shush");
+
+        List<Litmus> tests = new ArrayList<>();
+        tests.add(new Litmus("add || add: no lost entry", "a,b") {
+            void reset() { clear(mem); }
+            void actor1() { mem.addEntry(entry("a", 1)); }
+            void actor2() { mem.addEntry(entry("b", 2)); }
+            String arbiter() { return labels(mem.listEntries()); }
+        });
+        tests.add(new Litmus("add a; add b || list: prefix of program order", "", "a", "a,b") {
+            volatile String seen;
+            void reset() { clear(mem); }
+            void actor1() {
+                mem.addEntry(entry("a", 1));
+                mem.addEntry(entry("b", 2));
+            }
+            void actor2() { seen = labels(mem.listEntries()); }
+            String arbiter() { return seen; }
+        });
+        tests.add(new Litmus("remove x || remove x: exactly one wins", "true,false", "false,true") {
+            VaultEntry x;
+            volatile boolean r1, r2;
+            void reset() {
+                clear(mem);
+                x = entry("x", 1);
+                mem.addEntry(x);
+                x = mem.findEntries("x").get(0);
+            }
+            void actor1() { r1 = mem.removeEntry(x); }
+            void actor2() { r2 = mem.removeEntry(x); }
+            String arbiter() { return r1 + "," + r2; }
+        });
+        tests.add(new Litmus("setTOTPSecret || load: no lost config write", "S1 memory, S1 disk") {
+            void reset() { setSecret(disk, "S0"); }
+            void actor1() { setSecret(disk, "S1"); }
+            void actor2() { disk.load(); }
+            String arbiter() throws IOException {
+                return secret(disk) + " memory, " + diskSecret(diskFile) + " disk";
+            }
+        });
+        tests.add(new Litmus("setGlobalTOTPEnabled || load: no lost config write", "true memory, true disk") {
+            void reset() { disk.setGlobalTOTPEnabled(false); }
+            void actor1() { disk.setGlobalTOTPEnabled(true); }
+            void actor2() { disk.load(); }
+            String arbiter() throws IOException {
+                return disk.isGlobalTOTPEnabled() + " memory, " + VaultHeader.read(diskFile).isGlobalTOTPEnabled() + " disk";
+            }
+        });
+
+        for (Litmus t : tests) runLitmus(t);
+    }
+
+    private void runLitmus(Litmus t) throws Exception {
+        AtomicInteger go = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Thread[] actors = new Thread[2];
+        for (int a = 0; a < 2; a++) {
+            final int which = a;
+            actors[a] = new Thread(() -> {
+                for (int round = 1; round <= litmusRounds; round++) {
+                    while (go.get() < round) Thread.onSpinWait();
+                    try {
+                        if (which == 0) t.actor1();
+                        else t.actor2();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                    done.incrementAndGet();
+                }
+            }, "litmus-actor-" + (a + 1));
+            actors[a].setDaemon(true);
+            actors[a].start();
+        }
+
+        Map<String, Integer> outcomes = new TreeMap<>();
+        for (int round = 1; round <= litmusRounds; round++) {
+            t.reset();
+            done.set(0);
+            go.set(round);
+            while (done.get() < 2) Thread.onSpinWait();
+            outcomes.merge(t.arbiter(), 1, Integer::sum);
+        }
+        for (Thread a : actors) a.join();
+
+        boolean ok = failed.get() == 0;
+        for (String o : outcomes.keySet()) if (!t.allowed.contains(o)) ok = false;
+        System.out.println((ok ? "  OK    " : "  FAIL  ") + t.name);
+        for (Map.Entry<String, Integer> o : outcomes.entrySet()) {
+            System.out.printf(Locale.ROOT, "          %-28s %7d  %s%n", "[" + o.getKey() + "]", o.getValue(),
+                    t.allowed.contains(o.getKey()) ? "acceptable" : "FORBIDDEN");
+        }
+        if (failed.get() > 0) System.out.println("          " + failed.get() + " actor exception(s)");
+        if (!ok) failures++;
+    }
+
+    // ----------------- linearizability -----------------
+
+    private static final int ADD = 0, FIND = 1, REMOVE = 2, SET = 3, GET = 4, NOOP = 5;
+
+    /** One completed operation in a recorded history. */
+    private static final class Op {
+        final int kind;
+        final String partition;
+        final long arg;
+        long result;
+        final long invoked;
+        long returned;
+        final int thread;
+
+        Op(int thread, int kind, String partition, long arg) {
+            this.thread = thread;
+            this.kind = kind;
+            this.partition = partition;
+            this.arg = arg;
+            this.invoked = System.nanoTime();
+        }
+
+        Op done(long result) {
+            this.result = result;
+            this.returned = System.nanoTime();
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            String[] names = {"add", "find", "remove", "set", "get", "noop"};
+            return String.format(Locale.ROOT, "t%d %s(%d)=%d [%d..%d]", thread, names[kind], arg, result, invoked, returned);
+        }
+    }
+
+    private void linearizability() throws Exception {
+        final int threads = Math.min(maxThreads, 4);
+        final int opsPerThread = 8;
+        final String[] keys = {"k0", "k1", "k2"};
+        VaultManager vm = inMemory ? inMemoryVault() : fileVault("lin");
+        System.out.println("== linearizability (" + linRounds + " rounds, " + threads + " threads x " + opsPerThread
+                + " ops, " + (inMemory ? "in-memory" : "file-backed") + ")");
+
+        AtomicLong nextId = new AtomicLong();
+        AtomicLong nextValue = new AtomicLong(1);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        int bad = 0;
+        long checkedOps = 0;
+        for (int round = 0; round < linRounds; round++) {
+            clear(vm);
+            setSecret(vm, "v0");
+            vm.setGlobalTOTPEnabled(false);
+            nextId.set(0);
+
+            // Odd rounds mix in reloads. A reload replaces every entry object, which would invalidate
+            // removes by identity, so those rounds leave entries alone.
+            final boolean reloads = !inMemory && round % 2 == 1;
+            List<List<Op>> perThread = new ArrayList<>();
+            Thread[] ts = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                List<Op> log = new ArrayList<>();
+                perThread.add(log);
+                final int tid = t;
+                ts[t] = new Thread(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    try {
+                        start.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    for (int i = 0; i < opsPerThread; i++) {
+                        String key = keys[rnd.nextInt(keys.length)];
+                        int pick = rnd.nextInt(100);
+                        if (reloads) {
+                            if (pick < 30) {
+                                long v = nextValue.getAndIncrement();
+                                Op op = new Op(tid, SET, "secret", v);
+                                setSecret(vm, "v" + v);
+                                log.add(op.done(0));
+                            } else if (pick < 50) {
+                                Op op = new Op(tid, GET, "secret", 0);
+                                log.add(op.done(Long.parseLong(secret(vm).substring(1))));
+                            } else if (pick < 65) {
+                                boolean b = rnd.nextBoolean();
+                                Op op = new Op(tid, SET, "2fa", b ? 1 : 0);
+                                vm.setGlobalTOTPEnabled(b);
+                                log.add(op.done(0));
+                            } else if (pick < 80) {
+                                Op op = new Op(tid, GET, "2fa", 0);
+                                log.add(op.done(vm.isGlobalTOTPEnabled() ? 1 : 0));
+                            } else {
+                                Op op = new Op(tid, NOOP, "secret", 0);
+                                vm.load();
+                                log.add(op.done(0));
+                            }
+                        } else if (pick < 30) {
+                            long id = nextId.getAndIncrement();
+                            Op op = new Op(tid, ADD, key, id);
+                            vm.addEntry(entry(key, id));
+                            log.add(op.done(0));
+                        } else if (pick < 60) {
+                            Op op = new Op(tid, FIND, key, 0);
+                            List<VaultEntry> found = vm.findEntries(key);
+                            log.add(op.done(mask(found)));
+                            if (!found.isEmpty() && rnd.nextBoolean()) {
+                                // remove one of the entries just seen, by identity
+                                VaultEntry victim = found.get(rnd.nextInt(found.size()));
+                                Op rm = new Op(tid, REMOVE, key, idOf(victim));
+                                log.add(rm.done(vm.removeEntry(victim) ? 1 : 0));
+                            }
+                        } else if (pick < 75) {
+                            long v = nextValue.getAndIncrement();
+                            Op op = new Op(tid, SET, "secret", v);
+                            setSecret(vm, "v" + v);
+                            log.add(op.done(0));
+                        } else if (pick < 90) {
+                            Op op = new Op(tid, GET, "secret", 0);
+                            log.add(op.done(Long.parseLong(secret(vm).substring(1))));
+                        } else {
+                            Op op = new Op(tid, NOOP, key, 0);
+                            vm.persist();
+                            log.add(op.done(0));
+                        }
+                    }
+                }, "lin-" + t);
+                ts[t].start();
+            }
+            for (Thread t : ts) t.join();
+
+            Map<String, List<Op>> partitions = new HashMap<>();
+            for (List<Op> log : perThread) {
+                for (Op op : log) partitions.computeIfAbsent(op.partition, p -> new ArrayList<>()).add(op);
+            }
+            for (Map.Entry<String, List<Op>> p : partitions.entrySet()) {
+                List<Op> ops = p.getValue();
+                checkedOps += ops.size();
+                // every partition starts at 0: secret "v0", 2FA off, no entries
+                if (!linearizable(ops, 0)) {
+                    bad++;
+                    if (bad <= 3) {
+                        System.out.println("  non-linearizable history on '" + p.getKey() + "' (round " + round + "):");
+                        ops.sort(Comparator.comparingLong(o -> o.invoked));
+                        for (Op op : ops) System.out.println("    " + op);
+                    }
+                }
+            }
+        }
+        System.out.println((bad == 0 ? "  OK    " : "  FAIL  ") + checkedOps + " operations in " + linRounds
+                + " histories" + (bad == 0 ? ", all linearizable" : ", " + bad + " partition(s) not linearizable"));
+        if (bad > 0) failures++;
+    }
+
+    /**
+     * Searches for a sequential order of {@code ops} that respects real time (an operation that
+     * returned before another was invoked comes first) and the model. States are longs: a bitmask
+     * of live entry ids for a label partition, or the current value for a config partition.
+     */
+    private static boolean linearizable(List<Op> ops, long initial) {
+        if (ops.size() > 63) throw new IllegalArgumentException("history too long to check: " + ops.size());
+        return search(ops.toArray(new Op[0]), 0L, initial, new HashSet<>());
+    }
+
+    private static boolean search(Op[] ops, long done, long state, Set<List<Long>> seen) {
+        if (Long.bitCount(done) == ops.length) return true;
+        long firstReturn = Long.MAX_VALUE;
+        for (int i = 0; i < ops.length; i++) if ((done & 1L << i) == 0) firstReturn = Math.min(firstReturn, ops[i].returned);
+        for (int i = 0; i < ops.length; i++) {
+            if ((done & 1L << i) != 0 || ops[i].invoked > firstReturn) continue;
+            Op op = ops[i];
+            long next;
+            switch (op.kind) {
+                case ADD: next = state | 1L << op.arg; break;
+                case FIND: if (op.result != state) continue; next = state; break;
+                case REMOVE: {
+                    boolean present = (state & 1L << op.arg) != 0;
+                    if ((op.result == 1) != present) continue;
+                    next = state & ~(1L << op.arg);
+                    break;
+                }
+                case SET: next = op.arg; break;
+                case GET: if (op.result != state) continue; next = state; break;
+                default: next = state;
+            }
+            long d = done | 1L << i;
+            if (seen.add(List.of(d, next)) && search(ops, d, next, seen)) return true;
+        }
+        return false;
+    }
+
+    private static long mask(List<VaultEntry> found) {
+        long m = 0;
+        for (VaultEntry e : found) m |= 1L << idOf(e);
+        return m;
+    }
+
+    private static long idOf(VaultEntry e) {
+        return Long.parseLong(e.getUsername().substring(3));
+    }
+
+    // ----------------- throughput -----------------
+
+    private static final String[] OP_NAMES = {"find", "list", "add", "remove", "config-get", "config-set", "persist"};
+    private static final int[] OP_MIX = {70, 5, 10, 5, 5, 3, 2}; // percent
+
+    private void throughput() throws Exception {
+        System.out.println("== throughput (" + seconds + "s per level, " + (inMemory ? "in-memory" : "file-backed")
+                + ", mix find 70 / list 5 / add 10 / remove 5 / config get 5 / set 3 / persist 2)");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            VaultManager vm = inMemory ? inMemoryVault() : fileVault("tp" + threads);
+            for (int i = 0; i < 1000; i++) vm.addEntry(entry("label-" + i, i));
+            runLevel(vm, threads);
+        }
+    }
+
+    private void runLevel(VaultManager vm, int threads) throws Exception {
+        LatencyHistogram[][] hist = new LatencyHistogram[threads][OP_NAMES.length];
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        AtomicInteger stop = new AtomicInteger();
+        AtomicLong ids = new AtomicLong(1000);
+        Thread[] ts = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            LatencyHistogram[] h = hist[t];
+            for (int k = 0; k < h.length; k++) h[k] = new LatencyHistogram();
+            ts[t] = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                while (stop.get() == 0) {
+                    int kind = pick(rnd.nextInt(100));
+                    String label = "label-" + rnd.nextInt(1000);
+                    long t0 = System.nanoTime();
+                    switch (kind) {
+                        case 0: vm.findEntries(label); break;
+                        case 1: vm.listEntries(); break;
+                        case 2: vm.addEntry(entry(label, ids.getAndIncrement())); break;
+                        case 3: {
+                            List<VaultEntry> found = vm.findEntries(label);
+                            if (found.size() > 1) vm.removeEntry(found.get(0)); // keep the population steady
+                            break;
+                        }
+                        case 4: secret(vm); break;
+                        case 5: setSecret(vm, "s" + rnd.nextInt()); break;
+                        default: vm.persist();
+                    }
+                    h[kind].record(System.nanoTime() - t0);
+                }
+            }, "tp-" + t);
+            ts[t].start();
+        }
+        start.await();
+        long t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        stop.set(1);
+        for (Thread t : ts) t.join();
+        double elapsed = (System.nanoTime() - t0) / 1e9;
+
+        LatencyHistogram all = new LatencyHistogram();
+        LatencyHistogram[] byOp = new LatencyHistogram[OP_NAMES.length];
+        for (int k = 0; k < OP_NAMES.length; k++) {
+            byOp[k] = new LatencyHistogram();
+            for (int t = 0; t < threads; t++) byOp[k].add(hist[t][k]);
+            all.add(byOp[k]);
+        }
+        System.out.printf(Locale.ROOT, "  %2d thread(s): %,10.0f ops/s   p50 %s  p99 %s  p99.9 %s  max %s%n", threads,
+                all.count / elapsed, fmt(all.percentile(0.50)), fmt(all.percentile(0.99)), fmt(all.percentile(0.999)), fmt(all.max));
+        for (int k = 0; k < OP_NAMES.length; k++) {
+            LatencyHistogram h = byOp[k];
+            if (h.count == 0) continue;
+            System.out.printf(Locale.ROOT, "      %-11s %,10d ops   p50 %s  p99 %s  p99.9 %s  max %s%n", OP_NAMES[k], h.count,
+                    fmt(h.percentile(0.50)), fmt(h.percentile(0.99)), fmt(h.percentile(0.999)), fmt(h.max));
+        }
+    }
+
+    private static int pick(int percent) {
+        for (int k = 0; k < OP_MIX.length; k++) {
+            percent -= OP_MIX[k];
+            if (percent < 0) return k;
+        }
+        return OP_MIX.length - 1;
+    }
+
+    /**
+     * Single-writer latency histogram with 16 linear sub-buckets per power of two (about 6%
+     * resolution), merged after the run.
+     */
+    private static final class LatencyHistogram {
+        final long[] buckets = new long[64 * 16];
+        long count;
+        long max;
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets[index(nanos)]++;
+            count++;
+            if (nanos > max) max = nanos;
+        }
+
+        void add(LatencyHistogram o) {
+            for (int i = 0; i < buckets.length; i++) buckets[i] += o.buckets[i];
+            count += o.count;
+            max = Math.max(max, o.max);
+        }
+
+        long percentile(double q) {
+            long target = (long) Math.ceil(q * count), seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) return Math.min(upper(i), max);
+            }
+            return max;
+        }
+
+        private static int index(long v) {
+            if (v < 16) return (int) v;
+            int msb = 63 - Long.numberOfLeadingZeros(v);
+            return (msb - 3) * 16 + (int) ((v >>> (msb - 4)) & 15);
+        }
+
+        private static long upper(int i) {
+            if (i < 16) return i;
+            int msb = i / 16 + 3;
+            long sub = i % 16;
+            return ((16 + sub + 1) << (msb - 4)) - 1;
+        }
+    }
+
+    private static String fmt(long nanos) {
+        if (nanos < 10_000) return String.format(Locale.ROOT, "%6dns", nanos);
+        if (nanos < 10_000_000) return String.format(Locale.ROOT, "%6.1fus", nanos / 1e3);
+        return String.format(Locale.ROOT, "%6.1fms", nanos / 1e6);
+    }
+
+    // ---- helpers ----
+
+    private static VaultManager inMemoryVault() {
+        return new VaultManager(false, "v0", new byte[16], new byte[32], 1, 256);
+    }
+
+    private VaultManager fileVault(String name) throws Exception {
+        return VaultManager.createVault(dir.resolve(name + ".shush"), MASTER.clone(), null, false, null);
+    }
+
+    /** An entry whose (unsealed) username carries its id, which survives reloads. */
+    private static VaultEntry entry(String label, long id) {
+        return new VaultEntry(label, "id:" + id, "pw", null, false);
+    }
+
+    private static void clear(VaultManager vm) {
+        for (VaultEntry e : vm.listEntries()) vm.removeEntry(e);
+    }
+
+    private static String labels(List<VaultEntry> entries) {
+        List<String> out = new ArrayList<>();
+        for (VaultEntry e : entries) out.add(e.getLabel());
+        out.sort(null);
+        return String.join(",", out);
+    }
+
+    private static String diskSecret(Path file) throws IOException {
+        return open(VaultFile.readBody(file, VaultHeader.read(file)).totpSecret);
+    }
+
+    private static String secret(VaultManager vm) {
+        try {
+            return vm.getTOTPSecret(KEY);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void setSecret(VaultManager vm, String secret) {
+        try {
+            vm.setTOTPSecret(secret, KEY);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String open(String sealed) {
+        try {
+            return KEY.openString(sealed);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}